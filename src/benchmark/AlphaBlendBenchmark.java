@@ -0,0 +1,63 @@
+package benchmark;
+
+import java.util.Random;
+
+import model.AlphaBlend;
+import model.TiledRaster;
+
+/**
+ * AlphaBlendBenchmark measures how fast translucent colors are blended into rows of pixels, both one channel
+ * at a time with AlphaBlend.blend() and two channels at a time with AlphaBlend.blendRow(), for rows as long as
+ * a tile, which is what a stroke blends at a time, and for much longer rows.
+ *
+ * Run it with:
+ * 		java benchmark.AlphaBlendBenchmark [rows]
+ *
+ */
+public class AlphaBlendBenchmark {
+	private static final int DEFAULT_ROWS = 2000000;
+	private static final int[] ROW_LENGTHS = {TiledRaster.TILE_SIZE, 4096};
+	private static final int ROUNDS = 5;
+
+	/** The sum of the blended pixels, so that the blending cannot be optimized away. */
+	private static long checksum = 0;
+
+	public static void main(String[] args) {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+		Random random = new Random(6005);
+
+		for (int length : ROW_LENGTHS) {
+			int[] row = new int[length];
+			for (int i = 0; i < length; i++) {
+				row[i] = random.nextInt(1 << 24);
+			}
+			// As many rows of each length are blended as there are pixels in rows of the shortest length.
+			int count = (int) ((long) rows * ROW_LENGTHS[0] / length);
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				for (int r = 0; r < count; r++) {
+					int rgb = r & 0xFFFFFF, alpha = 1 + (r & 0xFF) % AlphaBlend.OPAQUE;
+					for (int i = 0; i < length; i++) {
+						row[i] = AlphaBlend.blend(row[i], rgb, alpha);
+					}
+				}
+				long scalar = System.nanoTime() - start;
+				checksum += row[length / 2];
+
+				start = System.nanoTime();
+				for (int r = 0; r < count; r++) {
+					AlphaBlend.blendRow(row, 0, length, r & 0xFFFFFF, 1 + (r & 0xFF) % AlphaBlend.OPAQUE);
+				}
+				long packed = System.nanoTime() - start;
+				checksum += row[length / 2];
+
+				System.out.printf("round %d, %d pixel rows: scalar %d ns/row (%.0f Mpixels/s), packed %d ns/row (%.0f Mpixels/s)%n",
+								  round, length, scalar / count, 1000.0 * count * length / scalar,
+								  packed / count, 1000.0 * count * length / packed);
+			}
+		}
+
+		System.out.println("checksum " + checksum);
+	}
+}
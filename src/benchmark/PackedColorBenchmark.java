@@ -0,0 +1,78 @@
+package benchmark;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import model.AlphaBlend;
+import model.Whiteboard;
+
+/**
+ * PackedColorBenchmark measures what the server pays for its colors: how long it takes from the start of the
+ * JVM until the first line has been drawn on a whiteboard, how many classes have been loaded by then, and how
+ * much memory is allocated per line drawn afterwards.  The lines are drawn either with packed 0xRRGGBB colors,
+ * the way the server draws them, or through the java.awt.Color adapters, the way it used to.  Run each mode in a
+ * JVM of its own, since loading AWT only costs anything the first time.  Adding -verbose:class shows whether
+ * java.awt.Color is loaded at all.
+ *
+ * Run it with:
+ * 		java benchmark.PackedColorBenchmark [packed|awt] [lines]
+ *
+ */
+public class PackedColorBenchmark {
+	private static final int WIDTH = 800;
+	private static final int HEIGHT = 600;
+	private static final int DEFAULT_LINES = 200000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		boolean awt = args.length > 0 && args[0].equals("awt");
+		int lines = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LINES;
+		Random random = new Random(6005);
+
+		Whiteboard whiteboard = new Whiteboard("benchmark", WIDTH, HEIGHT);
+		draw(whiteboard, awt, random);
+		System.out.printf("%s: first line drawn %d ms after the JVM started, %d classes loaded%n", awt ? "awt" : "packed",
+						  ManagementFactory.getRuntimeMXBean().getUptime(),
+						  ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long allocated = allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < lines; i++) {
+				draw(whiteboard, awt, random);
+			}
+			long elapsed = System.nanoTime() - start;
+			allocated = allocatedBytes() - allocated;
+
+			System.out.printf("round %d: %d ns/line, %d bytes allocated/line%n", round, elapsed / lines, allocated / lines);
+		}
+	}
+
+	/**
+	 * Draws a short line segment of a random color somewhere on a whiteboard.
+	 */
+	private static void draw(final Whiteboard whiteboard, final boolean awt, final Random random) {
+		int x1 = random.nextInt(WIDTH - 8), y1 = random.nextInt(HEIGHT - 8);
+		int x2 = x1 + random.nextInt(8), y2 = y1 + random.nextInt(8);
+		int rgb = random.nextInt(1 << 24);
+
+		if (awt) {
+			whiteboard.addLine("benchmark", new Color(rgb), x1, y1, x2, y2, 3);
+		}
+		else {
+			whiteboard.addLine("benchmark", rgb, AlphaBlend.OPAQUE, x1, y1, x2, y2, 3);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated by this thread so far, or 0 if the JVM cannot tell.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
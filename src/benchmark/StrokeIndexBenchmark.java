@@ -0,0 +1,86 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import model.StrokeIndex;
+
+/**
+ * StrokeIndexBenchmark measures how long it takes to build a StrokeIndex of a very large whiteboard with
+ * a million strokes, and how long viewport and hit testing queries on it take.  It also reports the memory
+ * allocated by the queries, which should be none.
+ *
+ * Run it with:
+ * 		java benchmark.StrokeIndexBenchmark [strokes]
+ *
+ */
+public class StrokeIndexBenchmark {
+	private static final int BOARD_SIZE = 100000;
+	private static final int DEFAULT_STROKES = 1000000;
+	private static final int QUERIES = 200000;
+	private static final int ROUNDS = 5;
+
+	/** The sum of the strokes found, so that the queries cannot be optimized away. */
+	private static long found = 0;
+
+	public static void main(String[] args) {
+		int strokes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_STROKES;
+		Random random = new Random(6005);
+
+		long start = System.nanoTime();
+		StrokeIndex index = new StrokeIndex(BOARD_SIZE, BOARD_SIZE);
+		for (int i = 0; i < strokes; i++) {
+			// Mostly short strokes, with a few long ones that cross many nodes.
+			int length = (i % 100 == 0) ? 5000 : 200;
+			int x = random.nextInt(BOARD_SIZE - length), y = random.nextInt(BOARD_SIZE - length);
+			index.insert(i, x, y, x + random.nextInt(length), y + random.nextInt(length));
+		}
+		System.out.printf("insert %d strokes: %d ms, %d nodes%n", strokes, (System.nanoTime() - start) / 1000000, index.getNodeCount());
+
+		int[] xs = new int[QUERIES], ys = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			xs[i] = random.nextInt(BOARD_SIZE);
+			ys[i] = random.nextInt(BOARD_SIZE);
+		}
+
+		final int[] results = new int[4096];
+		StrokeIndex.Visitor counter = new StrokeIndex.Visitor() {
+			@Override
+			public void visit(int stroke) {
+				found += stroke;
+			}
+		};
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long allocated = allocatedBytes();
+			start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++) {
+				found += index.query(xs[i], ys[i], 800, 600, results);
+			}
+			long viewport = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++) {
+				index.query(xs[i], ys[i], 1, 1, counter);
+			}
+			long point = System.nanoTime() - start;
+			allocated = allocatedBytes() - allocated;
+
+			System.out.printf("round %d: 800x600 query %d ns/op, point query %d ns/op, %d bytes allocated%n",
+							  round, viewport / QUERIES, point / QUERIES, allocated);
+		}
+
+		System.out.println("checksum " + found);
+	}
+
+	/**
+	 * Returns the number of bytes allocated by this thread so far, or 0 if the JVM cannot tell.
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+}
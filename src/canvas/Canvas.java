@@ -1,13 +1,19 @@
 package canvas;
 
-import java.awt.BasicStroke;
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 
 import javax.swing.JPanel;
 import client.WhiteboardClient;
@@ -17,35 +23,101 @@ import client.WhiteboardClient;
  * on it freehand, with the mouse.
  * 
  * Abstraction Function:
- * 		drawingBuffer - the drawing buffer for this canvas.  Everything is first drawn
- * 						to the drawing buffer and is then copied over to the canvas to be
- * 						displayed
+ * 		layers        - the drawing buffers of the layers of the whiteboard, from the bottom up, each split 
+ * 						into square tiles.  Only the tiles that have been drawn on are stored; every other 
+ * 						part of the base layer is white and every other part of the other layers is
+ * 						transparent.  Everything is first drawn to the tiles and the tiles of the visible 
+ * 						layers are then copied over to the canvas, one layer over another, to be displayed
+ * 		hiddenLayers  - the indices of the layers that this client has chosen not to display.  Hiding a
+ * 						layer does not throw away its tiles, so showing it again needs nothing from the server
+ * 		boardWidth    - the width of the whiteboard displayed by this canvas in pixels
+ * 		boardHeight   - the height of the whiteboard displayed by this canvas in pixels
  * 		currentColor  - the color of lines that are added to the canvas
  * 		sWidth        - the thickness of lines that are added to the canvas
+ * 		currentOpacity - the opacity of lines that are added to the canvas, from 1 to 255; lines that are not 
+ * 						opaque are blended over what is under them by the server, like a highlighter
+ * 		currentTool   - what pressing and dragging the mouse does: draw lines, erase the strokes
+ * 						that it touches, fill the area that is clicked, draw a shape or select a 
+ * 						rectangle and move it
+ * 		filledShapes  - whether the rectangles and ellipses that are added to the canvas are filled
+ * 						rather than outlined
+ * 		shapeStart, 
+ * 		shapeEnd      - the corners of the shape that is being dragged out, which is previewed over
+ * 						the whiteboard until the mouse is released; null if no shape is being dragged.
+ * 						With the select tool, where the mouse was pressed and where it is now
+ * 		selection     - the rectangle of the whiteboard that has been selected, or null if there is none
+ * 		isMovingSelection - whether the mouse was pressed inside selection, so that dragging moves it
+ * 						rather than selecting another rectangle
  * 		client        - the WhiteboardClient that opened up this canvas
  * 
  * Representation Invariant:
  * 		The canvas displays the whiteboard that the client requested as it is updated both by
  * 		this client and other clients.
+ * 		layers has at least one layer.  The tile of a layer whose top left hand corner is 
+ * 		(tx * TILE_SIZE, ty * TILE_SIZE) is stored in its map under the key ty * tilesAcross + tx.
+ * 		The tiles of the base layer are opaque.
+ * 
+ * Thread safety Argument:
+ * 		All reads and writes to layers and hiddenLayers are synchronized on layers, so the thread that receives 
+ * 		updates from the server and the Swing thread that paints the canvas never see a half-drawn tile.
+ * 		shapeStart, shapeEnd, selection and isMovingSelection are only used by the Swing thread.
  * 
  */
 public class Canvas extends JPanel {
 
 	private static final long serialVersionUID = -4184358272707176669L;
+	private static final int TILE_SIZE = 256;
 	
-	// image where the user's drawing is stored
-    private Image drawingBuffer;
+	// tiles of the images of each layer where the user's drawing is stored
+    private final ArrayList<HashMap<Integer, BufferedImage>> layers;
+    private final BitSet hiddenLayers;
+    private final int boardWidth;
+    private final int boardHeight;
+    private final int tilesAcross;
     public static Color currentColor = Color.BLACK;
+    public static int currentOpacity = 255;
+    public static Tool currentTool = Tool.PEN;
+    public static boolean filledShapes = false;
     public int sWidth;
+    private Point shapeStart;
+    private Point shapeEnd;
+    private Rectangle selection;
+    private boolean isMovingSelection;
     private final WhiteboardClient client;
-    private String whiteboardRep;
     private String whiteboardName;
     
+    /**
+     * The tools that the mouse can be used as.
+     */
+    public enum Tool {
+    	/** Dragging draws lines in the current color. */
+    	PEN,
+    	/** Dragging erases every stroke that it touches. */
+    	ERASER,
+    	/** Clicking fills the area of the same color around the mouse with the current color. */
+    	BUCKET,
+    	/** Dragging draws a straight line from where the mouse is pressed to where it is released. */
+    	LINE,
+    	/** Dragging draws a rectangle with opposite corners where the mouse is pressed and released. */
+    	RECTANGLE,
+    	/** Dragging draws the ellipse inscribed in the rectangle that a RECTANGLE drag would draw. */
+    	ELLIPSE,
+    	/** Dragging selects a rectangle, and dragging the selection moves it, or copies it if Ctrl is held down. */
+    	SELECT;
+    	
+    	/**
+    	 * @return true if dragging with this tool draws one shape rather than following the mouse
+    	 */
+    	public boolean isShape() {
+    		return this == LINE || this == RECTANGLE || this == ELLIPSE;
+    	}
+    }
+    
     /**
      * Make a canvas.
      * 
-     * @param width width in pixels
-     * @param height height in pixels
+     * @param width width of the whiteboard in pixels
+     * @param height height of the whiteboard in pixels
      * @param client the WhiteboardClient that opened this canvas.
      * @param initialWhiteboard a string representation of the initial whiteboard
      * @param whiteboardName the name of the whiteboard that is displayed by this canvas
@@ -54,12 +126,16 @@ public class Canvas extends JPanel {
     public Canvas(int width, int height, WhiteboardClient client, String initialWhiteboard, String whiteboardName) {
         addDrawingController();
         this.client = client;
-        this.whiteboardRep = initialWhiteboard;
         this.whiteboardName = whiteboardName;
+        this.boardWidth = width;
+        this.boardHeight = height;
+        this.tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.layers = new ArrayList<HashMap<Integer, BufferedImage>>();
+        this.hiddenLayers = new BitSet();
+        layers.add(new HashMap<Integer, BufferedImage>());
         
-        // note: we can't call makeDrawingBuffer here, because it only
-        // works *after* this canvas has been added to a window.  Have to
-        // wait until paintComponent() is first called.
+        setPreferredSize(new Dimension(width, height));
+        addPoints(0, initialWhiteboard);
     }
     
     /**
@@ -67,35 +143,82 @@ public class Canvas extends JPanel {
      */
     @Override
     public void paintComponent(Graphics g) {
-        // If this is the first time paintComponent() is being called,
-        // make our drawing buffer.
-        if (drawingBuffer == null) {
-            makeDrawingBuffer();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+        	clip = new Rectangle(0, 0, getWidth(), getHeight());
         }
         
-        // Copy the drawing buffer to the screen.
-        g.drawImage(drawingBuffer, 0, 0, null);
-    }
-    
-    /**
-     * Make the drawing buffer and draw some starting content for it.
-     * 
-     */
-    private void makeDrawingBuffer() {
-        drawingBuffer = createImage(getWidth(), getHeight());
-        fillWithWhite();
-        addPoints(whiteboardRep);
+        // Everything that has not been drawn on is white.
+        g.setColor(Color.WHITE);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        
+        // Copy only the stored tiles that are visible to the screen, one visible layer over another.
+        int firstTileX = Math.max(0, clip.x / TILE_SIZE);
+        int firstTileY = Math.max(0, clip.y / TILE_SIZE);
+        int lastTileX = Math.min(tilesAcross - 1, (clip.x + clip.width) / TILE_SIZE);
+        int lastTileY = Math.min((boardHeight - 1) / TILE_SIZE, (clip.y + clip.height) / TILE_SIZE);
+        
+        synchronized (layers) {
+        	for (int layer = 0; layer < layers.size(); layer++) {
+        		if (hiddenLayers.get(layer)) {
+        			continue;
+        		}
+        		
+        		HashMap<Integer, BufferedImage> tiles = layers.get(layer);
+        		for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+        			for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+        				BufferedImage tile = tiles.get(tileY * tilesAcross + tileX);
+        				if (tile != null) {
+        					g.drawImage(tile, tileX * TILE_SIZE, tileY * TILE_SIZE, null);
+        				}
+        			}
+        		}
+        	}
+        }
+        
+        // The selection is outlined where it would be dropped.
+        if (currentTool == Tool.SELECT) {
+        	Rectangle outline = selection;
+        	if (shapeStart != null && !isMovingSelection) {
+        		outline = new Rectangle(Math.min(shapeStart.x, shapeEnd.x), Math.min(shapeStart.y, shapeEnd.y), 
+        								Math.abs(shapeEnd.x - shapeStart.x), Math.abs(shapeEnd.y - shapeStart.y));
+        	}
+        	else if (shapeStart != null) {
+        		outline = new Rectangle(selection);
+        		outline.translate(shapeEnd.x - shapeStart.x, shapeEnd.y - shapeStart.y);
+        	}
+        	if (outline != null) {
+        		g.setColor(Color.GRAY);
+        		g.drawRect(outline.x, outline.y, outline.width - 1, outline.height - 1);
+        	}
+        }
+        // The shape being dragged out is only drawn on the screen until the server has drawn it.
+        else if (shapeStart != null) {
+        	int x = Math.min(shapeStart.x, shapeEnd.x), y = Math.min(shapeStart.y, shapeEnd.y);
+        	int w = Math.abs(shapeEnd.x - shapeStart.x), h = Math.abs(shapeEnd.y - shapeStart.y);
+        	g.setColor(currentColor);
+        	if (currentTool == Tool.LINE) {
+        		g.drawLine(shapeStart.x, shapeStart.y, shapeEnd.x, shapeEnd.y);
+        	}
+        	else if (currentTool == Tool.RECTANGLE) {
+        		g.drawRect(x, y, w, h);
+        	}
+        	else {
+        		g.drawOval(x, y, w, h);
+        	}
+        }
     }
     
     /**
-     * Make the drawing buffer entirely white.
+     * Make the drawing buffer entirely white, emptying every layer.
      * 
      */
     public void fillWithWhite() {
-        final Graphics2D g = (Graphics2D) drawingBuffer.getGraphics();
-        
-        g.setColor(Color.WHITE);
-        g.fillRect(0,  0,  getWidth(), getHeight());
+    	synchronized (layers) {
+    		for (HashMap<Integer, BufferedImage> tiles : layers) {
+    			tiles.clear();
+    		}
+    	}
         
         // IMPORTANT!  every time we draw on the internal drawing buffer, we
         // have to notify Swing to repaint this component on the screen.
@@ -103,37 +226,309 @@ public class Canvas extends JPanel {
     }
     
     /**
-     * Draw the series of points represented by the inputted string onto the canvas.
+     * Empty a rectangle of one layer of the drawing buffer.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param x the x-coordinate of the top left hand corner of the rectangle
+     * @param y the y-coordinate of the top left hand corner of the rectangle
+     * @param width the width of the rectangle in pixels
+     * @param height the height of the rectangle in pixels
+     * @modifies makes the rectangle white if layer is the base layer, and transparent otherwise
+     */
+    public void clearRegion(final int layer, final int x, final int y, final int width, final int height) {
+    	int firstTileX = Math.max(0, x / TILE_SIZE), lastTileX = Math.min(tilesAcross - 1, (x + width - 1) / TILE_SIZE);
+    	int firstTileY = Math.max(0, y / TILE_SIZE), lastTileY = Math.min((boardHeight - 1) / TILE_SIZE, (y + height - 1) / TILE_SIZE);
+    	
+    	synchronized (layers) {
+    		HashMap<Integer, BufferedImage> tiles = getLayer(layer);
+    		for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+    			for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+    				BufferedImage tile = tiles.get(tileY * tilesAcross + tileX);
+    				if (tile != null) {
+    					Graphics2D g = (Graphics2D) tile.getGraphics();
+    					if (layer == 0) {
+    						g.setColor(Color.WHITE);
+    					}
+    					else {
+    						g.setComposite(AlphaComposite.Clear);
+    					}
+    					g.fillRect(x - tileX * TILE_SIZE, y - tileY * TILE_SIZE, width, height);
+    					g.dispose();
+    				}
+    			}
+    		}
+    	}
+    	
+    	this.repaint(x, y, width, height);
+    }
+    
+    /**
+     * Copy a rectangle of one layer of the drawing buffer to another place on the same layer.  The 
+     * rectangle is gathered from the tiles that it covers first, so the copy may overlap it.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param sx the x-coordinate of the top left hand corner of the rectangle
+     * @param sy the y-coordinate of the top left hand corner of the rectangle
+     * @param width the width of the rectangle in pixels
+     * @param height the height of the rectangle in pixels
+     * @param dx the x-coordinate of the top left hand corner of the copy
+     * @param dy the y-coordinate of the top left hand corner of the copy
+     * @param move true to empty the pixels of the rectangle that the copy does not cover, as clearRegion does
+     * @modifies replaces the pixels of the layer under the copy with those of the rectangle
+     */
+    public void copyRegion(final int layer, final int sx, final int sy, final int width, final int height, 
+    					   final int dx, final int dy, final boolean move) {
+    	BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    	
+    	synchronized (layers) {
+    		// The parts of the rectangle that are not stored are white on the base layer and transparent on the others.
+    		Graphics2D g = copy.createGraphics();
+    		if (layer == 0) {
+    			g.setColor(Color.WHITE);
+    			g.fillRect(0, 0, width, height);
+    		}
+    		g.setComposite(AlphaComposite.Src);
+    		HashMap<Integer, BufferedImage> tiles = getLayer(layer);
+    		for (int tileY = sy / TILE_SIZE; tileY <= (sy + height - 1) / TILE_SIZE; tileY++) {
+    			for (int tileX = sx / TILE_SIZE; tileX <= (sx + width - 1) / TILE_SIZE; tileX++) {
+    				BufferedImage tile = tiles.get(tileY * tilesAcross + tileX);
+    				if (tile != null) {
+    					g.drawImage(tile, tileX * TILE_SIZE - sx, tileY * TILE_SIZE - sy, null);
+    				}
+    			}
+    		}
+    		g.dispose();
+    		
+    		if (move) {
+    			clearRegion(layer, sx, sy, width, height);
+    		}
+    		
+    		int firstTileX = Math.max(0, dx / TILE_SIZE), lastTileX = Math.min(tilesAcross - 1, (dx + width - 1) / TILE_SIZE);
+    		int firstTileY = Math.max(0, dy / TILE_SIZE), lastTileY = Math.min((boardHeight - 1) / TILE_SIZE, (dy + height - 1) / TILE_SIZE);
+    		for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+    			for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+    				Graphics2D tileGraphics = getTile(layer, tileX, tileY).createGraphics();
+    				tileGraphics.setComposite(AlphaComposite.Src);
+    				tileGraphics.drawImage(copy, dx - tileX * TILE_SIZE, dy - tileY * TILE_SIZE, null);
+    				tileGraphics.dispose();
+    			}
+    		}
+    	}
+    	
+    	this.repaint(dx, dy, width, height);
+    }
+    
+    /**
+     * Draw a low resolution preview of the whiteboard onto the canvas.  Each pixel of the preview
+     * covers a square of the canvas.
+     * 
+     * @param scale the width and height in pixels of the square covered by each pixel of the preview,
+     * 				a power of 2 that is at most TILE_SIZE
+     * @param line a String representing the pixels of the preview that are not white, of the form:
+     * 					([x] [y] [red] [green] [blue])* indicating that the scale x scale square whose
+     * 					top left hand corner is (x * scale, y * scale) should be colored new Color([red], [green], [blue])
+     * @modifies draw the preview onto the base layer of the canvas.
+     * 
+     */
+    public void addPreview(final int scale, final String line) {
+    	if (!line.equals("")) {
+        	String[] points = line.split(" ");
+        	
+        	synchronized (layers) {
+        		int i = 0;
+        		while (i + 4 < points.length) {
+        			int x = Integer.parseInt(points[i]) * scale; i++;
+        			int y = Integer.parseInt(points[i]) * scale; i++;
+        			
+        			int red = Integer.parseInt(points[i]); i++;
+        			int green = Integer.parseInt(points[i]); i++;
+        			int blue = Integer.parseInt(points[i]); i++;
+        			
+        			if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+        				continue;
+        			}
+        			
+        			// scale divides TILE_SIZE, so the square never crosses the edge of a tile.
+        			Graphics g = getTile(0, x / TILE_SIZE, y / TILE_SIZE).getGraphics();
+        			g.setColor(new Color(red, green, blue));
+        			g.fillRect(x % TILE_SIZE, y % TILE_SIZE, scale, scale);
+        			g.dispose();
+        		}
+        	}
+    	}
+    	
+    	this.repaint();
+    }
+    
+    /**
+     * Draw the series of points represented by the inputted string onto a layer of the canvas.
      * 
+     * @param layer the index of the layer from the bottom
      * @param line a String representing a series of points to be added to the canvas
      * 			   line is of the forming form:
      * 					([x] [y] [red] [green] [blue])* indicating that the pixel at (x, y)
      * 					should be colored new Color([red], [green], [blue])
-     * @modifies draw line onto the canvas.
+     * @modifies draw line onto the layer.
      * 
      */
-    public void addPoints(final String line) {
+    public void addPoints(final int layer, final String line) {
     	if (!line.equals("")) {
-            Graphics2D g = (Graphics2D) drawingBuffer.getGraphics();
         	String[] points = line.split(" ");
         	
-        	int i = 0;
-        	while (i < points.length) {
-        		int x = Integer.parseInt(points[i]); i++;
-        		int y = Integer.parseInt(points[i]); i++;
-        		
-        		int red = Integer.parseInt(points[i]); i++;
-        		int green = Integer.parseInt(points[i]); i++;
-        		int blue = Integer.parseInt(points[i]); i++;
-        		Color color = new Color(red, green, blue);
-
-                g.setStroke(new BasicStroke(1));
-                
-                g.setColor(color);
-                g.drawLine(x, y, x, y);
+        	// The smallest rectangle containing every point that was drawn.
+        	int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+        	int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+        	
+        	synchronized (layers) {
+        		int i = 0;
+        		while (i + 4 < points.length) {
+        			int x = Integer.parseInt(points[i]); i++;
+        			int y = Integer.parseInt(points[i]); i++;
+        			
+        			int red = Integer.parseInt(points[i]); i++;
+        			int green = Integer.parseInt(points[i]); i++;
+        			int blue = Integer.parseInt(points[i]); i++;
+        			
+        			if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+        				continue;
+        			}
+        			
+        			// The pixels of the layers above the base layer are opaque once they have been drawn on.
+        			getTile(layer, x / TILE_SIZE, y / TILE_SIZE).setRGB(x % TILE_SIZE, y % TILE_SIZE, 
+        																0xFF000000 | (red << 16) | (green << 8) | blue);
+        			
+        			xMin = Math.min(xMin, x); xMax = Math.max(xMax, x);
+        			yMin = Math.min(yMin, y); yMax = Math.max(yMax, y);
+        		}
+        	}
+        	
+        	if (xMin <= xMax) {
+        		this.repaint(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+        	}
+    	}
+    }
+    
+    /**
+     * Draw a series of horizontal runs of pixels of one color onto a layer of the canvas.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param color the color of the runs
+     * @param line a String representing the runs, of the form:
+     * 					([y] [xStart] [xEnd])* indicating that the pixels from (xStart, y) to (xEnd, y)
+     * 					should be colored color
+     * @modifies draw the runs onto the layer.
+     * 
+     */
+    public void addSpans(final int layer, final Color color, final String line) {
+    	if (!line.equals("")) {
+        	String[] spans = line.split(" ");
+        	
+        	// The smallest rectangle containing every run that was drawn.
+        	int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+        	int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+        	
+        	synchronized (layers) {
+        		int i = 0;
+        		while (i + 2 < spans.length) {
+        			int y = Integer.parseInt(spans[i]); i++;
+        			int xStart = Math.max(0, Integer.parseInt(spans[i])); i++;
+        			int xEnd = Math.min(boardWidth - 1, Integer.parseInt(spans[i])); i++;
+        			
+        			if (y < 0 || y >= boardHeight || xStart > xEnd) {
+        				continue;
+        			}
+        			
+        			// A run can cross the edges of several tiles.
+        			for (int tileX = xStart / TILE_SIZE; tileX <= xEnd / TILE_SIZE; tileX++) {
+        				int start = Math.max(xStart, tileX * TILE_SIZE), end = Math.min(xEnd, tileX * TILE_SIZE + TILE_SIZE - 1);
+        				Graphics g = getTile(layer, tileX, y / TILE_SIZE).getGraphics();
+        				g.setColor(color);
+        				g.fillRect(start % TILE_SIZE, y % TILE_SIZE, end - start + 1, 1);
+        				g.dispose();
+        			}
+        			
+        			xMin = Math.min(xMin, xStart); xMax = Math.max(xMax, xEnd);
+        			yMin = Math.min(yMin, y); yMax = Math.max(yMax, y);
+        		}
         	}
         	
-        	this.repaint();
+        	if (xMin <= xMax) {
+        		this.repaint(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+        	}
+    	}
+    }
+    
+    /**
+     * Returns a tile of a layer of the drawing buffer, creating an empty tile if it is not already stored.
+     * Must be called while holding the lock on layers.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param tileX the column of the tile
+     * @param tileY the row of the tile
+     * @return the tile of the layer whose top left hand corner is (tileX * TILE_SIZE, tileY * TILE_SIZE), 
+     * 		   which is entirely white when it is created if layer is the base layer and entirely transparent 
+     * 		   otherwise
+     */
+    private BufferedImage getTile(final int layer, final int tileX, final int tileY) {
+    	HashMap<Integer, BufferedImage> tiles = getLayer(layer);
+    	int key = tileY * tilesAcross + tileX;
+    	BufferedImage tile = tiles.get(key);
+    	
+    	if (tile == null) {
+    		if (layer == 0) {
+    			tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+    			Graphics g = tile.getGraphics();
+    			g.setColor(Color.WHITE);
+    			g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+    			g.dispose();
+    		}
+    		else {
+    			tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+    		}
+    		tiles.put(key, tile);
+    	}
+    	
+    	return tile;
+    }
+    
+    /**
+     * Returns the tiles of a layer of the drawing buffer, adding empty layers up to it if there are not
+     * that many yet.  Must be called while holding the lock on layers.
+     * 
+     * @param layer the index of the layer from the bottom, nonnegative
+     * @return the map from the keys of the stored tiles of the layer to the tiles
+     */
+    private HashMap<Integer, BufferedImage> getLayer(final int layer) {
+    	while (layers.size() <= layer) {
+    		layers.add(new HashMap<Integer, BufferedImage>());
+    	}
+    	return layers.get(layer);
+    }
+    
+    /**
+     * Shows or hides a layer.  Only this canvas is affected; the tiles of a hidden layer are kept, so
+     * showing it again does not need anything from the server.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param visible true to show the layer, false to hide it
+     * @modifies whether the layer is painted over the layers under it
+     */
+    public void setLayerVisible(final int layer, final boolean visible) {
+    	synchronized (layers) {
+    		hiddenLayers.set(layer, !visible);
+    	}
+    	this.repaint();
+    }
+    
+    /**
+     * Returns whether a layer is shown.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @return false only if the layer has been hidden with setLayerVisible()
+     */
+    public boolean isLayerVisible(final int layer) {
+    	synchronized (layers) {
+    		return !hiddenLayers.get(layer);
     	}
     }
     
@@ -173,12 +568,26 @@ public class Canvas extends JPanel {
     
     /**
      * Draw a line between two points (x1, y1) and (x2, y2), specified in
-     * pixels relative to the upper-left corner of the drawing buffer.
+     * pixels relative to the upper-left corner of the drawing buffer, or erase
+     * the strokes that the line touches if the current tool is the eraser.
      */
     private void drawLineSegment(int x1, int y1, int x2, int y2) {
+    	// The mouse can be dragged outside of the whiteboard.
+    	x1 = Math.max(0, Math.min(boardWidth - 1, x1)); y1 = Math.max(0, Math.min(boardHeight - 1, y1));
+    	x2 = Math.max(0, Math.min(boardWidth - 1, x2)); y2 = Math.max(0, Math.min(boardHeight - 1, y2));
+    	
+    	if (currentTool == Tool.BUCKET || currentTool == Tool.SELECT || currentTool.isShape()) {
+    		return;
+    	}
+    	if (currentTool == Tool.ERASER) {
+    		client.sendMessage("erase " + client.getUsername() + " " + whiteboardName + " " + x1 + " " + y1 + " " 
+    						   + x2 + " " + y2 + " " + sWidth);
+    		return;
+    	}
+    	
     	client.sendMessage("draw " + whiteboardName + " " + x1 + " " + y1 + " " + x2 + " " + y2 + " "
     					   + currentColor.getRed() + " " + currentColor.getGreen() + " "
-    					   + currentColor.getBlue() + " " + sWidth);
+    					   + currentColor.getBlue() + " " + sWidth + (currentOpacity < 255 ? " " + currentOpacity : ""));
     }
     
     /**
@@ -199,6 +608,94 @@ public class Canvas extends JPanel {
     	currentColor = color;
     }
     
+    /**
+     * Sets the opacity of the lines to be drawn in this canvas.
+     * 
+     * @param opacity the opacity of the lines, from 1 for almost invisible to 255 for opaque
+     */
+    public static void setOpacity(int opacity){
+    	currentOpacity = opacity;
+    }
+    
+    /**
+     * Fill the area of the whiteboard around a pixel with the current color.
+     */
+    private void fillArea(int x, int y) {
+    	if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+    		return;
+    	}
+    	
+    	client.sendMessage("fill " + whiteboardName + " " + x + " " + y + " " + currentColor.getRed() + " " 
+    					   + currentColor.getGreen() + " " + currentColor.getBlue());
+    }
+    
+    /**
+     * Ask the server to draw the shape of the current tool between two points in the current color.
+     */
+    private void drawShape(int x1, int y1, int x2, int y2) {
+    	// A line must stay on the whiteboard; a rectangle or an ellipse is clipped to it by the server.
+    	if (currentTool == Tool.LINE) {
+    		x1 = Math.max(0, Math.min(boardWidth - 1, x1)); y1 = Math.max(0, Math.min(boardHeight - 1, y1));
+    		x2 = Math.max(0, Math.min(boardWidth - 1, x2)); y2 = Math.max(0, Math.min(boardHeight - 1, y2));
+    	}
+    	
+    	String command = currentTool == Tool.LINE ? "line" : currentTool == Tool.RECTANGLE ? "rect" : "ellipse";
+    	String message = command + " " + whiteboardName + " " + x1 + " " + y1 + " " + x2 + " " + y2 + " "
+    					 + currentColor.getRed() + " " + currentColor.getGreen() + " " + currentColor.getBlue() + " " 
+    					 + sWidth;
+    	if (currentTool != Tool.LINE) {
+    		message += filledShapes ? " filled" : " outline";
+    	}
+    	client.sendMessage(message);
+    }
+    
+    /**
+     * Ask the server to copy the selection so that it is offset by the distance that it has been dragged, 
+     * and select the copy.
+     * 
+     * @param move true to move the selection, false to leave it where it is
+     */
+    private void dropSelection(int offsetX, int offsetY, boolean move) {
+    	if (offsetX == 0 && offsetY == 0) {
+    		return;
+    	}
+    	
+    	client.sendMessage("blit " + whiteboardName + " " + selection.x + " " + selection.y + " " + selection.width + " " 
+    					   + selection.height + " " + (selection.x + offsetX) + " " + (selection.y + offsetY) 
+    					   + (move ? " move" : ""));
+    	selection.translate(offsetX, offsetY);
+    	selection = selection.intersection(new Rectangle(0, 0, boardWidth, boardHeight));
+    	if (selection.isEmpty()) {
+    		selection = null;
+    	}
+    }
+    
+    /**
+     * Sets whether the rectangles and ellipses drawn in this canvas are filled.
+     * 
+     * @param filled true to fill them, false to only draw their outlines
+     */
+    public static void setFilledShapes(boolean filled){
+    	filledShapes = filled;
+    }
+    
+    /**
+     * Sets what the mouse does in this canvas.
+     * 
+     * @param tool the tool that the mouse is used as
+     */
+    public static void setTool(Tool tool){
+    	currentTool = tool;
+    }
+    
+    /**
+     * Forgets the selected rectangle of this canvas.
+     */
+    public void clearSelection() {
+    	selection = null;
+    	repaint();
+    }
+    
     /*
      * DrawingController handles the user's freehand drawing.
      */
@@ -213,6 +710,15 @@ public class Canvas extends JPanel {
         public void mousePressed(MouseEvent e) {
             lastX = e.getX();
             lastY = e.getY();
+            
+            if (currentTool == Tool.BUCKET) {
+            	fillArea(lastX, lastY);
+            }
+            else if (currentTool.isShape() || currentTool == Tool.SELECT) {
+            	isMovingSelection = selection != null && selection.contains(lastX, lastY);
+            	shapeStart = new Point(lastX, lastY);
+            	shapeEnd = shapeStart;
+            }
         }
 
         /*
@@ -222,15 +728,47 @@ public class Canvas extends JPanel {
         public void mouseDragged(MouseEvent e) {
             int x = e.getX();
             int y = e.getY();
+            if (shapeStart != null) {
+            	shapeEnd = new Point(x, y);
+            	repaint();
+            	return;
+            }
             drawLineSegment(lastX, lastY, x, y);
             lastX = x;
             lastY = y;
         }
 
+        /*
+         * When the mouse button is released after dragging out a shape, draw the shape.
+         */
+        public void mouseReleased(MouseEvent e) {
+            if (shapeStart == null) {
+            	return;
+            }
+            
+            if (currentTool != Tool.SELECT) {
+            	drawShape(shapeStart.x, shapeStart.y, e.getX(), e.getY());
+            }
+            else if (isMovingSelection) {
+            	dropSelection(e.getX() - shapeStart.x, e.getY() - shapeStart.y, !e.isControlDown());
+            }
+            else {
+            	// Only the part of the dragged out rectangle that is on the whiteboard is selected.
+            	Rectangle dragged = new Rectangle(Math.min(shapeStart.x, e.getX()), Math.min(shapeStart.y, e.getY()), 
+            									  Math.abs(e.getX() - shapeStart.x), Math.abs(e.getY() - shapeStart.y));
+            	selection = dragged.intersection(new Rectangle(0, 0, boardWidth, boardHeight));
+            	if (selection.isEmpty()) {
+            		selection = null;
+            	}
+            }
+            shapeStart = null;
+            shapeEnd = null;
+            repaint();
+        }
+
         // Ignore all these other mouse events.
         public void mouseMoved(MouseEvent e) { }
         public void mouseClicked(MouseEvent e) { }
-        public void mouseReleased(MouseEvent e) { }
         public void mouseEntered(MouseEvent e) { }
         public void mouseExited(MouseEvent e) { }
     }
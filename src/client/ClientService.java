@@ -1,6 +1,8 @@
 package client;
 
 import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
@@ -17,6 +19,10 @@ import javax.swing.JTable;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import whiteboardGUI.WhiteBoardGUI;
 
 /**
  * ClientService represents the window by which a client that has been assigned an username can
@@ -26,6 +32,9 @@ import javax.swing.ScrollPaneConstants;
  * This will update as new users are logged in and logged out as well as new boards are created.
  * Since boards are always active while the server is on whiteboards cannot be deleted.
  * 
+ * The names of the boards are loaded from the server a page at a time, in lexicographic order, as the
+ * user scrolls down to them.
+ * 
  * There is also a JTextArea to send messages to the user in case they do something that is not 
  * allowed or need to be notified of a error occuring.
  * 
@@ -34,9 +43,13 @@ import javax.swing.ScrollPaneConstants;
  */
 public class ClientService extends JFrame {
 	private static final long serialVersionUID = 7094651500977042330L;
+	public static final int WHITEBOARDS_PER_PAGE = 100;
 	
 	private JTextField windowName;
 	private JLabel windowLabel;
+	private JLabel sizeLabel;
+	private JTextField boardWidth;
+	private JTextField boardHeight;
 	private JTable openWindows;
 	private JTextArea errorMsg;
 	private JButton createBoard;
@@ -49,7 +62,7 @@ public class ClientService extends JFrame {
 		this.client = client;
 
 		setTitle("Hello " + this.client.getUsername() + "!");
-		setSize(400, 300);
+		setSize(520, 300);
 		setLocation(300, 400);
 		
 		windowName = new JTextField();
@@ -57,6 +70,12 @@ public class ClientService extends JFrame {
 		windowLabel = new JLabel();
 		windowLabel.setText("Board Name:");
 		
+		// The dimensions of a new board are optional; the server picks a default size if they are left empty.
+		sizeLabel = new JLabel();
+		sizeLabel.setText("Size (optional):");
+		boardWidth = new JTextField(5);
+		boardHeight = new JTextField(5);
+		
 		createBoard = new JButton();
 		createBoard.setText("Create Board");
 		
@@ -69,6 +88,12 @@ public class ClientService extends JFrame {
 		scrollPane = new JScrollPane(openWindows, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
 				ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
 		scrollPane.setPreferredSize(new Dimension(400, 150));
+		scrollPane.getViewport().addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				loadVisibleWhiteboards();
+			}
+		});
 		
 		errorMsg = new JTextArea();
 		
@@ -110,7 +135,8 @@ public class ClientService extends JFrame {
 	/**
 	 * Creates the second row of the window.
 	 * The second row of the window should contain two buttons, one of which is for creating whiteboards
-	 * the other one of which is for opening whiteboards.
+	 * the other one of which is for opening whiteboards, followed by the optional width and height of
+	 * whiteboards that are created.
 	 * 
 	 * @return the container representing the first row of the window.
 	 */
@@ -125,10 +151,16 @@ public class ClientService extends JFrame {
 		buttonLayout.setHorizontalGroup(buttonLayout.createSequentialGroup()
 				.addComponent(createBoard)
 				.addComponent(openBoard)
+				.addComponent(sizeLabel)
+				.addComponent(boardWidth)
+				.addComponent(boardHeight)
 				);
 		buttonLayout.setVerticalGroup(buttonLayout.createParallelGroup(GroupLayout.Alignment.BASELINE)
 				.addComponent(createBoard)
 				.addComponent(openBoard)
+				.addComponent(sizeLabel)
+				.addComponent(boardWidth)
+				.addComponent(boardHeight)
 				);
 
 		return buttonPanel;
@@ -143,6 +175,24 @@ public class ClientService extends JFrame {
 		table.setUsersOnline(usersOnLine);
 	}
 	
+	/**
+	 * Adds users that have come online to the table of the users online.
+	 * 
+	 * @param usernames an array containing the usernames of the users that have come online.
+	 */
+	public void addUsersOnLine (final String[] usernames) {
+		table.addUsersOnline(usernames);
+	}
+	
+	/**
+	 * Removes users that have gone offline from the table of the users online.
+	 * 
+	 * @param usernames an array containing the usernames of the users that have gone offline.
+	 */
+	public void removeUsersOnLine (final String[] usernames) {
+		table.removeUsersOnline(usernames);
+	}
+	
 	/**
 	 * Changes the table of the whiteboards saved on the server.
 	 * 
@@ -153,6 +203,52 @@ public class ClientService extends JFrame {
 		table.setWhiteboardsCreated(whiteboards);
 	}
 	
+	/**
+	 * Adds a page of the names of the whiteboards saved on the server to the table, and loads the next
+	 * page if the rows in view are still not all loaded.
+	 * 
+	 * @param total the number of whiteboards saved on the server
+	 * @param offset the index of the first name of the page in lexicographic order
+	 * @param whiteboards the names of the page in lexicographic order
+	 */
+	public void addWhiteboardPage (final int total, final int offset, final String[] whiteboards) {
+		table.addWhiteboardPage(total, offset, whiteboards);
+		loadVisibleWhiteboards();
+	}
+	
+	/**
+	 * Adds a whiteboard that has just been created to the table.
+	 * 
+	 * @param whiteboard the name of the whiteboard
+	 */
+	public void addWhiteboard (final String whiteboard) {
+		table.addWhiteboard(whiteboard);
+	}
+	
+	/**
+	 * Loads the names of the whiteboards saved on the server again, starting from the first page.
+	 */
+	public void loadWhiteboards () {
+		client.sendMessage("list " + table.firstWhiteboardPage() + " " + WHITEBOARDS_PER_PAGE);
+	}
+	
+	/**
+	 * Requests the next page of the names of the whiteboards saved on the server if the user has scrolled
+	 * close to the last name loaded so far.
+	 */
+	private void loadVisibleWhiteboards () {
+		Rectangle view = scrollPane.getViewport().getViewRect();
+		int lastVisibleRow = openWindows.rowAtPoint(new Point(0, view.y + view.height - 1));
+		if (lastVisibleRow == -1) {
+			lastVisibleRow = table.getRowCount() - 1;
+		}
+		
+		int offset = table.nextWhiteboardPage(lastVisibleRow, WHITEBOARDS_PER_PAGE);
+		if (offset != -1) {
+			client.sendMessage("list " + offset + " " + WHITEBOARDS_PER_PAGE);
+		}
+	}
+	
     /**
      * Changes the error message in the GUI window.
      * 
@@ -173,7 +269,12 @@ public class ClientService extends JFrame {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				errorMsg.setText("");
-				client.sendMessage("create " + windowName.getText());
+				
+				String size = "";
+				if (!boardWidth.getText().trim().isEmpty() && !boardHeight.getText().trim().isEmpty()) {
+					size = " " + boardWidth.getText().trim() + " " + boardHeight.getText().trim();
+				}
+				client.sendMessage("create " + windowName.getText() + size);
 			}
     		
     	};
@@ -190,13 +291,15 @@ public class ClientService extends JFrame {
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				if (client.hasWhiteboardOpen()) {
+				if (client.hasWhiteboardOpen(windowName.getText())) {
 					windowName.setText("");
-					errorMsg.setText("You can only open one whiteboard at a time.");
+					errorMsg.setText("That whiteboard is already open.");
 				}
 				else {
 					errorMsg.setText("");
-					client.sendMessage("open " + client.getUsername() + " " + windowName.getText());
+					// Only the part of the whiteboard that fits in a new window is sent at first.
+					client.sendMessage("open " + client.getUsername() + " " + windowName.getText() + " 0 0 "
+									   + WhiteBoardGUI.DEFAULT_WIDTH + " " + WhiteBoardGUI.DEFAULT_HEIGHT);
 					windowName.setText("");
 				}
 			}
@@ -216,7 +319,7 @@ public class ClientService extends JFrame {
 
             @Override
             public void windowClosing(WindowEvent e) {
-                client.sendMessage("logout " + client.getUsername());
+                client.logout();
             }
         };
         addWindowListener(exitListener);
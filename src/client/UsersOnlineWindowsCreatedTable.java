@@ -1,5 +1,11 @@
 package client;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+
 import javax.swing.table.AbstractTableModel;
 
 /**
@@ -9,30 +15,53 @@ import javax.swing.table.AbstractTableModel;
  *
  * Abstraction Function:
  * 		usersOnline    - contains the usernames of all of the clients that are currently connected
- * 					     to the server
- * 		windowsCreated - contains the names of all of the whiteboards that are saved on the server
+ * 					     to the server, in the order that they are displayed
+ * 		usernames      - contains the same usernames as usersOnline, so that a username can be looked up 
+ * 						 without going through the column
+ * 		windowsCreated - contains the names of the first windowsCreated.size() of the whiteboardCount whiteboards
+ * 						 that are saved on the server, which are the ones that have been loaded so far
+ * 		whiteboardCount - the number of whiteboards that are saved on the server
+ * 		requestedOffset - the index of the first name of the page of whiteboard names that has been requested but
+ * 						 has not arrived yet, or -1 if none has been requested
+ * 		createdWhileRequested - contains the names of the whiteboards that have been created since the page was 
+ * 						 requested and that may or may not be in it
  * 
  * Representation Invariants:
  * 		Mutable
+ * 		usersOnline has no duplicates, and usernames contains exactly the usernames in usersOnline.
+ * 		windowsCreated.size() <= whiteboardCount.
+ * 		windowsCreated is sorted and has no duplicates.
+ * 		requestedOffset is either -1 or at most windowsCreated.size(); it is less when whiteboards have been created
+ * 		among the names loaded since the page was requested, in which case the page starts with names that have 
+ * 		already been loaded.
+ * 		createdWhileRequested is empty if requestedOffset is -1.
  *
  */
 public class UsersOnlineWindowsCreatedTable extends AbstractTableModel {
 	private static final long serialVersionUID = -6083448689321001431L;
-	private String[] usersOnline;
-	private String[] windowsCreated;
+	private final ArrayList<String> usersOnline;
+	private final HashSet<String> usernames;
+	private final ArrayList<String> windowsCreated;
+	private int whiteboardCount;
+	private int requestedOffset;
+	private final ArrayList<String> createdWhileRequested;
 
 	/**
 	 * Creates an empty UsersOnlineWindowsCreatedTable object
 	 * 
 	 */
 	public UsersOnlineWindowsCreatedTable() {
-		usersOnline = new String[] {" "};
-		windowsCreated = new String[] {" "};
+		usersOnline = new ArrayList<String>();
+		usernames = new HashSet<String>();
+		windowsCreated = new ArrayList<String>();
+		whiteboardCount = 0;
+		requestedOffset = -1;
+		createdWhileRequested = new ArrayList<String>();
 	}
 	
 	@Override
 	public int getRowCount() {
-		return Math.max(usersOnline.length, windowsCreated.length);
+		return Math.max(usersOnline.size(), whiteboardCount);
 	}
 
 	@Override
@@ -44,21 +73,22 @@ public class UsersOnlineWindowsCreatedTable extends AbstractTableModel {
 	public Object getValueAt(int rowIndex, int columnIndex) {
 		// The column of users online
 		if (columnIndex == 0) {
-			if (rowIndex >= usersOnline.length) {
+			if (rowIndex >= usersOnline.size()) {
 				return "";
 			}
 			else {
-				return usersOnline[rowIndex];
+				return usersOnline.get(rowIndex);
 			}
 		}
 		
 		// The column of windows created
 		else {
-			if (rowIndex >= windowsCreated.length) {
+			// The names of the whiteboards that have not been loaded yet are left empty.
+			if (rowIndex >= windowsCreated.size()) {
 				return "";
 			}
 			else {
-				return windowsCreated[rowIndex];
+				return windowsCreated.get(rowIndex);
 			}
 		}
 	}
@@ -82,19 +112,215 @@ public class UsersOnlineWindowsCreatedTable extends AbstractTableModel {
      * @modifies changes the contents of the "Users Online" column to be usernames.
      */
     public void setUsersOnline(final String[] usernames) {
-    	usersOnline = usernames;
+    	usersOnline.clear();
+    	this.usernames.clear();
+    	for (String username : usernames) {
+    		if (this.usernames.add(username)) {
+    			usersOnline.add(username);
+    		}
+    	}
     	fireTableDataChanged();
     }
     
+    /**
+     * Adds usernames to the bottom of the "Users Online" column, only redrawing the rows that change.
+     * 
+     * @param usernames an array containing the usernames of clients that have connected to the server
+     * @modifies adds every username of usernames that is not in the "Users Online" column to it.
+     */
+    public void addUsersOnline(final String[] usernames) {
+    	int rows = getRowCount();
+    	int first = usersOnline.size();
+    	for (String username : usernames) {
+    		if (this.usernames.add(username)) {
+    			usersOnline.add(username);
+    		}
+    	}
+    	if (usersOnline.size() == first) {
+    		return;
+    	}
+    	
+    	if (rows > first) {
+    		fireTableRowsUpdated(first, Math.min(rows, usersOnline.size()) - 1);
+    	}
+    	if (getRowCount() > rows) {
+    		fireTableRowsInserted(rows, getRowCount() - 1);
+    	}
+    }
+    
+    /**
+     * Removes usernames from the "Users Online" column, only redrawing the rows from the first one removed down.
+     * 
+     * @param usernames an array containing the usernames of clients that have disconnected from the server
+     * @modifies removes every username of usernames from the "Users Online" column, keeping the order of the rest.
+     */
+    public void removeUsersOnline(final String[] usernames) {
+    	HashSet<String> removed = new HashSet<String>(Arrays.asList(usernames));
+    	removed.retainAll(this.usernames);
+    	if (removed.isEmpty()) {
+    		return;
+    	}
+    	
+    	int rows = getRowCount();
+    	int first = usersOnline.size();
+    	// Every username after the first one removed moves up, so the rest of the column is compacted at once.
+    	int kept = 0;
+    	for (int i = 0; i < usersOnline.size(); i++) {
+    		String username = usersOnline.get(i);
+    		if (removed.contains(username)) {
+    			first = Math.min(first, i);
+    		}
+    		else {
+    			usersOnline.set(kept++, username);
+    		}
+    	}
+    	usersOnline.subList(kept, usersOnline.size()).clear();
+    	this.usernames.removeAll(removed);
+    	
+    	if (getRowCount() < rows) {
+    		fireTableRowsDeleted(getRowCount(), rows - 1);
+    	}
+    	if (getRowCount() > first) {
+    		fireTableRowsUpdated(first, getRowCount() - 1);
+    	}
+    }
+    
+    /**
+     * Returns the usernames in the "Users Online" column.
+     * 
+     * @return the usernames in the "Users Online" column, from the top down
+     */
+    public String[] getUsersOnline() {
+    	return usersOnline.toArray(new String[usersOnline.size()]);
+    }
+    
     /**
      * Changes the contents of the "Whiteboards Created" column.
      * 
      * @param whiteboards an array containing the names of all of the whiteboards that have
      * 					  been created on the server.
-     * @modifies changes the contents of the "Whiteboards Created" column.
+     * @modifies changes the contents of the "Whiteboards Created" column to the names of whiteboards in 
+     * 			 lexicographic order.
      */
     public void setWhiteboardsCreated(final String[] whiteboards) {
-    	windowsCreated = whiteboards;
+    	windowsCreated.clear();
+    	windowsCreated.addAll(new TreeSet<String>(Arrays.asList(whiteboards)));
+    	whiteboardCount = windowsCreated.size();
+    	requestedOffset = -1;
+    	createdWhileRequested.clear();
+    	fireTableDataChanged();
+    }
+    
+    /**
+     * Forgets the whiteboard names loaded so far, so that they are loaded again a page at a time starting from
+     * the first page, and records that the first page has been requested.
+     * 
+     * @return 0, the index of the first name of the first page
+     */
+    public int firstWhiteboardPage() {
+    	windowsCreated.clear();
+    	whiteboardCount = 0;
+    	createdWhileRequested.clear();
+    	requestedOffset = 0;
     	fireTableDataChanged();
+    	return requestedOffset;
+    }
+    
+    /**
+     * Returns the index of the first name of the next page of whiteboard names to load so that a row can be 
+     * shown, and records that the page has been requested.
+     * 
+     * @param lastVisibleRow the index of the last row that is in view
+     * @param pageSize the number of names in a page
+     * @return the number of names loaded so far if fewer than whiteboardCount have been, no page is being loaded
+     * 		   and lastVisibleRow is less than half a page away from the last name loaded; -1 otherwise
+     */
+    public int nextWhiteboardPage(final int lastVisibleRow, final int pageSize) {
+    	int loaded = windowsCreated.size();
+    	if (requestedOffset != -1 || loaded >= whiteboardCount || lastVisibleRow + pageSize / 2 < loaded) {
+    		return -1;
+    	}
+    	
+    	requestedOffset = loaded;
+    	return requestedOffset;
+    }
+    
+    /**
+     * Adds a page of whiteboard names in lexicographic order to the bottom of the "Whiteboards Created" column.
+     * 
+     * @param total the number of whiteboards saved on the server
+     * @param offset the index of the first name of the page among them
+     * @param whiteboards the names of the page in lexicographic order
+     * @modifies adds the names to the "Whiteboards Created" column if the page is the one that was requested,
+     * 			 together with the whiteboards created since that belong among them.
+     */
+    public void addWhiteboardPage(final int total, final int offset, final String[] whiteboards) {
+    	if (offset != requestedOffset) {
+    		return;
+    	}
+    	requestedOffset = -1;
+    	
+    	// A whiteboard created while the page was on its way may already be at the end of the column.
+    	for (String whiteboard : whiteboards) {
+    		if (windowsCreated.isEmpty() || whiteboard.compareTo(windowsCreated.get(windowsCreated.size() - 1)) > 0) {
+    			windowsCreated.add(whiteboard);
+    		}
+    	}
+    	whiteboardCount = Math.max(total, windowsCreated.size());
+    	
+    	// A whiteboard created while the page was on its way may have been left out of it.  If it belongs after
+    	// the page, it is in the pages after, unless there were none when this page was made.
+    	for (String whiteboard : createdWhileRequested) {
+    		int index = Collections.binarySearch(windowsCreated, whiteboard);
+    		if (index < 0 && (-index - 1 < windowsCreated.size() || windowsCreated.size() >= total)) {
+    			windowsCreated.add(-index - 1, whiteboard);
+    		}
+    	}
+    	createdWhileRequested.clear();
+    	whiteboardCount = Math.max(whiteboardCount, windowsCreated.size());
+    	
+    	fireTableDataChanged();
+    }
+    
+    /**
+     * Adds a whiteboard that has just been created to the "Whiteboards Created" column, in lexicographic order
+     * among the names loaded so far, only redrawing the rows that change.
+     * 
+     * @param whiteboard the name of the whiteboard
+     * @modifies counts the whiteboard, and adds its name to the "Whiteboards Created" column unless it belongs
+     * 			 after the names loaded so far, in which case it is loaded with them.
+     */
+    public void addWhiteboard(final String whiteboard) {
+    	int index = Collections.binarySearch(windowsCreated, whiteboard);
+    	if (index >= 0) {
+    		return;
+    	}
+    	
+    	int rows = getRowCount();
+    	int changed = whiteboardCount;
+    	if (-index - 1 < windowsCreated.size() || (requestedOffset == -1 && windowsCreated.size() == whiteboardCount)) {
+    		changed = -index - 1;
+    		windowsCreated.add(changed, whiteboard);
+    	}
+    	else if (requestedOffset != -1) {
+    		createdWhileRequested.add(whiteboard);
+    	}
+    	whiteboardCount++;
+    	
+    	if (getRowCount() > rows) {
+    		fireTableRowsInserted(rows, getRowCount() - 1);
+    	}
+    	if (changed < rows) {
+    		fireTableRowsUpdated(changed, rows - 1);
+    	}
+    }
+    
+    /**
+     * Returns the names in the "Whiteboards Created" column that have been loaded.
+     * 
+     * @return the names of the whiteboards that have been loaded, from the top down
+     */
+    public String[] getWhiteboardsCreated() {
+    	return windowsCreated.toArray(new String[windowsCreated.size()]);
     }
 }
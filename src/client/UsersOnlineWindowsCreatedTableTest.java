@@ -1,7 +1,14 @@
 package client;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+
 import org.junit.Test;
 
 public class UsersOnlineWindowsCreatedTableTest {
@@ -10,5 +17,112 @@ public class UsersOnlineWindowsCreatedTableTest {
 	public void usersOnlineWindowCreatedTableTest() {
 		assertTrue(true);
 	}
+	
+	/**
+	 * The testing strategy for addUsersOnline() and removeUsersOnline():
+	 * 		Usernames that are already in the column, and ones that are not
+	 * 		Removing usernames from the top, the middle and the bottom of the column, and ones that are not in it
+	 * 		The column of users online is longer than the column of whiteboards created, and shorter
+	 * 		Only the rows that change are redrawn
+	 */
+	@Test
+	public void usersJoinedAndLeftTest() {
+		UsersOnlineWindowsCreatedTable table = new UsersOnlineWindowsCreatedTable();
+		final ArrayList<String> events = new ArrayList<String>();
+		table.addTableModelListener(new TableModelListener() {
+			public void tableChanged(TableModelEvent e) {
+				events.add(e.getType() + " " + e.getFirstRow() + " " + e.getLastRow());
+			}
+		});
+		
+		table.setWhiteboardsCreated(new String[] {"board1", "board2", "board3"});
+		table.setUsersOnline(new String[] {"ann", "bob", "ann"});
+		assertArrayEquals(new String[] {"ann", "bob"}, table.getUsersOnline());
+		events.clear();
+		
+		// The third row is already there for the third whiteboard.
+		table.addUsersOnline(new String[] {"bob", "cat", "dan"});
+		assertArrayEquals(new String[] {"ann", "bob", "cat", "dan"}, table.getUsersOnline());
+		assertEquals(4, table.getRowCount());
+		assertEquals("dan", table.getValueAt(3, 0));
+		assertEquals("", table.getValueAt(3, 1));
+		assertEquals(TableModelEvent.UPDATE + " 2 2", events.get(0));
+		assertEquals(TableModelEvent.INSERT + " 3 3", events.get(1));
+		assertEquals(2, events.size());
+		events.clear();
+		
+		table.addUsersOnline(new String[] {"ann"});
+		assertEquals(0, events.size());
+		
+		table.removeUsersOnline(new String[] {"bob", "dan", "eve"});
+		assertArrayEquals(new String[] {"ann", "cat"}, table.getUsersOnline());
+		assertEquals(3, table.getRowCount());
+		assertEquals("", table.getValueAt(2, 0));
+		assertEquals(TableModelEvent.DELETE + " 3 3", events.get(0));
+		assertEquals(TableModelEvent.UPDATE + " 1 2", events.get(1));
+		events.clear();
+		
+		table.removeUsersOnline(new String[] {"ann", "cat"});
+		assertArrayEquals(new String[0], table.getUsersOnline());
+		assertEquals(3, table.getRowCount());
+		assertEquals(TableModelEvent.UPDATE + " 0 2", events.get(0));
+		
+		table.addUsersOnline(new String[] {"bob"});
+		assertArrayEquals(new String[] {"bob"}, table.getUsersOnline());
+	}
+	
+	/**
+	 * The testing strategy for firstWhiteboardPage(), nextWhiteboardPage(), addWhiteboardPage() and addWhiteboard():
+	 * 		The rows in view are far from the last name loaded, and close to it
+	 * 		A page is being loaded, and none is
+	 * 		A page that was not requested arrives
+	 * 		Whiteboards are created that belong among the names loaded, and after them, while a page is on its way
+	 * 		and not
+	 * 		Every whiteboard has been loaded
+	 */
+	@Test
+	public void whiteboardPagesTest() {
+		UsersOnlineWindowsCreatedTable table = new UsersOnlineWindowsCreatedTable();
+		assertEquals(0, table.firstWhiteboardPage());
+		assertEquals(-1, table.nextWhiteboardPage(0, 2));
+		
+		// "b0" was created after the first page was made, and "a9" before.
+		table.addWhiteboard("b0");
+		table.addWhiteboard("a9");
+		table.addWhiteboardPage(5, 0, new String[] {"a1", "a2"});
+		assertArrayEquals(new String[] {"a1", "a2"}, table.getWhiteboardsCreated());
+		assertEquals(5, table.getRowCount());
+		assertEquals("", table.getValueAt(3, 1));
+		
+		// Only rows within half a page of the last name loaded load the next page, and only once.
+		assertEquals(-1, table.nextWhiteboardPage(0, 2));
+		assertEquals(2, table.nextWhiteboardPage(1, 2));
+		assertEquals(-1, table.nextWhiteboardPage(4, 2));
+		
+		// A whiteboard created among the names loaded is shown at once, and moves the names after it down, so
+		// the page that was requested starts with a name that has already been loaded.
+		table.addWhiteboard("a0");
+		assertArrayEquals(new String[] {"a0", "a1", "a2"}, table.getWhiteboardsCreated());
+		table.addWhiteboardPage(6, 2, new String[] {"a2", "a3"});
+		table.addWhiteboardPage(6, 3, new String[] {"x"});
+		assertArrayEquals(new String[] {"a0", "a1", "a2", "a3"}, table.getWhiteboardsCreated());
+		assertEquals(6, table.getRowCount());
+		
+		// The last page leaves out "c0", which was created after it was made, so it is added to the end.
+		assertEquals(4, table.nextWhiteboardPage(3, 2));
+		table.addWhiteboard("c0");
+		table.addWhiteboardPage(6, 4, new String[] {"a9", "b0"});
+		assertArrayEquals(new String[] {"a0", "a1", "a2", "a3", "a9", "b0", "c0"}, table.getWhiteboardsCreated());
+		assertEquals(7, table.getRowCount());
+		assertEquals(-1, table.nextWhiteboardPage(6, 2));
+		
+		// Once every whiteboard has been loaded, the new ones are added wherever they belong.
+		table.addWhiteboard("b5");
+		table.addWhiteboard("d0");
+		table.addWhiteboard("d0");
+		assertArrayEquals(new String[] {"a0", "a1", "a2", "a3", "a9", "b0", "b5", "c0", "d0"}, table.getWhiteboardsCreated());
+		assertEquals(9, table.getRowCount());
+		assertEquals("d0", table.getValueAt(8, 1));
+	}
 
 }
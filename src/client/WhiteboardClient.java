@@ -1,10 +1,10 @@
 package client;
 
-import java.io.BufferedReader;
+import java.awt.Color;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
 
 import javax.swing.SwingUtilities;
 
@@ -12,68 +12,75 @@ import whiteboardGUI.WhiteBoardGUI;
 
 
 /**
- * WhiteboardClient represents the client.
+ * WhiteboardClient represents the client with a Swing user interface.  It talks to the server through a
+ * WhiteboardConnection and is the WhiteboardListener of that connection, showing what the server sends.
  * 
  * Abstraction Function:
  * 		username        - the username that this client has chosen and that the server has accepted for this
  * 				         client
- * 		server          - the socket by which this client communicates with the server
+ * 		connection      - the connection by which this client communicates with the server, which is replaced by
+ * 						 a new one whenever the session of the client is resumed
  * 		clientUsername  - the GUI by which the client keeps on requesting usernames until the server accepts the
- * 						 desired username
+ * 						 desired username, which is shown again if the client has to log in again because its
+ * 						 session could not be resumed
  * 		clientInterface - the GUI by which the client makes requests for opening and creating whiteboards.
- * 		whiteboardGUI   - the GUI displaying the whiteboard that the client has requested
- * 		whiteboard      - the name of the whiteboard that the client currently has open
+ * 		whiteboardGUIs  - the keys are the names of the whiteboards that the client currently has open and the
+ * 						 values are the GUIs displaying them
  * 
  * Representation Invariant:
  * 		The first thing that the client must do is keep on requesting usernames until the server accepts
  * 			their desired username.  The client cannot do anything until the server has accept the desired 
  * 			username.
- * 		The client can only have one whiteboard open at a time.
- * 		The name of the whiteboard that is open in whiteboardGUI is whiteboard.
+ * 		The client can have any number of whiteboards open at once, each in a GUI of its own, but only one GUI
+ * 			per whiteboard.
+ * 		The name of the whiteboard that is open in each GUI of whiteboardGUIs is its key.
  * 
  * Thread safety argument:
- * 		There is no data sharing between any of the threads.
- * 		Only one request is handled at a time.
+ * 		The messages of the server are handled one at a time, in order, on the thread of the connection that 
+ * 		reads them, which is the only thread that calls the WhiteboardListener methods.
  * 
- * 		Only one thread is made per connection with the synchronized method handleConnection. Opening and populating the 
- * 		client interface is done in a synchronized method and reads the mutable dataset of currently open whiteboards. 
+ * 		Opening and populating the client interface is done in a synchronized method and reads the mutable 
+ * 		dataset of currently open whiteboards. 
  * 
- * 		All read and writes capabilities that exist are in openClientInterface and handleConnection. Both of these
- * 		methods are synchronized.
+ * 		The requests of the GUIs are written to the server by the connection, which keeps them in order.
+ * 		connection is volatile and is only replaced by the thread of the connection that it replaces, once that
+ * 		connection has been closed, after which that thread calls no more listener methods.
  * 
- * 		All other methods do not touch mutable data that has potential to not be thread safe.
+ * 		whiteboardGUIs is read by the thread of the connection and changed by the GUIs when they are closed, so 
+ * 		every access to it is synchronized on this WhiteboardClient.
  * 
  */
-public class WhiteboardClient {
+public class WhiteboardClient implements WhiteboardListener {
 	private String username;
-	private final Socket server;
+	private volatile WhiteboardConnection connection;
 	
 	private final ClientUsername clientUsername;
 	
 	private boolean isClientInterfaceOpen;
 	private ClientService clientInterface;
 	
-	private String whiteboard;
-	private WhiteBoardGUI whiteboardGUI;
-	private boolean hasWhiteboardOpen;
+	private final HashMap<String, WhiteBoardGUI> whiteboardGUIs;
 	
 	private String[] usersOnLine;
 	
+	private static final int RESUME_ATTEMPTS = 5;
+	private static final long RESUME_RETRY_MILLIS = 200;
+	
    
 	/**
 	 * Creates a WhiteboardClient object
 	 * 
 	 * @param server the socket by which this WhiteboardClient object is connected to and 
 	 * 				 can therefore communicate with the server
+	 * @throws IOException if the socket cannot be written to
 	 */
-	public WhiteboardClient(Socket server) {
+	public WhiteboardClient(Socket server) throws IOException {
 		this.username = null;
-		this.server = server;
 		this.isClientInterfaceOpen = false;
 		this.usersOnLine = null;
 		this.clientInterface = null;
-		this.whiteboard = null;
-		this.hasWhiteboardOpen = false;
+		this.whiteboardGUIs = new HashMap<String, WhiteBoardGUI>();
+		this.connection = new WhiteboardConnection(server, this);
 		
 		clientUsername = new ClientUsername(this);
 		
@@ -84,24 +91,8 @@ public class WhiteboardClient {
 			}
 		});
 		
-		// Start handling connections.
-		Thread thread = new Thread(new Runnable() {
-
-			@Override
-			public void run() {
-				handleConnection();
-			}
-		});
-		thread.start();
-	}
-	
-	/**
-	 * Returns the name of the whiteboard that is currently open for this client.
-	 * 
-	 * @return the name of the whiteboard that is currently open for this WhiteboardClient
-	 */
-	public String getWhiteboardName() {
-		return whiteboard;
+		// Start handling the messages of the server.
+		connection.start();
 	}
 	
 	/**
@@ -137,220 +128,280 @@ public class WhiteboardClient {
 			}
 		});
 		
-		// Request all of the whiteboards.
-		sendMessage("list");
+		// Request the first page of the whiteboards; the rest are requested as the client scrolls down to them.
+		clientInterface.loadWhiteboards();
 	}
 
 	/**
 	 * Communicates with the server, sending the specified message to the server that
-	 * this client is connected to.
+	 * this client is connected to.  The reply is handled as any other message of the server.
 	 * 
 	 * @param messageToServer the message to be sent to the server from this client
 	 * @modifies send messageToServer to the server that this client is connected to
-	 * @throws IOException
 	 */
 	public void sendMessage (final String messageToServer) {
-		Thread thread = new Thread (new Runnable() {
-			@Override
+		connection.send(messageToServer);
+	}
+	
+	/**
+	 * Logs this client out of the server, ending its session so that the connection is not resumed once the
+	 * server has closed it.
+	 */
+	public void logout() {
+		connection.logout();
+	}
+	
+	/**
+	 * Handles a message as if it had come from the server, which is useful for testing the GUIs by hand.
+	 * 
+	 * @param input a message of one of the forms in the specification of WhiteboardConnection.handleMessage()
+	 */
+	public void handleRequest(String input) {
+		connection.handleMessage(input);
+	}
+	
+	@Override
+	public void usernameRejected(final String message) {
+		if (username != null) { // The session could not be resumed after the connection was lost.
+			showLogin();
+		}
+		clientUsername.updateErrorMessage(message);
+	}
+	
+	/**
+	 * Closes the client interface and the GUIs of every whiteboard that this client has open and shows the 
+	 * Client Username GUI again, so that the client logs in again over its connection as it first did.
+	 */
+	private void showLogin() {
+		final ArrayList<WhiteBoardGUI> open;
+		synchronized (this) {
+			open = new ArrayList<WhiteBoardGUI>(whiteboardGUIs.values());
+			whiteboardGUIs.clear();
+		}
+		final ClientService previousInterface = clientInterface;
+		
+		username = null;
+		usersOnLine = null;
+		isClientInterfaceOpen = false;
+		clientInterface = null;
+		
+		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
-				try {
-		        	PrintWriter out = new PrintWriter(server.getOutputStream(), true);
-		        	out.println(messageToServer);
-				} catch (IOException e) {
-					e.printStackTrace();
-					throw new RuntimeException ("The client can no longer connect to the server");
+				for (WhiteBoardGUI whiteboardGUI : open) {
+					whiteboardGUI.dispose();
+				}
+				if (previousInterface != null) {
+					previousInterface.dispose();
 				}
+				clientUsername.setVisible(true);
 			}
 		});
-		thread.start();
 	}
 	
-	/**
-     * Handle the server connection. Returns when this client disconnects.
-     * 
-	 */
-	public synchronized void handleConnection () {
-		try {
-			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
-			for (String line = in.readLine(); line != null; line = in.readLine()) {
-				// An empty string from the server indicates that the server has responded to one
-				// of the client's requests but the client does not have to do anything in return.
-				if (line != ""){ 
-					handleRequest(line);
-				}	
-			}
-		} 
-		catch (IOException e) {
-			e.printStackTrace();
-			throw new RuntimeException ("The client can no longer connect to the server.");
+	@Override
+	public void usernameAccepted(final String username) {
+		this.username = username;
+		connection.startSession();
+		clientUsername.dispose();
+		openClientInterface();
+		
+		// If the command saying that "allUsersOnline" has already come back, then
+		if (usersOnLine != null) {
+			clientInterface.setUsersOnLine(usersOnLine);
 		}
+		// If the command has not come back then deal with it when it does.
 	}
 	
-    /** Handler for server input, performing requested operations and returning an output message.
-     * 
-     * Valid server input is of the following form:
-     * 		(1) "usernameerror That username is already being used." -
-     * 				The server's indication that it has rejected the client's requested username
-     * 		(2) "usernameerror There should be no spaces in the username." -
-     * 				The server's indication that it has rejected the client's requested username
-     * 		(3) "usernameCreated [username]" - 
-     * 				The server's indication that it has accepted the client's requested username,
-     * 				[username]
-     * 		(4) "allUsersOnline [usernames]" -
-     * 				The server's indication that another client has connected to the server and has
-     * 				been assigned a valid username (i.e. unique and does not contain spaces) or that
-     * 				a client has disconnected from the server.
-     * 				[usernames] is a String containing the usernames of all of the clients connected
-     * 				to the server, each separated by a space.
-     * 		(5) "whiteboardnameerror Whiteboard names cannot contain any spaces." -
-     * 				The server's indication that it has rejected the client's requested whiteboard name
-     * 		(6) "whiteboardnameerror A whiteboard with that name has already created.  Please choose another name." -
-     * 				The server's indication that it has rejected the client's requeste whiteboard name
-     * 		(7) "whiteboardcreated [name]" -
-     * 				The server's indication that it has accepted the client's requested whiteboard name,
-     * 				[name]
-     * 		(8) "allwhiteboards [whiteboards]" -
-     * 				The server's indication that another client has created another whiteboard
-     * 				[whiteboards] is a String containing the names of all the whiteboards currently saved
-     * 				on the server, in the order that they were created, each separated by a space
-     * 		(9) "open [whiteboardname] [whiteboard]" -
-     * 				[whiteboardname] is the name of the whiteboard that this client requested to open.
-     * 				[whiteboard] is the string representation of the whiteboard that this client requested
-     * 				to open.
-     * 		(10)"alsoediting [usernames]" -
-     * 				The server's indication that another client has connected to the whiteboard that this client
-     * 				currently has open.
-     * 				[usernames] is a String containing the usernames of all of the client connected to the server, each
-     * 				separated by a space.
-     * 		(11)"whiteboardopenerror A whiteboard with that name does not exist." -
-     * 				The server's indication that it has rejected the client's requested whiteboard name
-     * 		(12)"drawLine [line]" -
-     * 				The server's indication that the whiteboard that this client is connected to has changed.
-     * 				[line] is a string representation of the line that has been added to the client.
-     * 		(13)"reset" -
-     * 				The server's indication that the whiteboard that this client is connected to has been reseted
-     * 				to be completely white
-     * 
-     * @param the message from the server
-     * 
-     */
-	public void handleRequest(String input) {
-        String regex = "(usernameerror -?.+)|(usernameCreated -?.+)|(allUsersOnline -?.+)|"
-                	 	+ "(whiteboardnameerror -?.+)|(whiteboardcreated -?.+)|(allwhiteboards -?.*)|"
-                	 	+ "(open -?.+ -?.*)|(alsoediting -?.+)|(whiteboardopenerror -?.+)|"
-                		+ "(drawLine (\\d+ \\d+ \\d+ \\d+ \\d+ )*)|(reset)";
-        
-        String[] tokens = input.split(" ");
-        if (tokens[0].equals("usernameerror")) {
-        	String errorMessage = getStringAfterSpace(input);
-        	System.out.println("errorMessage");
-        	clientUsername.updateErrorMessage(errorMessage);
-        }
-        else if (tokens[0].equals("usernameCreated")) {
-        	String username = tokens[1];
-        	this.username = username;
-        	clientUsername.dispose();
-        	openClientInterface();
-        	
-        	// If the command saying that "allUsersOnline" has already come back, then
-        	if (usersOnLine != null) {
-        		clientInterface.setUsersOnLine(usersOnLine);
-        	}
-        	// If the command has not come back then deal with it when it does.
-        }
-        else if (tokens[0].equals("allUsersOnline")) {
-        	this.usersOnLine = getStringAfterSpace(input).trim().split(" ");
-        	if (isClientInterfaceOpen) {
-        		clientInterface.setUsersOnLine(usersOnLine);
-        	}
-        }
-        else if(tokens[0].equals("whiteboardnameerror")) {
-        	String errorMessage = getStringAfterSpace(input);
-        	clientInterface.setErrorMessage(errorMessage);
-        }
-        else if(tokens[0].equals("whiteboardcreated")) {
-        	// Does nothing
-        }
-        else if(tokens[0].equals("allwhiteboards")) {
-        	if(tokens.length > 1) { // At least one whiteboard has been created.
-            	String[] allWhiteboards = getStringAfterSpace(input).trim().split(" ");
-            	clientInterface.setWhiteboardsCreated(allWhiteboards);
-        	}
-        }
-        else if(tokens[0].equals("open")) {
-        	whiteboard = tokens[1];
-        	
-        	String repOfWhiteboard = "";
-        	if (tokens.length >= 3) {
-        		repOfWhiteboard = getStringAfterSecondSpace(input).trim();
-        	}
-        	else {
-        		repOfWhiteboard = "";
-        	}
-        	
-        	whiteboardGUI = new WhiteBoardGUI(this, whiteboard, repOfWhiteboard);
-        	whiteboardGUI.setVisible(true);
-        	hasWhiteboardOpen = true;
-        	sendMessage("getUsersOnWhiteboard " + whiteboard);
-        }
-        else if(tokens[0].equals("alsoediting")) {
-        	if (whiteboardGUI != null) {
-        		whiteboardGUI.setUsersOnline(getStringAfterSpace(input));
-        	}
-        }
-        else if(tokens[0].equals("whiteboardopenerror")) {
-        	String errorMessage = getStringAfterSpace(input);
-        	clientInterface.setErrorMessage(errorMessage);
-        }
-        else if(tokens[0].equals("drawLine")) {
-        	String line = getStringAfterSpace(input).trim();
-        	
-        	if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
-        		whiteboardGUI.drawLine(line);
-        	}
-        }
-        else if(tokens[0].equals("reset")) {
-        	if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
-        		whiteboardGUI.clearCanvas();
-        	}
-        }
+	@Override
+	public void usersOnline(final String[] usernames) {
+		this.usersOnLine = usernames;
+		if (isClientInterfaceOpen) {
+			clientInterface.setUsersOnLine(usersOnLine);
+		}
+	}
+	
+	@Override
+	public void usersJoined(final String[] usernames) {
+		// The full list always comes before the changes, and the client interface is open by then.
+		if (isClientInterfaceOpen) {
+			clientInterface.addUsersOnLine(usernames);
+		}
+	}
+	
+	@Override
+	public void usersLeft(final String[] usernames) {
+		if (isClientInterfaceOpen) {
+			clientInterface.removeUsersOnLine(usernames);
+		}
+	}
+	
+	@Override
+	public void whiteboardNameRejected(final String message) {
+		clientInterface.setErrorMessage(message);
+	}
+	
+	@Override
+	public void whiteboardCreated(final String name) {
+		// Does nothing
+	}
+	
+	@Override
+	public void whiteboardsCreated(final String[] names) {
+		if (names.length > 0) { // At least one whiteboard has been created.
+			clientInterface.setWhiteboardsCreated(names);
+		}
+	}
+	
+	@Override
+	public void whiteboardsListed(final int total, final int offset, final String[] names) {
+		clientInterface.addWhiteboardPage(total, offset, names);
+	}
+	
+	@Override
+	public void whiteboardAdded(final String name) {
+		clientInterface.addWhiteboard(name);
+	}
+	
+	@Override
+	public void whiteboardOpened(final String name, final int width, final int height, final String pixels) {
+		WhiteBoardGUI whiteboardGUI = new WhiteBoardGUI(this, name, width, height, pixels);
+		addWhiteboardGUI(name, whiteboardGUI);
+		whiteboardGUI.setVisible(true);
+		sendMessage("getUsersOnWhiteboard " + name);
+		sendMessage("layers " + username + " " + name);
+	}
+	
+	@Override
+	public void previewOpened(final String name, final int width, final int height, final int scale, final String preview) {
+		WhiteBoardGUI whiteboardGUI = new WhiteBoardGUI(this, name, width, height, "");
+		whiteboardGUI.drawPreview(scale, preview);
+		addWhiteboardGUI(name, whiteboardGUI);
+		whiteboardGUI.setVisible(true);
+		sendMessage("getUsersOnWhiteboard " + name);
+		sendMessage("layers " + username + " " + name);
+	}
+	
+	@Override
+	public void usersEditing(final String whiteboard, final String[] usernames) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) {
+			whiteboardGUI.setUsersOnline(String.join(" ", usernames));
+		}
+	}
+	
+	@Override
+	public void whiteboardOpenRejected(final String message) {
+		clientInterface.setErrorMessage(message);
+	}
+	
+	@Override
+	public void linesDrawn(final String whiteboard, final int layer, final String pixels) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
+			whiteboardGUI.drawLine(layer, pixels);
+		}
+	}
+	
+	@Override
+	public void regionRedrawn(final String whiteboard, final int layer, final int x, final int y, final int width, 
+							  final int height, final String pixels) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
+			whiteboardGUI.redrawRegion(layer, x, y, width, height, pixels);
+		}
+	}
+	
+	@Override
+	public void spansFilled(final String whiteboard, final int layer, final int rgb, final String runs) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
+			whiteboardGUI.drawSpans(layer, new Color(rgb), runs);
+		}
+	}
+	
+	@Override
+	public void regionCopied(final String whiteboard, final int layer, final int sx, final int sy, final int width, 
+							 final int height, final int dx, final int dy, final boolean move) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
+			whiteboardGUI.blit(layer, sx, sy, width, height, dx, dy, move);
+		}
+	}
+	
+	@Override
+	public void whiteboardReset(final String whiteboard) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null) { // If the user has not closed it in the mean time.
+			whiteboardGUI.clearCanvas();
+		}
+	}
+	
+	@Override
+	public void layersChanged(final String whiteboard, final String[] names) {
+		WhiteBoardGUI whiteboardGUI = getWhiteboardGUI(whiteboard);
+		if (whiteboardGUI != null && names.length > 0) { // If the user has not closed it in the mean time.
+			whiteboardGUI.setLayers(names);
+		}
+	}
+	
+	@Override
+	public void disconnected() {
+		// A connection that was lost rather than logged out of is replaced by one that picks up where it left off.
+		WhiteboardConnection lost = connection;
+		if (lost.getSessionToken() != null) {
+			for (int attempt = 1; attempt <= RESUME_ATTEMPTS; attempt++) {
+				try {
+					connection = lost.resume();
+					return;
+				}
+				catch (IOException e) {
+					try {
+						Thread.sleep(RESUME_RETRY_MILLIS * attempt);
+					}
+					catch (InterruptedException interrupted) {
+						break;
+					}
+				}
+			}
+		}
+		System.err.println("The client can no longer connect to the server.");
 	}
 	
 	/**
-	 * Returns the part of the specified string after the first space in the string.
+	 * Indicates whether or not this WhiteboardClient already has a whiteboard open.
 	 * 
-	 * @param input must contain at least one space and must contain at least one character
-	 * 				after its first space
-	 * @return the part of input after the first space in input
+	 * @param name the name of a whiteboard
+	 * @return true only if this WhiteboardClient already has the whiteboard whose name is name open, returns
+	 * 		   false otherwise.
 	 */
-	protected static String getStringAfterSpace(final String input) {
-		int indexOfSpace = input.indexOf(' ');
-		String stringAfterSpace = input.substring(indexOfSpace);
-		return stringAfterSpace;
+	public synchronized boolean hasWhiteboardOpen(final String name) {
+		return whiteboardGUIs.containsKey(name);
 	}
 	
 	/**
-	 * Returns the part of the specified string after the second space in the string.
+	 * Returns the GUI displaying a whiteboard that this WhiteboardClient has open.
 	 * 
-	 * @param input must contain at least two spaces and must contain at least one character
-	 * 				after its second space
-	 * @return the part of input after the second space in input
+	 * @param name the name of a whiteboard, or null
+	 * @return the GUI displaying the whiteboard whose name is name, or null if it is not open
 	 */
-	protected static String getStringAfterSecondSpace(final String input) {
-		int indexOfSpace = input.indexOf(' ');
-		int indexOfSecondSpace = input.indexOf(' ', indexOfSpace + 1);
-		String stringAfterSpace = input.substring(indexOfSecondSpace);
-		return stringAfterSpace;
+	private synchronized WhiteBoardGUI getWhiteboardGUI(final String name) {
+		return whiteboardGUIs.get(name);
 	}
 	
 	/**
-	 * Indicates whether or not this WhiteboardClient already has a whiteboard open.
+	 * Displays a whiteboard that this WhiteboardClient has just opened, closing any other GUI of it.
 	 * 
-	 * @return true only if this WhiteboardClient is already connected to a whiteboard, returns
-	 * 		   false otherwise.
+	 * @param name the name of the whiteboard
+	 * @param whiteboardGUI the GUI displaying the whiteboard
 	 */
-	public boolean hasWhiteboardOpen() {
-		return hasWhiteboardOpen;
+	private void addWhiteboardGUI(final String name, final WhiteBoardGUI whiteboardGUI) {
+		WhiteBoardGUI previous;
+		synchronized (this) {
+			previous = whiteboardGUIs.put(name, whiteboardGUI);
+		}
+		if (previous != null) {
+			previous.dispose();
+		}
 	}
 	
 	public static void main(final String[] args) {
@@ -366,12 +417,11 @@ public class WhiteboardClient {
 	}
 	
 	/**
-	 * Closes the whiteboardGUI.  Must be called when the whiteboardGUI is closed.
+	 * Forgets the GUI of a whiteboard.  Must be called when that GUI is closed.
 	 * 
+	 * @param name the name of the whiteboard that the GUI displays
 	 */
-	public void closeWhiteboardGUI() {
-		whiteboardGUI = null;
-		whiteboard = null;
-		hasWhiteboardOpen = false;
+	public synchronized void closeWhiteboardGUI(final String name) {
+		whiteboardGUIs.remove(name);
 	}
 }
@@ -0,0 +1,631 @@
+package client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * WhiteboardConnection is the part of a client that talks to the server, with no user interface of its own, so
+ * that it can also be driven by bots, load generators and tests that have no display.  Every message from the
+ * server is passed to a WhiteboardListener, and every request returns a CompletableFuture that is completed with
+ * the server's reply to it.
+ *
+ * Every request is sent with a request ID, which the server puts at the start of its reply, so any number of
+ * requests can be in flight at once and the messages that the server sends on its own, e.g. when another client
+ * draws, are never mistaken for replies.  Any number of whiteboards can be open at once, and the messages about
+ * each of them name it, so they are passed to the listener together with the name of their whiteboard.
+ *
+ * Once the client has a session, the messages that the server sends on its own are numbered, and if the connection
+ * is lost, resume() reconnects and has the server send again only the messages that this connection missed.
+ *
+ * Abstraction Function:
+ * 		server   - the socket by which this client communicates with the server
+ * 		out      - the writer of the requests sent to the server
+ * 		listener - notified of every message from the server
+ * 		pending  - maps the ID of every request that has been sent but not replied to onto the request, in the
+ * 				   order that they were sent
+ * 		nextId   - the ID of the next request to be sent
+ * 		username - the username that the server has accepted for this client, or null until it has
+ * 		closed   - true once the connection to the server has been closed
+ * 		sessionToken - the token of the session of this client, or null if it has none or has logged out
+ * 		lastSequence - the sequence number of the last numbered message handled in the session, or 0
+ *
+ * Representation Invariant:
+ * 		Every key of pending is less than nextId, and none of the futures of pending is done.
+ * 		pending is empty once closed is true.
+ * 		lastSequence >= 0
+ *
+ * Thread safety Argument:
+ * 		A request is given its ID, added to pending and written to out while holding the lock on this 
+ * 		WhiteboardConnection, and the reading thread takes the replies off pending while holding the same lock.
+ * 		The futures are completed and the listener is called outside of the lock, on the reading thread only, 
+ * 		so the listener sees the messages one at a time and in order, and callbacks of the futures can send more
+ * 		requests.  username, closed, sessionToken and lastSequence are volatile, and lastSequence is only 
+ * 		changed by the reading thread.
+ *
+ */
+public class WhiteboardConnection {
+	private final Socket server;
+	private final PrintWriter out;
+	private final WhiteboardListener listener;
+	private final LinkedHashMap<Long, Request> pending;
+	private long nextId;
+	private volatile String username;
+	private volatile boolean closed;
+	private volatile String sessionToken;
+	private volatile long lastSequence;
+
+	/**
+	 * Creates a WhiteboardConnection.  Nothing is read from the server until start() is called.
+	 *
+	 * @param server the socket by which this client is connected to the server
+	 * @param listener notified of every message from the server
+	 * @throws IOException if the socket cannot be written to
+	 */
+	public WhiteboardConnection(final Socket server, final WhiteboardListener listener) throws IOException {
+		this.server = server;
+		this.out = new PrintWriter(server.getOutputStream(), true);
+		this.listener = listener;
+		this.pending = new LinkedHashMap<Long, Request>();
+		this.nextId = 1;
+		this.username = null;
+		this.closed = false;
+		this.sessionToken = null;
+		this.lastSequence = 0;
+	}
+
+	/**
+	 * Starts reading the messages of the server on a thread of their own, which runs until the connection is
+	 * closed.
+	 */
+	public void start() {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readMessages();
+			}
+		});
+		thread.start();
+	}
+
+	/**
+	 * Returns the username that the server has accepted for this client.
+	 *
+	 * @return the username in the last "usernameCreated" message from the server, or null if there has been none
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Sends a request to the server, without waiting for the replies to the requests sent before it.
+	 *
+	 * @param request the request, of one of the forms in the specification of WhiteboardServer.handleRequest(),
+	 * 		  on one line
+	 * @return a future that is completed with the server's reply to request, which is the empty string for most
+	 * 		   requests that change a whiteboard and may be an error message such as "Invalid input.".  The future
+	 * 		   of a "logout" request, which gets no reply, is completed with the empty string once the server has
+	 * 		   closed the connection.  If the connection is closed before the reply arrives, the future is
+	 * 		   completed exceptionally with an IOException.
+	 * @modifies a "logout" request ends the session of this client, if any, so that it is not resumed once the
+	 * 			 server has closed the connection
+	 */
+	public CompletableFuture<String> send(final String request) {
+		Request sent = new Request(request);
+		if (sent.command.equals("logout")) {
+			sessionToken = null;
+		}
+
+		synchronized (this) {
+			if (!closed) {
+				pending.put(nextId, sent);
+				out.println("#" + nextId + " " + request);
+				nextId++;
+				return sent.reply;
+			}
+		}
+
+		sent.reply.completeExceptionally(new IOException("The client is no longer connected to the server."));
+		return sent.reply;
+	}
+
+	/**
+	 * Asks the server for a username.
+	 *
+	 * @return send("username " + username)
+	 */
+	public CompletableFuture<String> requestUsername(final String username) {
+		return send("username " + username);
+	}
+
+	/**
+	 * Asks the server for the names of its whiteboards.
+	 *
+	 * @return send("list")
+	 */
+	public CompletableFuture<String> list() {
+		return send("list");
+	}
+
+	/**
+	 * Asks the server for one page of the names of its whiteboards in lexicographic order.
+	 *
+	 * @param offset the index of the first name of the page
+	 * @param limit the most names that the page can hold, at most 1000
+	 * @return send("list " + offset + " " + limit)
+	 */
+	public CompletableFuture<String> list(final int offset, final int limit) {
+		return send("list " + offset + " " + limit);
+	}
+
+	/**
+	 * Asks the server for one page of the names of its whiteboards that start with a prefix, in lexicographic
+	 * order.
+	 *
+	 * @param offset the index of the first name of the page among the names that start with prefix
+	 * @param limit the most names that the page can hold, at most 1000
+	 * @param prefix a string with no spaces
+	 * @return send("list " + offset + " " + limit + " " + prefix)
+	 */
+	public CompletableFuture<String> list(final int offset, final int limit, final String prefix) {
+		return send("list " + offset + " " + limit + " " + prefix);
+	}
+
+	/**
+	 * Creates a whiteboard of the default size.
+	 *
+	 * @return send("create " + name)
+	 */
+	public CompletableFuture<String> create(final String name) {
+		return send("create " + name);
+	}
+
+	/**
+	 * Creates a whiteboard of a given size.
+	 *
+	 * @return send("create " + name + " " + width + " " + height)
+	 */
+	public CompletableFuture<String> create(final String name, final int width, final int height) {
+		return send("create " + name + " " + width + " " + height);
+	}
+
+	/**
+	 * Opens a whiteboard in full.  The username of this client must have been accepted.
+	 *
+	 * @return send("open " + getUsername() + " " + name)
+	 */
+	public CompletableFuture<String> open(final String name) {
+		return send("open " + username + " " + name);
+	}
+
+	/**
+	 * Opens a whiteboard progressively, starting from a preview of a rectangle of it.  The username of this
+	 * client must have been accepted.
+	 *
+	 * @return send("open " + getUsername() + " " + name + " " + x + " " + y + " " + width + " " + height)
+	 */
+	public CompletableFuture<String> open(final String name, final int x, final int y, final int width, final int height) {
+		return send("open " + username + " " + name + " " + x + " " + y + " " + width + " " + height);
+	}
+
+	/**
+	 * Closes a whiteboard that this client has open.
+	 *
+	 * @return send("close " + getUsername() + " " + name)
+	 */
+	public CompletableFuture<String> close(final String name) {
+		return send("close " + username + " " + name);
+	}
+
+	/**
+	 * Draws an opaque line segment on a whiteboard.
+	 *
+	 * @param rgb the color of the line segment, packed as 0xRRGGBB
+	 * @return send("draw [whiteboard] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness]")
+	 */
+	public CompletableFuture<String> draw(final String whiteboard, final int x1, final int y1, final int x2, final int y2,
+										  final int rgb, final int thickness) {
+		return send("draw " + whiteboard + " " + x1 + " " + y1 + " " + x2 + " " + y2 + " " + ((rgb >> 16) & 0xFF) + " "
+					+ ((rgb >> 8) & 0xFF) + " " + (rgb & 0xFF) + " " + thickness);
+	}
+
+	/**
+	 * Clears a whiteboard.
+	 *
+	 * @return send("reset " + whiteboard)
+	 */
+	public CompletableFuture<String> reset(final String whiteboard) {
+		return send("reset " + whiteboard);
+	}
+
+	/**
+	 * Logs this client out of the server, which then closes the connection.  The session of this client, if
+	 * any, ends with it.
+	 *
+	 * @return send("logout " + getUsername())
+	 */
+	public CompletableFuture<String> logout() {
+		return send("logout " + username);
+	}
+
+	/**
+	 * Asks the server for a session that this client can resume if the connection is lost.  The username of
+	 * this client must have been accepted.
+	 *
+	 * @return send("session " + getUsername())
+	 */
+	public CompletableFuture<String> startSession() {
+		return send("session " + username);
+	}
+
+	/**
+	 * Returns the token of the session of this client.
+	 *
+	 * @return the token of the session, or null if this client has none or has logged out
+	 */
+	public String getSessionToken() {
+		return sessionToken;
+	}
+
+	/**
+	 * Returns the sequence number of the last numbered message of the session that this connection has handled.
+	 *
+	 * @return the sequence number, or 0 if there has been none
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Reconnects to the server over a new connection, and resumes the session of this client over it, so that
+	 * the listener is only passed the messages that this connection missed before carrying on as if the
+	 * connection had never been lost.  This connection must have been closed and must have had a session.
+	 *
+	 * @return the new connection, which has been started and whose first request is 
+	 * 		   "resume [token] [sequence]"; its future is completed with "resumed [username] [sequence]", or with
+	 * 		   "resumeerror That session can no longer be resumed." if the client must log in again
+	 * @throws IOException if the server cannot be connected to
+	 */
+	public WhiteboardConnection resume() throws IOException {
+		WhiteboardConnection resumed = new WhiteboardConnection(new Socket(server.getInetAddress(), server.getPort()),
+																listener);
+		resumed.username = username;
+		resumed.sessionToken = sessionToken;
+		resumed.lastSequence = lastSequence;
+		resumed.start();
+		resumed.send("resume " + sessionToken + " " + lastSequence);
+		return resumed;
+	}
+
+	/**
+	 * Reads the messages of the server until the connection is closed, handling each one in turn.
+	 */
+	private void readMessages() {
+		IOException failure = null;
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				handleMessage(line);
+			}
+		}
+		catch (IOException e) {
+			failure = e;
+		}
+
+		ArrayList<Request> unanswered;
+		synchronized (this) {
+			closed = true;
+			unanswered = new ArrayList<Request>(pending.values());
+			pending.clear();
+		}
+
+		for (Request request : unanswered) {
+			if (request.command.equals("logout") && failure == null) {
+				request.reply.complete("");
+			}
+			else {
+				request.reply.completeExceptionally(failure != null ? failure
+													: new IOException("The server closed the connection."));
+			}
+		}
+		listener.disconnected();
+	}
+
+	/**
+	 * Handles a message from the server, completing the future of the request that it replies to if it is a reply
+	 * and passing it to the listener.  A reply starts with the ID of the request, as in "#[id] [reply]", which is
+	 * taken off before [reply] is passed to the listener.
+	 *
+	 * Valid server input is of the following form:
+	 * 		(1) "usernameerror That username is already being used." -
+	 * 				The server's indication that it has rejected the client's requested username
+	 * 		(2) "usernameerror There should be no spaces in the username." -
+	 * 				The server's indication that it has rejected the client's requested username
+	 * 		(3) "usernameCreated [username]" -
+	 * 				The server's indication that it has accepted the client's requested username,
+	 * 				[username]
+	 * 		(4) "allUsersOnline [usernames]" -
+	 * 				The server's indication of which clients are connected to the server, sent once this 
+	 * 				client's username has been accepted.
+	 * 				[usernames] is a String containing the usernames of all of the clients connected
+	 * 				to the server, each separated by a space.  After it, the server only sends the changes:
+	 * 			"userJoined [usernames]" or "userLeft [usernames]" -
+	 * 				The server's indication that the clients whose usernames are [usernames], each separated by 
+	 * 				a space, have connected to the server and have been assigned a valid username (i.e. unique 
+	 * 				and does not contain spaces), or have disconnected from the server.
+	 * 		(5) "whiteboardnameerror Whiteboard names cannot contain any spaces." -
+	 * 				The server's indication that it has rejected the client's requested whiteboard name
+	 * 		(6) "whiteboardnameerror A whiteboard with that name has already created.  Please choose another name." -
+	 * 				The server's indication that it has rejected the client's requeste whiteboard name
+	 * 		(7) "whiteboardcreated [name]" -
+	 * 				The server's indication that it has accepted the client's requested whiteboard name,
+	 * 				[name]
+	 * 		(8) "allwhiteboards [whiteboards]" -
+	 * 				The server's reply to a "list" request.
+	 * 				[whiteboards] is a String containing the names of all the whiteboards currently saved
+	 * 				on the server, in the order that they were created, each separated by a space
+	 * 			"whiteboards [total] [offset] [whiteboards]" -
+	 * 				The server's reply to a "list [offset] [limit]" request.  [whiteboards] contains the names of
+	 * 				the [offset]th whiteboard and the ones after it, counting from 0 in lexicographic order, among 
+	 * 				the [total] whiteboards that the request asked for, each followed by a space.
+	 * 			"boardCreated [name]" -
+	 * 				The server's indication that a client has created the whiteboard named [name].
+	 * 		(9) "open [whiteboardname] [width] [height] [whiteboard]" -
+	 * 				[whiteboardname] is the name of the whiteboard that this client requested to open.
+	 * 				[width] and [height] are the dimensions of the whiteboard in pixels.
+	 * 				[whiteboard] is the string representation of the whiteboard that this client requested
+	 * 				to open.
+	 * 		(10)"alsoediting [usernames]" -
+	 * 				The server's indication that another client has connected to the whiteboard that this client
+	 * 				currently has open.
+	 * 				[usernames] is a String containing the usernames of all of the client connected to the server, each
+	 * 				separated by a space.
+	 * 		(11)"whiteboardopenerror A whiteboard with that name does not exist." -
+	 * 				The server's indication that it has rejected the client's requested whiteboard name
+	 * 		(12)"drawLine [line]" -
+	 * 				The server's indication that the whiteboard that this client is connected to has changed.
+	 * 				[line] is a string representation of the line that has been added to the client.
+	 * 		(13)"reset" -
+	 * 				The server's indication that the whiteboard that this client is connected to has been reseted
+	 * 				to be completely white
+	 * 		(14)"redraw [x] [y] [width] [height] [pixels]" -
+	 * 				The server's indication that the [width] x [height] rectangle whose top left hand corner is
+	 * 				([x], [y]) of the whiteboard that this client is connected to has come into view or has changed.
+	 * 				[pixels] is the string representation of the pixels in the rectangle that are not white.
+	 * 		(15)"openpreview [whiteboardname] [width] [height] [scale] [preview]" -
+	 * 				[whiteboardname] is the name of the whiteboard that this client requested to open.
+	 * 				[width] and [height] are the dimensions of the whiteboard in pixels.
+	 * 				[preview] is the string representation of the pixels that are not white of a copy of the
+	 * 				part of the whiteboard in view that has been shrunk by a factor of [scale].  The full
+	 * 				resolution pixels follow as "redraw" messages once this client sends its viewport.
+	 * 		(16)"fillSpans [red] [green] [blue] [x] [y] [width] [height] [runs]" -
+	 * 				The server's indication that an area of the whiteboard that this client is connected to has
+	 * 				been filled with the color new Color([red], [green], [blue]).  The area lies in the [width] x
+	 * 				[height] rectangle whose top left hand corner is ([x], [y]).  [runs] consists of triples
+	 * 				[y] [xStart] [xEnd], each of which means that the pixels from ([xStart], [y]) to ([xEnd], [y])
+	 * 				have been filled.
+	 * 		(17)"layers [whiteboardname] [names]" -
+	 * 				[names] is the names of the layers of the whiteboard that this client is connected to, from
+	 * 				the bottom up, each separated by a space.
+	 * 		(18)"layer [k] [message]" -
+	 * 				[message] is a "drawLine", "redraw", "fillSpans" or "blit" message about the kth layer from the
+	 * 				bottom of the whiteboard that this client is connected to rather than its base layer.
+	 * 		(19)"blit [sx] [sy] [width] [height] [dx] [dy]" or "blit [sx] [sy] [width] [height] [dx] [dy] move" -
+	 * 				The server's indication that the pixels of the [width] x [height] rectangle whose top left hand
+	 * 				corner is ([sx], [sy]) have been copied so that their top left hand corner is at ([dx], [dy]).
+	 * 				With "move", the pixels of the rectangle that the copy does not cover have been emptied.
+	 * 		(20)"" or "Invalid input." -
+	 * 				The server's reply to a request that changed a whiteboard, or that it could not understand.
+	 * 		(21)"board [whiteboardname] [message]" -
+	 * 				[message] is an "alsoediting", "drawLine", "redraw", "fillSpans", "blit", "reset", "layers" or
+	 * 				"layer [k]" message about the whiteboard named [whiteboardname], which this client has open.
+	 * 				The messages of those kinds that do not start with "board" are taken to be about no whiteboard,
+	 * 				and the listener is passed null as the name of their whiteboard.
+	 * 		(22)"ping" -
+	 * 				The server's check that this client is still there, sent when this client has been silent for
+	 * 				a while.  It is answered with "pong" at once, without telling the listener; a client that does
+	 * 				not answer is disconnected by the server once its idle timeout has passed.
+	 * 		(23)"@[sequence] [message]" -
+	 * 				[message] is any of the messages above that the server sent on its own, numbered in the session of
+	 * 				this client.  Messages whose numbers are not greater than that of the last one handled were sent 
+	 * 				again when the session was resumed and had already been handled, so they are ignored.
+	 * 		(24)"session [token] [sequence]" or "resumed [username] [sequence]" -
+	 * 				The server's replies to startSession() and resume(), which record the token of the session and
+	 * 				the sequence number of its last message, and the username of this client.
+	 * 		(25)"resumeerror That session can no longer be resumed." -
+	 * 				The server's indication that this client has been logged out and must choose a username again,
+	 * 				which is passed to the listener as a rejected username.
+	 *
+	 * @param line a message from the server
+	 *
+	 */
+	public void handleMessage(final String line) {
+		String message = line;
+		if (line.matches("@\\d{1,18} .*")) {
+			int space = line.indexOf(' ');
+			long sequence = Long.parseLong(line.substring(1, space));
+			if (sequence <= lastSequence) {
+				return;
+			}
+			lastSequence = sequence;
+			message = line.substring(space + 1);
+		}
+
+		String input = message;
+		Request request = null;
+		if (message.matches("#\\d{1,18} .*")) {
+			int space = message.indexOf(' ');
+			input = message.substring(space + 1);
+			synchronized (this) {
+				request = pending.remove(Long.parseLong(message.substring(1, space)));
+			}
+		}
+
+		String reply = input;
+		String whiteboard = null;
+		if (input.matches("board \\S+ .+")) {
+			whiteboard = input.split(" ", 3)[1];
+			input = getStringAfterSecondSpace(input).substring(1);
+		}
+
+		String[] tokens = input.split(" ");
+		if (input.equals("ping") && request == null) {
+			synchronized (this) {
+				out.println("pong");
+			}
+		}
+		else if (tokens[0].equals("session") && tokens.length == 3 && request != null) {
+			// A numbered message that was sent after the reply may have been handled before it.
+			sessionToken = tokens[1];
+			lastSequence = Math.max(lastSequence, Long.parseLong(tokens[2]));
+		}
+		else if (tokens[0].equals("resumed") && tokens.length == 3 && request != null) {
+			username = tokens[1];
+			lastSequence = Math.max(lastSequence, Long.parseLong(tokens[2]));
+		}
+		else if (tokens[0].equals("resumeerror")) {
+			sessionToken = null;
+			listener.usernameRejected(getStringAfterSpace(input).trim());
+		}
+		else if (tokens[0].equals("usernameerror")) {
+			listener.usernameRejected(getStringAfterSpace(input).trim());
+		}
+		else if (tokens[0].equals("usernameCreated")) {
+			username = tokens[1];
+			listener.usernameAccepted(tokens[1]);
+		}
+		else if (tokens[0].equals("allUsersOnline")) {
+			listener.usersOnline(getStringAfterSpace(input).trim().split(" "));
+		}
+		else if (tokens[0].equals("userJoined") && tokens.length > 1) {
+			listener.usersJoined(getStringAfterSpace(input).trim().split(" "));
+		}
+		else if (tokens[0].equals("userLeft") && tokens.length > 1) {
+			listener.usersLeft(getStringAfterSpace(input).trim().split(" "));
+		}
+		else if (tokens[0].equals("whiteboardnameerror")) {
+			listener.whiteboardNameRejected(getStringAfterSpace(input).trim());
+		}
+		else if (tokens[0].equals("whiteboardcreated")) {
+			listener.whiteboardCreated(tokens[1]);
+		}
+		else if (tokens[0].equals("allwhiteboards")) {
+			listener.whiteboardsCreated(tokens.length > 1 ? getStringAfterSpace(input).trim().split(" ") : new String[0]);
+		}
+		else if (tokens[0].equals("whiteboards") && tokens.length > 2) {
+			String[] names = new String[tokens.length - 3];
+			System.arraycopy(tokens, 3, names, 0, names.length);
+			listener.whiteboardsListed(Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), names);
+		}
+		else if (tokens[0].equals("boardCreated") && tokens.length > 1) {
+			listener.whiteboardAdded(tokens[1]);
+		}
+		else if (tokens[0].equals("open")) {
+			String[] openTokens = input.split(" ", 5);
+			listener.whiteboardOpened(tokens[1], Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]),
+									  openTokens.length == 5 ? openTokens[4].trim() : "");
+		}
+		else if (tokens[0].equals("openpreview")) {
+			String[] previewTokens = input.split(" ", 6);
+			listener.previewOpened(tokens[1], Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]),
+								   Integer.parseInt(tokens[4]), previewTokens.length == 6 ? previewTokens[5].trim() : "");
+		}
+		else if (tokens[0].equals("alsoediting")) {
+			listener.usersEditing(whiteboard, tokens.length > 1 ? getStringAfterSpace(input).trim().split(" ") : new String[0]);
+		}
+		else if (tokens[0].equals("whiteboardopenerror")) {
+			listener.whiteboardOpenRejected(getStringAfterSpace(input).trim());
+		}
+		else if (tokens[0].equals("drawLine") || tokens[0].equals("redraw") || tokens[0].equals("fillSpans")
+				|| tokens[0].equals("blit")) {
+			handleDrawing(whiteboard, 0, input);
+		}
+		else if (tokens[0].equals("layer")) {
+			handleDrawing(whiteboard, Integer.parseInt(tokens[1]), getStringAfterSecondSpace(input).trim());
+		}
+		else if (tokens[0].equals("reset")) {
+			listener.whiteboardReset(whiteboard);
+		}
+		else if (tokens[0].equals("layers") && tokens.length > 1) {
+			String[] names = new String[tokens.length - 2];
+			System.arraycopy(tokens, 2, names, 0, names.length);
+			listener.layersChanged(tokens[1], names);
+		}
+
+		if (request != null) {
+			request.reply.complete(reply);
+		}
+	}
+
+	/**
+	 * Handles a message from the server that changes the pixels of one layer of a whiteboard that this
+	 * client has open, according to the specifications of the "drawLine", "redraw", "fillSpans" and "blit" 
+	 * messages in the handleMessage method's specification.
+	 *
+	 * @param whiteboard the name of the whiteboard, or null if the message did not name it
+	 * @param layer the index of the layer from the bottom
+	 * @param input the message from the server
+	 */
+	private void handleDrawing(final String whiteboard, final int layer, final String input) {
+		String[] tokens = input.split(" ");
+		if (tokens[0].equals("drawLine")) {
+			listener.linesDrawn(whiteboard, layer, tokens.length > 1 ? getStringAfterSpace(input).trim() : "");
+		}
+		else if (tokens[0].equals("redraw")) {
+			String[] redrawTokens = input.split(" ", 6);
+			listener.regionRedrawn(whiteboard, layer, Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+								   Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]),
+								   redrawTokens.length == 6 ? redrawTokens[5].trim() : "");
+		}
+		else if (tokens[0].equals("fillSpans")) {
+			String[] fillTokens = input.split(" ", 9);
+			int rgb = (Integer.parseInt(tokens[1]) << 16) | (Integer.parseInt(tokens[2]) << 8) | Integer.parseInt(tokens[3]);
+			listener.spansFilled(whiteboard, layer, rgb, fillTokens.length == 9 ? fillTokens[8].trim() : "");
+		}
+		else if (tokens[0].equals("blit")) {
+			listener.regionCopied(whiteboard, layer, Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]),
+								  Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]),
+								  Integer.parseInt(tokens[5]), Integer.parseInt(tokens[6]), tokens.length == 8);
+		}
+	}
+
+	/**
+	 * Returns the part of the specified string after the first space in the string.
+	 *
+	 * @param input must contain at least one space
+	 * @return the part of input after the first space in input, starting with that space
+	 */
+	protected static String getStringAfterSpace(final String input) {
+		return input.substring(input.indexOf(' '));
+	}
+
+	/**
+	 * Returns the part of the specified string after the second space in the string.
+	 *
+	 * @param input must contain at least two spaces
+	 * @return the part of input after the second space in input, starting with that space
+	 */
+	protected static String getStringAfterSecondSpace(final String input) {
+		return input.substring(input.indexOf(' ', input.indexOf(' ') + 1));
+	}
+
+	/**
+	 * A request that has been sent to the server, together with the future that its reply completes.
+	 */
+	private static class Request {
+		private final String command;
+		private final CompletableFuture<String> reply;
+
+		private Request(final String request) {
+			int space = request.indexOf(' ');
+			this.command = (space == -1) ? request : request.substring(0, space);
+			this.reply = new CompletableFuture<String>();
+		}
+
+	}
+}
@@ -0,0 +1,387 @@
+package client;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class WhiteboardConnectionTest {
+	private static final long TIMEOUT_SECONDS = 5;
+
+	/**
+	 * The following test methods test the WhiteboardConnection class against a scripted server that writes
+	 * the lines that a test tells it to.
+	 *
+	 * The testing strategy for send() and handleMessage():
+	 * 		Replies arrive in the order of the requests, with messages that the server sent on its own in between
+	 * 		A message that the server sent on its own of a kind that also replies to a pending request
+	 * 		Replies arrive in a different order than the requests, with many requests in flight
+	 * 		An empty reply, an error reply, and a reply with an ID that no pending request has
+	 * 		Messages about several open whiteboards, on the base layer and on other layers, and one that names
+	 * 		no whiteboard, in between changes in presence
+	 * 		Every message, reply or not, is passed to the listener, replies before their futures complete
+	 * 		The server closes the connection with requests pending, one of which is a logout
+	 * 		A request sent after the connection has been closed
+	 * 		A ping from the server, which is answered without telling the listener
+	 * 		A session that is resumed over a new connection after the first is lost, with a message that had
+	 * 		already been handled sent again, and one whose resumption is refused
+	 * 		A numbered message that arrives before the reply that starts the session
+	 * 		A logout sent as a plain request, after which the lost connection has no session to resume
+	 *
+	 */
+	@Test
+	public void repliesMatchedInOrderTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			CompletableFuture<String> username = connection.requestUsername("ann");
+			CompletableFuture<String> draw = connection.draw("board", 1, 1, 2, 2, 0x0000FF, 1);
+			CompletableFuture<String> list = connection.list();
+			CompletableFuture<String> page = connection.list(100, 50, "b");
+			assertEquals("#1 username ann", in.readLine());
+			assertEquals("#2 draw board 1 1 2 2 0 0 255 1", in.readLine());
+			assertEquals("#3 list", in.readLine());
+			assertEquals("#4 list 100 50 b", in.readLine());
+
+			out.println("allUsersOnline bob ann");
+			out.println("#1 usernameCreated ann");
+			out.println("board board drawLine 1 1 0 0 255 2 2 0 0 255 ");
+			out.println("boardCreated other");
+			out.println("#2 ");
+			out.println("#3 allwhiteboards board other");
+			out.println("#4 whiteboards 101 100 board ");
+
+			assertEquals("usernameCreated ann", username.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("", draw.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("allwhiteboards board other", list.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("whiteboards 101 100 board ", page.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("ann", connection.getUsername());
+
+			assertEquals("usersOnline bob ann", listener.next());
+			assertEquals("usernameAccepted ann", listener.next());
+			assertEquals("linesDrawn board 0 1 1 0 0 255 2 2 0 0 255", listener.next());
+			assertEquals("whiteboardAdded other", listener.next());
+			assertEquals("whiteboardsCreated board other", listener.next());
+			assertEquals("whiteboardsListed 101 100 board", listener.next());
+			server.close();
+		}
+	}
+
+	@Test
+	public void repliesMatchedByIdTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			PrintWriter out = new PrintWriter(server.getOutputStream(), false);
+
+			int count = 100;
+			ArrayList<CompletableFuture<String>> replies = new ArrayList<CompletableFuture<String>>();
+			for (int i = 0; i < count; i++) {
+				replies.add(connection.create("board" + i));
+			}
+			for (int i = 0; i < count; i++) {
+				assertEquals("#" + (i + 1) + " create board" + i, in.readLine());
+			}
+
+			// Every request is in flight before any of them is replied to, and the replies come back newest first.
+			for (int i = count - 1; i >= 0; i--) {
+				out.println("#" + (i + 1) + " whiteboardcreated board" + i);
+			}
+			out.flush();
+
+			for (int i = 0; i < count; i++) {
+				assertEquals("whiteboardcreated board" + i, replies.get(i).get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			}
+			for (int i = count - 1; i >= 0; i--) {
+				assertEquals("whiteboardCreated board" + i, listener.next());
+			}
+			server.close();
+		}
+	}
+
+	@Test
+	public void severalWhiteboardsTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			CompletableFuture<String> open = connection.open("left", 0, 0, 10, 10);
+			out.println("#1 openpreview left 800 600 1 ");
+			out.println("board left alsoediting ann bob");
+			out.println("board right drawLine 1 1 0 0 255 ");
+			out.println("board left layer 2 redraw 0 0 256 256 3 3 255 0 0 ");
+			out.println("board right blit 0 0 5 5 10 10 move");
+			out.println("board left reset");
+			out.println("userJoined cat dan");
+			out.println("userLeft bob");
+			out.println("board right layers right base notes");
+			out.println("reset");
+
+			assertEquals("openpreview left 800 600 1 ", open.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("previewOpened left 800 600 1", listener.next());
+			assertEquals("usersEditing left ann bob", listener.next());
+			assertEquals("linesDrawn right 0 1 1 0 0 255", listener.next());
+			assertEquals("regionRedrawn left 2 0 0 256 256 3 3 255 0 0", listener.next());
+			assertEquals("regionCopied right 0 0 0 5 5 10 10 true", listener.next());
+			assertEquals("whiteboardReset left", listener.next());
+			assertEquals("usersJoined cat dan", listener.next());
+			assertEquals("usersLeft bob", listener.next());
+			assertEquals("layersChanged right base notes", listener.next());
+			assertEquals("whiteboardReset null", listener.next());
+			server.close();
+		}
+	}
+
+	@Test
+	public void errorReplyTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			CompletableFuture<String> reset = connection.reset("missing");
+			CompletableFuture<String> open = connection.open("board");
+			out.println("#1 Invalid input.");
+			out.println("board board layer 1 fillSpans 255 0 0 0 0 2 1 0 0 1 ");
+			out.println("#99 ");
+			out.println("#2 whiteboardopenerror A whiteboard with that name has not been created.");
+
+			assertEquals("Invalid input.", reset.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("whiteboardopenerror A whiteboard with that name has not been created.",
+						 open.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("spansFilled board 1 ff0000 0 0 1", listener.next());
+			assertEquals("whiteboardOpenRejected A whiteboard with that name has not been created.", listener.next());
+			server.close();
+		}
+	}
+
+	@Test
+	public void pingAnsweredTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			out.println("ping");
+			assertEquals("pong", in.readLine());
+			CompletableFuture<String> ping = connection.send("ping");
+			assertEquals("#1 ping", in.readLine());
+			out.println("boardCreated other");
+			out.println("#1 pong");
+
+			assertEquals("pong", ping.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("whiteboardAdded other", listener.next());
+			server.close();
+		}
+	}
+
+	@Test
+	public void resumeTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			connection.requestUsername("ann");
+			assertEquals("#1 username ann", in.readLine());
+			out.println("#1 usernameCreated ann");
+			assertEquals("usernameAccepted ann", listener.next());
+			CompletableFuture<String> session = connection.startSession();
+			assertEquals("#2 session ann", in.readLine());
+			out.println("#2 session 0123abcd 0");
+			assertEquals("session 0123abcd 0", session.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("0123abcd", connection.getSessionToken());
+
+			out.println("@1 boardCreated a");
+			out.println("@2 board a reset");
+			assertEquals("whiteboardAdded a", listener.next());
+			assertEquals("whiteboardReset a", listener.next());
+			assertEquals(2, connection.getLastSequence());
+			server.close();
+			assertEquals("disconnected", listener.next());
+
+			// The new connection only passes on the messages that the lost one had not handled.
+			WhiteboardConnection resumed = connection.resume();
+			server = serverSocket.accept();
+			in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			out = new PrintWriter(server.getOutputStream(), true);
+			assertEquals("#1 resume 0123abcd 2", in.readLine());
+			out.println("@2 board a reset");
+			out.println("@3 boardCreated b");
+			out.println("#1 resumed ann 3");
+			assertEquals("whiteboardAdded b", listener.next());
+			CompletableFuture<String> list = resumed.list();
+			assertEquals("#2 list", in.readLine());
+			out.println("#2 allwhiteboards a b");
+			assertEquals("allwhiteboards a b", list.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("whiteboardsCreated a b", listener.next());
+			assertEquals("ann", resumed.getUsername());
+			assertEquals(3, resumed.getLastSequence());
+			server.close();
+			assertEquals("disconnected", listener.next());
+
+			// A session that the server has given up on leaves the client without a username.
+			WhiteboardConnection refused = resumed.resume();
+			server = serverSocket.accept();
+			in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			out = new PrintWriter(server.getOutputStream(), true);
+			assertEquals("#1 resume 0123abcd 3", in.readLine());
+			out.println("#1 resumeerror That session can no longer be resumed.");
+			assertEquals("usernameRejected That session can no longer be resumed.", listener.next());
+			assertNull(refused.getSessionToken());
+			server.close();
+		}
+	}
+
+	@Test
+	public void logoutEndsSessionTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			PrintWriter out = new PrintWriter(server.getOutputStream(), true);
+
+			// The server numbered a message after the session's last one before it replied.
+			CompletableFuture<String> session = connection.startSession();
+			assertEquals("#1 session null", in.readLine());
+			out.println("@1 boardCreated a");
+			out.println("#1 session 0123abcd 0");
+			assertEquals("session 0123abcd 0", session.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals("whiteboardAdded a", listener.next());
+			assertEquals(1, connection.getLastSequence());
+			assertEquals("0123abcd", connection.getSessionToken());
+
+			// However the logout is sent, the connection that the server then closes is not one to resume.
+			connection.send("logout ann");
+			assertEquals("#2 logout ann", in.readLine());
+			assertNull(connection.getSessionToken());
+			server.close();
+			assertEquals("disconnected", listener.next());
+			assertNull(connection.getSessionToken());
+		}
+	}
+
+	@Test
+	public void closedConnectionTest() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			RecordingListener listener = new RecordingListener();
+			WhiteboardConnection connection = connect(serverSocket, listener);
+			Socket server = serverSocket.accept();
+
+			CompletableFuture<String> create = connection.create("board", 10, 10);
+			CompletableFuture<String> logout = connection.logout();
+			BufferedReader in = new BufferedReader(new InputStreamReader(server.getInputStream()));
+			assertEquals("#1 create board 10 10", in.readLine());
+			assertEquals("#2 logout null", in.readLine());
+			server.close();
+
+			assertEquals("", logout.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			try {
+				create.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				fail("the create request was never replied to");
+			}
+			catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+			}
+			assertEquals("disconnected", listener.next());
+
+			assertTrue(connection.list().isCompletedExceptionally());
+		}
+	}
+
+	/**
+	 * Connects a WhiteboardConnection to a server socket and starts it.
+	 */
+	private static WhiteboardConnection connect(final ServerSocket serverSocket, final WhiteboardListener listener)
+			throws IOException {
+		WhiteboardConnection connection = new WhiteboardConnection(new Socket("localhost", serverSocket.getLocalPort()),
+																	listener);
+		connection.start();
+		return connection;
+	}
+
+	/**
+	 * A WhiteboardListener that records every call as a line, e.g. "linesDrawn [whiteboard] 0 [pixels]".
+	 */
+	private static class RecordingListener implements WhiteboardListener {
+		private final LinkedBlockingQueue<String> calls = new LinkedBlockingQueue<String>();
+
+		/**
+		 * Returns the next call that was recorded, waiting for it if need be.
+		 */
+		private String next() throws InterruptedException {
+			return calls.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+
+		private void record(final String call) {
+			calls.add(call.trim());
+		}
+
+		public void usernameAccepted(String username) { record("usernameAccepted " + username); }
+		public void usernameRejected(String message) { record("usernameRejected " + message); }
+		public void usersOnline(String[] usernames) { record("usersOnline " + String.join(" ", usernames)); }
+		public void usersJoined(String[] usernames) { record("usersJoined " + String.join(" ", usernames)); }
+		public void usersLeft(String[] usernames) { record("usersLeft " + String.join(" ", usernames)); }
+		public void whiteboardCreated(String name) { record("whiteboardCreated " + name); }
+		public void whiteboardNameRejected(String message) { record("whiteboardNameRejected " + message); }
+		public void whiteboardsCreated(String[] names) { record("whiteboardsCreated " + String.join(" ", names)); }
+		public void whiteboardsListed(int total, int offset, String[] names) {
+			record("whiteboardsListed " + total + " " + offset + " " + String.join(" ", names));
+		}
+		public void whiteboardAdded(String name) { record("whiteboardAdded " + name); }
+		public void whiteboardOpened(String name, int width, int height, String pixels) {
+			record("whiteboardOpened " + name + " " + width + " " + height + " " + pixels);
+		}
+		public void previewOpened(String name, int width, int height, int scale, String preview) {
+			record("previewOpened " + name + " " + width + " " + height + " " + scale + " " + preview);
+		}
+		public void whiteboardOpenRejected(String message) { record("whiteboardOpenRejected " + message); }
+		public void usersEditing(String whiteboard, String[] usernames) {
+			record("usersEditing " + whiteboard + " " + String.join(" ", usernames));
+		}
+		public void linesDrawn(String whiteboard, int layer, String pixels) {
+			record("linesDrawn " + whiteboard + " " + layer + " " + pixels);
+		}
+		public void regionRedrawn(String whiteboard, int layer, int x, int y, int width, int height, String pixels) {
+			record("regionRedrawn " + whiteboard + " " + layer + " " + x + " " + y + " " + width + " " + height + " " + pixels);
+		}
+		public void spansFilled(String whiteboard, int layer, int rgb, String runs) {
+			record("spansFilled " + whiteboard + " " + layer + " " + Integer.toHexString(rgb) + " " + runs);
+		}
+		public void regionCopied(String whiteboard, int layer, int sx, int sy, int width, int height, int dx, int dy,
+								 boolean move) {
+			record("regionCopied " + whiteboard + " " + layer + " " + sx + " " + sy + " " + width + " " + height + " " + dx
+				   + " " + dy + " " + move);
+		}
+		public void whiteboardReset(String whiteboard) { record("whiteboardReset " + whiteboard); }
+		public void layersChanged(String whiteboard, String[] names) {
+			record("layersChanged " + whiteboard + " " + String.join(" ", names));
+		}
+		public void disconnected() { record("disconnected"); }
+	}
+}
@@ -0,0 +1,199 @@
+package client;
+
+/**
+ * WhiteboardListener is notified of the messages that a WhiteboardConnection receives from the server, one
+ * method per kind of message, both those that reply to its requests and those that the server sends on its
+ * own when other clients change something.  The methods are called one at a time, in the order that the
+ * messages arrive, on the thread that reads from the server, so they must not block for long.  A reply is
+ * passed to the listener before the future of the request that it replies to is completed.
+ *
+ * A client may have several whiteboards open over the one connection, so every method about an open whiteboard
+ * is told which whiteboard it is about.
+ *
+ * The messages are described in WhiteboardConnection.handleMessage().
+ *
+ */
+public interface WhiteboardListener {
+
+	/**
+	 * Called when the server has accepted the username that this client asked for ("usernameCreated").
+	 *
+	 * @param username the username of this client from now on
+	 */
+	public void usernameAccepted(String username);
+
+	/**
+	 * Called when the server has rejected the username that this client asked for ("usernameerror"), or the 
+	 * session that this client tried to resume, which leaves it without a username ("resumeerror").
+	 *
+	 * @param message the reason given by the server
+	 */
+	public void usernameRejected(String message);
+
+	/**
+	 * Called with the usernames of every client connected to the server once this client's username has been
+	 * accepted ("allUsersOnline").
+	 *
+	 * @param usernames the usernames of every client connected to the server
+	 */
+	public void usersOnline(String[] usernames);
+
+	/**
+	 * Called when clients have connected to the server ("userJoined").  Some of them may already have been
+	 * passed to usersOnline() or usersJoined().
+	 *
+	 * @param usernames the usernames of the clients that have connected
+	 */
+	public void usersJoined(String[] usernames);
+
+	/**
+	 * Called when clients have disconnected from the server ("userLeft").  Some of them may never have been
+	 * passed to usersOnline() or usersJoined().
+	 *
+	 * @param usernames the usernames of the clients that have disconnected
+	 */
+	public void usersLeft(String[] usernames);
+
+	/**
+	 * Called when the server has created the whiteboard that this client asked for ("whiteboardcreated").
+	 *
+	 * @param name the name of the new whiteboard
+	 */
+	public void whiteboardCreated(String name);
+
+	/**
+	 * Called when the server has refused to create the whiteboard that this client asked for ("whiteboardnameerror").
+	 *
+	 * @param message the reason given by the server
+	 */
+	public void whiteboardNameRejected(String message);
+
+	/**
+	 * Called with the names of the whiteboards on the server, in reply to a "list" request ("allwhiteboards").
+	 *
+	 * @param names the names of every whiteboard on the server in the order that they were created, which is
+	 * 		  empty if there are none
+	 */
+	public void whiteboardsCreated(String[] names);
+
+	/**
+	 * Called with one page of the names of the whiteboards on the server, in reply to a "list [offset] [limit]"
+	 * request ("whiteboards").
+	 *
+	 * @param total the number of whiteboards that the request asked for a page of
+	 * @param offset the index of the first name of the page among them, in lexicographic order
+	 * @param names the names of the page in lexicographic order, which is empty if offset is not less than total
+	 */
+	public void whiteboardsListed(int total, int offset, String[] names);
+
+	/**
+	 * Called when any client has created a whiteboard ("boardCreated").
+	 *
+	 * @param name the name of the new whiteboard
+	 */
+	public void whiteboardAdded(String name);
+
+	/**
+	 * Called when the server has opened a whiteboard in full for this client ("open").
+	 *
+	 * @param name the name of the whiteboard
+	 * @param width the width of the whiteboard in pixels
+	 * @param height the height of the whiteboard in pixels
+	 * @param pixels the string representation of the pixels of its base layer that are not white
+	 */
+	public void whiteboardOpened(String name, int width, int height, String pixels);
+
+	/**
+	 * Called when the server has opened a whiteboard progressively for this client ("openpreview").
+	 *
+	 * @param name the name of the whiteboard
+	 * @param width the width of the whiteboard in pixels
+	 * @param height the height of the whiteboard in pixels
+	 * @param scale the number of pixels of the whiteboard across each pixel of the preview
+	 * @param preview the string representation of the pixels of the preview that are not white
+	 */
+	public void previewOpened(String name, int width, int height, int scale, String preview);
+
+	/**
+	 * Called when the server could not find the whiteboard named in a request ("whiteboardopenerror").
+	 *
+	 * @param message the reason given by the server
+	 */
+	public void whiteboardOpenRejected(String message);
+
+	/**
+	 * Called when a client has opened or closed a whiteboard that this client has open ("alsoediting").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param usernames the usernames of every client that has the whiteboard open
+	 */
+	public void usersEditing(String whiteboard, String[] usernames);
+
+	/**
+	 * Called when pixels of a layer of an open whiteboard have changed color ("drawLine").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param layer the index of the layer from the bottom
+	 * @param pixels the string representation of the pixels that changed color
+	 */
+	public void linesDrawn(String whiteboard, int layer, String pixels);
+
+	/**
+	 * Called when a rectangle of a layer of an open whiteboard has come into view or has changed ("redraw").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param layer the index of the layer from the bottom
+	 * @param x the x-coordinate of the top left hand corner of the rectangle
+	 * @param y the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle in pixels
+	 * @param height the height of the rectangle in pixels
+	 * @param pixels the string representation of the pixels of the rectangle that have been drawn on
+	 */
+	public void regionRedrawn(String whiteboard, int layer, int x, int y, int width, int height, String pixels);
+
+	/**
+	 * Called when runs of pixels of a layer of an open whiteboard have been filled with one color ("fillSpans").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param layer the index of the layer from the bottom
+	 * @param rgb the color of the runs, packed as 0xRRGGBB
+	 * @param runs "[y1] [xStart1] [xEnd1] [y2] [xStart2] [xEnd2] ...", each triple meaning that the pixels from
+	 * 		  ([xStart], [y]) to ([xEnd], [y]) have been filled
+	 */
+	public void spansFilled(String whiteboard, int layer, int rgb, String runs);
+
+	/**
+	 * Called when a rectangle of pixels of a layer of an open whiteboard has been copied or moved ("blit").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param layer the index of the layer from the bottom
+	 * @param sx the x-coordinate of the top left hand corner of the rectangle
+	 * @param sy the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle in pixels
+	 * @param height the height of the rectangle in pixels
+	 * @param dx the x-coordinate that the top left hand corner has been copied to
+	 * @param dy the y-coordinate that the top left hand corner has been copied to
+	 * @param move true if the pixels of the rectangle that the copy does not cover have been emptied
+	 */
+	public void regionCopied(String whiteboard, int layer, int sx, int sy, int width, int height, int dx, int dy, boolean move);
+
+	/**
+	 * Called when an open whiteboard has been cleared ("reset").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 */
+	public void whiteboardReset(String whiteboard);
+
+	/**
+	 * Called with the names of the layers of a whiteboard ("layers").
+	 *
+	 * @param whiteboard the name of the whiteboard
+	 * @param names the names of its layers from the bottom up
+	 */
+	public void layersChanged(String whiteboard, String[] names);
+
+	/**
+	 * Called once the connection to the server has been closed, after which no other method is called.
+	 */
+	public void disconnected();
+}
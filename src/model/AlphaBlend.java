@@ -0,0 +1,81 @@
+package model;
+
+/**
+ * AlphaBlend paints translucent colors over opaque pixels.  A color whose opacity is alpha, 0 <= alpha <= 255,
+ * painted over a pixel keeps alpha / 255 of itself and lets the rest of the pixel show through, each channel
+ * being rounded down.  Pixels that are TRANSPARENT are blended as if they were white.
+ *
+ * blend() works on one channel at a time and is the reference for blendRow(), which blends whole rows of
+ * pixels with no branches by working on the red and blue channels of a pixel at once, in the two halves of
+ * one int, and on the green channel in another.  Every product fits in the 16 bits of its half, so no channel
+ * carries into the next one and both give exactly the same pixels.
+ *
+ * Thread safety Argument:
+ * 		AlphaBlend has no state of its own.
+ *
+ */
+public class AlphaBlend {
+	/** The opacity of a color that hides the pixels under it completely. */
+	public static final int OPAQUE = 255;
+
+	/**
+	 * AlphaBlend only has static methods.
+	 */
+	private AlphaBlend() {
+	}
+
+	/**
+	 * Paints a translucent color over a pixel, one channel at a time.
+	 *
+	 * @param pixel the packed 0xRRGGBB color of the pixel, or TRANSPARENT
+	 * @param rgb the packed 0xRRGGBB color painted over it
+	 * @param alpha the opacity of rgb, 0 <= alpha <= OPAQUE
+	 * @return the packed 0xRRGGBB color of the pixel after rgb has been painted over it
+	 */
+	public static int blend(final int pixel, final int rgb, final int alpha) {
+		int weight = toWeight(alpha);
+		int blended = 0;
+
+		for (int shift = 0; shift <= 16; shift += 8) {
+			int under = (pixel >> shift) & 0xFF, over = (rgb >> shift) & 0xFF;
+			blended |= ((over * weight + under * (256 - weight)) >> 8) << shift;
+		}
+
+		return blended;
+	}
+
+	/**
+	 * Paints a translucent color over part of a row of pixels, two channels per multiplication.
+	 *
+	 * @param row the packed 0xRRGGBB colors of the pixels, some of which may be TRANSPARENT
+	 * @param from the index in row of the first pixel to paint over
+	 * @param to the index in row after the last pixel to paint over, from <= to <= row.length
+	 * @param rgb the packed 0xRRGGBB color painted over the pixels
+	 * @param alpha the opacity of rgb, 0 <= alpha <= OPAQUE
+	 * @modifies row[i] becomes blend(row[i], rgb, alpha) for every from <= i < to
+	 */
+	public static void blendRow(final int[] row, final int from, final int to, final int rgb, final int alpha) {
+		int weight = toWeight(alpha), rest = 256 - weight;
+
+		// The share of the painted color is the same for every pixel.
+		int overRedBlue = (rgb & 0xFF00FF) * weight;
+		int overGreen = (rgb & 0x00FF00) * weight;
+
+		for (int i = from; i < to; i++) {
+			int pixel = row[i];
+			int redBlue = ((overRedBlue + (pixel & 0xFF00FF) * rest) >>> 8) & 0xFF00FF;
+			int green = ((overGreen + (pixel & 0x00FF00) * rest) >>> 8) & 0x00FF00;
+			row[i] = redBlue | green;
+		}
+	}
+
+	/**
+	 * Returns the weight out of 256 that the color painted over a pixel has in the blend.
+	 *
+	 * @param alpha an opacity, 0 <= alpha <= OPAQUE
+	 * @return alpha scaled from [0, 255] to [0, 256], so that an opaque color replaces the pixel exactly
+	 */
+	private static int toWeight(final int alpha) {
+		return alpha + (alpha >> 7);
+	}
+}
@@ -0,0 +1,52 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AlphaBlendTest {
+
+	/**
+	 * The following test methods test the blend() and blendRow() methods.
+	 *
+	 * The testing strategy for blend() and blendRow():
+	 * 		An opaque color, which replaces the pixel
+	 * 		A color with no opacity, which leaves the pixel as it is
+	 * 		Half opacity over black and over white
+	 * 		A TRANSPARENT pixel, which is blended as white
+	 * 		blendRow() gives the same pixels as blend() for random pixels, colors and opacities, and
+	 * 			leaves the pixels outside of its range alone
+	 *
+	 */
+	@Test
+	public void blendTest() {
+		int red = 0xFF0000, blue = 0x0000FF;
+		assertEquals(red, AlphaBlend.blend(blue, red, AlphaBlend.OPAQUE));
+		assertEquals(blue, AlphaBlend.blend(blue, red, 0));
+		assertEquals(0x800000, AlphaBlend.blend(0x000000, red, 128));
+		assertEquals(0xFF7E7E, AlphaBlend.blend(TiledRaster.WHITE, red, 128));
+		assertEquals(0xFF7E7E, AlphaBlend.blend(TiledRaster.TRANSPARENT, red, 128));
+	}
+
+	@Test
+	public void blendRowTest() {
+		Random random = new Random(6005);
+		int[] row = new int[256];
+		for (int round = 0; round < 1000; round++) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = random.nextInt(8) == 0 ? TiledRaster.TRANSPARENT : random.nextInt(1 << 24);
+			}
+			int[] original = row.clone();
+			int rgb = random.nextInt(1 << 24), alpha = random.nextInt(AlphaBlend.OPAQUE + 1);
+			int from = random.nextInt(row.length), to = from + random.nextInt(row.length - from + 1);
+
+			AlphaBlend.blendRow(row, from, to, rgb, alpha);
+			for (int i = 0; i < row.length; i++) {
+				int expected = (i >= from && i < to) ? AlphaBlend.blend(original[i], rgb, alpha) : original[i];
+				assertEquals(expected, row[i]);
+			}
+		}
+	}
+}
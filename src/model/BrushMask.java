@@ -0,0 +1,109 @@
+package model;
+
+/**
+ * BrushMask is an immutable datatype that represents the round tip of the brush used to draw lines of
+ * a given thickness.  The tip is stored as one horizontal span per row, so stamping it costs one
+ * operation per row instead of one per pixel.  The masks of the thicknesses that the client lets users
+ * choose are computed once and shared.
+ *
+ * Abstraction Function:
+ * 		Each BrushMask is represented by:
+ * 			radius:    the number of rows of the tip above (and below) its center row
+ * 			halfSpans: the row of the tip that is dy rows below its center covers the pixels from
+ * 					   x - halfSpans[dy + radius] to x + halfSpans[dy + radius], where x is the column
+ * 					   of the center of the tip
+ *
+ * Representation Invariant:
+ * 		radius >= 0 and halfSpans.length == 2 * radius + 1
+ * 		halfSpans[dy + radius] is the largest h such that h * h + dy * dy <= radius * radius + radius,
+ * 		i.e. the tip is the disk of radius radius + 1/2 around its center.
+ *
+ * Thread safety Argument:
+ * 		BrushMask is immutable and the shared masks are all created before the class is used.
+ *
+ */
+public class BrushMask {
+	/** The largest thickness whose mask is shared; this is the largest thickness that the client offers. */
+	public static final int MAX_CACHED_THICKNESS = 30;
+
+	private static final BrushMask[] CACHE = new BrushMask[MAX_CACHED_THICKNESS + 1];
+	static {
+		for (int thickness = 0; thickness <= MAX_CACHED_THICKNESS; thickness++) {
+			CACHE[thickness] = new BrushMask(thickness / 2);
+		}
+	}
+
+	private final int radius;
+	private final int[] halfSpans;
+
+	/**
+	 * Creates the BrushMask of a disk.
+	 *
+	 * @param radius the radius of the disk, radius >= 0
+	 */
+	private BrushMask(final int radius) {
+		this.radius = radius;
+		this.halfSpans = new int[2 * radius + 1];
+
+		// The squares overflow an int once the radius is past 46340.
+		long limit = (long) radius * radius + radius;
+		int h = radius;
+		for (int dy = 0; dy <= radius; dy++) {
+			while ((long) h * h + (long) dy * dy > limit) {
+				h--;
+			}
+			halfSpans[radius - dy] = h;
+			halfSpans[radius + dy] = h;
+		}
+	}
+
+	/**
+	 * Returns the BrushMask of a thickness.
+	 *
+	 * @param thickness the thickness of a line in pixels
+	 * @return the mask of the tip of a brush that draws lines of thickness pixels, whose radius is
+	 * 		   thickness / 2, or 0 if thickness is negative
+	 */
+	public static BrushMask forThickness(final int thickness) {
+		return forThickness(thickness, Integer.MAX_VALUE / 2 - 1);
+	}
+
+	/**
+	 * Returns the BrushMask of a thickness, no larger than needed to cover a whiteboard.
+	 *
+	 * @param thickness the thickness of a line in pixels
+	 * @param maxRadius the largest radius that can make a difference, e.g. the length of the diagonal of the
+	 * 		  whiteboard that the line is drawn on, maxRadius >= 0
+	 * @return the mask of the tip of a brush that draws lines of thickness pixels, whose radius is the smaller
+	 * 		   of thickness / 2 and maxRadius, or 0 if thickness is negative
+	 */
+	public static BrushMask forThickness(final int thickness, final int maxRadius) {
+		if (thickness < 0) {
+			return CACHE[0];
+		}
+		if (thickness <= MAX_CACHED_THICKNESS && thickness / 2 <= maxRadius) {
+			return CACHE[thickness];
+		}
+		return new BrushMask(Math.min(thickness / 2, maxRadius));
+	}
+
+	/**
+	 * Returns the radius of this mask.
+	 *
+	 * @return the number of rows of the tip above its center row, which is also the number below it
+	 */
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Returns the half width of a row of this mask.
+	 *
+	 * @param dy the row relative to the center row of the tip, -radius <= dy <= radius
+	 * @return the number of pixels of the row of the tip that is dy rows below its center to the right of
+	 * 		   (and to the left of) the column of its center
+	 */
+	public int getHalfSpan(final int dy) {
+		return halfSpans[dy + radius];
+	}
+}
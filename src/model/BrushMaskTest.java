@@ -0,0 +1,79 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BrushMaskTest {
+	
+	/**
+	 * The following test methods test the forThickness(), getRadius() and getHalfSpan() methods.
+	 * 
+	 * The testing strategy for forThickness(), getRadius() and getHalfSpan():
+	 * 		Thicknesses 1, 2 and 3, whose masks are squares
+	 * 		A thickness whose mask is a disk
+	 * 		Every thickness that is shared is symmetric and within the disk
+	 * 		A thickness larger than the largest that is shared
+	 * 		A thickness whose squared radius overflows an int, with and without a largest radius
+	 * 
+	 */
+	@Test
+	public void smallThicknessTest() {
+		assertEquals(0, BrushMask.forThickness(1).getRadius());
+		assertEquals(0, BrushMask.forThickness(1).getHalfSpan(0));
+		assertEquals(1, BrushMask.forThickness(2).getRadius());
+		
+		BrushMask three = BrushMask.forThickness(3);
+		for (int dy = -1; dy <= 1; dy++) {
+			assertEquals(1, three.getHalfSpan(dy));
+		}
+	}
+	
+	@Test
+	public void diskTest() {
+		BrushMask seven = BrushMask.forThickness(7);
+		int[] expected = {1, 2, 3, 3, 3, 2, 1};
+		for (int dy = -3; dy <= 3; dy++) {
+			assertEquals(expected[dy + 3], seven.getHalfSpan(dy));
+		}
+		
+		for (int thickness = 1; thickness <= BrushMask.MAX_CACHED_THICKNESS; thickness++) {
+			BrushMask brush = BrushMask.forThickness(thickness);
+			int radius = brush.getRadius();
+			assertEquals(thickness / 2, radius);
+			assertEquals(radius, brush.getHalfSpan(0));
+			
+			for (int dy = 1; dy <= radius; dy++) {
+				int h = brush.getHalfSpan(dy);
+				assertEquals(h, brush.getHalfSpan(-dy));
+				assertTrue(h * h + dy * dy <= radius * radius + radius);
+				assertTrue((h + 1) * (h + 1) + dy * dy > radius * radius + radius);
+			}
+		}
+	}
+	
+	@Test
+	public void largeThicknessTest() {
+		BrushMask brush = BrushMask.forThickness(101);
+		assertEquals(50, brush.getRadius());
+		assertEquals(50, brush.getHalfSpan(0));
+		assertEquals(7, brush.getHalfSpan(50));
+	}
+	
+	@Test
+	public void hugeThicknessTest() {
+		BrushMask clamped = BrushMask.forThickness(Integer.MAX_VALUE, 1000);
+		assertEquals(1000, clamped.getRadius());
+		assertEquals(1000, clamped.getHalfSpan(0));
+		assertEquals(BrushMask.forThickness(2001).getHalfSpan(1000), clamped.getHalfSpan(1000));
+		
+		BrushMask brush = BrushMask.forThickness(92682);
+		assertEquals(46341, brush.getRadius());
+		assertEquals(46341, brush.getHalfSpan(0));
+		assertEquals(215, brush.getHalfSpan(46341));
+		for (int dy = 0; dy <= 46341; dy += 1000) {
+			long h = brush.getHalfSpan(dy);
+			assertTrue(h >= 0 && h * h + (long) dy * dy <= 46341L * 46341 + 46341);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * FloodFill recolors the connected area of same-colored pixels of a raster that contains a given pixel,
+ * one horizontal run of pixels at a time.  The pixels still to be visited are kept on an explicit stack
+ * rather than the call stack, so the size of the area that can be filled is not limited by the depth
+ * of recursion.
+ *
+ * Two pixels are connected if they share an edge and have the same color.
+ *
+ * Thread safety Argument:
+ * 		FloodFill has no state of its own.  The raster must be guarded by the lock of the object that owns it.
+ *
+ */
+public class FloodFill {
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * FloodFill only has static methods.
+	 */
+	private FloodFill() {
+	}
+
+	/**
+	 * Fills the area of a raster that contains a pixel with a color.
+	 *
+	 * @param raster the raster
+	 * @param x the x-coordinate of the pixel, 0 <= x < width of raster
+	 * @param y the y-coordinate of the pixel, 0 <= y < height of raster
+	 * @param rgb the packed 0xRRGGBB color of the fill
+	 * @return the runs of pixels that were recolored, as consecutive triples [y] [xStart] [xEnd] that each
+	 * 		   mean that the pixels from (xStart, y) to (xEnd, y) were recolored; empty if the pixel already
+	 * 		   had the color rgb.  No two runs share a pixel.
+	 * @modifies colors every pixel of raster that is connected to (x, y) with rgb
+	 */
+	public static int[] fill(final TiledRaster raster, final int x, final int y, final int rgb) {
+		int target = raster.getRGB(x, y);
+		if (target == rgb) {
+			return new int[0];
+		}
+
+		int width = raster.getWidth(), height = raster.getHeight();
+		int[] runs = new int[3 * INITIAL_CAPACITY];
+		int runCount = 0;
+		int[] seeds = new int[2 * INITIAL_CAPACITY];
+		int seedCount = 0;
+
+		seeds[seedCount++] = x;
+		seeds[seedCount++] = y;
+
+		while (seedCount > 0) {
+			int seedY = seeds[--seedCount];
+			int seedX = seeds[--seedCount];
+			if (raster.getRGB(seedX, seedY) != target) {
+				continue; // Filled since it was pushed.
+			}
+
+			// Grow the seed into the whole run of target pixels that contains it, and fill it.
+			int start = seedX, end = seedX;
+			while (start > 0 && raster.getRGB(start - 1, seedY) == target) {
+				start--;
+			}
+			while (end < width - 1 && raster.getRGB(end + 1, seedY) == target) {
+				end++;
+			}
+			raster.fillRun(seedY, start, end, rgb);
+
+			if (runCount + 3 > runs.length) {
+				runs = Arrays.copyOf(runs, 2 * runs.length);
+			}
+			runs[runCount++] = seedY;
+			runs[runCount++] = start;
+			runs[runCount++] = end;
+
+			// Push one seed for every run of target pixels that touches this run from above or below.
+			for (int neighborY = seedY - 1; neighborY <= seedY + 1; neighborY += 2) {
+				if (neighborY < 0 || neighborY >= height) {
+					continue;
+				}
+
+				int i = start;
+				while (i <= end) {
+					if (raster.getRGB(i, neighborY) != target) {
+						i++;
+						continue;
+					}
+
+					if (seedCount + 2 > seeds.length) {
+						seeds = Arrays.copyOf(seeds, 2 * seeds.length);
+					}
+					seeds[seedCount++] = i;
+					seeds[seedCount++] = neighborY;
+
+					while (i <= end && raster.getRGB(i, neighborY) == target) {
+						i++;
+					}
+				}
+			}
+		}
+
+		return Arrays.copyOf(runs, runCount);
+	}
+}
@@ -0,0 +1,110 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class FloodFillTest {
+	private static final int RED = 0xFF0000;
+	private static final int BLUE = 0x0000FF;
+	
+	/**
+	 * The following test methods test the fill() method.
+	 * 
+	 * The testing strategy for fill():
+	 * 		A pixel that already has the color of the fill
+	 * 		An entirely white raster
+	 * 		An area bounded by a wall, which must not leak around the wall or through a diagonal gap
+	 * 		An area shaped like a U, which has two runs in some rows and must be reached from below
+	 * 		An area much larger than one tile
+	 * 
+	 */
+	@Test
+	public void sameColorTest() {
+		TiledRaster raster = new TiledRaster(10, 10);
+		assertEquals(0, FloodFill.fill(raster, 3, 3, TiledRaster.WHITE).length);
+		assertFalse(raster.hasTile(0, 0));
+	}
+	
+	@Test
+	public void wholeRasterTest() {
+		TiledRaster raster = new TiledRaster(10, 7);
+		int[] runs = FloodFill.fill(raster, 4, 3, RED);
+		
+		assertEquals(3 * 7, runs.length);
+		assertEquals(70, countPixels(raster, RED));
+		for (int i = 0; i < runs.length; i += 3) {
+			assertEquals(0, runs[i + 1]);
+			assertEquals(9, runs[i + 2]);
+		}
+	}
+	
+	@Test
+	public void wallTest() {
+		// A diagonal wall from (0, 5) to (5, 0), whose pixels only touch at their corners.
+		TiledRaster raster = new TiledRaster(10, 10);
+		for (int i = 0; i <= 5; i++) {
+			raster.setRGB(i, 5 - i, BLUE);
+		}
+		
+		int[] runs = FloodFill.fill(raster, 0, 0, RED);
+		
+		// The triangle above the wall has 5 + 4 + 3 + 2 + 1 pixels.
+		assertEquals(15, countPixels(raster, RED));
+		assertEquals(3 * 5, runs.length);
+		assertEquals(TiledRaster.WHITE, raster.getRGB(9, 9));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(5, 5));
+	}
+	
+	@Test
+	public void uShapeTest() {
+		// Two blue columns joined by a blue row at the bottom, filled from inside the right column's side.
+		TiledRaster raster = new TiledRaster(7, 6);
+		for (int y = 0; y < 6; y++) {
+			for (int x = 0; x < 7; x++) {
+				raster.setRGB(x, y, BLUE);
+			}
+		}
+		for (int y = 0; y < 5; y++) {
+			raster.setRGB(1, y, TiledRaster.WHITE);
+			raster.setRGB(5, y, TiledRaster.WHITE);
+		}
+		for (int x = 1; x <= 5; x++) {
+			raster.setRGB(x, 4, TiledRaster.WHITE);
+		}
+		
+		int[] runs = FloodFill.fill(raster, 5, 0, RED);
+		
+		assertEquals(13, countPixels(raster, RED));
+		assertEquals(3 * 9, runs.length);
+		assertEquals(BLUE, raster.getRGB(3, 2));
+		assertEquals(RED, raster.getRGB(1, 0));
+	}
+	
+	@Test
+	public void largeAreaTest() {
+		TiledRaster raster = new TiledRaster(800, 600);
+		for (int y = 0; y < 600; y++) {
+			raster.setRGB(400, y, BLUE);
+		}
+		
+		FloodFill.fill(raster, 799, 599, RED);
+		assertEquals(399 * 600, countPixels(raster, RED));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 0));
+	}
+	
+	/**
+	 * Returns the number of pixels of a raster that have a color.
+	 */
+	private static int countPixels(final TiledRaster raster, final int rgb) {
+		int count = 0;
+		for (int y = 0; y < raster.getHeight(); y++) {
+			for (int x = 0; x < raster.getWidth(); x++) {
+				if (raster.getRGB(x, y) == rgb) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,233 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * LayerStack is a mutable datatype that represents the named layers of a whiteboard, stacked from the
+ * bottom up, together with the view of all of them painted on top of each other.  Each layer is its own
+ * sparse TiledRaster.  The base layer is white wherever nothing has been drawn on it and every other layer
+ * is TRANSPARENT there, so the layers under it show through.
+ *
+ * The composited view is cached tile by tile.  A change to a layer only marks the tiles of the cache that
+ * it touches as stale, and a stale tile is composited again, and its part of the mipmap pyramid updated,
+ * the next time the cache is read.  While there is only the base layer, the base layer is its own
+ * composited view and no pixels are copied.
+ *
+ * Abstraction Function:
+ * 		Each LayerStack is represented by:
+ * 			names:     names.get(i) is the name of the ith layer from the bottom, the 0th being the base layer
+ * 			rasters:   rasters.get(i) is the pixels of the ith layer
+ * 			composite: the cache of the composited view of the layers, or rasters.get(0) while there is only
+ * 					   one layer
+ * 			pyramid:   the MipmapPyramid of composite
+ * 			stale:     the keys tileY * tilesAcross + tileX of the tiles of composite, and of pyramid, that may
+ * 					   be out of date
+ *
+ * Representation Invariant:
+ * 		names.size() == rasters.size() >= 1, and no two layers have the same name.
+ * 		rasters.get(0) has the background WHITE and every other raster has the background TRANSPARENT; all of
+ * 		them, and composite, are width x height.
+ * 		Every tile of composite that is not in stale is the pixels of the base layer with the pixels of every
+ * 		other layer that are not TRANSPARENT painted over them, in order, and the pixels of pyramid that cover
+ * 		it are their averages.
+ *
+ * Thread safety Argument:
+ * 		LayerStack is not threadsafe.  It must be guarded by the lock of the object that owns it.
+ *
+ */
+public class LayerStack {
+	/** The name of the layer that every whiteboard starts with. */
+	public static final String BASE_LAYER = "base";
+
+	private final int width;
+	private final int height;
+	private final ArrayList<String> names;
+	private final ArrayList<TiledRaster> rasters;
+	private TiledRaster composite;
+	private MipmapPyramid pyramid;
+	private final BitSet stale;
+
+	/**
+	 * Creates a LayerStack that only has an empty base layer.
+	 *
+	 * @param width the width of the layers in pixels, must be positive
+	 * @param height the height of the layers in pixels, must be positive
+	 */
+	public LayerStack(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		this.names = new ArrayList<String>();
+		this.rasters = new ArrayList<TiledRaster>();
+		this.stale = new BitSet();
+
+		names.add(BASE_LAYER);
+		rasters.add(new TiledRaster(width, height));
+		this.composite = rasters.get(0);
+		this.pyramid = new MipmapPyramid(composite);
+	}
+
+	/**
+	 * Returns the number of layers.
+	 *
+	 * @return the number of layers of this stack, which is at least 1
+	 */
+	public int getLayerCount() {
+		return rasters.size();
+	}
+
+	/**
+	 * Returns the name of a layer.
+	 *
+	 * @param layer the index of the layer from the bottom, 0 <= layer < getLayerCount()
+	 * @return the name of the layer
+	 */
+	public String getName(final int layer) {
+		return names.get(layer);
+	}
+
+	/**
+	 * Returns the index of a layer.
+	 *
+	 * @param name the name of a layer
+	 * @return the index from the bottom of the layer whose name is name, or -1 if there is no such layer
+	 */
+	public int indexOf(final String name) {
+		return names.indexOf(name);
+	}
+
+	/**
+	 * Adds an empty layer on top of every other layer.
+	 *
+	 * @param name the name of the layer, which no layer of this stack has
+	 * @return the index of the new layer
+	 * @modifies adds the layer.  The first layer added after the base layer gives the composited view a
+	 * 			 cache of its own, every tile of which is stale.
+	 */
+	public int addLayer(final String name) {
+		names.add(name);
+		rasters.add(new TiledRaster(width, height, TiledRaster.TRANSPARENT));
+
+		if (rasters.size() == 2) {
+			// Until now the base layer was its own composite, so every tile drawn on must be copied over.
+			composite = new TiledRaster(width, height);
+			pyramid = new MipmapPyramid(composite);
+			TiledRaster base = rasters.get(0);
+			for (int tileY = 0; tileY < base.getTilesDown(); tileY++) {
+				if (!base.hasTileRow(tileY)) {
+					continue;
+				}
+				for (int tileX = 0; tileX < base.getTilesAcross(); tileX++) {
+					if (base.hasTile(tileX, tileY)) {
+						stale.set(tileY * base.getTilesAcross() + tileX);
+					}
+				}
+			}
+		}
+
+		return rasters.size() - 1;
+	}
+
+	/**
+	 * Returns the pixels of a layer, which may be drawn on as long as invalidate() is called for every
+	 * region that changes.
+	 *
+	 * @param layer the index of the layer from the bottom, 0 <= layer < getLayerCount()
+	 * @return the pixels of the layer
+	 */
+	public TiledRaster getLayer(final int layer) {
+		return rasters.get(layer);
+	}
+
+	/**
+	 * Marks the composited view of a region as stale.
+	 *
+	 * @param region a region in which pixels of some layer may have changed
+	 * @modifies marks every tile of the composited view that intersects region as stale
+	 */
+	public void invalidate(final Region region) {
+		int xMin = Math.max(0, region.getX()), yMin = Math.max(0, region.getY());
+		int xMax = Math.min(width, region.getX() + region.getWidth()) - 1;
+		int yMax = Math.min(height, region.getY() + region.getHeight()) - 1;
+		if (xMin > xMax || yMin > yMax) {
+			return;
+		}
+
+		int tilesAcross = composite.getTilesAcross(), tileSize = TiledRaster.TILE_SIZE;
+		for (int tileY = yMin / tileSize; tileY <= yMax / tileSize; tileY++) {
+			stale.set(tileY * tilesAcross + xMin / tileSize, tileY * tilesAcross + xMax / tileSize + 1);
+		}
+	}
+
+	/**
+	 * Returns the composited view of the layers, bringing its stale tiles up to date first.
+	 *
+	 * @return the pixels of the base layer with the pixels of every other layer that are not TRANSPARENT
+	 * 		   painted over them, in order from the bottom up
+	 * @modifies composites every stale tile
+	 */
+	public TiledRaster getComposite() {
+		refresh();
+		return composite;
+	}
+
+	/**
+	 * Returns the mipmap pyramid of the composited view, bringing its stale tiles up to date first.
+	 *
+	 * @return the MipmapPyramid of getComposite()
+	 * @modifies composites every stale tile
+	 */
+	public MipmapPyramid getPyramid() {
+		refresh();
+		return pyramid;
+	}
+
+	/**
+	 * Makes every layer empty.  The layers themselves are kept.
+	 *
+	 * @modifies makes the base layer white and every other layer TRANSPARENT
+	 */
+	public void clear() {
+		for (TiledRaster raster : rasters) {
+			raster.clear();
+		}
+		composite.clear();
+		pyramid.clear();
+		stale.clear();
+	}
+
+	/**
+	 * Returns the String representation of the names of the layers.
+	 *
+	 * @return the names of the layers from the bottom up, each one followed by a space
+	 */
+	@Override
+	public String toString() {
+		StringBuilder representation = new StringBuilder();
+		for (String name : names) {
+			representation.append(name).append(' ');
+		}
+		return representation.toString();
+	}
+
+	/**
+	 * Composites every stale tile and updates its part of the pyramid.
+	 */
+	private void refresh() {
+		int tilesAcross = composite.getTilesAcross();
+
+		for (int key = stale.nextSetBit(0); key >= 0; key = stale.nextSetBit(key + 1)) {
+			int tileX = key % tilesAcross, tileY = key / tilesAcross;
+
+			if (composite != rasters.get(0)) {
+				composite.copyTile(rasters.get(0), tileX, tileY);
+				for (int layer = 1; layer < rasters.size(); layer++) {
+					composite.overlayTile(rasters.get(layer), tileX, tileY);
+				}
+			}
+			pyramid.update(composite.getTileRegion(tileX, tileY));
+		}
+
+		stale.clear();
+	}
+}
@@ -0,0 +1,109 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LayerStackTest {
+	private final static int RED = 0xFF0000;
+	private final static int BLUE = 0x0000FF;
+
+	/**
+	 * The following test methods test the LayerStack constructor, addLayer(), indexOf() and toString().
+	 *
+	 * The testing strategy for the constructor, addLayer(), indexOf() and toString():
+	 * 		A stack that only has the base layer
+	 * 		A stack with two layers added
+	 * 		Look up a name that no layer has
+	 *
+	 */
+	@Test
+	public void namesTest() {
+		LayerStack layers = new LayerStack(10, 10);
+		assertEquals(1, layers.getLayerCount());
+		assertEquals("base ", layers.toString());
+
+		assertEquals(1, layers.addLayer("notes"));
+		assertEquals(2, layers.addLayer("sketch"));
+		assertEquals(3, layers.getLayerCount());
+		assertEquals("notes", layers.getName(1));
+		assertEquals(2, layers.indexOf("sketch"));
+		assertEquals(-1, layers.indexOf("missing"));
+		assertEquals("base notes sketch ", layers.toString());
+		assertEquals(TiledRaster.WHITE, layers.getLayer(0).getBackground());
+		assertEquals(TiledRaster.TRANSPARENT, layers.getLayer(2).getBackground());
+	}
+
+	/**
+	 * The following test methods test the invalidate(), getComposite() and getPyramid() methods.
+	 *
+	 * The testing strategy for invalidate(), getComposite() and getPyramid():
+	 * 		A stack with only the base layer, which is its own composite
+	 * 		Add a layer after the base layer has been drawn on
+	 * 		Change a layer without invalidating it, and then invalidate it
+	 * 		Overlapping pixels of several layers
+	 * 		Clear the stack
+	 *
+	 */
+	@Test
+	public void singleLayerTest() {
+		LayerStack layers = new LayerStack(10, 10);
+		assertSame(layers.getLayer(0), layers.getComposite());
+
+		layers.getLayer(0).setRGB(1, 1, RED);
+		layers.invalidate(new Region(1, 1, 1, 1));
+		assertEquals(RED, layers.getComposite().getRGB(1, 1));
+	}
+
+	@Test
+	public void compositeTest() {
+		int size = TiledRaster.TILE_SIZE;
+		LayerStack layers = new LayerStack(2 * size, size);
+		layers.getLayer(0).setRGB(1, 1, RED);
+		layers.getLayer(0).setRGB(2, 1, RED);
+		layers.invalidate(new Region(1, 1, 2, 1));
+
+		// The base layer is copied into the composite when the first layer is added.
+		layers.addLayer("notes");
+		assertNotSame(layers.getLayer(0), layers.getComposite());
+		assertEquals(RED, layers.getComposite().getRGB(1, 1));
+
+		layers.getLayer(1).setRGB(2, 1, BLUE);
+		layers.getLayer(1).setRGB(size + 1, 1, BLUE);
+		assertEquals(RED, layers.getComposite().getRGB(2, 1));
+
+		// Only the invalidated tile is composited again.
+		layers.invalidate(new Region(2, 1, 1, 1));
+		assertEquals(BLUE, layers.getComposite().getRGB(2, 1));
+		assertEquals(RED, layers.getComposite().getRGB(1, 1));
+		assertFalse(layers.getComposite().hasTile(1, 0));
+
+		layers.invalidate(new Region(size + 1, 1, 1, 1));
+		assertEquals(BLUE, layers.getComposite().getRGB(size + 1, 1));
+
+		// Emptying a pixel of the upper layer shows the base layer again.
+		layers.getLayer(1).fillWithBackground(new Region(2, 1, 1, 1));
+		layers.invalidate(new Region(2, 1, 1, 1));
+		assertEquals(RED, layers.getComposite().getRGB(2, 1));
+
+		layers.clear();
+		assertEquals(TiledRaster.WHITE, layers.getComposite().getRGB(1, 1));
+		assertEquals(2, layers.getLayerCount());
+	}
+
+	@Test
+	public void pyramidTest() {
+		LayerStack layers = new LayerStack(1024, 1024);
+		layers.addLayer("notes");
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 8; x++) {
+				layers.getLayer(1).setRGB(x, y, 0);
+			}
+		}
+		layers.invalidate(new Region(0, 0, 8, 8));
+
+		StringBuilder builder = new StringBuilder();
+		layers.getPyramid().appendNonWhitePixels(builder, 3, new Region(0, 0, 1024, 1024));
+		assertEquals("0 0 0 0 0 ", builder.toString());
+	}
+}
@@ -0,0 +1,182 @@
+package model;
+
+/**
+ * MipmapPyramid is a mutable datatype that represents a series of successively smaller copies of the
+ * pixels of a whiteboard.  Each copy is half as wide and half as tall as the one before it, so a low
+ * resolution preview of any part of the whiteboard can be produced without visiting every pixel of it.
+ *
+ * Abstraction Function:
+ * 		Each MipmapPyramid is represented by:
+ * 			base:   the full resolution pixels of the whiteboard
+ * 			levels: levels[k - 1] holds the pixels of level k, in which the pixel at (x, y) is the average
+ * 					of the (up to) four pixels at (2x, 2y), (2x + 1, 2y), (2x, 2y + 1) and (2x + 1, 2y + 1)
+ * 					of level k - 1, level 0 being base.  One pixel of level k covers a 2^k x 2^k square
+ * 					of base.
+ *
+ * Representation Invariant:
+ * 		levels[k - 1] is a ceil(width / 2^k) x ceil(height / 2^k) TiledRaster, where width and height are
+ * 		the dimensions of base.
+ * 		Every pixel of every level is the average of the pixels of the level below it that it covers,
+ * 		once update() has been called for every region of base that has changed.
+ *
+ * Thread safety Argument:
+ * 		MipmapPyramid is not threadsafe.  It must be guarded by the lock of the object that owns it and base.
+ *
+ */
+public class MipmapPyramid {
+	/** The most levels that a pyramid has, so the smallest level covers 2^MAX_LEVELS x 2^MAX_LEVELS squares. */
+	public static final int MAX_LEVELS = 6;
+
+	/** Levels stop being added once both dimensions of the last level are at most this many pixels. */
+	private static final int SMALLEST_LEVEL_SIZE = 128;
+
+	private final TiledRaster base;
+	private final TiledRaster[] levels;
+
+	/**
+	 * Creates a MipmapPyramid of an entirely white raster.
+	 *
+	 * @param base the full resolution pixels, every pixel of base must be white
+	 */
+	public MipmapPyramid(final TiledRaster base) {
+		this.base = base;
+
+		int count = 0;
+		int width = base.getWidth(), height = base.getHeight();
+		while (count < MAX_LEVELS && Math.max(width, height) > SMALLEST_LEVEL_SIZE) {
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			count++;
+		}
+
+		this.levels = new TiledRaster[count];
+		width = base.getWidth();
+		height = base.getHeight();
+		for (int k = 0; k < count; k++) {
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			// Averaging pixels makes many more colors than a palette can hold.
+			levels[k] = new TiledRaster(width, height, TiledRaster.WHITE, false);
+		}
+	}
+
+	/**
+	 * Returns the number of levels in this pyramid, not counting the full resolution pixels.
+	 *
+	 * @return the number of levels in this pyramid
+	 */
+	public int getLevelCount() {
+		return levels.length;
+	}
+
+	/**
+	 * Recomputes the pixels of every level that cover a region of the full resolution pixels.  The cost
+	 * is proportional to the area of the region, not the size of the whiteboard.
+	 *
+	 * @param region a region of base whose pixels may have changed
+	 * @modifies the pixels of every level that cover region
+	 */
+	public void update(final Region region) {
+		int xMin = Math.max(0, region.getX());
+		int yMin = Math.max(0, region.getY());
+		int xMax = Math.min(base.getWidth(), region.getX() + region.getWidth()) - 1;
+		int yMax = Math.min(base.getHeight(), region.getY() + region.getHeight()) - 1;
+
+		TiledRaster below = base;
+		for (int k = 0; k < levels.length && xMin <= xMax && yMin <= yMax; k++) {
+			xMin /= 2; yMin /= 2; xMax /= 2; yMax /= 2;
+			TiledRaster level = levels[k];
+
+			for (int y = yMin; y <= yMax; y++) {
+				for (int x = xMin; x <= xMax; x++) {
+					int rgb = averageOfSquare(below, 2 * x, 2 * y);
+
+					// Writing a pixel stores its tile, so pixels that do not change are left alone.
+					if (level.getRGB(x, y) != rgb) {
+						level.setRGB(x, y, rgb);
+					}
+				}
+			}
+
+			below = level;
+		}
+	}
+
+	/**
+	 * Makes every level of this pyramid white.  Must be called whenever base is cleared.
+	 *
+	 * @modifies makes every level completely white
+	 */
+	public void clear() {
+		for (TiledRaster level : levels) {
+			level.clear();
+		}
+	}
+
+	/**
+	 * Chooses the level from which to make a preview of a region.
+	 *
+	 * @param region a region of base
+	 * @param maxPixels the most pixels that the preview should contain, must be positive
+	 * @return the smallest k (0 being base) such that the region covers at most maxPixels pixels of level k,
+	 * 		   or the number of levels if even the smallest level has more pixels than that in region
+	 */
+	public int chooseLevel(final Region region, final int maxPixels) {
+		long width = region.getWidth(), height = region.getHeight();
+		int k = 0;
+
+		while (k < levels.length && width * height > maxPixels) {
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			k++;
+		}
+
+		return k;
+	}
+
+	/**
+	 * Appends the String representation of the pixels of a level that cover a region of the full
+	 * resolution pixels and are not white to a StringBuilder, in row-major order.
+	 *
+	 * @param builder the StringBuilder to which the String representations are appended
+	 * @param k the level, 0 <= k <= the number of levels in this pyramid
+	 * @param region a region of base
+	 * @modifies appends "[x] [y] [red] [green] [blue] " to builder for every pixel of level k that covers part of region
+	 * 			 and is not white, where (x, y) are the coordinates of the pixel in level k
+	 */
+	public void appendNonWhitePixels(final StringBuilder builder, final int k, final Region region) {
+		TiledRaster level = (k == 0) ? base : levels[k - 1];
+		int scale = 1 << k;
+
+		int xMin = Math.max(0, region.getX()) / scale;
+		int yMin = Math.max(0, region.getY()) / scale;
+		int xMax = (region.getX() + region.getWidth() + scale - 1) / scale;
+		int yMax = (region.getY() + region.getHeight() + scale - 1) / scale;
+
+		level.appendNonWhitePixels(builder, new Region(xMin, yMin, xMax - xMin, yMax - yMin));
+	}
+
+	/**
+	 * Returns the average color of a 2 x 2 square of a raster.
+	 *
+	 * @param raster the raster
+	 * @param x the x-coordinate of the top left hand corner of the square, 0 <= x < width of raster
+	 * @param y the y-coordinate of the top left hand corner of the square, 0 <= y < height of raster
+	 * @return the average of the packed 0xRRGGBB colors of the pixels of the square that lie inside raster
+	 */
+	private static int averageOfSquare(final TiledRaster raster, final int x, final int y) {
+		int red = 0, green = 0, blue = 0, count = 0;
+
+		for (int j = y; j < Math.min(y + 2, raster.getHeight()); j++) {
+			for (int i = x; i < Math.min(x + 2, raster.getWidth()); i++) {
+				int rgb = raster.getRGB(i, j);
+				red += (rgb >> 16) & 0xFF;
+				green += (rgb >> 8) & 0xFF;
+				blue += rgb & 0xFF;
+				count++;
+			}
+		}
+
+		return ((red / count) << 16) | ((green / count) << 8) | (blue / count);
+	}
+}
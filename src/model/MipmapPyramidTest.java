@@ -0,0 +1,83 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class MipmapPyramidTest {
+	private final static int BLACK = 0x000000;
+	
+	/**
+	 * The following test methods test the MipmapPyramid constructor and getLevelCount().
+	 * 
+	 * The testing strategy for the constructor and getLevelCount():
+	 * 		A raster that is smaller than the smallest level
+	 * 		An 800 x 600 raster
+	 * 		A very large raster
+	 * 
+	 */
+	@Test
+	public void levelCountTest() {
+		assertEquals(0, new MipmapPyramid(new TiledRaster(100, 50)).getLevelCount());
+		assertEquals(3, new MipmapPyramid(new TiledRaster(800, 600)).getLevelCount());
+		assertEquals(MipmapPyramid.MAX_LEVELS, new MipmapPyramid(new TiledRaster(100000, 100000)).getLevelCount());
+	}
+	
+	/**
+	 * The following test methods test the update(), clear() and appendNonWhitePixels() methods.
+	 * 
+	 * The testing strategy for update(), clear() and appendNonWhitePixels():
+	 * 		Change a 2 x 2 square and a single pixel of the raster and read every level
+	 * 		Clear the pyramid
+	 * 
+	 */
+	@Test
+	public void updateTest() {
+		TiledRaster raster = new TiledRaster(1024, 1024);
+		MipmapPyramid pyramid = new MipmapPyramid(raster);
+		assertEquals(3, pyramid.getLevelCount());
+		
+		// A black 2 x 2 square becomes a single black pixel of level 1.
+		raster.setRGB(4, 4, BLACK); raster.setRGB(5, 4, BLACK);
+		raster.setRGB(4, 5, BLACK); raster.setRGB(5, 5, BLACK);
+		pyramid.update(new Region(4, 4, 2, 2));
+		
+		Region everything = new Region(0, 0, 1024, 1024);
+		assertEquals("2 2 0 0 0 ", append(pyramid, 1, everything));
+		assertEquals("1 1 191 191 191 ", append(pyramid, 2, everything));
+		assertEquals("0 0 239 239 239 ", append(pyramid, 3, everything));
+		
+		// Only the preview pixels covering the region are appended.
+		assertEquals("", append(pyramid, 1, new Region(8, 8, 100, 100)));
+		
+		pyramid.clear();
+		assertEquals("", append(pyramid, 3, everything));
+	}
+	
+	/**
+	 * The following test methods test the chooseLevel() method.
+	 * 
+	 * The testing strategy for chooseLevel():
+	 * 		A region that is already small enough
+	 * 		A region that needs some levels
+	 * 		A region that is too large even for the smallest level
+	 * 
+	 */
+	@Test
+	public void chooseLevelTest() {
+		MipmapPyramid pyramid = new MipmapPyramid(new TiledRaster(1024, 1024));
+		
+		assertEquals(0, pyramid.chooseLevel(new Region(0, 0, 100, 100), 10000));
+		assertEquals(2, pyramid.chooseLevel(new Region(0, 0, 400, 400), 10000));
+		assertEquals(3, pyramid.chooseLevel(new Region(0, 0, 1024, 1024), 10));
+	}
+	
+	/**
+	 * Returns the String representation of the pixels of a level covering a region.
+	 */
+	private String append(final MipmapPyramid pyramid, final int level, final Region region) {
+		StringBuilder builder = new StringBuilder();
+		pyramid.appendNonWhitePixels(builder, level, region);
+		return builder.toString();
+	}
+}
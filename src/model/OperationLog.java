@@ -0,0 +1,164 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * OperationLog is a mutable datatype that records, for each user of a whiteboard, the operations that the
+ * user has done and undone, so that each user can undo and redo their own operations.  An operation either
+ * added strokes to the whiteboard, e.g. by drawing, or removed strokes from it, e.g. by erasing.
+ *
+ * Abstraction Function:
+ * 		Each OperationLog is represented by:
+ * 			undoable: undoable.get(u) holds the operations done by the user whose username is u that can be
+ * 					  undone, the most recent last
+ * 			redoable: redoable.get(u) holds the operations undone by the user whose username is u that can be
+ * 					  redone, the most recently undone last
+ *
+ * Representation Invariant:
+ * 		Every operation is in at most one list.
+ *
+ * Thread safety Argument:
+ * 		OperationLog is not threadsafe.  It must be guarded by the lock of the object that owns it.
+ *
+ */
+public class OperationLog {
+	/** The most operations that each user can undo; older operations can no longer be undone. */
+	public static final int MAX_UNDO = 1000;
+
+	private final HashMap<String, ArrayList<Operation>> undoable;
+	private final HashMap<String, ArrayList<Operation>> redoable;
+
+	/**
+	 * Operation is an immutable datatype that represents a change that a user made to a whiteboard.
+	 */
+	public static class Operation {
+		private final boolean isAddition;
+		private final int[] strokes;
+
+		/**
+		 * Creates an Operation.
+		 *
+		 * @param isAddition true if the operation added strokes to the whiteboard, false if it removed them
+		 * @param strokes the indexes of the strokes that the operation added to or removed from the whiteboard
+		 */
+		public Operation(final boolean isAddition, final int... strokes) {
+			this.isAddition = isAddition;
+			this.strokes = strokes.clone();
+		}
+
+		/**
+		 * Indicates whether the operation added or removed strokes.
+		 *
+		 * @return true if this operation added strokes to the whiteboard, false if it removed them
+		 */
+		public boolean isAddition() {
+			return isAddition;
+		}
+
+		/**
+		 * Returns the number of strokes that the operation added or removed.
+		 *
+		 * @return the number of strokes that this operation added to or removed from the whiteboard
+		 */
+		public int getStrokeCount() {
+			return strokes.length;
+		}
+
+		/**
+		 * Returns a stroke that the operation added or removed.
+		 *
+		 * @param i 0 <= i < the number of strokes that this operation added or removed
+		 * @return the index of the ith stroke that this operation added to or removed from the whiteboard
+		 */
+		public int getStroke(final int i) {
+			return strokes[i];
+		}
+	}
+
+	/**
+	 * Creates an empty OperationLog.
+	 */
+	public OperationLog() {
+		this.undoable = new HashMap<String, ArrayList<Operation>>();
+		this.redoable = new HashMap<String, ArrayList<Operation>>();
+	}
+
+	/**
+	 * Records an operation that a user has just done.  The operations that the user had undone can no
+	 * longer be redone.
+	 *
+	 * @param username the username of the user
+	 * @param operation the operation
+	 * @modifies makes operation the next operation of the user to be undone and forgets the operations
+	 * 			 that the user can redo
+	 */
+	public void record(final String username, final Operation operation) {
+		ArrayList<Operation> operations = getList(undoable, username);
+		operations.add(operation);
+		if (operations.size() > MAX_UNDO) {
+			operations.remove(0);
+		}
+
+		getList(redoable, username).clear();
+	}
+
+	/**
+	 * Takes the operation that a user would undo next.
+	 *
+	 * @param username the username of the user
+	 * @return the last operation done by the user that has not been undone, or null if there is none
+	 * @modifies moves the returned operation to the operations that the user can redo
+	 */
+	public Operation undo(final String username) {
+		return move(undoable, redoable, username);
+	}
+
+	/**
+	 * Takes the operation that a user would redo next.
+	 *
+	 * @param username the username of the user
+	 * @return the last operation undone by the user that has not been redone, or null if there is none
+	 * @modifies moves the returned operation to the operations that the user can undo
+	 */
+	public Operation redo(final String username) {
+		return move(redoable, undoable, username);
+	}
+
+	/**
+	 * Forgets every operation.
+	 *
+	 * @modifies makes every list of operations empty
+	 */
+	public void clear() {
+		undoable.clear();
+		redoable.clear();
+	}
+
+	/**
+	 * Moves the last operation of a user from one map of lists to another.
+	 */
+	private Operation move(final HashMap<String, ArrayList<Operation>> from, final HashMap<String, ArrayList<Operation>> to, 
+						   final String username) {
+		ArrayList<Operation> operations = from.get(username);
+		if (operations == null || operations.isEmpty()) {
+			return null;
+		}
+
+		Operation operation = operations.remove(operations.size() - 1);
+		getList(to, username).add(operation);
+		return operation;
+	}
+
+	/**
+	 * Returns the list of a user in a map of lists, adding an empty one if the user has none.
+	 */
+	private static ArrayList<Operation> getList(final HashMap<String, ArrayList<Operation>> lists, final String username) {
+		ArrayList<Operation> operations = lists.get(username);
+		if (operations == null) {
+			operations = new ArrayList<Operation>();
+			lists.put(username, operations);
+		}
+		return operations;
+	}
+}
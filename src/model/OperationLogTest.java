@@ -0,0 +1,64 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class OperationLogTest {
+	
+	/**
+	 * The following test methods test the record(), undo(), redo() and clear() methods.
+	 * 
+	 * The testing strategy for record(), undo(), redo() and clear():
+	 * 		Undo and redo with nothing recorded
+	 * 		Undo and redo for two users whose operations are interleaved
+		Operations that add strokes and operations that remove strokes
+	 * 		Record an operation after undoing
+	 * 		More operations than can be undone
+	 * 		Clear the log
+	 * 
+	 */
+	@Test
+	public void undoRedoTest() {
+		OperationLog log = new OperationLog();
+		assertNull(log.undo("Barry"));
+		assertNull(log.redo("Barry"));
+		
+		log.record("Barry", new OperationLog.Operation(true, 0));
+		log.record("Mary", new OperationLog.Operation(false, 1, 2));
+		log.record("Barry", new OperationLog.Operation(true, 3));
+		
+		assertEquals(3, log.undo("Barry").getStroke(0));
+		OperationLog.Operation erase = log.undo("Mary");
+		assertEquals(2, erase.getStrokeCount());
+		assertFalse(erase.isAddition());
+		assertEquals(0, log.undo("Barry").getStroke(0));
+		assertNull(log.undo("Barry"));
+		
+		assertEquals(0, log.redo("Barry").getStroke(0));
+		assertEquals(0, log.undo("Barry").getStroke(0));
+		
+		// Recording forgets what can be redone, but only for that user.
+		log.record("Barry", new OperationLog.Operation(true, 4));
+		assertNull(log.redo("Barry"));
+		assertEquals(1, log.redo("Mary").getStroke(0));
+		
+		log.clear();
+		assertNull(log.undo("Barry"));
+		assertNull(log.undo("Mary"));
+	}
+	
+	@Test
+	public void maxUndoTest() {
+		OperationLog log = new OperationLog();
+		for (int i = 0; i < OperationLog.MAX_UNDO + 5; i++) {
+			log.record("Barry", new OperationLog.Operation(true, i));
+		}
+		
+		int undone = 0;
+		while (log.undo("Barry") != null) {
+			undone++;
+		}
+		assertEquals(OperationLog.MAX_UNDO, undone);
+	}
+}
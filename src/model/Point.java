@@ -10,14 +10,14 @@ import java.awt.Color;
  * 		Each point in a window is represented by:
  * 			x:     its x-coordinate
  * 			y:     its y-coordinate
- * 			color: its color
+ * 			rgb:   its color, packed as 0xRRGGBB
  * 
  * Representation Invariant:
  * 		Immutable
  * 
  * Thread safety Argument:
  * 		All read and write methods of the mutable portion of the Point representation 
- * 		(the color field) are synchronized on this Point object.  Since each
+ * 		(the rgb field) are synchronized on this Point object.  Since each
  * 		synchronized method requires a lock on only one Point object, this locking
  * 		mechanism will not produce a deadlock.
  * 
@@ -28,18 +28,28 @@ import java.awt.Color;
 public class Point {
 	private final int x;
 	private final int y;
-	private Color color;
+	private int rgb;
 	
 	/**
 	 * Creates a Point object.
 	 * 
 	 * @param x the x-coordinate of the point in a window, x is nonnegative
 	 * @param y the y-coordinate of the point in a window, y is nonnegative
+	 * @param rgb the color of the point, packed as 0xRRGGBB
 	 */
-	public Point(final int x, final int y, final Color color) {
+	public Point(final int x, final int y, final int rgb) {
 		this.x = x;
 		this.y = y;
-		this.color = color;
+		this.rgb = rgb;
+	}
+	
+	/**
+	 * Creates a Point object whose color is given as a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return new Point(x, y, color.getRGB() & 0xFFFFFF)
+	 */
+	public Point(final int x, final int y, final Color color) {
+		this(x, y, color.getRGB() & 0xFFFFFF);
 	}
 	
 	/**
@@ -63,23 +73,41 @@ public class Point {
 	/**
 	 * Returns the color of the Point object.
 	 * 
-	 * @return the color of the Point object
+	 * @return the color of the Point object, packed as 0xRRGGBB
 	 */
-	public synchronized Color getColor() {
-		return color;
+	public synchronized int getRGB() {
+		return rgb;
 	}
 	
 	/**
 	 * Changes the color of the Point object.
 	 * 
-	 * @param newColor the new color of the Point object
+	 * @param newRGB the new color of the Point object, packed as 0xRRGGBB
 	 * @return the string representation of this Point object
 	 */
-	public synchronized String setColor(Color newColor) {
-		color = newColor;
+	public synchronized String setRGB(final int newRGB) {
+		rgb = newRGB;
 		return toString();
 	}
 	
+	/**
+	 * Returns the color of the Point object as a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return an opaque Color whose red, green and blue components are those of getRGB()
+	 */
+	public synchronized Color getColor() {
+		return new Color(rgb);
+	}
+	
+	/**
+	 * Changes the color of the Point object to a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return setRGB(newColor.getRGB() & 0xFFFFFF)
+	 */
+	public String setColor(final Color newColor) {
+		return setRGB(newColor.getRGB() & 0xFFFFFF);
+	}
+	
 	/**
 	 * Returns the String representation of this Point object.
 	 * 
@@ -92,6 +120,6 @@ public class Point {
 	 */
 	@Override
 	public synchronized String toString() {
-		return x + " " + y + " " + color.getRed() + " " + color.getGreen() + " " + color.getBlue();
+		return x + " " + y + " " + ((rgb >> 16) & 0xFF) + " " + ((rgb >> 8) & 0xFF) + " " + (rgb & 0xFF);
 	}
 }
@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * Region is an immutable datatype that represents a rectangle of pixels in a whiteboard.
+ *
+ * Abstraction Function:
+ * 		Each region is represented by:
+ * 			x:      the x-coordinate of its top left hand corner
+ * 			y:      the y-coordinate of its top left hand corner
+ * 			width:  its width in pixels
+ * 			height: its height in pixels
+ * 		The region contains every pixel (i, j) such that x <= i < x + width and y <= j < y + height.
+ *
+ * Representation Invariant:
+ * 		width >= 0 and height >= 0
+ *
+ * Thread safety Argument:
+ * 		Region is immutable, so it can be shared between threads.
+ *
+ */
+public class Region {
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Creates a Region object.
+	 *
+	 * @param x the x-coordinate of the top left hand corner of the region
+	 * @param y the y-coordinate of the top left hand corner of the region
+	 * @param width the width of the region in pixels, width >= 0
+	 * @param height the height of the region in pixels, height >= 0
+	 */
+	public Region(final int x, final int y, final int width, final int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Returns the region covered by a line segment.
+	 *
+	 * @param x1 the x-coordinate of the starting point of the line segment
+	 * @param y1 the y-coordinate of the starting point of the line segment
+	 * @param x2 the x-coordinate of the ending point of the line segment
+	 * @param y2 the y-coordinate of the ending point of the line segment
+	 * @param thickness the thickness of the line segment in pixels
+	 * @return the smallest region that contains every pixel that the line segment from (x1, y1)
+	 * 		   to (x2, y2) whose thickness is thickness can cover
+	 */
+	public static Region aroundLine(final int x1, final int y1, final int x2, final int y2, final int thickness) {
+		int halfWidth = thickness / 2;
+		int xMin = Math.min(x1, x2) - halfWidth;
+		int yMin = Math.min(y1, y2) - halfWidth;
+
+		return new Region(xMin, yMin, Math.max(x1, x2) + halfWidth - xMin + 1, Math.max(y1, y2) + halfWidth - yMin + 1);
+	}
+
+	/**
+	 * Returns the x-coordinate of the top left hand corner of the region.
+	 *
+	 * @return x-coordinate of the top left hand corner of this Region
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Returns the y-coordinate of the top left hand corner of the region.
+	 *
+	 * @return y-coordinate of the top left hand corner of this Region
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Returns the width of the region.
+	 *
+	 * @return width of this Region in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the region.
+	 *
+	 * @return height of this Region in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Indicates whether a pixel is in this region.
+	 *
+	 * @param i the x-coordinate of the pixel
+	 * @param j the y-coordinate of the pixel
+	 * @return true only if the pixel at (i, j) is in this region
+	 */
+	public boolean contains(final int i, final int j) {
+		return i >= x && i < x + width && j >= y && j < y + height;
+	}
+
+	/**
+	 * Indicates whether this region and another region have at least one pixel in common.
+	 *
+	 * @param other a Region
+	 * @return true only if some pixel is in both this region and other
+	 */
+	public boolean intersects(final Region other) {
+		return width > 0 && height > 0 && other.width > 0 && other.height > 0
+			   && x < other.x + other.width && other.x < x + width
+			   && y < other.y + other.height && other.y < y + height;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Region)) {
+			return false;
+		}
+
+		Region region = (Region) other;
+		return x == region.x && y == region.y && width == region.width && height == region.height;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((x * 31 + y) * 31 + width) * 31 + height;
+	}
+
+	/**
+	 * Returns the String representation of this Region object.
+	 *
+	 * @return the String representation of this Region object which is of the form:
+	 * 				[x] [y] [width] [height]
+	 */
+	@Override
+	public String toString() {
+		return x + " " + y + " " + width + " " + height;
+	}
+}
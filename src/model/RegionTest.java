@@ -0,0 +1,53 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class RegionTest {
+	
+	/**
+	 * The following test methods test the contains() and intersects() methods.
+	 * 
+	 * The testing strategy for the contains() and intersects() methods:
+	 * 		Pixels inside, on the edges of and outside of a region
+	 * 		Regions that overlap, touch and are empty
+	 * 
+	 */
+	@Test
+	public void containsTest() {
+		Region region = new Region(2, 3, 4, 5);
+		
+		assertTrue(region.contains(2, 3));
+		assertTrue(region.contains(5, 7));
+		assertFalse(region.contains(6, 7));
+		assertFalse(region.contains(5, 8));
+		assertFalse(region.contains(1, 4));
+	}
+	
+	@Test
+	public void intersectsTest() {
+		Region region = new Region(0, 0, 10, 10);
+		
+		assertTrue(region.intersects(new Region(9, 9, 5, 5)));
+		assertTrue(new Region(9, 9, 5, 5).intersects(region));
+		assertTrue(region.intersects(new Region(2, 2, 1, 1)));
+		assertFalse(region.intersects(new Region(10, 0, 5, 5)));
+		assertFalse(region.intersects(new Region(-5, 0, 5, 5)));
+		assertFalse(region.intersects(new Region(2, 2, 0, 0)));
+	}
+	
+	/**
+	 * The following test methods test the aroundLine() method.
+	 * 
+	 * The testing strategy for the aroundLine() method:
+	 * 		A thickness of 1 and a thickness of 3
+	 * 		A line moving to the left
+	 * 
+	 */
+	@Test
+	public void aroundLineTest() {
+		assertEquals(new Region(0, 3, 5, 3), Region.aroundLine(0, 3, 4, 5, 1));
+		assertEquals(new Region(-1, 2, 7, 5), Region.aroundLine(4, 5, 0, 3, 3));
+	}
+}
@@ -0,0 +1,243 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Shapes turns rectangles and ellipses, outlined or filled, into horizontal runs of pixels.  Every shape
+ * is first described by the leftmost and rightmost pixel of each of its rows; an outline is the rows of
+ * the shape grown by half of its thickness minus the rows of the shape shrunk by the rest of it.  Ellipses
+ * are found with the integer midpoint algorithm, so no floating point arithmetic is needed.
+ *
+ * The runs of a shape are returned in the same form as those of FloodFill.fill(): consecutive triples
+ * [y] [xStart] [xEnd], each meaning that the pixels from (xStart, y) to (xEnd, y) are covered.
+ *
+ * Thread safety Argument:
+ * 		Shapes has no state of its own.
+ *
+ */
+public class Shapes {
+
+	/**
+	 * Rows is an immutable datatype that represents a shape that covers one run of pixels in each row
+	 * from top to top + lefts.length - 1, the run in row top + i being from lefts[i] to rights[i].
+	 */
+	private static class Rows {
+		private static final Rows EMPTY = new Rows(0, new int[0], new int[0]);
+
+		private final int top;
+		private final int[] lefts;
+		private final int[] rights;
+
+		private Rows(final int top, final int[] lefts, final int[] rights) {
+			this.top = top;
+			this.lefts = lefts;
+			this.rights = rights;
+		}
+
+		private boolean hasRow(final int y) {
+			return y >= top && y < top + lefts.length;
+		}
+	}
+
+	/**
+	 * Shapes only has static methods.
+	 */
+	private Shapes() {
+	}
+
+	/**
+	 * Returns the runs of pixels covered by a rectangle.
+	 *
+	 * @param x1 the x-coordinate of one corner of the rectangle
+	 * @param y1 the y-coordinate of one corner of the rectangle
+	 * @param x2 the x-coordinate of the opposite corner of the rectangle
+	 * @param y2 the y-coordinate of the opposite corner of the rectangle
+	 * @param thickness the thickness of the outline in pixels, at least 1; ignored if filled is true
+	 * @param filled true for the whole rectangle, false for only its outline, which is centered on its edges
+	 * @param width the width of the whiteboard on which the rectangle is drawn
+	 * @param height the height of the whiteboard on which the rectangle is drawn
+	 * @return the runs of pixels of the whiteboard covered by the rectangle, in increasing order of y,
+	 * 		   no two of which share a pixel
+	 */
+	public static int[] rectangle(final int x1, final int y1, final int x2, final int y2, final int thickness,
+								  final boolean filled, final int width, final int height) {
+		int xMin = Math.min(x1, x2), yMin = Math.min(y1, y2), xMax = Math.max(x1, x2), yMax = Math.max(y1, y2);
+		if (filled) {
+			return toRuns(rectangleRows(xMin, yMin, xMax, yMax), Rows.EMPTY, width, height);
+		}
+
+		int grow = thickness / 2, shrink = thickness - grow;
+		return toRuns(rectangleRows(xMin - grow, yMin - grow, xMax + grow, yMax + grow),
+					  rectangleRows(xMin + shrink, yMin + shrink, xMax - shrink, yMax - shrink), width, height);
+	}
+
+	/**
+	 * Returns the runs of pixels covered by an ellipse.
+	 *
+	 * @param x1 the x-coordinate of one corner of the rectangle in which the ellipse is inscribed
+	 * @param y1 the y-coordinate of one corner of the rectangle in which the ellipse is inscribed
+	 * @param x2 the x-coordinate of the opposite corner of the rectangle in which the ellipse is inscribed
+	 * @param y2 the y-coordinate of the opposite corner of the rectangle in which the ellipse is inscribed
+	 * @param thickness the thickness of the outline in pixels, at least 1; ignored if filled is true
+	 * @param filled true for the whole ellipse, false for only its outline, which is centered on its edge
+	 * @param width the width of the whiteboard on which the ellipse is drawn
+	 * @param height the height of the whiteboard on which the ellipse is drawn
+	 * @return the runs of pixels of the whiteboard covered by the ellipse, in increasing order of y,
+	 * 		   no two of which share a pixel
+	 */
+	public static int[] ellipse(final int x1, final int y1, final int x2, final int y2, final int thickness,
+								final boolean filled, final int width, final int height) {
+		int xMin = Math.min(x1, x2), yMin = Math.min(y1, y2), xMax = Math.max(x1, x2), yMax = Math.max(y1, y2);
+		if (filled) {
+			return toRuns(ellipseRows(xMin, yMin, xMax, yMax), Rows.EMPTY, width, height);
+		}
+
+		int grow = thickness / 2, shrink = thickness - grow;
+		return toRuns(ellipseRows(xMin - grow, yMin - grow, xMax + grow, yMax + grow),
+					  ellipseRows(xMin + shrink, yMin + shrink, xMax - shrink, yMax - shrink), width, height);
+	}
+
+	/**
+	 * Returns the rows of a rectangle.
+	 *
+	 * @return the rows of the rectangle from (xMin, yMin) to (xMax, yMax), which has no rows if xMin > xMax or yMin > yMax
+	 */
+	private static Rows rectangleRows(final int xMin, final int yMin, final int xMax, final int yMax) {
+		if (xMin > xMax || yMin > yMax) {
+			return Rows.EMPTY;
+		}
+
+		int[] lefts = new int[yMax - yMin + 1], rights = new int[yMax - yMin + 1];
+		Arrays.fill(lefts, xMin);
+		Arrays.fill(rights, xMax);
+		return new Rows(yMin, lefts, rights);
+	}
+
+	/**
+	 * Returns the rows of the ellipse inscribed in a rectangle.  A rectangle whose width or height is even
+	 * has two center columns or rows, and the ellipse is stretched across both of them.
+	 *
+	 * @return the rows of the ellipse inscribed in the rectangle from (xMin, yMin) to (xMax, yMax), which has
+	 * 		   no rows if xMin > xMax or yMin > yMax
+	 */
+	private static Rows ellipseRows(final int xMin, final int yMin, final int xMax, final int yMax) {
+		if (xMin > xMax || yMin > yMax) {
+			return Rows.EMPTY;
+		}
+
+		int a = (xMax - xMin) / 2, b = (yMax - yMin) / 2;
+		int centerX = xMin + a, centerY = yMin + b;
+		int extraX = (xMax - xMin) % 2, extraY = (yMax - yMin) % 2;
+		int[] halfWidths = halfWidths(a, b);
+
+		int[] lefts = new int[yMax - yMin + 1], rights = new int[yMax - yMin + 1];
+		for (int dy = 0; dy <= b; dy++) {
+			int top = centerY - dy - yMin, bottom = centerY + extraY + dy - yMin;
+			lefts[top] = lefts[bottom] = centerX - halfWidths[dy];
+			rights[top] = rights[bottom] = centerX + extraX + halfWidths[dy];
+		}
+		return new Rows(yMin, lefts, rights);
+	}
+
+	/**
+	 * Returns how far a filled ellipse reaches in each row, by the midpoint ellipse algorithm.  All of the
+	 * decision variables are scaled by 4 so that they stay integers.
+	 *
+	 * @param a the horizontal radius of the ellipse, a >= 0
+	 * @param b the vertical radius of the ellipse, b >= 0
+	 * @return halfWidths where halfWidths[dy], 0 <= dy <= b, is the largest dx such that (dx, dy) is on or
+	 * 		   next to the edge of the ellipse centered at (0, 0) whose radii are a and b
+	 */
+	private static int[] halfWidths(final int a, final int b) {
+		int[] halfWidths = new int[b + 1];
+		long a2 = (long) a * a, b2 = (long) b * b;
+		int x = 0, y = b;
+		long dx = 0, dy = 2 * a2 * y;
+
+		// Region 1, where the edge is flatter than 45 degrees and x advances every step.
+		long d = 4 * b2 - 4 * a2 * b + a2;
+		while (dx < dy) {
+			x++;
+			dx += 2 * b2;
+			if (d < 0) {
+				d += 4 * (dx + b2);
+			}
+			else {
+				y--;
+				dy -= 2 * a2;
+				d += 4 * (dx - dy + b2);
+			}
+			halfWidths[y] = Math.max(halfWidths[y], x);
+		}
+
+		// Region 2, where the edge is steeper than 45 degrees and y advances every step.
+		// 4 * (b2 * (x + 1/2)^2 + a2 * (y - 1)^2 - a2 * b2), summed so that no intermediate result overflows.
+		d = 4 * ((b2 * ((long) x * x + x) - a2 * b2) + a2 * (y - 1) * (y - 1)) + b2;
+		while (y > 0) {
+			y--;
+			dy -= 2 * a2;
+			if (d > 0) {
+				d += 4 * (a2 - dy);
+			}
+			else {
+				x++;
+				dx += 2 * b2;
+				d += 4 * (dx - dy + a2);
+			}
+			halfWidths[y] = Math.max(halfWidths[y], x);
+		}
+
+		// The widest row always reaches the full horizontal radius.
+		halfWidths[0] = a;
+		return halfWidths;
+	}
+
+	/**
+	 * Returns the runs of pixels of a whiteboard covered by one shape but not another.
+	 *
+	 * @param outer the rows of the shape
+	 * @param inner the rows of the shape whose pixels are left out
+	 * @param width the width of the whiteboard
+	 * @param height the height of the whiteboard
+	 * @return the runs of pixels of the whiteboard that are in outer but not in inner, in increasing order of y
+	 */
+	private static int[] toRuns(final Rows outer, final Rows inner, final int width, final int height) {
+		int[] runs = new int[6 * outer.lefts.length];
+		int count = 0;
+
+		for (int i = 0; i < outer.lefts.length; i++) {
+			int y = outer.top + i;
+			if (y < 0 || y >= height) {
+				continue;
+			}
+
+			int left = outer.lefts[i], right = outer.rights[i];
+			if (inner.hasRow(y)) {
+				count = addRun(runs, count, y, left, Math.min(right, inner.lefts[y - inner.top] - 1), width);
+				count = addRun(runs, count, y, Math.max(left, inner.rights[y - inner.top] + 1), right, width);
+			}
+			else {
+				count = addRun(runs, count, y, left, right, width);
+			}
+		}
+
+		return Arrays.copyOf(runs, count);
+	}
+
+	/**
+	 * Adds a run of pixels to an array of runs, clipped to the width of a whiteboard.
+	 *
+	 * @return the number of ints of runs in use afterwards, which is count if no pixel of the run is on the whiteboard
+	 */
+	private static int addRun(final int[] runs, final int count, final int y, final int xStart, final int xEnd, final int width) {
+		int start = Math.max(0, xStart), end = Math.min(width - 1, xEnd);
+		if (start > end) {
+			return count;
+		}
+
+		runs[count] = y;
+		runs[count + 1] = start;
+		runs[count + 2] = end;
+		return count + 3;
+	}
+}
@@ -0,0 +1,175 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ShapesTest {
+	
+	/**
+	 * The following test methods test the rectangle() method.
+	 * 
+	 * The testing strategy for rectangle():
+	 * 		Filled and outlined rectangles, with corners given in either order
+	 * 		Outlines of thickness 1 and of an even thickness
+	 * 		An outline thick enough to leave no hole in the middle
+	 * 		A rectangle that is partly off the whiteboard
+	 * 
+	 */
+	@Test
+	public void filledRectangleTest() {
+		int[] runs = Shapes.rectangle(8, 6, 2, 3, 1, true, 20, 20);
+		assertArrayEquals(new int[] {3, 2, 8, 4, 2, 8, 5, 2, 8, 6, 2, 8}, runs);
+	}
+	
+	@Test
+	public void outlinedRectangleTest() {
+		int[] runs = Shapes.rectangle(2, 3, 8, 6, 1, false, 20, 20);
+		assertArrayEquals(new int[] {3, 2, 8, 4, 2, 2, 4, 8, 8, 5, 2, 2, 5, 8, 8, 6, 2, 8}, runs);
+		
+		// An outline of thickness 2 covers the edges and one pixel outside of them.
+		boolean[][] covered = cover(Shapes.rectangle(5, 5, 14, 14, 2, false, 20, 20), 20, 20);
+		assertEquals(12 * 12 - 8 * 8, count(covered));
+		assertTrue(covered[4][4]);
+		assertTrue(covered[5][10]);
+		assertFalse(covered[6][10]);
+	}
+	
+	@Test
+	public void thickRectangleTest() {
+		int[] runs = Shapes.rectangle(5, 5, 7, 7, 5, false, 20, 20);
+		assertEquals(7 * 7, count(cover(runs, 20, 20)));
+		assertEquals(3 * 7, runs.length);
+	}
+	
+	@Test
+	public void clippedRectangleTest() {
+		int[] runs = Shapes.rectangle(-5, -5, 4, 30, 1, false, 10, 10);
+		boolean[][] covered = cover(runs, 10, 10);
+		// Only the right edge of the outline is on the whiteboard.
+		assertEquals(10, count(covered));
+		assertTrue(covered[9][4]);
+		
+		assertEquals(0, Shapes.rectangle(12, 12, 15, 15, 1, true, 10, 10).length);
+	}
+	
+	/**
+	 * The following test methods test the ellipse() method.
+	 * 
+	 * The testing strategy for ellipse():
+	 * 		Circles with odd and even diameters, which must be symmetric about both of their axes; the smallest
+	 * 		is a 2 by 2 square
+	 * 		Ellipses that are wider than they are tall, and taller than they are wide
+	 * 		Ellipses with a radius of 0, which are lines
+	 * 		An outline, which must lie within the filled ellipse grown by its thickness
+	 * 		A large ellipse, whose decision variables must not overflow
+	 * 
+	 */
+	@Test
+	public void circleTest() {
+		// A circle of radius 3 around (5, 5).
+		int[] runs = Shapes.ellipse(2, 2, 8, 8, 1, true, 20, 20);
+		assertArrayEquals(new int[] {2, 4, 6, 3, 3, 7, 4, 2, 8, 5, 2, 8, 6, 2, 8, 7, 3, 7, 8, 4, 6}, runs);
+		
+		for (int size = 1; size <= 12; size++) {
+			boolean[][] covered = cover(Shapes.ellipse(0, 0, size, size, 1, true, 20, 20), 20, 20);
+			assertSymmetric(covered, size, size);
+			assertTrue(covered[0][size / 2]);
+			assertTrue(covered[size / 2][size]);
+			assertEquals(size == 1, covered[0][0]);
+		}
+	}
+	
+	@Test
+	public void ellipseTest() {
+		boolean[][] wide = cover(Shapes.ellipse(0, 0, 19, 6, 1, true, 20, 20), 20, 20);
+		boolean[][] tall = cover(Shapes.ellipse(0, 0, 6, 19, 1, true, 20, 20), 20, 20);
+		assertSymmetric(wide, 19, 6);
+		assertSymmetric(tall, 6, 19);
+		
+		// The ellipses are the same, turned on their sides.
+		for (int y = 0; y < 20; y++) {
+			for (int x = 0; x < 20; x++) {
+				assertEquals(wide[y][x], tall[x][y]);
+			}
+		}
+		assertTrue(wide[3][0]);
+		assertTrue(wide[0][9]);
+		assertFalse(wide[0][3]);
+	}
+	
+	@Test
+	public void flatEllipseTest() {
+		assertArrayEquals(new int[] {4, 2, 9}, Shapes.ellipse(2, 4, 9, 4, 1, true, 20, 20));
+		assertArrayEquals(new int[] {2, 4, 4, 3, 4, 4, 4, 4, 4}, Shapes.ellipse(4, 2, 4, 4, 1, true, 20, 20));
+		assertArrayEquals(new int[] {7, 7, 7}, Shapes.ellipse(7, 7, 7, 7, 1, false, 20, 20));
+	}
+	
+	@Test
+	public void outlinedEllipseTest() {
+		boolean[][] outline = cover(Shapes.ellipse(4, 4, 15, 13, 3, false, 20, 20), 20, 20);
+		boolean[][] outer = cover(Shapes.ellipse(3, 3, 16, 14, 1, true, 20, 20), 20, 20);
+		boolean[][] inner = cover(Shapes.ellipse(6, 6, 13, 11, 1, true, 20, 20), 20, 20);
+		
+		for (int y = 0; y < 20; y++) {
+			for (int x = 0; x < 20; x++) {
+				assertEquals(outer[y][x] && !inner[y][x], outline[y][x]);
+			}
+		}
+		assertTrue(outline[3][9]);
+		assertFalse(outline[9][9]);
+	}
+	
+	@Test
+	public void largeEllipseTest() {
+		int[] runs = Shapes.ellipse(-49500, 0, 50500, 200000, 1, true, 1000, 1000);
+		assertEquals(3 * 1000, runs.length);
+		for (int i = 0; i < runs.length; i += 3) {
+			assertTrue(runs[i + 1] <= runs[i + 2]);
+		}
+		// The top row is only a short run around the center of the whiteboard.
+		assertTrue(runs[1] > 0 && runs[2] < 999);
+		assertEquals(1000 - runs[2], runs[1]);
+	}
+	
+	/**
+	 * Marks the pixels covered by runs, checking that no two runs share a pixel.
+	 */
+	private static boolean[][] cover(final int[] runs, final int width, final int height) {
+		boolean[][] covered = new boolean[height][width];
+		for (int i = 0; i < runs.length; i += 3) {
+			if (i > 0) {
+				assertTrue(runs[i] >= runs[i - 3]);
+			}
+			for (int x = runs[i + 1]; x <= runs[i + 2]; x++) {
+				assertFalse(covered[runs[i]][x]);
+				covered[runs[i]][x] = true;
+			}
+		}
+		return covered;
+	}
+	
+	private static int count(final boolean[][] covered) {
+		int count = 0;
+		for (boolean[] row : covered) {
+			for (boolean pixel : row) {
+				if (pixel) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Checks that the pixels from (0, 0) to (xMax, yMax) are symmetric about the center lines of that rectangle.
+	 */
+	private static void assertSymmetric(final boolean[][] covered, final int xMax, final int yMax) {
+		for (int y = 0; y <= yMax; y++) {
+			for (int x = 0; x <= xMax; x++) {
+				assertEquals(covered[y][x], covered[yMax - y][x]);
+				assertEquals(covered[y][x], covered[y][xMax - x]);
+			}
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * StrokeIndex is a mutable datatype that indexes the bounding boxes of the strokes of a whiteboard, so that
+ * the strokes that touch a point or a rectangle can be found without looking at every stroke.  It is a
+ * loose quadtree: the bounds of each node are its square grown by half of its size on every side, and a
+ * stroke is held by the smallest node whose bounds contain its bounding box and whose square contains the
+ * center of its bounding box.  Unlike in a plain quadtree, a small stroke that crosses the middle of a large
+ * node still goes down to a small node, so no node ends up holding every stroke along its middle lines.
+ * Leaves are split once they hold more than NODE_CAPACITY strokes.
+ *
+ * The nodes, the lists of strokes in each node and the bounding boxes are all kept in arrays of primitives,
+ * and the queries walk the tree with a stack that is allocated once, so querying does not allocate any memory.
+ *
+ * Abstraction Function:
+ * 		Each StrokeIndex is represented by:
+ * 			rootSize:   the width and height of the square covered by the root, whose top left hand corner is (0, 0)
+ * 			nodeCount:  the number of nodes, node 0 being the root
+ * 			firstChild: firstChild[n] is the index of the first of the four children of node n, which are stored
+ * 						consecutively in the order top left, top right, bottom left, bottom right, or NONE if n is a leaf
+ * 			firstItem:  firstItem[n] is the first stroke in the list of strokes held by node n, or NONE if it is empty
+ * 			itemCount:  itemCount[n] is the number of strokes held by node n
+ * 			next, previous: next[s] and previous[s] are the strokes after and before s in the list of the node that
+ * 						holds s, or NONE
+ * 			itemNode:   itemNode[s] is the node that holds stroke s, or NONE if s has been removed
+ * 			generation: the number of times that the index has been cleared; stroke s is in the index only if
+ * 						itemGenerations[s] == generation and itemNode[s] != NONE
+ * 			xMins, yMins, xMaxes, yMaxes: the bounding box of stroke s is the rectangle from (xMins[s], yMins[s]) to
+ * 						(xMaxes[s], yMaxes[s]), inclusive
+ * 		A child of a node covers a quarter of the square covered by the node.  The bounds of a node whose square
+ * 		has its top left hand corner at (x, y) and has size size are the square from (x - size / 2, y - size / 2)
+ * 		to (x + 3 * size / 2, y + 3 * size / 2), exclusive.
+ *
+ * Representation Invariant:
+ * 		rootSize is a power of 2.
+ * 		Every stroke s in the index is in the list of exactly one node, itemNode[s], which is either the root or
+ * 		a node whose square contains the center of its bounding box and whose bounds contain its bounding box.
+ * 		If that node has children, the bounds of the child whose square contains the center do not contain
+ * 		the bounding box.
+ * 		itemCount[n] is the length of the list of node n.
+ *
+ * Thread safety Argument:
+ * 		StrokeIndex is not threadsafe, not even for queries, which share the traversal stack.  It must be
+ * 		guarded by the lock of the object that owns it.
+ *
+ */
+public class StrokeIndex {
+	/** The index of a missing node or stroke. */
+	public static final int NONE = -1;
+
+	/** Leaves are split once they hold more than this many strokes. */
+	private static final int NODE_CAPACITY = 16;
+
+	/** Nodes whose squares are at most this wide are never split. */
+	private static final int MIN_NODE_SIZE = 64;
+
+	/**
+	 * A Visitor is told about each stroke found by a query.
+	 */
+	public interface Visitor {
+		/**
+		 * Called once for each stroke found by a query.
+		 *
+		 * @param stroke the stroke whose bounding box intersects the query
+		 */
+		void visit(int stroke);
+	}
+
+	private final int rootSize;
+	private int nodeCount;
+	private int[] firstChild;
+	private int[] firstItem;
+	private int[] itemCount;
+	private int[] next;
+	private int[] previous;
+	private int[] itemNode;
+	private int[] itemGenerations;
+	private int generation;
+	private int[] xMins;
+	private int[] yMins;
+	private int[] xMaxes;
+	private int[] yMaxes;
+	private final int[] stack;
+
+	/**
+	 * Creates an empty StrokeIndex covering a whiteboard.
+	 *
+	 * @param width the width of the whiteboard in pixels, must be positive
+	 * @param height the height of the whiteboard in pixels, must be positive
+	 */
+	public StrokeIndex(final int width, final int height) {
+		int size = MIN_NODE_SIZE;
+		int depth = 0;
+		while (size < Math.max(width, height)) {
+			size *= 2;
+			depth++;
+		}
+		this.rootSize = size;
+
+		this.firstChild = new int[64];
+		this.firstItem = new int[64];
+		this.itemCount = new int[64];
+		this.next = new int[64];
+		this.previous = new int[64];
+		this.itemNode = new int[64];
+		this.itemGenerations = new int[64];
+		this.generation = 0;
+		this.xMins = new int[64];
+		this.yMins = new int[64];
+		this.xMaxes = new int[64];
+		this.yMaxes = new int[64];
+		Arrays.fill(itemNode, NONE);
+
+		// Each entry is a node and the top left hand corner and size of its square.  A depth first walk
+		// holds at most three siblings of each node on the path to the node being visited.
+		this.stack = new int[4 * (3 * (depth + 1) + 1)];
+
+		clear();
+	}
+
+	/**
+	 * Removes every stroke from this index.  Takes constant time; the strokes are not touched.
+	 *
+	 * @modifies removes every stroke and every node but the root
+	 */
+	public void clear() {
+		generation++;
+		nodeCount = 1;
+		firstChild[0] = NONE;
+		firstItem[0] = NONE;
+		itemCount[0] = 0;
+	}
+
+	/**
+	 * Adds a stroke to this index, or moves it if it is already in the index.
+	 *
+	 * @param stroke the stroke, a nonnegative integer
+	 * @param xMin the smallest x-coordinate of the bounding box of the stroke
+	 * @param yMin the smallest y-coordinate of the bounding box of the stroke
+	 * @param xMax the largest x-coordinate of the bounding box of the stroke, xMin <= xMax
+	 * @param yMax the largest y-coordinate of the bounding box of the stroke, yMin <= yMax
+	 * @modifies makes the bounding box of stroke the rectangle from (xMin, yMin) to (xMax, yMax), inclusive
+	 */
+	public void insert(final int stroke, final int xMin, final int yMin, final int xMax, final int yMax) {
+		if (stroke >= itemNode.length) {
+			growItems(stroke + 1);
+		}
+		if (contains(stroke)) {
+			if (xMins[stroke] == xMin && yMins[stroke] == yMin && xMaxes[stroke] == xMax && yMaxes[stroke] == yMax) {
+				return;
+			}
+			remove(stroke);
+		}
+
+		xMins[stroke] = xMin;
+		yMins[stroke] = yMin;
+		xMaxes[stroke] = xMax;
+		yMaxes[stroke] = yMax;
+
+		// Descend to the smallest node that can hold the bounding box.
+		int node = 0, x = 0, y = 0, size = rootSize;
+		while (firstChild[node] != NONE) {
+			int half = size / 2;
+			int quadrant = childHolding(stroke, x, y, half);
+			if (quadrant == NONE) {
+				break;
+			}
+
+			node = firstChild[node] + quadrant;
+			x += (quadrant & 1) * half;
+			y += (quadrant >> 1) * half;
+			size = half;
+		}
+
+		link(stroke, node);
+
+		if (firstChild[node] == NONE && itemCount[node] > NODE_CAPACITY && size > MIN_NODE_SIZE) {
+			split(node, x, y, size);
+		}
+	}
+
+	/**
+	 * Grows the bounding box of a stroke in this index to include a rectangle, or adds the stroke if it is not
+	 * in the index.
+	 *
+	 * @param stroke the stroke, a nonnegative integer
+	 * @param xMin the smallest x-coordinate of the rectangle
+	 * @param yMin the smallest y-coordinate of the rectangle
+	 * @param xMax the largest x-coordinate of the rectangle, xMin <= xMax
+	 * @param yMax the largest y-coordinate of the rectangle, yMin <= yMax
+	 * @modifies makes the bounding box of stroke the smallest rectangle containing both its old bounding box
+	 * 			 and the rectangle from (xMin, yMin) to (xMax, yMax), inclusive
+	 */
+	public void expand(final int stroke, final int xMin, final int yMin, final int xMax, final int yMax) {
+		if (!contains(stroke)) {
+			insert(stroke, xMin, yMin, xMax, yMax);
+		}
+		else {
+			insert(stroke, Math.min(xMin, xMins[stroke]), Math.min(yMin, yMins[stroke]), 
+				   Math.max(xMax, xMaxes[stroke]), Math.max(yMax, yMaxes[stroke]));
+		}
+	}
+
+	/**
+	 * Removes a stroke from this index.
+	 *
+	 * @param stroke a stroke
+	 * @modifies removes stroke from this index if it is in it
+	 */
+	public void remove(final int stroke) {
+		if (!contains(stroke)) {
+			return;
+		}
+
+		int node = itemNode[stroke];
+		if (previous[stroke] == NONE) {
+			firstItem[node] = next[stroke];
+		}
+		else {
+			next[previous[stroke]] = next[stroke];
+		}
+		if (next[stroke] != NONE) {
+			previous[next[stroke]] = previous[stroke];
+		}
+
+		itemCount[node]--;
+		itemNode[stroke] = NONE;
+	}
+
+	/**
+	 * Indicates whether a stroke is in this index.
+	 *
+	 * @param stroke a nonnegative integer
+	 * @return true only if stroke has been inserted and not removed since this index was last cleared
+	 */
+	public boolean contains(final int stroke) {
+		return stroke < itemNode.length && itemGenerations[stroke] == generation && itemNode[stroke] != NONE;
+	}
+
+	/**
+	 * Finds every stroke whose bounding box intersects a rectangle.  Does not allocate any memory.
+	 *
+	 * @param x the x-coordinate of the top left hand corner of the rectangle
+	 * @param y the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 * @param visitor told about every stroke whose bounding box intersects the rectangle, in no particular order.
+	 * 		  visitor must not modify this index.
+	 * @return the number of strokes that visitor was told about
+	 */
+	public int query(final int x, final int y, final int width, final int height, final Visitor visitor) {
+		return search(x, y, width, height, visitor, null);
+	}
+
+	/**
+	 * Finds every stroke whose bounding box intersects a rectangle.  Does not allocate any memory.
+	 *
+	 * @param x the x-coordinate of the top left hand corner of the rectangle
+	 * @param y the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle
+	 * @param height the height of the rectangle
+	 * @param results the array into which the strokes are written, in no particular order
+	 * @return the number of strokes whose bounding box intersects the rectangle.  If this is larger than the
+	 * 		   length of results, only the first results.length of them were written.
+	 */
+	public int query(final int x, final int y, final int width, final int height, final int[] results) {
+		return search(x, y, width, height, null, results);
+	}
+
+	/**
+	 * Returns the number of nodes in this index.
+	 *
+	 * @return the number of nodes in the quadtree, including the root
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Walks the nodes whose bounds intersect a rectangle and reports the strokes in them whose bounding
+	 * boxes intersect it to visitor, if it is not null, and to results, if it is not null.
+	 */
+	private int search(final int x, final int y, final int width, final int height, final Visitor visitor, final int[] results) {
+		if (width <= 0 || height <= 0) {
+			return 0;
+		}
+
+		int queryXMax = x + width - 1, queryYMax = y + height - 1;
+		int found = 0;
+
+		int top = 0;
+		stack[top++] = 0; stack[top++] = 0; stack[top++] = 0; stack[top++] = rootSize;
+
+		while (top > 0) {
+			int size = stack[--top], nodeY = stack[--top], nodeX = stack[--top], node = stack[--top];
+
+			for (int stroke = firstItem[node]; stroke != NONE; stroke = next[stroke]) {
+				if (xMins[stroke] <= queryXMax && x <= xMaxes[stroke] && yMins[stroke] <= queryYMax && y <= yMaxes[stroke]) {
+					if (visitor != null) {
+						visitor.visit(stroke);
+					}
+					if (results != null && found < results.length) {
+						results[found] = stroke;
+					}
+					found++;
+				}
+			}
+
+			if (firstChild[node] != NONE) {
+				int half = size / 2, slack = half / 2;
+				for (int quadrant = 0; quadrant < 4; quadrant++) {
+					int childX = nodeX + (quadrant & 1) * half, childY = nodeY + (quadrant >> 1) * half;
+					int child = firstChild[node] + quadrant;
+
+					if ((firstItem[child] != NONE || firstChild[child] != NONE)
+						&& childX - slack <= queryXMax && x < childX + half + slack 
+						&& childY - slack <= queryYMax && y < childY + half + slack) {
+						stack[top++] = child; stack[top++] = childX; stack[top++] = childY; stack[top++] = half;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Gives a leaf four children and moves the strokes that fit inside one of them into it.
+	 */
+	private void split(final int node, final int x, final int y, final int size) {
+		if (nodeCount + 4 > firstChild.length) {
+			int capacity = 2 * firstChild.length;
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			firstItem = Arrays.copyOf(firstItem, capacity);
+			itemCount = Arrays.copyOf(itemCount, capacity);
+		}
+
+		int child = nodeCount;
+		for (int i = child; i < child + 4; i++) {
+			firstChild[i] = NONE;
+			firstItem[i] = NONE;
+			itemCount[i] = 0;
+		}
+		nodeCount += 4;
+		firstChild[node] = child;
+
+		int half = size / 2;
+		int stroke = firstItem[node];
+		while (stroke != NONE) {
+			int following = next[stroke];
+			int quadrant = childHolding(stroke, x, y, half);
+
+			if (quadrant != NONE) {
+				remove(stroke);
+				link(stroke, child + quadrant);
+			}
+			stroke = following;
+		}
+	}
+
+	/**
+	 * Returns the child of the node whose square has its top left hand corner at (x, y) and has size 2 * half
+	 * that can hold a stroke: 0 for top left, 1 for top right, 2 for bottom left, 3 for bottom right, or NONE if
+	 * the bounding box of the stroke does not fit in the bounds of the child whose square contains its center.
+	 */
+	private int childHolding(final int stroke, final int x, final int y, final int half) {
+		int column = ((xMins[stroke] + xMaxes[stroke]) / 2 >= x + half) ? 1 : 0;
+		int row = ((yMins[stroke] + yMaxes[stroke]) / 2 >= y + half) ? 1 : 0;
+
+		int childX = x + column * half, childY = y + row * half, slack = half / 2;
+		if (xMins[stroke] < childX - slack || xMaxes[stroke] >= childX + half + slack
+			|| yMins[stroke] < childY - slack || yMaxes[stroke] >= childY + half + slack) {
+			return NONE;
+		}
+		return 2 * row + column;
+	}
+
+	/**
+	 * Adds a stroke to the front of the list of a node.
+	 */
+	private void link(final int stroke, final int node) {
+		previous[stroke] = NONE;
+		next[stroke] = firstItem[node];
+		if (firstItem[node] != NONE) {
+			previous[firstItem[node]] = stroke;
+		}
+
+		firstItem[node] = stroke;
+		itemNode[stroke] = node;
+		itemGenerations[stroke] = generation;
+		itemCount[node]++;
+	}
+
+	/**
+	 * Grows the arrays that are indexed by stroke so that they can hold at least minimum strokes.
+	 */
+	private void growItems(final int minimum) {
+		int capacity = Math.max(minimum, 2 * itemNode.length);
+		int oldCapacity = itemNode.length;
+
+		next = Arrays.copyOf(next, capacity);
+		previous = Arrays.copyOf(previous, capacity);
+		itemNode = Arrays.copyOf(itemNode, capacity);
+		itemGenerations = Arrays.copyOf(itemGenerations, capacity);
+		xMins = Arrays.copyOf(xMins, capacity);
+		yMins = Arrays.copyOf(yMins, capacity);
+		xMaxes = Arrays.copyOf(xMaxes, capacity);
+		yMaxes = Arrays.copyOf(yMaxes, capacity);
+		Arrays.fill(itemNode, oldCapacity, capacity, NONE);
+	}
+}
@@ -0,0 +1,119 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class StrokeIndexTest {
+	
+	/**
+	 * The following test methods test the insert(), expand(), remove() and query() methods.
+	 * 
+	 * The testing strategy for insert(), expand(), remove() and query():
+	 * 		An empty index, an empty query rectangle
+	 * 		Query a point and a rectangle, touching bounding boxes only at their edges
+	 * 		Enough strokes that leaves are split, compared against checking every stroke
+	 * 		Move, grow and remove strokes
+	 * 		A results array that is too short
+	 * 
+	 */
+	@Test
+	public void emptyIndexTest() {
+		StrokeIndex index = new StrokeIndex(800, 600);
+		assertEquals(0, index.query(0, 0, 800, 600, new int[4]));
+		assertFalse(index.contains(0));
+		
+		index.insert(0, 10, 10, 20, 20);
+		assertEquals(0, index.query(10, 10, 0, 5, new int[4]));
+	}
+	
+	@Test
+	public void pointAndRectangleTest() {
+		StrokeIndex index = new StrokeIndex(800, 600);
+		index.insert(0, 10, 10, 20, 20);
+		index.insert(1, 30, 10, 40, 20);
+		
+		int[] results = new int[4];
+		assertEquals(1, index.query(20, 20, 1, 1, results));
+		assertEquals(0, results[0]);
+		assertEquals(0, index.query(21, 15, 9, 1, results));
+		assertEquals(2, index.query(20, 15, 11, 1, results));
+		
+		// Growing a stroke moves its bounding box; removing it takes it out of every query.
+		index.expand(0, 100, 100, 110, 110);
+		assertEquals(1, index.query(105, 105, 1, 1, results));
+		assertEquals(1, index.query(15, 15, 1, 1, results));
+		index.remove(0);
+		assertFalse(index.contains(0));
+		assertEquals(0, index.query(105, 105, 1, 1, results));
+		
+		// A results array that is too short still gets the number of strokes found.
+		index.insert(2, 0, 0, 799, 599);
+		assertEquals(2, index.query(0, 0, 800, 600, new int[1]));
+	}
+	
+	@Test
+	public void manyStrokesTest() {
+		int size = 4096, count = 5000;
+		StrokeIndex index = new StrokeIndex(size, size);
+		int[][] boxes = new int[count][];
+		Random random = new Random(6005);
+		
+		for (int i = 0; i < count; i++) {
+			int x = random.nextInt(size - 200), y = random.nextInt(size - 200);
+			boxes[i] = new int[] {x, y, x + random.nextInt(200), y + random.nextInt(200)};
+			index.insert(i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3]);
+		}
+		assertTrue(index.getNodeCount() > 1);
+		
+		// Remove every third stroke.
+		for (int i = 0; i < count; i += 3) {
+			index.remove(i);
+		}
+		
+		int[] results = new int[count];
+		for (int query = 0; query < 100; query++) {
+			int x = random.nextInt(size), y = random.nextInt(size), width = random.nextInt(500) + 1, height = random.nextInt(500) + 1;
+			
+			int found = index.query(x, y, width, height, results);
+			int[] actual = Arrays.copyOf(results, found);
+			Arrays.sort(actual);
+			
+			int expectedCount = 0;
+			int[] expected = new int[count];
+			for (int i = 0; i < count; i++) {
+				if (i % 3 != 0 && boxes[i][0] < x + width && x <= boxes[i][2] && boxes[i][1] < y + height && y <= boxes[i][3]) {
+					expected[expectedCount++] = i;
+				}
+			}
+			
+			assertArrayEquals(Arrays.copyOf(expected, expectedCount), actual);
+		}
+	}
+	
+	/**
+	 * The following test methods test the clear() method.
+	 * 
+	 * The testing strategy for clear():
+	 * 		Clear an index with strokes and insert the same strokes again
+	 * 
+	 */
+	@Test
+	public void clearTest() {
+		StrokeIndex index = new StrokeIndex(800, 600);
+		for (int i = 0; i < 100; i++) {
+			index.insert(i, i, i, i + 5, i + 5);
+		}
+		
+		index.clear();
+		assertFalse(index.contains(0));
+		assertEquals(1, index.getNodeCount());
+		assertEquals(0, index.query(0, 0, 800, 600, new int[100]));
+		
+		index.insert(0, 1, 1, 2, 2);
+		assertEquals(1, index.query(0, 0, 800, 600, new int[100]));
+	}
+}
@@ -0,0 +1,523 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * StrokeStore is a mutable datatype that records the strokes that have been drawn on a whiteboard.  A stroke
+ * is a polyline drawn by one user in one color, opacity and thickness.  Strokes are kept in parallel arrays of
+ * primitives and the points of every stroke are kept in two shared arrays of coordinates, so a stroke costs
+ * a few ints plus two ints per point no matter how many pixels it covers.
+ *
+ * A flood fill or a shape is recorded as a stroke whose thickness is FILL_THICKNESS.  Its points, taken in
+ * pairs, are the first and last pixels of the horizontal runs of pixels that it colored, rather than a polyline.
+ * A rectangle of pixels copied or moved to another place is recorded as a stroke whose thickness is
+ * COPY_THICKNESS or MOVE_THICKNESS.  Its three points are the top left hand and bottom right hand corners of
+ * the source and the place that the top left hand corner was copied to, and its color is not used.
+ *
+ * Abstraction Function:
+ * 		Each StrokeStore is represented by:
+ * 			strokeCount:   the number of strokes that have been recorded since the store was last cleared
+ * 			firstId:       the id of the first of those strokes; the stroke at index i has the id firstId + i
+ * 			colors:        colors[i] is the packed 0xAARRGGBB color of the stroke at index i, AA being its
+ * 						   opacity from 0 to AlphaBlend.OPAQUE
+ * 			thicknesses:   thicknesses[i] is the thickness in pixels of the stroke at index i
+ * 			layers:        layers[i] is the index of the layer of the whiteboard that the stroke at index i
+ * 						   was drawn on
+ * 			authors:       authors[i] is the index in authorNames of the username of the user that drew
+ * 						   the stroke at index i
+ * 			firstPoints:   firstPoints[i] is the index in xs and ys of the first point of the stroke at index i
+ * 			pointCounts:   pointCounts[i] is the number of points of the stroke at index i
+ * 			capacities:    capacities[i] is the number of slots of xs and ys kept for the points of the stroke at
+ * 						   index i, so that points can be added to it without moving it
+ * 			pointCount:    the number of slots of xs and ys that have been given to strokes
+ * 			xs, ys:        (xs[j], ys[j]) is the jth point, the points of each stroke being stored consecutively
+ * 						   in the order that they were drawn
+ * 			authorNames:   the usernames of the users that have drawn strokes
+ * 			lastStrokes:   lastStrokes[a] is the index of the stroke that the user authorNames.get(a) recorded 
+ * 						   last, or -1 if they have recorded none since the store was last cleared
+ * 			removed:       removed[i] is true if the stroke at index i has been removed, e.g. because it was undone;
+ * 						   a removed stroke keeps its index and points so that it can be restored
+ * 			removedCount:  the number of strokes that have been removed
+ * 		The points of the stroke at index i are the points at indexes firstPoints[i] to 
+ * 		firstPoints[i] + pointCounts[i] - 1.  Points are added to any stroke that is still being drawn, not only
+ * 		to the last one, because several users can be drawing at once; a stroke whose slots are full and that
+ * 		does not end at pointCount is moved to the end of xs and ys with twice as many slots.
+ *
+ * Representation Invariant:
+ * 		0 <= strokeCount <= colors.length == thicknesses.length == layers.length == authors.length == firstPoints.length 
+ * 		== pointCounts.length == capacities.length == removed.length
+ * 		removedCount is the number of true entries among the first strokeCount entries of removed.
+ * 		0 <= pointCount <= xs.length == ys.length
+ * 		1 <= pointCounts[i] <= capacities[i] for every stroke, and the ranges firstPoints[i] to 
+ * 		firstPoints[i] + capacities[i] - 1 of the strokes do not overlap and lie between 0 and pointCount - 1.
+ * 		authorIndexes maps every username in authorNames to its index in authorNames.
+ * 		authorNames.size() <= lastStrokes.length, and every entry of lastStrokes is -1 or the index of a stroke 
+ * 		whose author is the user of that entry.
+ *
+ * Thread safety Argument:
+ * 		StrokeStore is not threadsafe.  It must be guarded by the lock of the object that owns it.
+ *
+ */
+public class StrokeStore {
+	/** The thickness of the strokes that are runs of pixels, i.e. flood fills and shapes. */
+	public static final int FILL_THICKNESS = 0;
+
+	/** The thickness of the strokes that copy a rectangle of pixels to another place. */
+	public static final int COPY_THICKNESS = -1;
+
+	/** The thickness of the strokes that move a rectangle of pixels to another place, emptying where it was. */
+	public static final int MOVE_THICKNESS = -2;
+
+	private static final int INITIAL_STROKES = 16;
+	private static final int INITIAL_POINTS = 64;
+
+	private int strokeCount;
+	private int firstId;
+	private int[] colors;
+	private int[] thicknesses;
+	private int[] layers;
+	private int[] authors;
+	private int[] firstPoints;
+	private int[] pointCounts;
+	private int[] capacities;
+	private boolean[] removed;
+	private int removedCount;
+	private int pointCount;
+	private int[] xs;
+	private int[] ys;
+	private final ArrayList<String> authorNames;
+	private final HashMap<String, Integer> authorIndexes;
+	private int[] lastStrokes;
+
+	/**
+	 * Creates a StrokeStore that does not contain any strokes.
+	 */
+	public StrokeStore() {
+		this.strokeCount = 0;
+		this.firstId = 0;
+		this.colors = new int[INITIAL_STROKES];
+		this.thicknesses = new int[INITIAL_STROKES];
+		this.layers = new int[INITIAL_STROKES];
+		this.authors = new int[INITIAL_STROKES];
+		this.firstPoints = new int[INITIAL_STROKES];
+		this.pointCounts = new int[INITIAL_STROKES];
+		this.capacities = new int[INITIAL_STROKES];
+		this.removed = new boolean[INITIAL_STROKES];
+		this.removedCount = 0;
+		this.pointCount = 0;
+		this.xs = new int[INITIAL_POINTS];
+		this.ys = new int[INITIAL_POINTS];
+		this.authorNames = new ArrayList<String>();
+		this.authorIndexes = new HashMap<String, Integer>();
+		this.lastStrokes = new int[0];
+	}
+
+	/**
+	 * Records a new stroke on the base layer that consists of a single point.
+	 *
+	 * @return addStroke(author, 0, rgb, thickness, x, y)
+	 * @see #addStroke(String, int, int, int, int, int)
+	 */
+	public int addStroke(final String author, final int rgb, final int thickness, final int x, final int y) {
+		return addStroke(author, 0, rgb, thickness, x, y);
+	}
+
+	/**
+	 * Records a new opaque stroke that consists of a single point.
+	 *
+	 * @return addStroke(author, layer, rgb, AlphaBlend.OPAQUE, thickness, x, y)
+	 * @see #addStroke(String, int, int, int, int, int, int)
+	 */
+	public int addStroke(final String author, final int layer, final int rgb, final int thickness, final int x, final int y) {
+		return addStroke(author, layer, rgb, AlphaBlend.OPAQUE, thickness, x, y);
+	}
+
+	/**
+	 * Records a new stroke that consists of a single point.
+	 *
+	 * @param author the username of the user that drew the stroke, cannot contain any spaces
+	 * @param layer the index of the layer that the stroke was drawn on
+	 * @param rgb the packed 0xRRGGBB color of the stroke
+	 * @param alpha the opacity of the stroke, 0 <= alpha <= AlphaBlend.OPAQUE
+	 * @param thickness the thickness of the stroke in pixels
+	 * @param x the x-coordinate of the first point of the stroke
+	 * @param y the y-coordinate of the first point of the stroke
+	 * @return the id of the new stroke, which is larger than the id of every stroke recorded before it
+	 * @modifies adds the stroke to this store
+	 */
+	public int addStroke(final String author, final int layer, final int rgb, final int alpha, final int thickness, 
+						 final int x, final int y) {
+		if (strokeCount == colors.length) {
+			int capacity = 2 * strokeCount;
+			colors = Arrays.copyOf(colors, capacity);
+			thicknesses = Arrays.copyOf(thicknesses, capacity);
+			layers = Arrays.copyOf(layers, capacity);
+			authors = Arrays.copyOf(authors, capacity);
+			firstPoints = Arrays.copyOf(firstPoints, capacity);
+			pointCounts = Arrays.copyOf(pointCounts, capacity);
+			capacities = Arrays.copyOf(capacities, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+
+		Integer authorIndex = authorIndexes.get(author);
+		if (authorIndex == null) {
+			authorIndex = authorNames.size();
+			authorNames.add(author);
+			authorIndexes.put(author, authorIndex);
+			if (authorIndex == lastStrokes.length) {
+				int previousLength = lastStrokes.length;
+				lastStrokes = Arrays.copyOf(lastStrokes, Math.max(4, 2 * previousLength));
+				Arrays.fill(lastStrokes, previousLength, lastStrokes.length, -1);
+			}
+		}
+
+		colors[strokeCount] = (alpha << 24) | rgb;
+		thicknesses[strokeCount] = thickness;
+		layers[strokeCount] = layer;
+		authors[strokeCount] = authorIndex;
+		firstPoints[strokeCount] = pointCount;
+		pointCounts[strokeCount] = 0;
+		capacities[strokeCount] = 0;
+		removed[strokeCount] = false;
+		lastStrokes[authorIndex] = strokeCount;
+		strokeCount++;
+		addPoint(strokeCount - 1, x, y);
+
+		return firstId + strokeCount - 1;
+	}
+
+	/**
+	 * Indicates whether a line segment on the base layer continues the stroke that its author recorded last.
+	 *
+	 * @return continuesLastStroke(author, 0, rgb, thickness, x, y)
+	 * @see #continuesLastStroke(String, int, int, int, int, int)
+	 */
+	public boolean continuesLastStroke(final String author, final int rgb, final int thickness, final int x, final int y) {
+		return continuesLastStroke(author, 0, rgb, thickness, x, y);
+	}
+
+	/**
+	 * Indicates whether an opaque line segment continues the stroke that its author recorded last.
+	 *
+	 * @return continuesLastStroke(author, layer, rgb, AlphaBlend.OPAQUE, thickness, x, y)
+	 * @see #continuesLastStroke(String, int, int, int, int, int, int)
+	 */
+	public boolean continuesLastStroke(final String author, final int layer, final int rgb, final int thickness, 
+									   final int x, final int y) {
+		return continuesLastStroke(author, layer, rgb, AlphaBlend.OPAQUE, thickness, x, y);
+	}
+
+	/**
+	 * Indicates whether a line segment continues the stroke that its author recorded last, so that it can be
+	 * added to that stroke with addPoint() rather than recorded as a new stroke.  Strokes that other users 
+	 * recorded in the meantime do not matter, so users that draw at the same time each continue their own stroke.
+	 *
+	 * @param author the username of the user that drew the line segment
+	 * @param layer the index of the layer that the line segment was drawn on
+	 * @param rgb the packed 0xRRGGBB color of the line segment
+	 * @param alpha the opacity of the line segment
+	 * @param thickness the thickness of the line segment in pixels
+	 * @param x the x-coordinate of the starting point of the line segment
+	 * @param y the y-coordinate of the starting point of the line segment
+	 * @return true only if author has recorded a stroke since this store was last cleared and the last stroke 
+	 * 		   that they recorded has not been removed, was drawn on layer in the color rgb with the opacity alpha 
+	 * 		   and the thickness thickness and its last point is (x, y)
+	 */
+	public boolean continuesLastStroke(final String author, final int layer, final int rgb, final int alpha, 
+									   final int thickness, final int x, final int y) {
+		int last = getLastStroke(author);
+		if (last == -1 || removed[last]) {
+			return false;
+		}
+
+		int end = firstPoints[last] + pointCounts[last] - 1;
+		return colors[last] == ((alpha << 24) | rgb) && thicknesses[last] == thickness && layers[last] == layer
+			   && xs[end] == x && ys[end] == y;
+	}
+
+	/**
+	 * Returns the stroke that a user recorded last.
+	 *
+	 * @param author the username of a user
+	 * @return the index of the stroke that author recorded last, or -1 if they have not recorded a stroke since
+	 * 		   this store was last cleared
+	 */
+	public int getLastStroke(final String author) {
+		Integer authorIndex = authorIndexes.get(author);
+		return authorIndex == null ? -1 : lastStrokes[authorIndex];
+	}
+
+	/**
+	 * Adds a point to the end of the stroke that was recorded last, as addPoint(getStrokeCount() - 1, x, y) does.
+	 *
+	 * @see #addPoint(int, int, int)
+	 */
+	public void addPoint(final int x, final int y) {
+		addPoint(strokeCount - 1, x, y);
+	}
+
+	/**
+	 * Adds a point to the end of a stroke.  This takes amortized constant time whichever stroke it is.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @param x the x-coordinate of the point
+	 * @param y the y-coordinate of the point
+	 * @modifies adds (x, y) to the end of the stroke at index
+	 */
+	public void addPoint(final int index, final int x, final int y) {
+		int count = pointCounts[index];
+		if (count == capacities[index]) {
+			if (firstPoints[index] + count == pointCount) {
+				// The stroke ends the points, so it grows in place.
+				reservePoints(1);
+				capacities[index]++;
+			}
+			else {
+				int capacity = 2 * count;
+				int first = reservePoints(capacity);
+				System.arraycopy(xs, firstPoints[index], xs, first, count);
+				System.arraycopy(ys, firstPoints[index], ys, first, count);
+				firstPoints[index] = first;
+				capacities[index] = capacity;
+			}
+		}
+
+		xs[firstPoints[index] + count] = x;
+		ys[firstPoints[index] + count] = y;
+		pointCounts[index] = count + 1;
+	}
+
+	/**
+	 * Removes every stroke from this store.  The ids of strokes recorded afterwards are still larger than
+	 * the ids of the strokes that were removed.
+	 *
+	 * @modifies removes every stroke from this store
+	 */
+	public void clear() {
+		firstId += strokeCount;
+		strokeCount = 0;
+		removedCount = 0;
+		pointCount = 0;
+		Arrays.fill(lastStrokes, -1);
+	}
+
+	/**
+	 * Returns the number of strokes in this store.
+	 *
+	 * @return the number of strokes recorded since this store was last cleared, including removed strokes
+	 */
+	public int getStrokeCount() {
+		return strokeCount;
+	}
+
+	/**
+	 * Returns the number of strokes in this store that have not been removed.
+	 *
+	 * @return the number of strokes recorded since this store was last cleared that have not been removed
+	 */
+	public int getLiveStrokeCount() {
+		return strokeCount - removedCount;
+	}
+
+	/**
+	 * Indicates whether a stroke has been removed.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return true only if the stroke at index has been removed and not restored since
+	 */
+	public boolean isRemoved(final int index) {
+		return removed[index];
+	}
+
+	/**
+	 * Removes a stroke from this store, or restores a stroke that was removed.  The stroke keeps its index
+	 * and id either way.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @param isRemoved true to remove the stroke, false to restore it
+	 * @modifies marks the stroke at index as removed if isRemoved is true, and as not removed otherwise
+	 */
+	public void setRemoved(final int index, final boolean isRemoved) {
+		if (removed[index] != isRemoved) {
+			removed[index] = isRemoved;
+			removedCount += isRemoved ? 1 : -1;
+		}
+	}
+
+	/**
+	 * Returns the index of a stroke.
+	 *
+	 * @param id the id of a stroke
+	 * @return the index of the stroke whose id is id, or -1 if no stroke with that id has been recorded
+	 * 		   since this store was last cleared
+	 */
+	public int getIndex(final int id) {
+		int index = id - firstId;
+		return (index >= 0 && index < strokeCount) ? index : -1;
+	}
+
+	/**
+	 * Returns the id of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store, strokes being
+	 * 		  indexed in the order that they were recorded
+	 * @return the id of the stroke at index
+	 */
+	public int getId(final int index) {
+		return firstId + index;
+	}
+
+	/**
+	 * Returns the username of the user that drew a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the username of the user that drew the stroke at index
+	 */
+	public String getAuthor(final int index) {
+		return authorNames.get(authors[index]);
+	}
+
+	/**
+	 * Returns the color of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the packed 0xRRGGBB color of the stroke at index
+	 */
+	public int getColor(final int index) {
+		return colors[index] & 0xFFFFFF;
+	}
+
+	/**
+	 * Returns the opacity of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the opacity of the stroke at index, from 0 to AlphaBlend.OPAQUE
+	 */
+	public int getAlpha(final int index) {
+		return colors[index] >>> 24;
+	}
+
+	/**
+	 * Returns the thickness of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the thickness of the stroke at index in pixels
+	 */
+	public int getThickness(final int index) {
+		return thicknesses[index];
+	}
+
+	/**
+	 * Returns the layer of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the index of the layer that the stroke at index was drawn on
+	 */
+	public int getLayer(final int index) {
+		return layers[index];
+	}
+
+	/**
+	 * Indicates whether a stroke is made of runs of pixels, i.e. is a flood fill or a shape.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return true only if the thickness of the stroke at index is FILL_THICKNESS, in which case it has an 
+	 * 		   even number of points and points 2k and 2k + 1 are the ends of a horizontal run of pixels
+	 */
+	public boolean isFill(final int index) {
+		return thicknesses[index] == FILL_THICKNESS;
+	}
+
+	/**
+	 * Indicates whether a stroke copies or moves a rectangle of pixels.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return true only if the thickness of the stroke at index is COPY_THICKNESS or MOVE_THICKNESS, in which
+	 * 		   case it has three points: the corners of the source and the corner of the destination
+	 */
+	public boolean isBlit(final int index) {
+		return thicknesses[index] == COPY_THICKNESS || thicknesses[index] == MOVE_THICKNESS;
+	}
+
+	/**
+	 * Returns the number of points of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @return the number of points of the stroke at index, which is at least 1
+	 */
+	public int getPointCount(final int index) {
+		return pointCounts[index];
+	}
+
+	/**
+	 * Returns the x-coordinate of a point of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @param point the index of the point in the stroke, 0 <= point < the number of points of the stroke
+	 * @return the x-coordinate of the point
+	 */
+	public int getX(final int index, final int point) {
+		return xs[firstPoints[index] + point];
+	}
+
+	/**
+	 * Returns the y-coordinate of a point of a stroke.
+	 *
+	 * @param index the index of the stroke, 0 <= index < the number of strokes in this store
+	 * @param point the index of the point in the stroke, 0 <= point < the number of points of the stroke
+	 * @return the y-coordinate of the point
+	 */
+	public int getY(final int index, final int point) {
+		return ys[firstPoints[index] + point];
+	}
+
+	/**
+	 * Appends the String representation of every stroke in this store that has not been removed to a 
+	 * StringBuilder, in the order that they were recorded.
+	 *
+	 * @param builder the StringBuilder to which the String representations are appended
+	 * @modifies appends "[id] [author] [red] [green] [blue] [alpha] [thickness] [n] [x1] [y1] ... [xn] [yn] " to builder
+	 * 			 for every stroke, where n is the number of points of the stroke
+	 */
+	public void appendStrokes(final StringBuilder builder) {
+		for (int i = 0; i < strokeCount; i++) {
+			if (removed[i]) {
+				continue;
+			}
+			
+			int rgb = colors[i];
+			builder.append(firstId + i).append(' ').append(getAuthor(i)).append(' ')
+				   .append((rgb >> 16) & 0xFF).append(' ')
+				   .append((rgb >> 8) & 0xFF).append(' ')
+				   .append(rgb & 0xFF).append(' ')
+				   .append(rgb >>> 24).append(' ')
+				   .append(thicknesses[i]).append(' ');
+
+			int n = pointCounts[i];
+			builder.append(n).append(' ');
+			for (int j = firstPoints[i]; j < firstPoints[i] + n; j++) {
+				builder.append(xs[j]).append(' ').append(ys[j]).append(' ');
+			}
+		}
+	}
+
+	/**
+	 * Gives slots at the end of the shared arrays of coordinates to a stroke, growing the arrays if they are full.
+	 *
+	 * @param slots the number of slots, slots > 0
+	 * @return the index in xs and ys of the first of the slots
+	 */
+	private int reservePoints(final int slots) {
+		if (pointCount + slots > xs.length) {
+			int capacity = Math.max(2 * xs.length, pointCount + slots);
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+		}
+
+		int first = pointCount;
+		pointCount += slots;
+		return first;
+	}
+}
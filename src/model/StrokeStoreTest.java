@@ -0,0 +1,170 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StrokeStoreTest {
+	private final static int RED = 0xFF0000;
+	private final static int BLUE = 0x0000FF;
+	
+	/**
+	 * The following test methods test the addStroke(), addPoint() and continuesLastStroke() methods
+	 * and the methods that read strokes.
+	 * 
+	 * The testing strategy for addStroke(), addPoint() and continuesLastStroke():
+	 * 		An empty store
+	 * 		A stroke of a single point and a stroke of several points
+	 * 		Enough strokes and points that the arrays of the store grow
+	 * 		Segments that differ from the last stroke in author, color, opacity, thickness and starting point
+	 * 		Strokes of several authors that are drawn at once, so that their points arrive interleaved
+	 * 
+	 */
+	@Test
+	public void addStrokeTest() {
+		StrokeStore store = new StrokeStore();
+		assertEquals(0, store.getStrokeCount());
+		assertFalse(store.continuesLastStroke("Barry", RED, 1, 0, 0));
+		
+		assertEquals(0, store.addStroke("Barry", RED, 3, 5, 6));
+		assertEquals(1, store.addStroke("Mary", BLUE, 1, 7, 8));
+		store.addPoint(9, 10);
+		store.addPoint(11, 12);
+		
+		assertEquals(2, store.getStrokeCount());
+		assertEquals("Barry", store.getAuthor(0));
+		assertEquals(RED, store.getColor(0));
+		assertEquals(3, store.getThickness(0));
+		assertEquals(1, store.getPointCount(0));
+		assertEquals(5, store.getX(0, 0));
+		assertEquals(6, store.getY(0, 0));
+		assertEquals(3, store.getPointCount(1));
+		assertEquals(11, store.getX(1, 2));
+		assertEquals(12, store.getY(1, 2));
+		
+		assertTrue(store.continuesLastStroke("Mary", BLUE, 1, 11, 12));
+		assertFalse(store.continuesLastStroke("Barry", BLUE, 1, 11, 12));
+		assertFalse(store.continuesLastStroke("Mary", RED, 1, 11, 12));
+		assertFalse(store.continuesLastStroke("Mary", BLUE, 2, 11, 12));
+		assertFalse(store.continuesLastStroke("Mary", BLUE, 1, 9, 10));
+		
+		// A translucent stroke keeps its color and its opacity apart.
+		assertEquals(AlphaBlend.OPAQUE, store.getAlpha(1));
+		assertEquals(2, store.addStroke("Mary", 0, BLUE, 100, 1, 11, 12));
+		assertEquals(BLUE, store.getColor(2));
+		assertEquals(100, store.getAlpha(2));
+		assertFalse(store.continuesLastStroke("Mary", BLUE, 1, 11, 12));
+		assertTrue(store.continuesLastStroke("Mary", 0, BLUE, 100, 1, 11, 12));
+	}
+	
+	@Test
+	public void interleavedTest() {
+		StrokeStore store = new StrokeStore();
+		assertEquals(-1, store.getLastStroke("Barry"));
+		store.addStroke("Barry", RED, 1, 0, 0);
+		store.addStroke("Mary", BLUE, 1, 100, 0);
+		for (int i = 1; i <= 100; i++) {
+			assertTrue(store.continuesLastStroke("Barry", RED, 1, i - 1, 0));
+			store.addPoint(store.getLastStroke("Barry"), i, 0);
+			assertTrue(store.continuesLastStroke("Mary", BLUE, 1, 100, i - 1));
+			store.addPoint(store.getLastStroke("Mary"), 100, i);
+		}
+		
+		assertEquals(2, store.getStrokeCount());
+		assertEquals(0, store.getLastStroke("Barry"));
+		assertEquals(1, store.getLastStroke("Mary"));
+		assertEquals(101, store.getPointCount(0));
+		assertEquals(101, store.getPointCount(1));
+		for (int i = 0; i <= 100; i++) {
+			assertEquals(i, store.getX(0, i));
+			assertEquals(0, store.getY(0, i));
+			assertEquals(100, store.getX(1, i));
+			assertEquals(i, store.getY(1, i));
+		}
+		
+		// Barry's new stroke is the one that is continued from then on.
+		store.addStroke("Barry", RED, 1, 5, 5);
+		assertFalse(store.continuesLastStroke("Barry", RED, 1, 100, 0));
+		assertEquals(2, store.getLastStroke("Barry"));
+		store.clear();
+		assertEquals(-1, store.getLastStroke("Mary"));
+	}
+	
+	@Test
+	public void growTest() {
+		StrokeStore store = new StrokeStore();
+		for (int i = 0; i < 1000; i++) {
+			store.addStroke("Barry", i, 1, i, 0);
+			store.addPoint(i, 1);
+		}
+		
+		assertEquals(1000, store.getStrokeCount());
+		assertEquals(999, store.getId(999));
+		assertEquals(999, store.getColor(999));
+		assertEquals(2, store.getPointCount(500));
+		assertEquals(500, store.getX(500, 1));
+		assertEquals(1, store.getY(500, 1));
+	}
+	
+	/**
+	 * The following test methods test the setRemoved(), isRemoved() and getIndex() methods.
+	 * 
+	 * The testing strategy for setRemoved(), isRemoved() and getIndex():
+	 * 		Remove a stroke, remove it again and restore it
+	 * 		Removed strokes are not appended and cannot be continued
+	 * 		Ids of strokes that do and do not exist
+	 * 
+	 */
+	@Test
+	public void removeTest() {
+		StrokeStore store = new StrokeStore();
+		store.addStroke("Barry", RED, 1, 0, 0);
+		store.addStroke("Barry", RED, 1, 1, 1);
+		
+		store.setRemoved(1, true);
+		store.setRemoved(1, true);
+		assertTrue(store.isRemoved(1));
+		assertEquals(1, store.getLiveStrokeCount());
+		assertEquals(2, store.getStrokeCount());
+		assertFalse(store.continuesLastStroke("Barry", RED, 1, 1, 1));
+		
+		StringBuilder builder = new StringBuilder();
+		store.appendStrokes(builder);
+		assertEquals("0 Barry 255 0 0 255 1 1 0 0 ", builder.toString());
+		
+		store.setRemoved(1, false);
+		assertEquals(2, store.getLiveStrokeCount());
+		assertTrue(store.continuesLastStroke("Barry", RED, 1, 1, 1));
+		
+		assertEquals(1, store.getIndex(1));
+		assertEquals(-1, store.getIndex(2));
+		store.clear();
+		assertEquals(-1, store.getIndex(1));
+	}
+	
+	/**
+	 * The following test methods test the clear() and appendStrokes() methods.
+	 * 
+	 * The testing strategy for clear() and appendStrokes():
+	 * 		Append the strokes of a store, clear it and append strokes recorded after the clear
+	 * 
+	 */
+	@Test
+	public void clearTest() {
+		StrokeStore store = new StrokeStore();
+		store.addStroke("Barry", RED, 3, 5, 6);
+		store.addPoint(7, 8);
+		
+		StringBuilder builder = new StringBuilder();
+		store.appendStrokes(builder);
+		assertEquals("0 Barry 255 0 0 255 3 2 5 6 7 8 ", builder.toString());
+		
+		store.clear();
+		assertEquals(0, store.getStrokeCount());
+		assertEquals(1, store.addStroke("Mary", BLUE, 1, 1, 2));
+		
+		builder = new StringBuilder();
+		store.appendStrokes(builder);
+		assertEquals("1 Mary 0 0 255 255 1 1 1 2 ", builder.toString());
+	}
+}
@@ -0,0 +1,813 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * TiledRaster is a mutable datatype that represents the pixels of a whiteboard as a sparse grid
+ * of square tiles.  Only the tiles that have been written to are stored, so the memory used by
+ * a TiledRaster grows with the area that has been drawn on rather than with its width and height.
+ *
+ * A raster starts out indexed: it keeps a palette of the colors that it has stored, and each tile keeps one
+ * byte per pixel, the index of its color in the palette, which is a quarter of the memory of a packed int.
+ * Whiteboards are mostly drawn in a handful of colors, so this is usually all that is needed.  The first time
+ * a color is stored that would be the 257th color of the palette, every tile is converted to packed ints
+ * and the raster stores packed ints from then on.  Clearing an indexed raster empties its palette.
+ *
+ * Abstraction Function:
+ * 		Each TiledRaster is represented by:
+ * 			width:      the width of the raster in pixels
+ * 			height:     the height of the raster in pixels
+ * 			tileRows:   tileRows[ty][tx] is the tile whose top left hand corner is the pixel at
+ * 						(tx * TILE_SIZE, ty * TILE_SIZE), or null if no pixel in that tile has been
+ * 						written to.  tileRows[ty] is null if no tile in that row of tiles has been
+ * 						written to.
+ * 			generation: the number of times that this raster has been cleared
+ * 			background: the color of every pixel that has not been written to, WHITE unless the raster is
+ * 						a layer that other layers show through
+ * 			palette:    palette[i] is the color whose index is i, for 0 <= i < paletteSize, while the raster
+ * 						is indexed; null once the raster stores packed ints
+ * 			paletteSlots: an open addressing hash table of the indexes of the colors of palette: the color
+ * 						rgb has the index paletteSlots[s] - 1 for the first slot s, probing linearly from
+ * 						slotOf(rgb), for which palette[paletteSlots[s] - 1] == rgb; 0 marks an empty slot
+ * 			buffer:     space to expand the indexes of a tile into colors, or null if it has not been needed
+ * 			runBuffer:  space to blend the colors of a run of pixels in, as long as the longest run blended so 
+ * 						far, or null if no run has been blended while the raster was indexed
+ * 		The color of the pixel at (x, y) is the color stored for it in its tile if the tile is stored
+ * 		and was last written to in the current generation, and background otherwise.  The color stored
+ * 		for a pixel of a tile is its entry of the tile's rgb, or palette[its entry of the tile's indexes].
+ *
+ * Representation Invariant:
+ * 		tileRows has length ceil(height / TILE_SIZE) and every non-null tileRows[ty] has length
+ * 		ceil(width / TILE_SIZE).
+ * 		Every stored tile holds TILE_SIZE x TILE_SIZE colors, the color of the pixel at
+ * 		(tx * TILE_SIZE + i, ty * TILE_SIZE + j) being stored at index j * TILE_SIZE + i.
+ * 		If palette is not null, every stored tile has indexes and no rgb, palette[0] == background, 
+ * 		1 <= paletteSize <= MAX_PALETTE_SIZE, no color appears twice in palette and every index stored in 
+ * 		a tile of the current generation is less than paletteSize.  Otherwise every stored tile has rgb 
+ * 		and no indexes.
+ * 		The generation of every stored tile is at most generation.
+ *
+ * Thread safety Argument:
+ * 		TiledRaster is not threadsafe.  It must be confined to a single thread or guarded by the lock
+ * 		of the object that owns it.
+ *
+ */
+public class TiledRaster {
+	/** The width and height of each tile in pixels. */
+	public static final int TILE_SIZE = 64;
+
+	/** The packed 0xRRGGBB value of a white pixel. */
+	public static final int WHITE = 0xFFFFFF;
+
+	/** The value of a pixel that has no color, through which the pixels under it show.  No 0xRRGGBB color has it. */
+	public static final int TRANSPARENT = -1;
+
+	/** The number of colors that an indexed raster can store before it stores packed ints instead. */
+	public static final int MAX_PALETTE_SIZE = 256;
+
+	/** The number of slots of paletteSlots, a power of 2 large enough that probes stay short. */
+	private static final int PALETTE_SLOTS = 2 * MAX_PALETTE_SIZE;
+
+	private final int width;
+	private final int height;
+	private final int tilesAcross;
+	private final Tile[][] tileRows;
+	private int generation;
+	private final int background;
+	private int[] palette;
+	private int paletteSize;
+	private int[] paletteSlots;
+	private int[] buffer;
+	private int[] runBuffer;
+
+	/**
+	 * Creates a TiledRaster in which every pixel is white.  No tiles are stored until
+	 * they are written to.
+	 *
+	 * @param width the width of the raster in pixels, must be positive
+	 * @param height the height of the raster in pixels, must be positive
+	 */
+	public TiledRaster(final int width, final int height) {
+		this(width, height, WHITE);
+	}
+
+	/**
+	 * Creates a TiledRaster in which every pixel has the same value.  No tiles are stored until
+	 * they are written to.
+	 *
+	 * @param width the width of the raster in pixels, must be positive
+	 * @param height the height of the raster in pixels, must be positive
+	 * @param background the value of every pixel that has not been written to, WHITE or TRANSPARENT
+	 */
+	public TiledRaster(final int width, final int height, final int background) {
+		this(width, height, background, true);
+	}
+
+	/**
+	 * Creates a TiledRaster in which every pixel has the same value, choosing how its colors are stored.  
+	 * No tiles are stored until they are written to.
+	 *
+	 * @param width the width of the raster in pixels, must be positive
+	 * @param height the height of the raster in pixels, must be positive
+	 * @param background the value of every pixel that has not been written to, WHITE or TRANSPARENT
+	 * @param indexed true to store a palette index for each pixel until there are more than MAX_PALETTE_SIZE 
+	 * 		  colors, false to store packed ints from the start, e.g. for a raster of blended colors
+	 */
+	public TiledRaster(final int width, final int height, final int background, final boolean indexed) {
+		this.width = width;
+		this.height = height;
+		this.tilesAcross = (width + TILE_SIZE - 1) / TILE_SIZE;
+		this.tileRows = new Tile[(height + TILE_SIZE - 1) / TILE_SIZE][];
+		this.generation = 0;
+		this.background = background;
+		this.buffer = null;
+		this.runBuffer = null;
+
+		if (indexed) {
+			this.palette = new int[MAX_PALETTE_SIZE];
+			this.paletteSlots = new int[PALETTE_SLOTS];
+			resetPalette();
+		}
+	}
+
+	/**
+	 * Returns the width of the raster in pixels.
+	 *
+	 * @return width of this TiledRaster in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the raster in pixels.
+	 *
+	 * @return height of this TiledRaster in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the value of the pixels of this raster that have not been written to.
+	 *
+	 * @return the background of this TiledRaster
+	 */
+	public int getBackground() {
+		return background;
+	}
+
+	/**
+	 * Indicates whether this raster stores a palette index for each pixel.
+	 *
+	 * @return true if no more than MAX_PALETTE_SIZE colors have been stored in this raster since it was created,
+	 * 		   counting only those stored since it was last cleared while it was indexed
+	 */
+	public boolean isIndexed() {
+		return palette != null;
+	}
+
+	/**
+	 * Returns the number of bytes used by the colors of the stored tiles.
+	 *
+	 * @return the number of bytes of the arrays that hold the colors of the tiles of this raster, including 
+	 * 		   tiles that have been cleared but are kept to be reused
+	 */
+	public long getTileBytes() {
+		long bytes = 0;
+		for (Tile[] row : tileRows) {
+			for (int tileX = 0; row != null && tileX < row.length; tileX++) {
+				if (row[tileX] != null) {
+					bytes += (row[tileX].rgb != null) ? 4L * row[tileX].rgb.length : row[tileX].indexes.length;
+				}
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the color of a pixel.
+	 *
+	 * @param x the x-coordinate of the pixel, 0 <= x < width
+	 * @param y the y-coordinate of the pixel, 0 <= y < height
+	 * @return the packed 0xRRGGBB color of the pixel at (x, y), or TRANSPARENT if it has none
+	 */
+	public int getRGB(final int x, final int y) {
+		Tile tile = getCurrentTile(x / TILE_SIZE, y / TILE_SIZE);
+
+		if (tile == null) {
+			return background;
+		}
+
+		return getColor(tile, (y % TILE_SIZE) * TILE_SIZE + (x % TILE_SIZE));
+	}
+
+	/**
+	 * Changes the color of a pixel.  The tile containing the pixel is stored if it was not already.
+	 *
+	 * @param x the x-coordinate of the pixel, 0 <= x < width
+	 * @param y the y-coordinate of the pixel, 0 <= y < height
+	 * @param rgb the new packed 0xRRGGBB color of the pixel
+	 * @modifies the color of the pixel at (x, y)
+	 */
+	public void setRGB(final int x, final int y, final int rgb) {
+		setColor(getWritableTile(x / TILE_SIZE, y / TILE_SIZE), (y % TILE_SIZE) * TILE_SIZE + (x % TILE_SIZE), rgb);
+	}
+
+	/**
+	 * Changes the color of a horizontal run of pixels, one tile at a time.
+	 *
+	 * @param y the y-coordinate of the run, 0 <= y < height
+	 * @param xStart the x-coordinate of the first pixel of the run, 0 <= xStart
+	 * @param xEnd the x-coordinate of the last pixel of the run, xStart <= xEnd < width
+	 * @param rgb the new packed 0xRRGGBB color of the pixels
+	 * @modifies the color of every pixel from (xStart, y) to (xEnd, y)
+	 */
+	public void fillRun(final int y, final int xStart, final int xEnd, final int rgb) {
+		int rowOffset = (y % TILE_SIZE) * TILE_SIZE;
+		int index = indexOf(rgb);
+
+		for (int tileX = xStart / TILE_SIZE; tileX <= xEnd / TILE_SIZE; tileX++) {
+			int start = Math.max(xStart, tileX * TILE_SIZE) % TILE_SIZE;
+			int end = Math.min(xEnd, tileX * TILE_SIZE + TILE_SIZE - 1) % TILE_SIZE;
+			fill(getWritableTile(tileX, y / TILE_SIZE), rowOffset + start, rowOffset + end + 1, rgb, index);
+		}
+	}
+
+	/**
+	 * Paints a translucent color over a horizontal run of pixels, one tile at a time.  A pixel that is
+	 * TRANSPARENT is blended as if it were white, so every pixel of the run ends up with a color.
+	 *
+	 * @param y the y-coordinate of the run, 0 <= y < height
+	 * @param xStart the x-coordinate of the first pixel of the run, 0 <= xStart
+	 * @param xEnd the x-coordinate of the last pixel of the run, xStart <= xEnd < width
+	 * @param rgb the packed 0xRRGGBB color painted over the pixels
+	 * @param alpha the opacity of rgb, 0 <= alpha <= AlphaBlend.OPAQUE
+	 * @modifies the color of every pixel from (xStart, y) to (xEnd, y) becomes AlphaBlend.blend() of it
+	 */
+	public void blendRun(final int y, final int xStart, final int xEnd, final int rgb, final int alpha) {
+		if (palette != null) {
+			// The blended colors are looked up in the palette one at a time as the run is written back.
+			int length = xEnd - xStart + 1;
+			if (runBuffer == null || runBuffer.length < length) {
+				runBuffer = new int[length];
+			}
+			readRow(y, xStart, runBuffer, length);
+			AlphaBlend.blendRow(runBuffer, 0, length, rgb, alpha);
+			writeRow(y, xStart, xEnd, runBuffer, 0, false);
+			return;
+		}
+
+		int rowOffset = (y % TILE_SIZE) * TILE_SIZE;
+
+		for (int tileX = xStart / TILE_SIZE; tileX <= xEnd / TILE_SIZE; tileX++) {
+			int start = Math.max(xStart, tileX * TILE_SIZE) % TILE_SIZE;
+			int end = Math.min(xEnd, tileX * TILE_SIZE + TILE_SIZE - 1) % TILE_SIZE;
+			AlphaBlend.blendRow(getWritableTile(tileX, y / TILE_SIZE).rgb, rowOffset + start, rowOffset + end + 1, rgb, alpha);
+		}
+	}
+
+	/**
+	 * Makes every pixel of this raster the background.  No tiles are touched; every stored tile becomes
+	 * out of date and reads as the background until it is next written to.
+	 *
+	 * @modifies makes the raster completely the background
+	 */
+	public void clear() {
+		generation++;
+		if (palette != null) {
+			resetPalette();
+		}
+	}
+
+	/**
+	 * Makes every pixel in a region of this raster the background.  Only tiles that are stored are touched.
+	 *
+	 * @param region a region of this raster
+	 * @modifies makes every pixel in region the background
+	 */
+	public void fillWithBackground(final Region region) {
+		int regionXMin = Math.max(0, region.getX());
+		int regionYMin = Math.max(0, region.getY());
+		int regionXMax = Math.min(width, region.getX() + region.getWidth());
+		int regionYMax = Math.min(height, region.getY() + region.getHeight());
+
+		for (int y = regionYMin; y < regionYMax; y++) {
+			for (int tileX = regionXMin / TILE_SIZE; tileX <= (regionXMax - 1) / TILE_SIZE; tileX++) {
+				Tile tile = getCurrentTile(tileX, y / TILE_SIZE);
+				if (tile == null) {
+					continue;
+				}
+
+				int tileXMin = tileX * TILE_SIZE, offset = (y % TILE_SIZE) * TILE_SIZE;
+				int xMin = Math.max(regionXMin, tileXMin), xMax = Math.min(regionXMax, tileXMin + TILE_SIZE);
+				fill(tile, offset + xMin - tileXMin, offset + xMax - tileXMin, background, 0);
+			}
+		}
+	}
+
+	/**
+	 * Makes a tile of this raster a copy of the same tile of another raster.
+	 *
+	 * @param source a raster with the same width and height as this one
+	 * @param tileX the column of the tile, 0 <= tileX < ceil(width / TILE_SIZE)
+	 * @param tileY the row of the tile, 0 <= tileY < ceil(height / TILE_SIZE)
+	 * @modifies makes every pixel of the tile the color of the same pixel of source; a tile that neither
+	 * 			 raster has stored is left alone, so the tile is the background if source has not stored it
+	 */
+	public void copyTile(final TiledRaster source, final int tileX, final int tileY) {
+		Tile from = source.getCurrentTile(tileX, tileY);
+		if (from != null) {
+			writeColors(getWritableTile(tileX, tileY), 0, source.getColors(from), 0, TILE_SIZE * TILE_SIZE);
+		}
+		else if (getCurrentTile(tileX, tileY) != null) {
+			fill(getCurrentTile(tileX, tileY), 0, TILE_SIZE * TILE_SIZE, background, 0);
+		}
+	}
+
+	/**
+	 * Paints the pixels of a tile of another raster that are not TRANSPARENT over the same tile of this raster.
+	 *
+	 * @param layer a raster with the same width and height as this one
+	 * @param tileX the column of the tile, 0 <= tileX < ceil(width / TILE_SIZE)
+	 * @param tileY the row of the tile, 0 <= tileY < ceil(height / TILE_SIZE)
+	 * @modifies colors every pixel of the tile with the color of the same pixel of layer, where it has one
+	 */
+	public void overlayTile(final TiledRaster layer, final int tileX, final int tileY) {
+		Tile from = layer.getCurrentTile(tileX, tileY);
+		if (from == null) {
+			return;
+		}
+
+		int[] colors = layer.getColors(from);
+		Tile to = getWritableTile(tileX, tileY);
+		for (int i = 0; i < colors.length; i++) {
+			if (colors[i] != TRANSPARENT) {
+				setColor(to, i, colors[i]);
+			}
+		}
+	}
+
+	/**
+	 * Copies a rectangle of pixels of this raster to another place in it, one row at a time.  Each row is
+	 * read into a buffer and written back with a System.arraycopy() for every tile that it crosses, so the
+	 * cost grows with the area of the rectangle and not with the pixels drawn in it.  The source and the 
+	 * destination may overlap.
+	 *
+	 * @param sx the x-coordinate of the top left hand corner of the source, 0 <= sx and sx + w <= width
+	 * @param sy the y-coordinate of the top left hand corner of the source, 0 <= sy and sy + h <= height
+	 * @param w the width of the rectangle in pixels, positive
+	 * @param h the height of the rectangle in pixels, positive
+	 * @param dx the x-coordinate that the top left hand corner of the source is copied to
+	 * @param dy the y-coordinate that the top left hand corner of the source is copied to
+	 * @param move true to make the pixels of the source that are not copied over the background
+	 * @modifies makes every pixel (dx + i, dy + j) of this raster the color that (sx + i, sy + j) had before the 
+	 * 			 call, for 0 <= i < w and 0 <= j < h; pixels that would land outside of this raster are dropped.
+	 * 			 If move is true, every other pixel of the source becomes the background.
+	 */
+	public void copyRegion(final int sx, final int sy, final int w, final int h, final int dx, final int dy, 
+						   final boolean move) {
+		int[] row = new int[w];
+		int xMin = Math.max(0, dx), xMax = Math.min(width, dx + w);
+
+		// Rows are visited away from where the rectangle is going, so that a row of the source is always read
+		// before a row of the destination is written over it.
+		for (int i = 0; i < h; i++) {
+			int j = (dy > sy) ? h - 1 - i : i;
+			boolean isEmpty = readRow(sy + j, sx, row, w);
+			if (move) {
+				fillRowWithBackground(sy + j, sx, sx + w - 1);
+			}
+
+			int y = dy + j;
+			if (y >= 0 && y < height && xMin < xMax) {
+				writeRow(y, xMin, xMax - 1, row, xMin - dx, isEmpty);
+			}
+		}
+	}
+
+	/**
+	 * Reads w consecutive pixels of a row of this raster into the first w entries of an array.
+	 *
+	 * @return true if every pixel read is the background because none of them is in a stored tile
+	 */
+	private boolean readRow(final int y, final int x, final int[] row, final int w) {
+		int rowOffset = (y % TILE_SIZE) * TILE_SIZE;
+		boolean isEmpty = true;
+
+		for (int start = x; start < x + w; start = (start / TILE_SIZE + 1) * TILE_SIZE) {
+			int end = Math.min(x + w, (start / TILE_SIZE + 1) * TILE_SIZE);
+			Tile tile = getCurrentTile(start / TILE_SIZE, y / TILE_SIZE);
+			if (tile == null) {
+				Arrays.fill(row, start - x, end - x, background);
+			}
+			else {
+				readColors(tile, rowOffset + start % TILE_SIZE, row, start - x, end - start);
+				isEmpty = false;
+			}
+		}
+
+		return isEmpty;
+	}
+
+	/**
+	 * Makes the pixels from (xStart, y) to (xEnd, y) of this raster the background.  Only tiles that are stored are touched.
+	 */
+	private void fillRowWithBackground(final int y, final int xStart, final int xEnd) {
+		int rowOffset = (y % TILE_SIZE) * TILE_SIZE;
+
+		for (int tileX = xStart / TILE_SIZE; tileX <= xEnd / TILE_SIZE; tileX++) {
+			Tile tile = getCurrentTile(tileX, y / TILE_SIZE);
+			if (tile != null) {
+				int start = Math.max(xStart, tileX * TILE_SIZE) % TILE_SIZE;
+				int end = Math.min(xEnd, tileX * TILE_SIZE + TILE_SIZE - 1) % TILE_SIZE;
+				fill(tile, rowOffset + start, rowOffset + end + 1, background, 0);
+			}
+		}
+	}
+
+	/**
+	 * Writes pixels of an array to the pixels from (xStart, y) to (xEnd, y) of this raster, the first of them
+	 * being row[offset].  If isEmpty is true, the tiles that are not stored are left alone, since they already
+	 * have the background.
+	 */
+	private void writeRow(final int y, final int xStart, final int xEnd, final int[] row, final int offset, 
+						  final boolean isEmpty) {
+		int rowOffset = (y % TILE_SIZE) * TILE_SIZE;
+
+		for (int tileX = xStart / TILE_SIZE; tileX <= xEnd / TILE_SIZE; tileX++) {
+			if (isEmpty && getCurrentTile(tileX, y / TILE_SIZE) == null) {
+				continue;
+			}
+
+			int start = Math.max(xStart, tileX * TILE_SIZE), end = Math.min(xEnd, tileX * TILE_SIZE + TILE_SIZE - 1);
+			writeColors(getWritableTile(tileX, y / TILE_SIZE), rowOffset + start % TILE_SIZE, row, offset + start - xStart, 
+						end - start + 1);
+		}
+	}
+
+	/**
+	 * Indicates whether any pixel in a tile may be other than the background.
+	 *
+	 * @param tileX the column of the tile, 0 <= tileX < ceil(width / TILE_SIZE)
+	 * @param tileY the row of the tile, 0 <= tileY < ceil(height / TILE_SIZE)
+	 * @return true if the tile is stored and has been written to since the raster was last cleared
+	 */
+	public boolean hasTile(final int tileX, final int tileY) {
+		return getCurrentTile(tileX, tileY) != null;
+	}
+
+	/**
+	 * Indicates whether any tile in a row of tiles may contain a pixel that is not the background.
+	 *
+	 * @param tileY the row of tiles, 0 <= tileY < ceil(height / TILE_SIZE)
+	 * @return true if at least one tile in the row has been stored
+	 */
+	public boolean hasTileRow(final int tileY) {
+		return tileRows[tileY] != null;
+	}
+
+	/**
+	 * Returns the number of columns of tiles in this raster.
+	 *
+	 * @return ceil(width / TILE_SIZE)
+	 */
+	public int getTilesAcross() {
+		return tilesAcross;
+	}
+
+	/**
+	 * Returns the number of rows of tiles in this raster.
+	 *
+	 * @return ceil(height / TILE_SIZE)
+	 */
+	public int getTilesDown() {
+		return tileRows.length;
+	}
+
+	/**
+	 * Appends the String representation of every pixel that is not the background to a StringBuilder in
+	 * row-major order (top to bottom, then left to right).  Only stored, up to date tiles are
+	 * visited, so the cost is proportional to the area that has been drawn on.
+	 *
+	 * @param builder the StringBuilder to which the String representations are appended
+	 * @modifies appends "[x] [y] [red] [green] [blue] " to builder for every pixel that is not the background;
+	 * 			 a white pixel of a raster whose background is TRANSPARENT is appended
+	 */
+	public void appendNonWhitePixels(final StringBuilder builder) {
+		appendNonWhitePixels(builder, new Region(0, 0, width, height));
+	}
+
+	/**
+	 * Appends the String representation of every pixel in a region that is not the background to a 
+	 * StringBuilder in row-major order (top to bottom, then left to right).  Only the stored, up to date 
+	 * tiles that intersect the region are visited.
+	 *
+	 * @param builder the StringBuilder to which the String representations are appended
+	 * @param region the region of this raster whose pixels are appended
+	 * @modifies appends "[x] [y] [red] [green] [blue] " to builder for every pixel in region that is not
+	 * 			 the background
+	 */
+	public void appendNonWhitePixels(final StringBuilder builder, final Region region) {
+		int regionXMin = Math.max(0, region.getX());
+		int regionYMin = Math.max(0, region.getY());
+		int regionXMax = Math.min(width, region.getX() + region.getWidth());
+		int regionYMax = Math.min(height, region.getY() + region.getHeight());
+		if (regionXMin >= regionXMax || regionYMin >= regionYMax) {
+			return;
+		}
+
+		int firstTileX = regionXMin / TILE_SIZE, lastTileX = (regionXMax - 1) / TILE_SIZE;
+		for (int tileY = regionYMin / TILE_SIZE; tileY <= (regionYMax - 1) / TILE_SIZE; tileY++) {
+			if (tileRows[tileY] == null) {
+				continue;
+			}
+
+			int yMin = Math.max(regionYMin, tileY * TILE_SIZE);
+			int yMax = Math.min(regionYMax, (tileY + 1) * TILE_SIZE);
+			for (int y = yMin; y < yMax; y++) {
+				for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+					Tile tile = getCurrentTile(tileX, tileY);
+					if (tile == null) {
+						continue;
+					}
+
+					int offset = (y % TILE_SIZE) * TILE_SIZE;
+					int tileXMin = tileX * TILE_SIZE;
+					int xMin = Math.max(regionXMin, tileXMin);
+					int xMax = Math.min(regionXMax, tileXMin + TILE_SIZE);
+					for (int x = xMin; x < xMax; x++) {
+						int rgb = getColor(tile, offset + x - tileXMin);
+						if (rgb != background) {
+							appendPixel(builder, x, y, rgb);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the pixels covered by a tile.
+	 *
+	 * @param tileX the column of the tile, 0 <= tileX < ceil(width / TILE_SIZE)
+	 * @param tileY the row of the tile, 0 <= tileY < ceil(height / TILE_SIZE)
+	 * @return the region covered by the tile in column tileX and row tileY, excluding any part
+	 * 		   of the tile that lies outside of this raster
+	 */
+	public Region getTileRegion(final int tileX, final int tileY) {
+		int x = tileX * TILE_SIZE, y = tileY * TILE_SIZE;
+		return new Region(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+	}
+
+	/**
+	 * Appends the String representation of a pixel to a StringBuilder.
+	 *
+	 * @param builder the StringBuilder to which the String representation is appended
+	 * @param x the x-coordinate of the pixel
+	 * @param y the y-coordinate of the pixel
+	 * @param rgb the packed 0xRRGGBB color of the pixel
+	 * @modifies appends "[x] [y] [red] [green] [blue] " to builder
+	 */
+	public static void appendPixel(final StringBuilder builder, final int x, final int y, final int rgb) {
+		builder.append(x).append(' ').append(y).append(' ')
+			   .append((rgb >> 16) & 0xFF).append(' ')
+			   .append((rgb >> 8) & 0xFF).append(' ')
+			   .append(rgb & 0xFF).append(' ');
+	}
+
+	/**
+	 * Returns a tile if it is stored and up to date.
+	 *
+	 * @return the tile in column tileX and row tileY, or null if the tile is not stored
+	 * 		   or has been cleared since it was last written to
+	 */
+	private Tile getCurrentTile(final int tileX, final int tileY) {
+		Tile[] row = tileRows[tileY];
+		if (row == null) {
+			return null;
+		}
+
+		Tile tile = row[tileX];
+		if (tile == null || tile.generation != generation) {
+			return null;
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Returns a tile that is ready to be written to, storing it if necessary.  If the raster has been
+	 * cleared since the tile was last written to, the tile is painted with the background first.
+	 *
+	 * @return the tile in column tileX and row tileY, stamped with the current generation
+	 */
+	private Tile getWritableTile(final int tileX, final int tileY) {
+		Tile[] row = tileRows[tileY];
+		if (row == null) {
+			row = new Tile[tilesAcross];
+			tileRows[tileY] = row;
+		}
+
+		Tile tile = row[tileX];
+		if (tile == null) {
+			tile = new Tile(generation, background, palette != null);
+			row[tileX] = tile;
+		}
+		else if (tile.generation != generation) {
+			fill(tile, 0, TILE_SIZE * TILE_SIZE, background, 0);
+			tile.generation = generation;
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Returns the color stored for a pixel of a tile.
+	 *
+	 * @return the color stored at index i of tile
+	 */
+	private int getColor(final Tile tile, final int i) {
+		return (tile.rgb != null) ? tile.rgb[i] : palette[tile.indexes[i] & 0xFF];
+	}
+
+	/**
+	 * Stores the color of a pixel of a tile, adding it to the palette if this raster is indexed.
+	 *
+	 * @modifies stores rgb at index i of tile
+	 */
+	private void setColor(final Tile tile, final int i, final int rgb) {
+		int index = indexOf(rgb);
+		if (index >= 0) {
+			tile.indexes[i] = (byte) index;
+		}
+		else {
+			tile.rgb[i] = rgb;
+		}
+	}
+
+	/**
+	 * Stores the same color for consecutive pixels of a tile.
+	 *
+	 * @param index indexOf(rgb), which was looked up after the tile was stored or before this raster last 
+	 * 		  stopped being indexed
+	 * @modifies stores rgb at the indexes from to to - 1 of tile
+	 */
+	private void fill(final Tile tile, final int from, final int to, final int rgb, final int index) {
+		if (tile.rgb != null) {
+			Arrays.fill(tile.rgb, from, to, rgb);
+		}
+		else {
+			Arrays.fill(tile.indexes, from, to, (byte) index);
+		}
+	}
+
+	/**
+	 * Reads the colors stored for consecutive pixels of a tile into an array.
+	 *
+	 * @modifies colors[to + k] becomes the color stored at index from + k of tile, for 0 <= k < length
+	 */
+	private void readColors(final Tile tile, final int from, final int[] colors, final int to, final int length) {
+		if (tile.rgb != null) {
+			System.arraycopy(tile.rgb, from, colors, to, length);
+			return;
+		}
+
+		for (int k = 0; k < length; k++) {
+			colors[to + k] = palette[tile.indexes[from + k] & 0xFF];
+		}
+	}
+
+	/**
+	 * Stores the colors of an array for consecutive pixels of a tile.  If one of the colors makes this raster
+	 * stop being indexed, the rest are copied with a single System.arraycopy().
+	 *
+	 * @modifies stores colors[from + k] at index to + k of tile, for 0 <= k < length
+	 */
+	private void writeColors(final Tile tile, final int to, final int[] colors, final int from, final int length) {
+		int k = 0;
+		for (; k < length && tile.rgb == null; k++) {
+			int index = indexOf(colors[from + k]);
+			if (index < 0) {
+				break;
+			}
+			tile.indexes[to + k] = (byte) index;
+		}
+
+		if (k < length) {
+			System.arraycopy(colors, from + k, tile.rgb, to + k, length - k);
+		}
+	}
+
+	/**
+	 * Returns the colors of every pixel of a tile.
+	 *
+	 * @return the colors stored in tile, in the order that they are stored; the array is tile's own or 
+	 * 		   buffer, and must not be changed
+	 */
+	private int[] getColors(final Tile tile) {
+		if (tile.rgb != null) {
+			return tile.rgb;
+		}
+
+		if (buffer == null) {
+			buffer = new int[TILE_SIZE * TILE_SIZE];
+		}
+		readColors(tile, 0, buffer, 0, buffer.length);
+		return buffer;
+	}
+
+	/**
+	 * Returns the index of a color in the palette, adding it if it is new.  If the palette is full, every
+	 * tile is converted to packed ints and this raster stops being indexed.
+	 *
+	 * @return the index of rgb in palette, or -1 if this raster stores packed ints
+	 */
+	private int indexOf(final int rgb) {
+		if (palette == null) {
+			return -1;
+		}
+
+		int slot = slotOf(rgb);
+		while (paletteSlots[slot] != 0) {
+			if (palette[paletteSlots[slot] - 1] == rgb) {
+				return paletteSlots[slot] - 1;
+			}
+			slot = (slot + 1) & (PALETTE_SLOTS - 1);
+		}
+
+		if (paletteSize == MAX_PALETTE_SIZE) {
+			storePackedInts();
+			return -1;
+		}
+
+		palette[paletteSize] = rgb;
+		paletteSlots[slot] = ++paletteSize;
+		return paletteSize - 1;
+	}
+
+	/**
+	 * Returns the slot of paletteSlots at which the search for a color starts.
+	 */
+	private static int slotOf(final int rgb) {
+		return (rgb * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(PALETTE_SLOTS));
+	}
+
+	/**
+	 * Empties the palette, leaving only the background, whose index is 0.
+	 */
+	private void resetPalette() {
+		Arrays.fill(paletteSlots, 0);
+		paletteSize = 0;
+		indexOf(background);
+	}
+
+	/**
+	 * Converts every stored tile from palette indexes to packed ints and drops the palette.
+	 */
+	private void storePackedInts() {
+		for (Tile[] row : tileRows) {
+			for (int tileX = 0; row != null && tileX < row.length; tileX++) {
+				Tile tile = row[tileX];
+				if (tile == null) {
+					continue;
+				}
+
+				int[] rgb = new int[TILE_SIZE * TILE_SIZE];
+				if (tile.generation == generation) {
+					readColors(tile, 0, rgb, 0, rgb.length);
+				}
+				else {
+					Arrays.fill(rgb, background);
+				}
+				tile.rgb = rgb;
+				tile.indexes = null;
+			}
+		}
+
+		palette = null;
+		paletteSlots = null;
+	}
+
+	/**
+	 * A TILE_SIZE x TILE_SIZE block of pixels together with the generation of the raster
+	 * in which it was last written to.  Its colors are stored either as packed ints in rgb or as
+	 * palette indexes in indexes, and the other array is null.
+	 */
+	private static class Tile {
+		private int[] rgb;
+		private byte[] indexes;
+		private int generation;
+
+		private Tile(final int generation, final int background, final boolean indexed) {
+			this.generation = generation;
+			if (indexed) {
+				this.indexes = new byte[TILE_SIZE * TILE_SIZE];
+			}
+			else {
+				this.rgb = new int[TILE_SIZE * TILE_SIZE];
+				Arrays.fill(rgb, background);
+			}
+		}
+	}
+}
@@ -0,0 +1,413 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TiledRasterTest {
+	private final static int RED = 0xFF0000;
+	private final static int BLUE = 0x0000FF;
+
+	/**
+	 * The following test methods test the TiledRaster constructor and the
+	 * getRGB() and setRGB() methods.
+	 *
+	 * The testing strategy for the constructor, getRGB() and setRGB():
+	 * 		Create a raster whose dimensions are
+	 * 			smaller than a tile
+	 * 			not a multiple of the tile size
+	 * 			very large
+	 * 		Change the colors of pixels
+	 * 			in the same tile
+	 * 			in different tiles
+	 * 			on the last row and column of the raster
+	 *
+	 */
+
+	// Create a raster smaller than a tile.
+	@Test
+	public void smallRasterTest() {
+		TiledRaster raster = new TiledRaster(3, 4);
+		assertEquals(3, raster.getWidth());
+		assertEquals(4, raster.getHeight());
+		assertEquals(1, raster.getTilesAcross());
+		assertEquals(1, raster.getTilesDown());
+		assertFalse(raster.hasTile(0, 0));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(2, 3));
+
+		raster.setRGB(2, 3, RED);
+		assertEquals(RED, raster.getRGB(2, 3));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(1, 3));
+		assertTrue(raster.hasTile(0, 0));
+	}
+
+	// Create a raster whose dimensions are not a multiple of the tile size and change
+	// pixels in different tiles, including the last row and column.
+	@Test
+	public void differentTilesTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(2 * size + 1, size + 5);
+		assertEquals(3, raster.getTilesAcross());
+		assertEquals(2, raster.getTilesDown());
+
+		raster.setRGB(size - 1, 0, RED);
+		raster.setRGB(size, 0, BLUE);
+		raster.setRGB(2 * size, size + 4, RED);
+
+		assertEquals(RED, raster.getRGB(size - 1, 0));
+		assertEquals(BLUE, raster.getRGB(size, 0));
+		assertEquals(RED, raster.getRGB(2 * size, size + 4));
+		assertTrue(raster.hasTile(0, 0));
+		assertTrue(raster.hasTile(1, 0));
+		assertFalse(raster.hasTile(2, 0));
+		assertFalse(raster.hasTile(0, 1));
+		assertTrue(raster.hasTile(2, 1));
+	}
+
+	// Create a very large raster; only the tiles that are written to are stored.
+	@Test
+	public void largeRasterTest() {
+		TiledRaster raster = new TiledRaster(100000, 100000);
+		raster.setRGB(99999, 99999, BLUE);
+
+		assertEquals(BLUE, raster.getRGB(99999, 99999));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 0));
+		assertFalse(raster.hasTileRow(0));
+
+		StringBuilder builder = new StringBuilder();
+		raster.appendNonWhitePixels(builder);
+		assertEquals("99999 99999 0 0 255 ", builder.toString());
+	}
+
+	/**
+	 * The following test methods test the clear() method.
+	 *
+	 * The testing strategy for the clear() method:
+	 * 		Clear a raster and then read the pixels that were written to.
+	 * 		Write to a tile that has been cleared.
+	 *
+	 */
+	@Test
+	public void clearTest() {
+		TiledRaster raster = new TiledRaster(10, 10);
+		raster.setRGB(1, 1, RED);
+		raster.setRGB(2, 2, RED);
+		raster.clear();
+
+		assertEquals(TiledRaster.WHITE, raster.getRGB(1, 1));
+		assertFalse(raster.hasTile(0, 0));
+
+		// Only the pixel written after the clear is not white.
+		raster.setRGB(1, 1, BLUE);
+		assertEquals(BLUE, raster.getRGB(1, 1));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(2, 2));
+	}
+
+	/**
+	 * The following test methods test the fillWithBackground() method.
+	 *
+	 * The testing strategy for the fillWithBackground() method:
+	 * 		A region that covers parts of several tiles, some of which are not stored
+	 * 		A region that lies partly outside of the raster
+	 *
+	 */
+	@Test
+	public void fillWithBackgroundTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(3 * size, size);
+		raster.setRGB(size - 1, 5, RED);
+		raster.setRGB(size, 5, RED);
+		raster.setRGB(size + 2, 5, BLUE);
+		raster.setRGB(size - 1, 6, BLUE);
+
+		raster.fillWithBackground(new Region(size - 1, 5, 3, 1));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(size - 1, 5));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(size, 5));
+		assertEquals(BLUE, raster.getRGB(size + 2, 5));
+		assertEquals(BLUE, raster.getRGB(size - 1, 6));
+		assertFalse(raster.hasTile(2, 0));
+
+		raster.fillWithBackground(new Region(-10, -10, 10 * size, 10 * size));
+		StringBuilder builder = new StringBuilder();
+		raster.appendNonWhitePixels(builder);
+		assertEquals("", builder.toString());
+	}
+
+	/**
+	 * The following test methods test rasters whose background is TRANSPARENT and the copyTile() and
+	 * overlayTile() methods.
+	 *
+	 * The testing strategy for copyTile() and overlayTile():
+	 * 		Copy a tile that the source has stored, and one that it has not over a tile that is stored
+	 * 		Overlay a layer with TRANSPARENT pixels, and a layer that has not stored the tile
+	 *
+	 */
+	@Test
+	public void transparentBackgroundTest() {
+		TiledRaster layer = new TiledRaster(10, 10, TiledRaster.TRANSPARENT);
+		assertEquals(TiledRaster.TRANSPARENT, layer.getBackground());
+		assertEquals(TiledRaster.TRANSPARENT, layer.getRGB(3, 3));
+
+		// White is a color on a layer, so it is not left out.
+		layer.setRGB(3, 3, TiledRaster.WHITE);
+		StringBuilder builder = new StringBuilder();
+		layer.appendNonWhitePixels(builder);
+		assertEquals("3 3 255 255 255 ", builder.toString());
+
+		layer.fillWithBackground(new Region(0, 0, 10, 10));
+		assertEquals(TiledRaster.TRANSPARENT, layer.getRGB(3, 3));
+	}
+
+	@Test
+	public void copyTileTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster source = new TiledRaster(2 * size, size);
+		TiledRaster copy = new TiledRaster(2 * size, size);
+		source.setRGB(1, 1, RED);
+		copy.setRGB(size + 1, 1, BLUE);
+
+		copy.copyTile(source, 0, 0);
+		copy.copyTile(source, 1, 0);
+		assertEquals(RED, copy.getRGB(1, 1));
+		assertEquals(TiledRaster.WHITE, copy.getRGB(size + 1, 1));
+
+		// The copy is not shared with the source.
+		source.setRGB(1, 1, BLUE);
+		assertEquals(RED, copy.getRGB(1, 1));
+	}
+
+	@Test
+	public void overlayTileTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster composite = new TiledRaster(2 * size, size);
+		TiledRaster layer = new TiledRaster(2 * size, size, TiledRaster.TRANSPARENT);
+		composite.setRGB(0, 0, RED);
+		composite.setRGB(1, 0, RED);
+		layer.setRGB(1, 0, BLUE);
+		layer.setRGB(2, 0, TiledRaster.WHITE);
+
+		composite.overlayTile(layer, 0, 0);
+		composite.overlayTile(layer, 1, 0);
+		assertEquals(RED, composite.getRGB(0, 0));
+		assertEquals(BLUE, composite.getRGB(1, 0));
+		assertEquals(TiledRaster.WHITE, composite.getRGB(2, 0));
+		assertFalse(composite.hasTile(1, 0));
+	}
+
+	/**
+	 * The following test methods test the copyRegion() method.
+	 *
+	 * The testing strategy for copyRegion():
+	 * 		Copy a rectangle across the edges of tiles
+	 * 		Move a rectangle onto part of itself, downwards and upwards
+	 * 		Copy a rectangle partly off the raster
+	 * 		Copy a rectangle that has not been drawn on over tiles that are not stored
+	 *
+	 */
+	@Test
+	public void copyRegionTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(3 * size, 3 * size);
+		raster.setRGB(size - 1, size - 1, RED);
+		raster.setRGB(size, size, BLUE);
+
+		raster.copyRegion(size - 1, size - 1, 2, 2, 2 * size + 10, 5, false);
+		assertEquals(RED, raster.getRGB(2 * size + 10, 5));
+		assertEquals(BLUE, raster.getRGB(2 * size + 11, 6));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(2 * size + 11, 5));
+		assertEquals(RED, raster.getRGB(size - 1, size - 1));
+
+		// Only the pixels that land on the raster are copied.
+		raster.copyRegion(size - 1, size - 1, 2, 2, 3 * size - 1, 3 * size - 1, false);
+		assertEquals(RED, raster.getRGB(3 * size - 1, 3 * size - 1));
+	}
+
+	@Test
+	public void moveOverlappingRegionTest() {
+		TiledRaster raster = new TiledRaster(10, 10);
+		for (int y = 0; y < 3; y++) {
+			raster.setRGB(0, y, (y == 0) ? RED : BLUE);
+		}
+
+		// Moving down by one row reads every row before it is written over.
+		raster.copyRegion(0, 0, 1, 3, 0, 1, true);
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 0));
+		assertEquals(RED, raster.getRGB(0, 1));
+		assertEquals(BLUE, raster.getRGB(0, 2));
+		assertEquals(BLUE, raster.getRGB(0, 3));
+
+		raster.copyRegion(0, 1, 1, 3, 1, 0, true);
+		assertEquals(RED, raster.getRGB(1, 0));
+		assertEquals(BLUE, raster.getRGB(1, 2));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 1));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(1, 3));
+	}
+
+	@Test
+	public void copyEmptyRegionTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster layer = new TiledRaster(2 * size, size, TiledRaster.TRANSPARENT);
+		layer.setRGB(size + 1, 1, RED);
+		layer.setRGB(size + 10, 10, BLUE);
+
+		// The empty rectangle is copied over the stored tile, but does not make the empty tile stored.
+		layer.copyRegion(0, 0, 4, 4, size, 0, false);
+		assertEquals(TiledRaster.TRANSPARENT, layer.getRGB(size + 1, 1));
+		assertFalse(layer.hasTile(0, 0));
+
+		layer.copyRegion(size + 10, 10, 1, 1, 1, 1, true);
+		assertEquals(BLUE, layer.getRGB(1, 1));
+		assertEquals(TiledRaster.TRANSPARENT, layer.getRGB(size + 10, 10));
+	}
+
+	/**
+	 * The following test methods test the blendRun() method.
+	 *
+	 * The testing strategy for blendRun():
+	 * 		A run that crosses from a stored tile into a tile that is not stored
+	 * 		A run over TRANSPARENT pixels, which are blended as white
+	 *
+	 */
+	@Test
+	public void blendRunTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(2 * size, size);
+		raster.setRGB(size - 1, 1, 0x000000);
+		raster.blendRun(1, size - 1, size, RED, 128);
+		assertEquals(0x800000, raster.getRGB(size - 1, 1));
+		assertEquals(0xFF7E7E, raster.getRGB(size, 1));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(size + 1, 1));
+
+		TiledRaster layer = new TiledRaster(size, size, TiledRaster.TRANSPARENT);
+		layer.blendRun(0, 0, 1, BLUE, 128);
+		assertEquals(0x7E7EFF, layer.getRGB(1, 0));
+		assertEquals(TiledRaster.TRANSPARENT, layer.getRGB(2, 0));
+	}
+
+	/**
+	 * The following test methods test the appendNonWhitePixels() method.
+	 *
+	 * The testing strategy for the appendNonWhitePixels() method:
+	 * 		Pixels in different tiles on the same rows are appended in row-major order.
+	 *
+	 */
+	@Test
+	public void appendNonWhitePixelsTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(2 * size, 2);
+		raster.setRGB(size, 0, BLUE);
+		raster.setRGB(0, 1, RED);
+		raster.setRGB(1, 0, RED);
+
+		StringBuilder builder = new StringBuilder();
+		raster.appendNonWhitePixels(builder);
+		assertEquals("1 0 255 0 0 " + size + " 0 0 0 255 0 1 255 0 0 ", builder.toString());
+	}
+
+	/**
+	 * The following test methods test how an indexed raster stores its colors.
+	 *
+	 * The testing strategy for the palette:
+	 * 		A raster with MAX_PALETTE_SIZE colors, counting the background, stays indexed
+	 * 		One more color, stored by setRGB(), fillRun() or copyTile(), makes it store packed ints,
+	 * 			keeping the color of every pixel
+	 * 		Clearing an indexed raster empties its palette, so that it can hold new colors
+	 * 		A raster created with indexed false stores packed ints from the start
+	 * 		copyTile() and overlayTile() between indexed rasters and rasters of packed ints
+	 * 		blendRun() on an indexed raster
+	 *
+	 */
+	@Test
+	public void paletteTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster raster = new TiledRaster(2 * size, size);
+		for (int i = 1; i < TiledRaster.MAX_PALETTE_SIZE; i++) {
+			raster.setRGB(i % (2 * size), i / (2 * size), i);
+		}
+		assertTrue(raster.isIndexed());
+		assertEquals(2L * size * size, raster.getTileBytes());
+
+		raster.fillRun(size - 1, 0, 2 * size - 1, RED);
+		assertFalse(raster.isIndexed());
+		assertEquals(8L * size * size, raster.getTileBytes());
+		for (int i = 1; i < TiledRaster.MAX_PALETTE_SIZE; i++) {
+			assertEquals(i, raster.getRGB(i % (2 * size), i / (2 * size)));
+		}
+		assertEquals(RED, raster.getRGB(size + 3, size - 1));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(size + 3, size - 2));
+	}
+
+	@Test
+	public void paletteSetRGBTest() {
+		TiledRaster raster = new TiledRaster(10, 10);
+		for (int i = 0; i < TiledRaster.MAX_PALETTE_SIZE; i++) {
+			raster.setRGB(i % 10, (i / 10) % 10, i);
+		}
+		assertFalse(raster.isIndexed());
+		assertEquals(TiledRaster.MAX_PALETTE_SIZE - 1, raster.getRGB(5, 5));
+		assertEquals(199, raster.getRGB(9, 9));
+	}
+
+	@Test
+	public void paletteClearTest() {
+		TiledRaster raster = new TiledRaster(10, 10);
+		for (int i = 1; i < TiledRaster.MAX_PALETTE_SIZE; i++) {
+			raster.setRGB(i % 10, (i / 10) % 10, i);
+		}
+		raster.clear();
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 0));
+		for (int i = 1; i < TiledRaster.MAX_PALETTE_SIZE; i++) {
+			raster.setRGB(i % 10, (i / 10) % 10, RED - i);
+		}
+		assertTrue(raster.isIndexed());
+		assertEquals(RED - 255, raster.getRGB(5, 5));
+
+		assertFalse(new TiledRaster(10, 10, TiledRaster.WHITE, false).isIndexed());
+	}
+
+	@Test
+	public void paletteCopyTest() {
+		int size = TiledRaster.TILE_SIZE;
+		TiledRaster full = new TiledRaster(size, size, TiledRaster.WHITE, false);
+		for (int i = 0; i < size * size; i++) {
+			full.setRGB(i % size, i / size, i);
+		}
+
+		TiledRaster copy = new TiledRaster(size, size);
+		copy.copyTile(full, 0, 0);
+		assertFalse(copy.isIndexed());
+		for (int i = 0; i < size * size; i++) {
+			assertEquals(i, copy.getRGB(i % size, i / size));
+		}
+
+		TiledRaster layer = new TiledRaster(size, size, TiledRaster.TRANSPARENT);
+		layer.setRGB(1, 1, RED);
+		TiledRaster composite = new TiledRaster(size, size);
+		composite.setRGB(2, 2, BLUE);
+		composite.overlayTile(layer, 0, 0);
+		full.overlayTile(layer, 0, 0);
+		assertTrue(composite.isIndexed());
+		assertEquals(RED, composite.getRGB(1, 1));
+		assertEquals(BLUE, composite.getRGB(2, 2));
+		assertEquals(RED, full.getRGB(1, 1));
+		assertEquals(2 * size + 2, full.getRGB(2, 2));
+	}
+
+	@Test
+	public void paletteBlendRunTest() {
+		TiledRaster raster = new TiledRaster(10, 1);
+		raster.setRGB(2, 0, 0x000000);
+		raster.blendRun(0, 1, 3, RED, 128);
+		assertTrue(raster.isIndexed());
+		assertEquals(TiledRaster.WHITE, raster.getRGB(0, 0));
+		assertEquals(0xFF7E7E, raster.getRGB(1, 0));
+		assertEquals(0x800000, raster.getRGB(2, 0));
+		assertEquals(0xFF7E7E, raster.getRGB(3, 0));
+
+		// A shorter run after a longer one only blends its own pixels.
+		raster.blendRun(0, 6, 6, RED, 128);
+		assertEquals(TiledRaster.WHITE, raster.getRGB(5, 0));
+		assertEquals(0xFF7E7E, raster.getRGB(6, 0));
+		assertEquals(TiledRaster.WHITE, raster.getRGB(7, 0));
+	}
+}
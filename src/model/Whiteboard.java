@@ -2,7 +2,11 @@ package model;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.TreeSet;
 
 
 /**
@@ -14,59 +18,88 @@ import java.util.HashMap;
  * 			name:      the name of the whiteboard
  * 			height:    the height of the whiteboard in pixels
  * 			width:     the width of the whiteboard in pixels
- * 			pixels:    a 2D array of points, each Point object representing a pixel in the whiteboard
+ * 			layers:    the layers of the whiteboard, each a sparse grid of tiles holding the color of every pixel
+ * 					   of the layer that has been drawn on since the whiteboard was last cleared, together with 
+ * 					   their composited view, which is what the whiteboard looks like, and successively smaller 
+ * 					   copies of that view, from which low resolution previews of the whiteboard are made
  * 			usernames: the usernames of all of the clients that have this whiteboard open
+ * 			activeLayers: the index of the layer that each user draws on, for the users that have chosen one;
+ * 					   every other user draws on the base layer
+ * 			viewports: the region of the whiteboard that each client is looking at, for the clients that have
+ * 					   declared one; clients without a viewport are looking at the whole whiteboard
+ * 			strokes:   the strokes that have been drawn on the whiteboard since it was last cleared, including
+ * 					   flood fills, in the order that they were drawn
+ * 			strokeIndex: the bounding boxes of strokes, keyed by the index of each stroke in strokes
+ * 			operations: the strokes that each user has drawn and undone, in the order that they did so
+ * 			blendedStrokes, 
+ * 			blendedPixels: for each user, the id of the translucent stroke that they last drew on, and the pixels 
+ * 					   that it has been blended into so far, as a BitSet of x-coordinates for each row, so that 
+ * 					   the segments of a stroke that overlap where they join do not blend the same pixel twice
  * 
  * Representation Invariant:
- * 		pixels is a height x width 2D array.
- * 		The Point object at pixels[y][x] represents the pixel at (x, y) where (0, 0) is the top
- * 		left hand corner of the whiteboard and (width - 1, height - 1) is the bottom right hand corner 
- * 		of the whiteboard.
- * 		Each pixel in the whiteboard is represented by a Point object in pixels.
- * 		pixels[y][x] always refers to the same Point object.
+ * 		Every layer of layers is width x height, and layers is told of every region of a layer that changes.
+ * 		Each layer is a cache of strokes: drawing every stroke in strokes on that layer that has not been removed, 
+ * 		in order, on an empty layer produces exactly the colors in the layer.
+ * 		Every stroke in strokes that has not been removed is in strokeIndex, and its bounding box there is the 
+ * 		smallest rectangle of the whiteboard containing every pixel that the stroke can cover.
+ * 		The color of the pixel at (x, y), where (0, 0) is the top left hand corner of the whiteboard and 
+ * 		(width - 1, height - 1) is the bottom right hand corner of the whiteboard, is 
+ * 		layers.getComposite().getRGB(x, y).
+ * 		Every value of activeLayers is the index of a layer of layers.
  * 		Each whiteboard must have a different name.
  * 		usernames contains the usernames of all of the clients that currently have this whiteboard open.
  * 		The order of the usernames in usernames is the order that the client connected (i.e. the order that the
- * 		addUsername() method was called).
+ * 		addUsername() method was first called with each of them since it was last removed).
+ * 		Every key of viewports is in usernames.
  * 
  * Thread safety Argument:
  * 		The height, width and the name fields of each Whiteboard object are of immutable types and are also private 
  * 		and final.  In other words, these fields are constant and do not change after the Whiteboard object is created.
  * 		Therefore, none of the read methods for these fields are synchronized.
  * 		
- * 		The getColor(x, y) and setColor(x, y, newColor) methods call the corresponding methods in the 
- * 		Point class, which are synchronized on the Point object located at pixels[y][x].  Since pixels[y][x] 
- * 		always refers to the same Point object, all calls on getColor(x, y) and setColor(x, y) will be synchronized on
- * 		the same Point object at pixels[y][x].  In other words, only one thread can read or write a given pixel
- * 		at any time.  And since setColor(x, y) also returns the string representation of the newly modified pixel at 
- * 		(x, y), there can be no race condition between changing the color of the pixel and getting the string
- * 		representation of the new pixel.
+ * 		The TiledRasters in layers, strokes, strokeIndex and operations are not threadsafe themselves, so all 
+ * 		reads and writes to them are synchronized on this whiteboard.  In other words, only one thread can read or 
+ * 		write the pixels of a whiteboard at any time.  And since setColor(x, y) also returns the string 
+ * 		representation of the newly modified pixel at (x, y), there can be no race condition between changing the 
+ * 		color of the pixel and getting the string representation of the new pixel.
  * 
- * 		In addition the resetWhiteboard() method calls the corresponding methods in the Point class, which are once
- * 		again synchronized on each individual Point object in the whiteboard.  So once again, only one thread
- * 		can read or write a given pixel at any time.
+ * 		The clearWhiteboard() method only increments the generation of each layer, so clearing a whiteboard takes constant
+ * 		time no matter how large the whiteboard is.  Tiles that were cleared are painted white the next time they are
+ * 		written to while holding the lock on this whiteboard, so a lazily cleared tile can never be partially cleared.
  * 
  * 		The addLine() method is synchronized on the Whiteboard, meaning that only one client can request a change to the
  * 		whiteboard at a particular time, eliminating the race condition that two clients could draw a line and at each point
  * 		a different client could win, leading in a checkerboard line.
  * 
- * 		All reads and writes to usernames are synchronized on this whiteboard.  In addition, each write to usernames
- * 		returns the new string representation of usernames, so there can be no race condition between changing
- * 		usernames and getting the string representation of the usernames.
+ * 		All reads and writes to usernames and viewports are synchronized on this whiteboard.  In addition, each 
+ * 		write to usernames returns the new string representation of usernames, so there can be no race condition 
+ * 		between changing usernames and getting the string representation of the usernames.
  * 
- * 		All synchronized methods obtains at most one lock at a given time during runtime - either a lock on the 
- * 		whiteboard or a lock on a Point object.  Therefor, this locking mechanism will not produce a deadlock.
+ * 		All synchronized methods obtain only the lock on this whiteboard.  Therefore, this locking mechanism will not
+ * 		produce a deadlock.
  *
  */
 public class Whiteboard {
+	/** The author of the strokes drawn by addLine() when no author is given. */
+	public static final String NO_AUTHOR = "-";
+	
 	private final String name;
 	private final int height;
 	private final int width;
-	private final Point[][] pixels;
-	private final ArrayList<String> usernames; 
+	private final LayerStack layers;
+	private final LinkedHashSet<String> usernames; 
+	private final HashMap<String, Integer> activeLayers;
+	private final HashMap<String, Region> viewports;
+	private final StrokeStore strokes;
+	private final StrokeIndex strokeIndex;
+	private int[] queryResults;
+	private final OperationLog operations;
+	private final HashMap<String, Integer> blendedStrokes;
+	private final HashMap<String, HashMap<Integer, BitSet>> blendedPixels;
 	
 	/**
-	 * Creates an empty Whiteboard object.
+	 * Creates an empty Whiteboard object.  No memory is used for the pixels of the whiteboard until 
+	 * they are drawn on, so creating a very large whiteboard is as cheap as creating a small one.
 	 * 
 	 * @param name the name of the whiteboard, each Whiteboard object must have a different name
 	 * @param width the width of the whiteboard in pixels, must be positive
@@ -76,14 +109,16 @@ public class Whiteboard {
 		this.name = name;
 		this.width = width;
 		this.height = height;
-		this.pixels = new Point[height][width];
-		this.usernames = new ArrayList<String>();
-		
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				pixels[y][x] = new Point(x, y, Color.WHITE);
-			}
-		}
+		this.layers = new LayerStack(width, height);
+		this.usernames = new LinkedHashSet<String>();
+		this.activeLayers = new HashMap<String, Integer>();
+		this.viewports = new HashMap<String, Region>();
+		this.strokes = new StrokeStore();
+		this.strokeIndex = new StrokeIndex(width, height);
+		this.queryResults = new int[64];
+		this.operations = new OperationLog();
+		this.blendedStrokes = new HashMap<String, Integer>();
+		this.blendedPixels = new HashMap<String, HashMap<Integer, BitSet>>();
 	}
 	
 	/**
@@ -94,18 +129,17 @@ public class Whiteboard {
 	 * 		   open, separated by a single space.
 	 */
 	public synchronized String getUsernames() {
-		String usernameString = "";
-		
-		for (int i = 0; i < usernames.size(); i++) {
-			usernameString += usernames.get(i);
-			
-			// As long as this username is not the last username in the list,...
-			if(i != usernames.size() - 1) {
-				usernameString += " ";
-			}
-		}
-		
-		return usernameString;
+		return String.join(" ", usernames);
+	}
+	
+	/**
+	 * Returns the usernames of all of the clients that currently have this whiteboard open.
+	 * 
+	 * @return a new list of the usernames of all of the clients that currently have this whiteboard open, in the 
+	 * 		   order that they opened it
+	 */
+	public synchronized ArrayList<String> getUsernameList() {
+		return new ArrayList<String>(usernames);
 	}
 	
 	/**
@@ -113,6 +147,7 @@ public class Whiteboard {
 	 * 
 	 * @param username the username of the client that has opened this whiteboard.  
 	 * 				   This username must be unique (i.e. each client must have a different username).
+	 * 				   Adding a username that is already on this whiteboard changes nothing.
 	 * @return a string containing the usernames of all of the clients that currently have this whiteboard 
 	 * 		   open, separated by a single space
 	 * 
@@ -133,6 +168,8 @@ public class Whiteboard {
 	 */
 	public synchronized String removeUsername(final String username) {
 		usernames.remove(username);
+		viewports.remove(username);
+		activeLayers.remove(username);
 		return getUsernames();
 	}
 	
@@ -147,6 +184,178 @@ public class Whiteboard {
 		return usernames.contains(username);
 	}
 	
+	/**
+	 * Changes the region of this whiteboard that a client is looking at.  Clients see whole tiles at a time, so 
+	 * the viewport is grown to the smallest region made up of whole tiles that contains the requested viewport.
+	 * 
+	 * @param username the username of a client that has this whiteboard open
+	 * @param requestedViewport the region of this whiteboard that the client whose username is username is looking at
+	 * @return the regions covered by the tiles that the client could not see before this call but can see now,
+	 * 		   leaving out tiles that have not been drawn on since this whiteboard was last cleared.  A client 
+	 * 		   without a viewport could see the whole whiteboard, so the list is empty for its first viewport.
+	 * @modifies the viewport of the client whose username is username
+	 */
+	public synchronized ArrayList<Region> setViewport(final String username, final Region requestedViewport) {
+		ArrayList<Region> newlyVisibleTiles = new ArrayList<Region>();
+		if (!usernames.contains(username)) {
+			return newlyVisibleTiles;
+		}
+		
+		Region viewport = alignToTiles(requestedViewport);
+		Region oldViewport = viewports.put(username, viewport);
+		
+		if (oldViewport == null) {
+			return newlyVisibleTiles;
+		}
+		
+		// A tile has been drawn on if any layer has, and then the composited view has the tile too.
+		TiledRaster pixels = layers.getComposite();
+		int tileSize = TiledRaster.TILE_SIZE;
+		int firstTileX = Math.max(0, viewport.getX() / tileSize);
+		int firstTileY = Math.max(0, viewport.getY() / tileSize);
+		int lastTileX = Math.min(pixels.getTilesAcross() - 1, (viewport.getX() + viewport.getWidth() - 1) / tileSize);
+		int lastTileY = Math.min(pixels.getTilesDown() - 1, (viewport.getY() + viewport.getHeight() - 1) / tileSize);
+		
+		for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+			if (!pixels.hasTileRow(tileY)) {
+				continue;
+			}
+			
+			for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+				Region tile = pixels.getTileRegion(tileX, tileY);
+				if (pixels.hasTile(tileX, tileY) && tile.intersects(viewport) && !tile.intersects(oldViewport)) {
+					newlyVisibleTiles.add(tile);
+				}
+			}
+		}
+		
+		return newlyVisibleTiles;
+	}
+	
+	/**
+	 * Returns the tiles of the layers of this whiteboard above the base layer that a client can see.
+	 * 
+	 * @param username the username of a client that has this whiteboard open
+	 * @return the regions covered by the tiles that have been drawn on in some layer other than the base layer
+	 * 		   since this whiteboard was last cleared and that the client can see, in row-major order
+	 */
+	public synchronized ArrayList<Region> getUpperLayerTiles(final String username) {
+		ArrayList<Region> tiles = new ArrayList<Region>();
+		Region viewport = viewports.get(username);
+		TiledRaster base = layers.getLayer(0);
+		
+		for (int tileY = 0; tileY < base.getTilesDown(); tileY++) {
+			// Rows of tiles that no upper layer has drawn on are skipped, so a whiteboard with only the base 
+			// layer costs one check per row.
+			boolean hasRow = false;
+			for (int layer = 1; layer < layers.getLayerCount() && !hasRow; layer++) {
+				hasRow = layers.getLayer(layer).hasTileRow(tileY);
+			}
+			if (!hasRow) {
+				continue;
+			}
+			
+			for (int tileX = 0; tileX < base.getTilesAcross(); tileX++) {
+				Region tile = base.getTileRegion(tileX, tileY);
+				if (viewport != null && !viewport.intersects(tile)) {
+					continue;
+				}
+				
+				for (int layer = 1; layer < layers.getLayerCount(); layer++) {
+					if (layers.getLayer(layer).hasTile(tileX, tileY)) {
+						tiles.add(tile);
+						break;
+					}
+				}
+			}
+		}
+		
+		return tiles;
+	}
+	
+	/**
+	 * Returns the tiles of this whiteboard that intersect a region.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the regions covered by the tiles of this whiteboard that intersect region, in row-major order
+	 */
+	public synchronized ArrayList<Region> getTiles(final Region region) {
+		TreeSet<Integer> keys = new TreeSet<Integer>();
+		addTiles(keys, region);
+		
+		ArrayList<Region> tiles = new ArrayList<Region>();
+		TiledRaster base = layers.getLayer(0);
+		for (int key : keys) {
+			tiles.add(base.getTileRegion(key % base.getTilesAcross(), key / base.getTilesAcross()));
+		}
+		return tiles;
+	}
+	
+	/**
+	 * Grows a region to whole tiles of this whiteboard.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the smallest region made up of whole tiles of this whiteboard that contains every pixel of 
+	 * 		   this whiteboard that is in region
+	 */
+	public Region alignToTiles(final Region region) {
+		int tileSize = TiledRaster.TILE_SIZE;
+		int xMin = Math.max(0, region.getX()) / tileSize * tileSize;
+		int yMin = Math.max(0, region.getY()) / tileSize * tileSize;
+		int xMax = Math.min(width, region.getX() + region.getWidth());
+		int yMax = Math.min(height, region.getY() + region.getHeight());
+		
+		if (xMax <= xMin || yMax <= yMin) {
+			return new Region(xMin, yMin, 0, 0);
+		}
+		
+		xMax = Math.min(width, (xMax + tileSize - 1) / tileSize * tileSize);
+		yMax = Math.min(height, (yMax + tileSize - 1) / tileSize * tileSize);
+		return new Region(xMin, yMin, xMax - xMin, yMax - yMin);
+	}
+	
+	/**
+	 * Returns the usernames of the clients that can see a region of this whiteboard.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the usernames of all of the clients that currently have this whiteboard open and have either 
+	 * 		   not declared a viewport or whose viewport intersects region, in the order that they connected
+	 */
+	public synchronized ArrayList<String> getUsernamesViewing(final Region region) {
+		ArrayList<String> viewing = new ArrayList<String>();
+		
+		for (String username : usernames) {
+			Region viewport = viewports.get(username);
+			if (viewport == null || viewport.intersects(region)) {
+				viewing.add(username);
+			}
+		}
+		
+		return viewing;
+	}
+	
+	/**
+	 * Returns the usernames of the clients that can see the whole of a region of this whiteboard.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the usernames of all of the clients that currently have this whiteboard open and have either 
+	 * 		   not declared a viewport or whose viewport contains every pixel of region, in the order that they 
+	 * 		   connected
+	 */
+	public synchronized ArrayList<String> getUsernamesViewingAll(final Region region) {
+		ArrayList<String> viewing = new ArrayList<String>();
+		
+		for (String username : usernames) {
+			Region viewport = viewports.get(username);
+			if (viewport == null || (viewport.contains(region.getX(), region.getY()) 
+					&& viewport.contains(region.getX() + region.getWidth() - 1, region.getY() + region.getHeight() - 1))) {
+				viewing.add(username);
+			}
+		}
+		
+		return viewing;
+	}
+	
 	/**
 	 * Returns the name of the whiteboard object.
 	 * 
@@ -181,12 +390,31 @@ public class Whiteboard {
 	 * 			0 <= x < width
 	 * @param y the y-coordinate of the pixel to be changed
 	 * 			0 <= y < height
+	 * @param rgb the new color of the pixel, packed as 0xRRGGBB
 	 * @return the String representation of the Point object that is changed
+	 * @modifies changes the color of the pixel at (x, y) of the base layer and records it as a stroke of a 
+	 * 			 single point whose thickness is 1
+	 * 
+	 */
+	public synchronized String setRGB(final int x, final int y, final int rgb) {
+		strokes.addStroke(NO_AUTHOR, rgb, 1, x, y);
+		indexSegment(strokes.getStrokeCount() - 1, x, y, x, y, 1);
+		layers.getLayer(0).setRGB(x, y, rgb);
+		layers.invalidate(new Region(x, y, 1, 1));
+		
+		StringBuilder representation = new StringBuilder();
+		TiledRaster.appendPixel(representation, x, y, rgb);
+		return representation.toString().trim();
+	}
+	
+	/**
+	 * Changes the color of a pixel in the whiteboard to a java.awt.Color, for callers that work with AWT colors.
 	 * 
+	 * @return setRGB(x, y, newColor.getRGB() & 0xFFFFFF)
+	 * @see #setRGB(int, int, int)
 	 */
 	public String setColor(final int x, final int y, final Color newColor) {
-		Point point = pixels[y][x];
-		return point.setColor(newColor);
+		return setRGB(x, y, newColor.getRGB() & 0xFFFFFF);
 	}
 	
 	/**
@@ -196,17 +424,41 @@ public class Whiteboard {
 	 * 			0 <= x < width
 	 * @param y the y-coordinate of the pixel
 	 * 			0 <= y < height
-	 * @return the color of the pixel at (x, y)
+	 * @return the color of the pixel at (x, y), packed as 0xRRGGBB, with every layer painted over the ones under it
+	 */
+	public synchronized int getRGB(final int x, final int y) {
+		return layers.getComposite().getRGB(x, y);
+	}
+	
+	/**
+	 * Returns the color of a pixel in the whiteboard as a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return an opaque Color whose red, green and blue components are those of getRGB(x, y)
+	 * @see #getRGB(int, int)
 	 */
 	public Color getColor(final int x, final int y) {
-		Point point = pixels[y][x];
-		return point.getColor();
+		return new Color(getRGB(x, y));
 	}
 	
 	/**
-	 * Adds a line segment to this Whiteboard object.
+	 * Adds a line segment that was not drawn by any particular user to this Whiteboard object.
 	 * 
-	 * @param color the color of the line segment
+	 * @return addLine(NO_AUTHOR, color, x1, y1, x2, y2, thickness)
+	 * @see #addLine(String, int, int, int, int, int, int, int)
+	 */
+	public String addLine (final Color color, final int x1, final int y1, final int x2, final int y2, final int thickness) {
+		return addLine(NO_AUTHOR, color, x1, y1, x2, y2, thickness);
+	}
+	
+	/**
+	 * Adds a line segment drawn by a user to the layer that the user draws on.  The line segment is recorded as
+	 * part of the last stroke if it continues it (i.e. it was drawn by the same user on the same layer in the same
+	 * color and thickness and starts where that stroke ends), and as a new stroke otherwise.
+	 * 
+	 * @param author the username of the user that drew the line segment, cannot contain any spaces
+	 * @param rgb the color of the line segment, packed as 0xRRGGBB
+	 * @param alpha the opacity of rgb, 1 <= alpha <= AlphaBlend.OPAQUE.  A translucent color is blended over the 
+	 * 		  pixels of the layer, each pixel of a stroke being blended once however many of its line segments cover it
 	 * @param x1 the x-coordinate of the starting point of the line segment
 	 * 			 0 <= x1 < width
 	 * @param y2 the y-coordinate of the starting point of the line segment
@@ -215,51 +467,244 @@ public class Whiteboard {
 	 * 			 0 <= x1 < width
 	 * @param y2 the y-coordinate of the ending point of the line segment
 	 * 			 0 <= y2 < height
-	 * @param thickness the thickness of the line segment in pixels
-	 * @return the String representation of the line segment that has just been added to this 
+	 * @param requestedThickness the thickness of the line segment in pixels, a thickness below 1 is drawn as 1
+	 * @return the String representation of the line segment that has just been added to the layer of this 
 	 * 		   whiteboard.  The String representation of the line segment contains n lines where n is 
-	 * 		   the number of points in the line segment and each line in this String representation is the
-	 * 		   the string representation of a point in the line segment.
+	 * 		   the number of points of the layer in the line segment that changed color and each line in this String 
+	 * 		   representation is the the string representation of a point in the line segment.  If the 
+	 * 		   line segment did not change the color of any pixel, the empty string is returned.
 	 * @modifies adds a line segment to the whiteboard that starts at (x1, y1) and ends
-	 * 			 at (x2, y2) and whose thickness in pixels is thickness
+	 * 			 at (x2, y2) and whose thickness in pixels is requestedThickness, and records it in the strokes
+	 * 			 of the whiteboard
 	 * 
 	 */
-	public String addLine (final Color color, final int x1, final int y1, final int x2, final int y2, final int thickness) {
-		ArrayList<Point> pointsOnLine = getPointsOnLine(color, x1, y1, x2, y2);		
-		ArrayList<Point>  points = new ArrayList<Point>();
+	public synchronized String addLine (final String author, final int rgb, final int alpha, final int x1, final int y1, 
+										final int x2, final int y2, final int requestedThickness) {
+		// A line is always at least one pixel thick, which also keeps it from being recorded as a fill.
+		int thickness = Math.max(1, requestedThickness);
+		int layer = getLayer(author);
 		
-		boolean[][] bmatrix = new boolean[width][height];	
-		for(int i = 0; i<width; i++){
-			for(int y = 0; y<height; y++){
-				bmatrix[i][y] = false;
-			}
+		// Other users may have drawn since, so the segment continues the last stroke of its own author.
+		int index;
+		if (strokes.continuesLastStroke(author, layer, rgb, alpha, thickness, x1, y1)) {
+			index = strokes.getLastStroke(author);
+			strokes.addPoint(index, x2, y2);
 		}
-		// Thickens the line defined by pointsOnLine, the interpolation of (x1, y1) and (x2, y2)
-		int halfWidth = thickness / 2;
-		int xCoordinate, yCoordinate;
-		int xMin, xMax, yMin, yMax;
+		else {
+			strokes.addStroke(author, layer, rgb, alpha, thickness, x1, y1);
+			index = strokes.getStrokeCount() - 1;
+			strokes.addPoint(index, x2, y2);
+			operations.record(author, new OperationLog.Operation(true, index));
+		}
+		indexSegment(index, x1, y1, x2, y2, thickness);
+		
+		return rasterizeLine(layer, rgb, alpha, x1, y1, x2, y2, thickness, new Region(0, 0, width, height), 
+							 getBlendedPixels(author, index));
+	}
+	
+	/**
+	 * Adds a line segment drawn by a user in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return addLine(author, color.getRGB() & 0xFFFFFF, color.getAlpha(), x1, y1, x2, y2, requestedThickness)
+	 * @see #addLine(String, int, int, int, int, int, int, int)
+	 */
+	public String addLine (final String author, final Color color, final int x1, final int y1, final int x2, final int y2, 
+						   final int requestedThickness) {
+		return addLine(author, color.getRGB() & 0xFFFFFF, color.getAlpha(), x1, y1, x2, y2, requestedThickness);
+	}
+	
+	/**
+	 * Colors the pixels of a layer covered by a line segment that lie in a region, without recording the line 
+	 * segment in the strokes of this whiteboard.  The line segment is drawn with a round brush whose diameter is 
+	 * its thickness.
+	 * 
+	 * @param layer the index of the layer
+	 * @param clip the region of this whiteboard outside of which no pixel is colored, must lie inside this whiteboard
+	 * @param blended the pixels that the stroke of the line segment has already been blended into, which are
+	 * 		  left alone and to which the pixels blended now are added; only used if rgb is translucent
+	 * @return the String representation of the pixels that changed color, as specified by addLine()
+	 * @see #addLine(String, int, int, int, int, int, int, int)
+	 */
+	private String rasterizeLine (final int layer, final int rgb, final int alpha, final int x1, final int y1, final int x2, final int y2, final int thickness, 
+								  final Region clip, final HashMap<Integer, BitSet> blended) {
+		// A brush wider than the diagonal of this whiteboard covers no more of it than one as wide as the diagonal.
+		BrushMask brush = BrushMask.forThickness(thickness, (int) Math.ceil(Math.hypot(width, height)));
+		int radius = brush.getRadius();
+		
+		// The thickened line never leaves the bounding box of its end points grown by the radius of the brush,
+		// so only the rows of that box need to be tracked, no matter how large the whiteboard is.
+		int boxXMin = Math.max(clip.getX(), Math.min(x1, x2) - radius);
+		int boxYMin = Math.max(clip.getY(), Math.min(y1, y2) - radius);
+		int boxXMax = Math.min(clip.getX() + clip.getWidth() - 1, Math.max(x1, x2) + radius);
+		int boxYMax = Math.min(clip.getY() + clip.getHeight() - 1, Math.max(y1, y2) + radius);
+		if (boxXMin > boxXMax || boxYMin > boxYMax) {
+			return "";
+		}
+		
+		int rows = boxYMax - boxYMin + 1;
+		int[] spanYs = new int[rows];
+		int[] spanStarts = new int[rows];
+		int[] spanEnds = new int[rows];
+		for (int row = 0; row < rows; row++) {
+			spanYs[row] = boxYMin + row;
+		}
+		Arrays.fill(spanStarts, Integer.MAX_VALUE);
+		Arrays.fill(spanEnds, Integer.MIN_VALUE);
+		
+		// Consecutive centers are at most one pixel apart in each direction, so the stamps of the brush that 
+		// reach a row cover a single run of pixels in it.  The runs are merged here and each one is filled once.
+		ArrayList<Point> pointsOnLine = getPointsOnLine(rgb, x1, y1, x2, y2);
 		for (int i = 0; i < pointsOnLine.size(); i++) {
-			xCoordinate = pointsOnLine.get(i).getX();
-			yCoordinate = pointsOnLine.get(i).getY();
+			int xCoordinate = pointsOnLine.get(i).getX();
+			int yCoordinate = pointsOnLine.get(i).getY();
+			
+			int dyMin = Math.max(-radius, boxYMin - yCoordinate);
+			int dyMax = Math.min(radius, boxYMax - yCoordinate);
+			for (int dy = dyMin; dy <= dyMax; dy++) {
+				int row = yCoordinate + dy - boxYMin;
+				int halfSpan = brush.getHalfSpan(dy);
+				spanStarts[row] = Math.min(spanStarts[row], xCoordinate - halfSpan);
+				spanEnds[row] = Math.max(spanEnds[row], xCoordinate + halfSpan);
+			}
+		}
+		
+		return colorSpans(layer, rgb, alpha, clip, spanYs, spanStarts, spanEnds, rows, blended);
+	}
+	
+	/**
+	 * Colors runs of pixels of a layer.
+	 * 
+	 * @param layer the index of the layer
+	 * @param rgb the packed 0xRRGGBB color of the pixels
+	 * @param alpha the opacity of rgb, 0 <= alpha <= AlphaBlend.OPAQUE
+	 * @param clip the region of this whiteboard outside of which no pixel is colored, must lie inside this whiteboard
+	 * @param spanYs spanYs[i] is the y-coordinate of the ith run
+	 * @param spanStarts spanStarts[i] is the x-coordinate of the first pixel of the ith run
+	 * @param spanEnds spanEnds[i] is the x-coordinate of the last pixel of the ith run, a run that ends before
+	 * 		  it starts is left alone
+	 * @param count the number of runs
+	 * @param blended the pixels that rgb has already been blended into if it is translucent, as for rasterizeLine()
+	 * @return the String representation of the pixels that changed color, as specified by colorPoints()
+	 * @modifies colors the pixels of the layer of every run that lie in clip, or blends rgb into those that are 
+	 * 			 not in blended and adds them to blended if it is translucent
+	 */
+	private String colorSpans(final int layer, final int rgb, final int alpha, final Region clip, final int[] spanYs, 
+							  final int[] spanStarts, final int[] spanEnds, final int count, final HashMap<Integer, BitSet> blended) {
+		if (alpha != AlphaBlend.OPAQUE) {
+			return blendSpans(layer, rgb, alpha, clip, spanYs, spanStarts, spanEnds, count, blended);
+		}
+		
+		TiledRaster pixels = layers.getLayer(layer);
+		StringBuilder line = new StringBuilder();
+		int clipXMax = clip.getX() + clip.getWidth() - 1, clipYMax = clip.getY() + clip.getHeight() - 1;
+		
+		// The smallest rectangle containing every pixel that changed color.
+		int changedXMin = Integer.MAX_VALUE, changedYMin = Integer.MAX_VALUE;
+		int changedXMax = Integer.MIN_VALUE, changedYMax = Integer.MIN_VALUE;
+		
+		for (int i = 0; i < count; i++) {
+			int y = spanYs[i];
+			if (y < clip.getY() || y > clipYMax) {
+				continue;
+			}
+			
+			int end = Math.min(clipXMax, spanEnds[i]);
+			for (int x = Math.max(clip.getX(), spanStarts[i]); x <= end; x++) {
+				// Pixels that already have this color are neither written nor reported.
+				if (pixels.getRGB(x, y) == rgb) {
+					continue;
+				}
+				
+				pixels.setRGB(x, y, rgb);
+				TiledRaster.appendPixel(line, x, y, rgb);
+				
+				changedXMin = Math.min(changedXMin, x); changedXMax = Math.max(changedXMax, x);
+				changedYMin = Math.min(changedYMin, y); changedYMax = Math.max(changedYMax, y);
+			}
+		}
+		
+		if (changedXMin <= changedXMax) {
+			layers.invalidate(new Region(changedXMin, changedYMin, changedXMax - changedXMin + 1, changedYMax - changedYMin + 1));
+		}
+		
+		return line.toString();
+	}
+	
+	/**
+	 * Blends a translucent color into runs of pixels of a layer, one row at a time.  Only the parts of the runs
+	 * that have not been blended into before are blended, so every changed pixel is reported.
+	 * 
+	 * @return the String representation of the pixels that changed color, as specified by colorPoints()
+	 * @see #colorSpans(int, int, int, Region, int[], int[], int[], int, HashMap)
+	 */
+	private String blendSpans(final int layer, final int rgb, final int alpha, final Region clip, final int[] spanYs, 
+							  final int[] spanStarts, final int[] spanEnds, final int count, final HashMap<Integer, BitSet> blended) {
+		TiledRaster pixels = layers.getLayer(layer);
+		StringBuilder line = new StringBuilder();
+		int clipXMax = clip.getX() + clip.getWidth() - 1, clipYMax = clip.getY() + clip.getHeight() - 1;
+		
+		// The smallest rectangle containing every pixel that changed color.
+		int changedXMin = Integer.MAX_VALUE, changedYMin = Integer.MAX_VALUE;
+		int changedXMax = Integer.MIN_VALUE, changedYMax = Integer.MIN_VALUE;
+		
+		for (int i = 0; i < count; i++) {
+			int y = spanYs[i];
+			if (y < clip.getY() || y > clipYMax) {
+				continue;
+			}
 			
-			xMin = Math.max(0, xCoordinate - halfWidth);
-			xMax = Math.min(width - 1, xCoordinate + halfWidth);
-			yMin = Math.max(0, yCoordinate - halfWidth);
-			yMax = Math.min(height - 1, yCoordinate + halfWidth);
+			BitSet row = blended.get(y);
+			if (row == null) {
+				row = new BitSet();
+				blended.put(y, row);
+			}
 			
-			for (int x = xMin; x <= xMax; x++) {
-				for (int y = yMin; y <= yMax; y++) {
-					if(bmatrix[x][y] == true){
-						continue;
-					}
-					points.add(new Point(x, y, color));
-					bmatrix[x][y] = true;
+			// Each gap between the pixels of the row that have already been blended is blended as one run.
+			int end = Math.min(clipXMax, spanEnds[i]);
+			int start = row.nextClearBit(Math.max(clip.getX(), spanStarts[i]));
+			while (start <= end) {
+				int next = row.nextSetBit(start);
+				int runEnd = (next == -1 || next > end) ? end : next - 1;
+				
+				pixels.blendRun(y, start, runEnd, rgb, alpha);
+				row.set(start, runEnd + 1);
+				for (int x = start; x <= runEnd; x++) {
+					TiledRaster.appendPixel(line, x, y, pixels.getRGB(x, y));
 				}
+				
+				changedXMin = Math.min(changedXMin, start); changedXMax = Math.max(changedXMax, runEnd);
+				changedYMin = Math.min(changedYMin, y); changedYMax = Math.max(changedYMax, y);
+				start = row.nextClearBit(runEnd + 1);
 			}
 		}
 		
-		// Color the specified points
-		return colorPoints(points, color);
+		if (changedXMin <= changedXMax) {
+			layers.invalidate(new Region(changedXMin, changedYMin, changedXMax - changedXMin + 1, changedYMax - changedYMin + 1));
+		}
+		
+		return line.toString();
+	}
+	
+	/**
+	 * Returns the pixels that the stroke that a user is drawing has been blended into so far.
+	 * 
+	 * @param author the username of the user
+	 * @param index the index of the stroke in strokes that author is drawing
+	 * @return null if the stroke is opaque; otherwise the blended pixels of author, emptied first if they 
+	 * 		   belonged to another stroke
+	 */
+	private HashMap<Integer, BitSet> getBlendedPixels(final String author, final int index) {
+		if (strokes.getAlpha(index) == AlphaBlend.OPAQUE) {
+			return null;
+		}
+		
+		int id = strokes.getId(index);
+		Integer blendedStroke = blendedStrokes.get(author);
+		if (blendedStroke == null || blendedStroke != id) {
+			blendedStrokes.put(author, id);
+			blendedPixels.put(author, new HashMap<Integer, BitSet>());
+		}
+		return blendedPixels.get(author);
 	}
 	
 	/**
@@ -273,12 +718,12 @@ public class Whiteboard {
 	 * 			 0 <= x1 < width
 	 * @param y2 the y-coordinate of the ending point of the line segment
 	 * 			 0 <= y2 < height
-	 * @param color the color of the line segment
+	 * @param rgb the color of the line segment, packed as 0xRRGGBB
 	 * @return a list containing all of the points on the line segment connecting (x1, y1) and (x2, y2)
 	 * 		   in the order of moving from (x1, y1) to (x2, y2)
 	 * 
 	 */
-	protected static ArrayList<Point> getPointsOnLine (final Color color, final int x1, final int y1, final int x2, final int y2) {
+	protected static ArrayList<Point> getPointsOnLine (final int rgb, final int x1, final int y1, final int x2, final int y2) {
 		ArrayList<Point> pointsOnLine = new ArrayList<Point>();
 		
 		// A vertical line does not have a defined slope
@@ -293,7 +738,7 @@ public class Whiteboard {
 			
 			final int xCoordinate = x1;
 			for (int yCoordinate = y1; yCoordinate != y2; yCoordinate += incrementer) {
-				pointsOnLine.add(new Point(xCoordinate, yCoordinate, color));
+				pointsOnLine.add(new Point(xCoordinate, yCoordinate, rgb));
 			}
 		}
 		else {			
@@ -314,7 +759,7 @@ public class Whiteboard {
 				}
 				
 				for (int yCoordinate = y1; yCoordinate != y2; yCoordinate += yCoordinateIncrementer) {
-					pointsOnLine.add(new Point(Math.round(xCoordinate), yCoordinate, color));
+					pointsOnLine.add(new Point(Math.round(xCoordinate), yCoordinate, rgb));
 					xCoordinate = xCoordinate + xCoordinateIncrementer;
 				}
 				
@@ -335,17 +780,26 @@ public class Whiteboard {
 				}
 				
 				for (int xCoordinate = x1; xCoordinate != x2; xCoordinate += xCoordinateIncrementer) {
-					pointsOnLine.add(new Point(xCoordinate, (int) yCoordinate, color));
+					pointsOnLine.add(new Point(xCoordinate, (int) yCoordinate, rgb));
 					yCoordinate = yCoordinate + yCoordinateIncrementer;
 				}
 			}
 		}
 		
-		pointsOnLine.add(new Point(x2, y2, color));
+		pointsOnLine.add(new Point(x2, y2, rgb));
 		
 		return pointsOnLine;
 	}
 	
+	/**
+	 * Determines all of the points on a line segment in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return getPointsOnLine(color.getRGB() & 0xFFFFFF, x1, y1, x2, y2)
+	 */
+	protected static ArrayList<Point> getPointsOnLine (final Color color, final int x1, final int y1, final int x2, final int y2) {
+		return getPointsOnLine(color.getRGB() & 0xFFFFFF, x1, y1, x2, y2);
+	}
+	
 	/**
 	 * Colors all of the points specified with the specified color
 	 * 
@@ -353,15 +807,24 @@ public class Whiteboard {
 	 * 							each Point object, point, in pointsOnThickLine must be
 	 * 							in this Whiteboard object, i.e. 0 <= point.getX() < width
 	 * 							and 0 <= point.getY() < height
-	 * @param color the color that the points in pointsOnThickLine must be colored;
-	 * 				the color of the each of the Point objects in pointsOnThickLine must be color
+	 * @param rgb the color that the points in pointsOnThickLine must be colored, packed as 0xRRGGBB;
+	 * 			  the color of the each of the Point objects in pointsOnThickLine must be rgb
 	 * @return a String consisting of n lines, where n is the number of points in pointsOnThickLine
-	 * 		   each line in the String is the String representation 
-	 * @modifies colors all of the points in pointsOnThickLine with color
+	 * 		   whose color was not already color, each line in the String is the String representation
+	 * 		   of one of those points.  Points that were already colored color are left out, so the 
+	 * 		   empty string is returned if no point changed color.
+	 * @modifies colors all of the points in pointsOnThickLine with color.  The points are not recorded in 
+	 * 			 the strokes of this whiteboard, so callers other than the line drawing methods must
+	 * 			 record a stroke that covers them.
 	 * 
 	 */
-	protected String colorPoints (ArrayList<Point> points, Color color) {
-		String line = "";
+	protected synchronized String colorPoints (ArrayList<Point> points, int rgb) {
+		TiledRaster pixels = layers.getLayer(0);
+		StringBuilder line = new StringBuilder();
+		
+		// The smallest rectangle containing every pixel that changed color.
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
 		
 		for (int i = 0; i<points.size(); i++) {
 			Point currentPoint = points.get(i);
@@ -369,21 +832,865 @@ public class Whiteboard {
 			int xCoordinate = currentPoint.getX();
 			int yCoordinate = currentPoint.getY();
 			
-			line += setColor(xCoordinate, yCoordinate, color) + " ";
+			// Pixels that already have this color are neither written nor reported.
+			if (pixels.getRGB(xCoordinate, yCoordinate) == rgb) {
+				continue;
+			}
+			
+			pixels.setRGB(xCoordinate, yCoordinate, rgb);
+			TiledRaster.appendPixel(line, xCoordinate, yCoordinate, rgb);
+			
+			xMin = Math.min(xMin, xCoordinate); xMax = Math.max(xMax, xCoordinate);
+			yMin = Math.min(yMin, yCoordinate); yMax = Math.max(yMax, yCoordinate);
 		}
 		
-		return line;
+		if (xMin <= xMax) {
+			layers.invalidate(new Region(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1));
+		}
+		
+		return line.toString();
+	}
+	
+	/**
+	 * Colors points in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return colorPoints(points, color.getRGB() & 0xFFFFFF)
+	 */
+	protected String colorPoints (ArrayList<Point> points, Color color) {
+		return colorPoints(points, color.getRGB() & 0xFFFFFF);
 	}
 	
 	/**
-	 * Clears the whiteboard.
+	 * Clears the whiteboard.  The pixels are not touched here; every tile that has been drawn on
+	 * becomes out of date and reads as white until it is next written to.  The layers are kept, empty.
 	 * 
 	 * @modifies makes the whiteboard completely white
 	 */
-	public void clearWhiteboard() {
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				pixels[y][x].setColor(Color.WHITE);
+	public synchronized void clearWhiteboard() {
+		layers.clear();
+		strokes.clear();
+		strokeIndex.clear();
+		operations.clear();
+	}
+	
+	/**
+	 * Rebuilds the pixels of this whiteboard from its strokes.  The pixels are only a cache of the strokes,
+	 * so this does not change the color of any pixel.
+	 * 
+	 * @modifies redraws every stroke of this whiteboard, in order, on its empty layer
+	 */
+	public synchronized void rebuildPixels() {
+		layers.clear();
+		
+		Region bounds = new Region(0, 0, width, height);
+		for (int i = 0; i < strokes.getStrokeCount(); i++) {
+			if (!strokes.isRemoved(i)) {
+				rasterizeStroke(i, bounds);
+			}
+		}
+	}
+	
+	/**
+	 * Undoes the last operation of a user that has not been undone: a stroke that the user drew is removed and 
+	 * strokes that the user erased are restored.  Only the tiles that the strokes cover are redrawn, so the cost 
+	 * grows with the area of the strokes rather than with the size of the whiteboard.
+	 * 
+	 * @param username the username of the user
+	 * @return the regions covered by the tiles of this whiteboard whose pixels were redrawn, which is empty if
+	 * 		   the user has not done anything that can be undone
+	 * @modifies removes or restores the strokes of the operation and redraws the pixels they cover
+	 */
+	public synchronized ArrayList<Region> undo(final String username) {
+		OperationLog.Operation operation = operations.undo(username);
+		if (operation == null) {
+			return new ArrayList<Region>();
+		}
+		
+		return setRemoved(operation, operation.isAddition());
+	}
+	
+	/**
+	 * Redoes the last operation undone by a user that has not been redone.  Only the tiles that the strokes 
+	 * of the operation cover are redrawn.
+	 * 
+	 * @param username the username of the user
+	 * @return the regions covered by the tiles of this whiteboard whose pixels were redrawn, which is empty if
+	 * 		   the user has not undone anything that can be redone
+	 * @modifies restores or removes the strokes of the operation and redraws the pixels they cover
+	 */
+	public synchronized ArrayList<Region> redo(final String username) {
+		OperationLog.Operation operation = operations.redo(username);
+		if (operation == null) {
+			return new ArrayList<Region>();
+		}
+		
+		return setRemoved(operation, !operation.isAddition());
+	}
+	
+	/**
+	 * Erases every stroke that an eraser touches.  Whole strokes are removed, rather than painted over in white,
+	 * and only the tiles that they covered are redrawn.  The erasure can be undone by the user that made it.
+	 * 
+	 * @param username the username of the user that is erasing
+	 * @param x1 the x-coordinate of the starting point of the path of the eraser
+	 * @param y1 the y-coordinate of the starting point of the path of the eraser
+	 * @param x2 the x-coordinate of the ending point of the path of the eraser
+	 * @param y2 the y-coordinate of the ending point of the path of the eraser
+	 * @param thickness the thickness of the eraser in pixels
+	 * @return the regions covered by the tiles of this whiteboard whose pixels were redrawn, which is empty if
+	 * 		   the eraser did not touch any stroke
+	 * @modifies removes every stroke on the layer that the user draws on that comes within thickness / 2 pixels 
+	 * 			 of the line segment from (x1, y1) to (x2, y2), and redraws the pixels they covered
+	 */
+	public synchronized ArrayList<Region> erase(final String username, final int x1, final int y1, final int x2, final int y2, 
+												final int thickness) {
+		Region path = Region.aroundLine(x1, y1, x2, y2, thickness);
+		int count = strokeIndex.query(path.getX(), path.getY(), path.getWidth(), path.getHeight(), queryResults);
+		if (count > queryResults.length) {
+			queryResults = new int[Integer.highestOneBit(count) * 2];
+			strokeIndex.query(path.getX(), path.getY(), path.getWidth(), path.getHeight(), queryResults);
+		}
+		
+		// The index only knows the bounding boxes of the strokes, so each candidate is checked segment by segment.
+		// The eraser only reaches the layer that the user draws on.
+		int layer = getLayer(username);
+		int[] erased = new int[count];
+		int erasedCount = 0;
+		for (int i = 0; i < count; i++) {
+			if (strokes.getLayer(queryResults[i]) == layer && touches(queryResults[i], x1, y1, x2, y2, thickness)) {
+				erased[erasedCount++] = queryResults[i];
+			}
+		}
+		
+		if (erasedCount == 0) {
+			return new ArrayList<Region>();
+		}
+		
+		Arrays.sort(erased, 0, erasedCount);
+		OperationLog.Operation operation = new OperationLog.Operation(false, Arrays.copyOf(erased, erasedCount));
+		operations.record(username, operation);
+		return setRemoved(operation, true);
+	}
+	
+	/**
+	 * Fills the area of connected pixels of the same color that contains a pixel with a color, the way 
+	 * a paint bucket does.  Only the layer that the user draws on is filled, and only its own pixels decide 
+	 * how far the fill spreads.  The fill is recorded as a stroke, so it can be undone and erased like any other.
+	 * 
+	 * @param author the username of the user that is filling, cannot contain any spaces
+	 * @param rgb the color of the fill, packed as 0xRRGGBB
+	 * @param x the x-coordinate of the pixel, 0 <= x < width
+	 * @param y the y-coordinate of the pixel, 0 <= y < height
+	 * @return the empty string if the pixel already has the color rgb, and otherwise a String of the form
+	 * 		   "[x] [y] [width] [height] [runs]", where the region of the whiteboard whose top left hand corner is
+	 * 		   ([x], [y]) and that is [width] x [height] pixels is the smallest one that contains every pixel
+	 * 		   that changed color, and [runs] is "[y1] [xStart1] [xEnd1] [y2] [xStart2] [xEnd2] ... " where
+	 * 		   each triple means that the pixels from ([xStart], [y]) to ([xEnd], [y]) changed color
+	 * @modifies colors every pixel of the layer that is connected to (x, y), i.e. that can be reached from (x, y) 
+	 * 			 by moving up, down, left or right through pixels that have the color of (x, y) in the layer, with rgb
+	 */
+	public synchronized String fill(final String author, final int rgb, final int x, final int y) {
+		int layer = getLayer(author);
+		int[] runs = FloodFill.fill(layers.getLayer(layer), x, y, rgb);
+		if (runs.length == 0) {
+			return "";
+		}
+		
+		// The flood fill has already colored the pixels.
+		Region changed = recordRuns(author, layer, rgb, runs);
+		layers.invalidate(changed);
+		return changed + " " + toRunString(runs);
+	}
+	
+	/**
+	 * Fills an area with a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return fill(author, color.getRGB() & 0xFFFFFF, x, y)
+	 * @see #fill(String, int, int, int)
+	 */
+	public String fill(final String author, final Color color, final int x, final int y) {
+		return fill(author, color.getRGB() & 0xFFFFFF, x, y);
+	}
+	
+	/**
+	 * Adds a straight line segment drawn by a user to this Whiteboard object.  Unlike addLine(), the line 
+	 * segment is always recorded as a stroke of its own.
+	 * 
+	 * @param author the username of the user that drew the line segment, cannot contain any spaces
+	 * @param rgb the color of the line segment, packed as 0xRRGGBB
+	 * @param alpha the opacity of rgb, 1 <= alpha <= AlphaBlend.OPAQUE
+	 * @param x1 the x-coordinate of the starting point of the line segment, 0 <= x1 < width
+	 * @param y1 the y-coordinate of the starting point of the line segment, 0 <= y1 < height
+	 * @param x2 the x-coordinate of the ending point of the line segment, 0 <= x2 < width
+	 * @param y2 the y-coordinate of the ending point of the line segment, 0 <= y2 < height
+	 * @param requestedThickness the thickness of the line segment in pixels, a thickness below 1 is drawn as 1
+	 * @return the String representation of the pixels that changed color, as specified by addLine()
+	 * @modifies adds the line segment to the whiteboard and records it as a new stroke
+	 */
+	public synchronized String addStraightLine(final String author, final int rgb, final int alpha, final int x1, 
+											   final int y1, final int x2, final int y2, final int requestedThickness) {
+		int thickness = Math.max(1, requestedThickness);
+		int layer = getLayer(author);
+		
+		strokes.addStroke(author, layer, rgb, alpha, thickness, x1, y1);
+		strokes.addPoint(x2, y2);
+		int index = strokes.getStrokeCount() - 1;
+		operations.record(author, new OperationLog.Operation(true, index));
+		indexSegment(index, x1, y1, x2, y2, thickness);
+		
+		return rasterizeLine(layer, rgb, alpha, x1, y1, x2, y2, thickness, new Region(0, 0, width, height), 
+							 getBlendedPixels(author, index));
+	}
+	
+	/**
+	 * Adds a straight line segment drawn by a user in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return addStraightLine(author, color.getRGB() & 0xFFFFFF, color.getAlpha(), x1, y1, x2, y2, requestedThickness)
+	 * @see #addStraightLine(String, int, int, int, int, int, int, int)
+	 */
+	public String addStraightLine(final String author, final Color color, final int x1, final int y1, 
+								  final int x2, final int y2, final int requestedThickness) {
+		return addStraightLine(author, color.getRGB() & 0xFFFFFF, color.getAlpha(), x1, y1, x2, y2, requestedThickness);
+	}
+	
+	/**
+	 * Adds a rectangle drawn by a user to this Whiteboard object.
+	 * 
+	 * @param author the username of the user that drew the rectangle, cannot contain any spaces
+	 * @param rgb the color of the rectangle, packed as 0xRRGGBB
+	 * @param x1 the x-coordinate of one corner of the rectangle
+	 * @param y1 the y-coordinate of one corner of the rectangle
+	 * @param x2 the x-coordinate of the opposite corner of the rectangle
+	 * @param y2 the y-coordinate of the opposite corner of the rectangle
+	 * @param thickness the thickness of the outline of the rectangle in pixels, a thickness below 1 is drawn as 1
+	 * @param filled true to draw the whole rectangle, false to draw only its outline
+	 * @return the empty string if the rectangle does not cover any pixel of this whiteboard, and otherwise
+	 * 		   the String representation of the pixels that it covers, of the form returned by fill()
+	 * @modifies draws the rectangle on the whiteboard and records it as a new stroke
+	 */
+	public synchronized String addRectangle(final String author, final int rgb, final int x1, final int y1, 
+											final int x2, final int y2, final int thickness, final boolean filled) {
+		return addShape(author, rgb, Shapes.rectangle(x1, y1, x2, y2, Math.max(1, thickness), filled, width, height));
+	}
+	
+	/**
+	 * Adds a rectangle drawn by a user in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return addRectangle(author, color.getRGB() & 0xFFFFFF, x1, y1, x2, y2, thickness, filled)
+	 * @see #addRectangle(String, int, int, int, int, int, int, boolean)
+	 */
+	public String addRectangle(final String author, final Color color, final int x1, final int y1, 
+							   final int x2, final int y2, final int thickness, final boolean filled) {
+		return addRectangle(author, color.getRGB() & 0xFFFFFF, x1, y1, x2, y2, thickness, filled);
+	}
+	
+	/**
+	 * Adds an ellipse drawn by a user to this Whiteboard object.
+	 * 
+	 * @param author the username of the user that drew the ellipse, cannot contain any spaces
+	 * @param rgb the color of the ellipse, packed as 0xRRGGBB
+	 * @param x1 the x-coordinate of one corner of the rectangle in which the ellipse is inscribed
+	 * @param y1 the y-coordinate of one corner of the rectangle in which the ellipse is inscribed
+	 * @param x2 the x-coordinate of the opposite corner of the rectangle in which the ellipse is inscribed
+	 * @param y2 the y-coordinate of the opposite corner of the rectangle in which the ellipse is inscribed
+	 * @param thickness the thickness of the outline of the ellipse in pixels, a thickness below 1 is drawn as 1
+	 * @param filled true to draw the whole ellipse, false to draw only its outline
+	 * @return the empty string if the ellipse does not cover any pixel of this whiteboard, and otherwise
+	 * 		   the String representation of the pixels that it covers, of the form returned by fill()
+	 * @modifies draws the ellipse on the whiteboard and records it as a new stroke
+	 */
+	public synchronized String addEllipse(final String author, final int rgb, final int x1, final int y1, 
+										  final int x2, final int y2, final int thickness, final boolean filled) {
+		return addShape(author, rgb, Shapes.ellipse(x1, y1, x2, y2, Math.max(1, thickness), filled, width, height));
+	}
+	
+	/**
+	 * Adds an ellipse drawn by a user in a java.awt.Color, for callers that work with AWT colors.
+	 * 
+	 * @return addEllipse(author, color.getRGB() & 0xFFFFFF, x1, y1, x2, y2, thickness, filled)
+	 * @see #addEllipse(String, int, int, int, int, int, int, boolean)
+	 */
+	public String addEllipse(final String author, final Color color, final int x1, final int y1, 
+							 final int x2, final int y2, final int thickness, final boolean filled) {
+		return addEllipse(author, color.getRGB() & 0xFFFFFF, x1, y1, x2, y2, thickness, filled);
+	}
+	
+	/**
+	 * Copies or moves a rectangle of pixels of the layer that a user draws on to another place on it.  The pixels
+	 * are copied a row at a time with array copies rather than redrawn, and the copy is recorded as a stroke, 
+	 * so it can be undone.  Like any other stroke it is replayed on whatever the strokes before it drew, so 
+	 * undoing or erasing one of those strokes also takes it out of the copy.
+	 * 
+	 * @param author the username of the user that copied the pixels, cannot contain any spaces
+	 * @param sx the x-coordinate of the top left hand corner of the rectangle, 0 <= sx and sx + w <= width
+	 * @param sy the y-coordinate of the top left hand corner of the rectangle, 0 <= sy and sy + h <= height
+	 * @param w the width of the rectangle in pixels, positive
+	 * @param h the height of the rectangle in pixels, positive
+	 * @param dx the x-coordinate that the top left hand corner of the rectangle is copied to
+	 * @param dy the y-coordinate that the top left hand corner of the rectangle is copied to
+	 * @param move true to empty the part of the rectangle that the copy does not cover
+	 * @return the smallest region of this whiteboard that contains every pixel that may have changed, which
+	 * 		   is null if no pixel can change because the copy would land where the rectangle already is or 
+	 * 		   entirely off this whiteboard
+	 * @modifies copies the pixels of the rectangle and records the copy as a new stroke
+	 */
+	public synchronized Region blit(final String author, final int sx, final int sy, final int w, final int h, 
+									final int dx, final int dy, final boolean move) {
+		if ((sx == dx && sy == dy) || dx + w <= 0 || dx >= width || dy + h <= 0 || dy >= height) {
+			return null;
+		}
+		
+		strokes.addStroke(author, getLayer(author), 0, move ? StrokeStore.MOVE_THICKNESS : StrokeStore.COPY_THICKNESS, 
+						  sx, sy);
+		strokes.addPoint(sx + w - 1, sy + h - 1);
+		strokes.addPoint(dx, dy);
+		int index = strokes.getStrokeCount() - 1;
+		operations.record(author, new OperationLog.Operation(true, index));
+		
+		indexBlit(index);
+		rasterizeStroke(index, new Region(0, 0, width, height));
+		return blitRegion(index);
+	}
+	
+	/**
+	 * Returns the region that a stroke that copies or moves pixels may change.
+	 * 
+	 * @param index the index of a stroke in strokes for which strokes.isBlit(index) is true
+	 * @return the smallest region of this whiteboard that contains the destination of the copy, and the source
+	 * 		   too if it is a move
+	 */
+	private Region blitRegion(final int index) {
+		int sx = strokes.getX(index, 0), sy = strokes.getY(index, 0);
+		int w = strokes.getX(index, 1) - sx + 1, h = strokes.getY(index, 1) - sy + 1;
+		int dx = strokes.getX(index, 2), dy = strokes.getY(index, 2);
+		
+		int xMin = Math.max(0, dx), yMin = Math.max(0, dy);
+		int xMax = Math.min(width - 1, dx + w - 1), yMax = Math.min(height - 1, dy + h - 1);
+		if (strokes.getThickness(index) == StrokeStore.MOVE_THICKNESS) {
+			xMin = Math.min(xMin, sx); yMin = Math.min(yMin, sy);
+			xMax = Math.max(xMax, sx + w - 1); yMax = Math.max(yMax, sy + h - 1);
+		}
+		
+		return new Region(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+	}
+	
+	/**
+	 * Adds a stroke that copies or moves pixels to strokeIndex.  Its bounding box contains both the pixels that
+	 * it reads and the pixels that it writes, so that redrawing any of them finds it.
+	 * 
+	 * @param index the index of a stroke in strokes for which strokes.isBlit(index) is true
+	 * @modifies adds the stroke to strokeIndex
+	 */
+	private void indexBlit(final int index) {
+		Region changed = blitRegion(index);
+		strokeIndex.insert(index, Math.min(changed.getX(), strokes.getX(index, 0)), 
+						   Math.min(changed.getY(), strokes.getY(index, 0)), 
+						   Math.max(changed.getX() + changed.getWidth() - 1, strokes.getX(index, 1)), 
+						   Math.max(changed.getY() + changed.getHeight() - 1, strokes.getY(index, 1)));
+	}
+	
+	/**
+	 * Adds the strokes of another whiteboard to this whiteboard.  Together with toStrokeString(), this lets
+	 * a whiteboard be copied by sending its strokes, which are usually much shorter than its pixels.  The 
+	 * strokes are all drawn on the base layer.
+	 * 
+	 * @param representation the String representation of strokes, as returned by toStrokeString(), whose 
+	 * 		  points are all on this whiteboard
+	 * @modifies draws the strokes on this whiteboard, in order, and records them as new strokes
+	 */
+	public synchronized void addStrokes(final String representation) {
+		String[] tokens = representation.trim().split(" ");
+		
+		int i = 0;
+		while (i + 7 < tokens.length) {
+			i++; // The id of the stroke in the other whiteboard is not kept.
+			String author = tokens[i++];
+			int red = Integer.parseInt(tokens[i++]);
+			int green = Integer.parseInt(tokens[i++]);
+			int blue = Integer.parseInt(tokens[i++]);
+			int alpha = Integer.parseInt(tokens[i++]);
+			int thickness = Integer.parseInt(tokens[i++]);
+			int n = Integer.parseInt(tokens[i++]);
+			
+			strokes.addStroke(author, 0, (red << 16) | (green << 8) | blue, alpha, thickness, 
+							  Integer.parseInt(tokens[i]), Integer.parseInt(tokens[i + 1]));
+			for (int j = 1; j < n; j++) {
+				strokes.addPoint(Integer.parseInt(tokens[i + 2 * j]), Integer.parseInt(tokens[i + 2 * j + 1]));
+			}
+			i += 2 * n;
+			
+			int index = strokes.getStrokeCount() - 1;
+			if (strokes.isBlit(index)) {
+				indexBlit(index);
+			}
+			for (int j = 0; j < n && !strokes.isBlit(index); j++) {
+				int x = strokes.getX(index, j), y = strokes.getY(index, j);
+				indexSegment(index, x, y, x, y, thickness);
+			}
+			rasterizeStroke(index, new Region(0, 0, width, height));
+		}
+	}
+	
+	/**
+	 * Returns the string representation of the strokes of this Whiteboard
+	 * 
+	 * @return the String representation of the strokes that have been drawn on this whiteboard since it was
+	 * 		   last cleared, in the order that they were drawn, each of which is of the form
+	 * 		   "[id] [author] [red] [green] [blue] [alpha] [thickness] [n] [x1] [y1] ... [xn] [yn] "
+	 */
+	public synchronized String toStrokeString() {
+		StringBuilder representation = new StringBuilder();
+		strokes.appendStrokes(representation);
+		return representation.toString();
+	}
+	
+	/**
+	 * Returns the number of strokes of this Whiteboard
+	 * 
+	 * @return the number of strokes that have been drawn on this whiteboard since it was last cleared and
+	 * 		   have not been undone
+	 */
+	public synchronized int getStrokeCount() {
+		return strokes.getLiveStrokeCount();
+	}
+	
+	/**
+	 * Returns the ids of the strokes that may cover part of a region of this Whiteboard.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the ids of the strokes drawn since this whiteboard was last cleared whose bounding boxes intersect
+	 * 		   region, in increasing order
+	 */
+	public synchronized int[] getStrokeIds(final Region region) {
+		int count = strokeIndex.query(region.getX(), region.getY(), region.getWidth(), region.getHeight(), queryResults);
+		if (count > queryResults.length) {
+			queryResults = new int[Integer.highestOneBit(count) * 2];
+			strokeIndex.query(region.getX(), region.getY(), region.getWidth(), region.getHeight(), queryResults);
+		}
+		
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = strokes.getId(queryResults[i]);
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+	
+	/**
+	 * Draws a shape and records it as a stroke.
+	 * 
+	 * @param author the username of the user that drew the shape
+	 * @param rgb the color of the shape, packed as 0xRRGGBB
+	 * @param runs the runs of pixels of this whiteboard covered by the shape, as returned by the methods of Shapes
+	 * @return the empty string if runs is empty, and otherwise the String representation of runs, of the form
+	 * 		   returned by fill()
+	 * @modifies colors the pixels of runs and records them as a new stroke
+	 */
+	private String addShape(final String author, final int rgb, final int[] runs) {
+		if (runs.length == 0) {
+			return "";
+		}
+		
+		Region covered = recordRuns(author, getLayer(author), rgb, runs);
+		rasterizeStroke(strokes.getStrokeCount() - 1, covered);
+		return covered + " " + toRunString(runs);
+	}
+	
+	/**
+	 * Records runs of pixels as a new stroke, without coloring them.
+	 * 
+	 * @param author the username of the user that colored the runs
+	 * @param layer the index of the layer that the runs were colored on
+	 * @param rgb the packed 0xRRGGBB color of the runs
+	 * @param runs consecutive triples [y] [xStart] [xEnd], each of which is a run of pixels of this whiteboard
+	 * 		  from (xStart, y) to (xEnd, y); there is at least one run
+	 * @return the smallest region that contains every run
+	 * @modifies records the runs as a new stroke that the author can undo, and adds it to strokeIndex
+	 */
+	private Region recordRuns(final String author, final int layer, final int rgb, final int[] runs) {
+		int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+		int xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+		
+		for (int i = 0; i < runs.length; i += 3) {
+			int y = runs[i], start = runs[i + 1], end = runs[i + 2];
+			if (i == 0) {
+				strokes.addStroke(author, layer, rgb, StrokeStore.FILL_THICKNESS, start, y);
+			}
+			else {
+				strokes.addPoint(start, y);
+			}
+			strokes.addPoint(end, y);
+			
+			xMin = Math.min(xMin, start); xMax = Math.max(xMax, end);
+			yMin = Math.min(yMin, y); yMax = Math.max(yMax, y);
+		}
+		
+		int index = strokes.getStrokeCount() - 1;
+		strokeIndex.insert(index, xMin, yMin, xMax, yMax);
+		operations.record(author, new OperationLog.Operation(true, index));
+		
+		return new Region(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+	}
+	
+	/**
+	 * Returns the String representation of runs of pixels.
+	 * 
+	 * @param runs consecutive triples [y] [xStart] [xEnd]
+	 * @return "[y1] [xStart1] [xEnd1] [y2] [xStart2] [xEnd2] ... "
+	 */
+	private static String toRunString(final int[] runs) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < runs.length; i++) {
+			builder.append(runs[i]).append(' ');
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Grows the bounding box of a stroke in strokeIndex to include a line segment of the stroke.
+	 * 
+	 * @param index the index of the stroke in strokes
+	 * @modifies grows the bounding box of the stroke to include every pixel of this whiteboard that the line
+	 * 			 segment from (x1, y1) to (x2, y2) whose thickness is thickness can cover
+	 */
+	private void indexSegment(final int index, final int x1, final int y1, final int x2, final int y2, final int thickness) {
+		Region box = Region.aroundLine(x1, y1, x2, y2, thickness);
+		
+		strokeIndex.expand(index, Math.max(0, box.getX()), Math.max(0, box.getY()), 
+						   Math.min(width - 1, box.getX() + box.getWidth() - 1), 
+						   Math.min(height - 1, box.getY() + box.getHeight() - 1));
+	}
+	
+	/**
+	 * Colors the pixels of its layer covered by a stroke that lie in a region, as the line segments between its 
+	 * consecutive points.  Line segments that do not reach the region are skipped.
+	 * 
+	 * @param index the index of a stroke in strokes
+	 * @param clip the region of this whiteboard outside of which no pixel is colored, must lie inside this whiteboard
+	 * 		  and must be the whole whiteboard if the stroke copies or moves pixels
+	 * @modifies colors the pixels of the layer of the stroke covered by the stroke that lie in clip
+	 */
+	private void rasterizeStroke(final int index, final Region clip) {
+		int layer = strokes.getLayer(index);
+		
+		if (strokes.isBlit(index)) {
+			int sx = strokes.getX(index, 0), sy = strokes.getY(index, 0);
+			layers.getLayer(layer).copyRegion(sx, sy, strokes.getX(index, 1) - sx + 1, strokes.getY(index, 1) - sy + 1,
+											  strokes.getX(index, 2), strokes.getY(index, 2), 
+											  strokes.getThickness(index) == StrokeStore.MOVE_THICKNESS);
+			layers.invalidate(blitRegion(index));
+			return;
+		}
+		
+		int rgb = strokes.getColor(index), alpha = strokes.getAlpha(index);
+		int thickness = strokes.getThickness(index);
+		int n = strokes.getPointCount(index);
+		
+		// The segments of a translucent stroke share the pixels that it has been blended into.
+		HashMap<Integer, BitSet> blended = alpha == AlphaBlend.OPAQUE ? null : new HashMap<Integer, BitSet>();
+		
+		if (strokes.isFill(index)) {
+			int[] spanYs = new int[n / 2], spanStarts = new int[n / 2], spanEnds = new int[n / 2];
+			for (int k = 0; k < n / 2; k++) {
+				spanYs[k] = strokes.getY(index, 2 * k);
+				spanStarts[k] = strokes.getX(index, 2 * k);
+				spanEnds[k] = strokes.getX(index, 2 * k + 1);
+			}
+			colorSpans(layer, rgb, alpha, clip, spanYs, spanStarts, spanEnds, n / 2, blended);
+			return;
+		}
+		
+		if (n == 1) {
+			int x = strokes.getX(index, 0), y = strokes.getY(index, 0);
+			rasterizeLine(layer, rgb, alpha, x, y, x, y, thickness, clip, blended);
+		}
+		
+		for (int j = 1; j < n; j++) {
+			int x1 = strokes.getX(index, j - 1), y1 = strokes.getY(index, j - 1);
+			int x2 = strokes.getX(index, j), y2 = strokes.getY(index, j);
+			
+			if (Region.aroundLine(x1, y1, x2, y2, thickness).intersects(clip)) {
+				rasterizeLine(layer, rgb, alpha, x1, y1, x2, y2, thickness, clip, blended);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the point that ends the first line segment of a stroke.  The line segments of a
+	 * stroke end at the points firstSegmentEnd(index), firstSegmentEnd(index) + segmentStep(index), ... and
+	 * each one starts at the point before the one that ends it, or at the same point for the first point.
+	 * 
+	 * @param index the index of a stroke in strokes
+	 * @return 1 if the stroke is a fill, whose line segments are its runs, and 0 otherwise
+	 */
+	private int firstSegmentEnd(final int index) {
+		return strokes.isFill(index) ? 1 : 0;
+	}
+	
+	/**
+	 * Returns the difference between the indexes of the points that end consecutive line segments of a stroke.
+	 * 
+	 * @param index the index of a stroke in strokes
+	 * @return 2 if the stroke is a fill, whose points are taken in pairs, and 1 otherwise
+	 * @see #firstSegmentEnd(int)
+	 */
+	private int segmentStep(final int index) {
+		return strokes.isFill(index) ? 2 : 1;
+	}
+	
+	/**
+	 * Indicates whether a stroke touches the path of an eraser.
+	 * 
+	 * @param index the index of a stroke in strokes
+	 * @return true only if some line segment of the stroke comes within half of its thickness plus half of
+	 * 		   thickness of the line segment from (x1, y1) to (x2, y2); a stroke that copies or moves pixels
+	 * 		   has no line segments, so the eraser never touches it
+	 */
+	private boolean touches(final int index, final int x1, final int y1, final int x2, final int y2, final int thickness) {
+		if (strokes.isBlit(index)) {
+			return false;
+		}
+		
+		double reach = strokes.getThickness(index) / 2 + thickness / 2 + 0.5;
+		
+		for (int j = firstSegmentEnd(index); j < strokes.getPointCount(index); j += segmentStep(index)) {
+			int previous = Math.max(0, j - 1);
+			if (distance(strokes.getX(index, previous), strokes.getY(index, previous), strokes.getX(index, j), 
+						 strokes.getY(index, j), x1, y1, x2, y2) <= reach) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Returns the distance between two line segments.
+	 * 
+	 * @return the smallest distance between a point of the line segment from (ax1, ay1) to (ax2, ay2) and
+	 * 		   a point of the line segment from (bx1, by1) to (bx2, by2)
+	 */
+	private static double distance(final int ax1, final int ay1, final int ax2, final int ay2, 
+								   final int bx1, final int by1, final int bx2, final int by2) {
+		// Line segments that cross each other are at distance 0.
+		long a1 = cross(bx1, by1, bx2, by2, ax1, ay1), a2 = cross(bx1, by1, bx2, by2, ax2, ay2);
+		long b1 = cross(ax1, ay1, ax2, ay2, bx1, by1), b2 = cross(ax1, ay1, ax2, ay2, bx2, by2);
+		if (((a1 > 0 && a2 < 0) || (a1 < 0 && a2 > 0)) && ((b1 > 0 && b2 < 0) || (b1 < 0 && b2 > 0))) {
+			return 0;
+		}
+		
+		// Otherwise one of the closest points is an end point of one of the line segments.
+		return Math.min(Math.min(distance(ax1, ay1, bx1, by1, bx2, by2), distance(ax2, ay2, bx1, by1, bx2, by2)),
+						Math.min(distance(bx1, by1, ax1, ay1, ax2, ay2), distance(bx2, by2, ax1, ay1, ax2, ay2)));
+	}
+	
+	/**
+	 * Returns the distance between a point and a line segment.
+	 * 
+	 * @return the smallest distance between (px, py) and a point of the line segment from (x1, y1) to (x2, y2)
+	 */
+	private static double distance(final int px, final int py, final int x1, final int y1, final int x2, final int y2) {
+		long dx = x2 - x1, dy = y2 - y1;
+		long lengthSquared = dx * dx + dy * dy;
+		
+		double t = 0;
+		if (lengthSquared > 0) {
+			t = Math.max(0, Math.min(1, (double) ((px - x1) * dx + (py - y1) * dy) / lengthSquared));
+		}
+		
+		return Math.hypot(px - (x1 + t * dx), py - (y1 + t * dy));
+	}
+	
+	/**
+	 * Returns the cross product of (x2 - x1, y2 - y1) and (px - x1, py - y1), whose sign tells which side of 
+	 * the line through (x1, y1) and (x2, y2) the point (px, py) is on.
+	 */
+	private static long cross(final int x1, final int y1, final int x2, final int y2, final int px, final int py) {
+		return (long) (x2 - x1) * (py - y1) - (long) (y2 - y1) * (px - x1);
+	}
+	
+	/**
+	 * Removes or restores the strokes of an operation and redraws the tiles that they cover.
+	 * 
+	 * @param operation an operation whose strokes are all in strokes and were all drawn on the same layer
+	 * @param isRemoved true to remove the strokes, false to restore them
+	 * @return the regions covered by the tiles of this whiteboard whose pixels were redrawn
+	 * @modifies removes or restores the strokes of operation, keeps strokeIndex up to date and redraws
+	 * 			 the pixels of the layer of the strokes in every tile that the strokes cover
+	 */
+	private ArrayList<Region> setRemoved(final OperationLog.Operation operation, final boolean isRemoved) {
+		TreeSet<Integer> tiles = new TreeSet<Integer>();
+		
+		for (int i = 0; i < operation.getStrokeCount(); i++) {
+			int index = operation.getStroke(i);
+			strokes.setRemoved(index, isRemoved);
+			
+			if (isRemoved) {
+				strokeIndex.remove(index);
+			}
+			if (strokes.isBlit(index)) {
+				addTiles(tiles, blitRegion(index));
+				if (!isRemoved) {
+					indexBlit(index);
+				}
+				continue;
+			}
+			for (int j = firstSegmentEnd(index); j < strokes.getPointCount(index); j += segmentStep(index)) {
+				int x1 = strokes.getX(index, Math.max(0, j - 1)), y1 = strokes.getY(index, Math.max(0, j - 1));
+				int x2 = strokes.getX(index, j), y2 = strokes.getY(index, j);
+				
+				addTiles(tiles, Region.aroundLine(x1, y1, x2, y2, strokes.getThickness(index)));
+				if (!isRemoved) {
+					indexSegment(index, x1, y1, x2, y2, strokes.getThickness(index));
+				}
+			}
+		}
+		
+		return redrawTiles(tiles, strokes.getLayer(operation.getStroke(0)));
+	}
+	
+	/**
+	 * Adds the tiles of this whiteboard that intersect a region to a set of tiles.
+	 * 
+	 * @param tiles a set of tiles, the tile in column tileX and row tileY being tileY * tilesAcross + tileX
+	 * @param region a region
+	 * @modifies adds every tile of this whiteboard that intersects region to tiles
+	 */
+	private void addTiles(final TreeSet<Integer> tiles, final Region region) {
+		int tileSize = TiledRaster.TILE_SIZE;
+		int firstTileX = Math.max(0, region.getX()) / tileSize;
+		int firstTileY = Math.max(0, region.getY()) / tileSize;
+		int lastTileX = Math.min(width - 1, region.getX() + region.getWidth() - 1) / tileSize;
+		int lastTileY = Math.min(height - 1, region.getY() + region.getHeight() - 1) / tileSize;
+		
+		for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+			for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+				tiles.add(tileY * layers.getLayer(0).getTilesAcross() + tileX);
+			}
+		}
+	}
+	
+	/**
+	 * Redraws tiles of a layer of this whiteboard from the strokes that cover them.
+	 * 
+	 * @param tiles a set of tiles, the tile in column tileX and row tileY being tileY * tilesAcross + tileX
+	 * @param layer the index of the layer
+	 * @return the regions covered by the tiles, in row-major order
+	 * @modifies empties each tile of the layer and then draws every stroke of the layer that covers part of it, 
+	 * 			 in order, clipped to the tile.  A copy of pixels reads them from wherever they were copied from, 
+	 * 			 so if a stroke that copies or moves pixels reaches one of the tiles, the whole layer is redrawn 
+	 * 			 instead, and every tile of it that has been drawn on is returned too.
+	 */
+	private ArrayList<Region> redrawTiles(final TreeSet<Integer> tiles, final int layer) {
+		ArrayList<Region> redrawn = new ArrayList<Region>();
+		TiledRaster pixels = layers.getLayer(layer);
+		
+		if (reachesBlit(tiles, layer)) {
+			return redrawLayer(tiles, layer);
+		}
+		
+		for (int key : tiles) {
+			Region tile = pixels.getTileRegion(key % pixels.getTilesAcross(), key / pixels.getTilesAcross());
+			pixels.fillWithBackground(tile);
+			
+			int count = strokeIndex.query(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), queryResults);
+			if (count > queryResults.length) {
+				queryResults = new int[Integer.highestOneBit(count) * 2];
+				strokeIndex.query(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), queryResults);
+			}
+			
+			// Strokes are drawn in the order that they were drawn in the first place.
+			Arrays.sort(queryResults, 0, count);
+			for (int i = 0; i < count; i++) {
+				if (strokes.getLayer(queryResults[i]) == layer) {
+					rasterizeStroke(queryResults[i], tile);
+				}
+			}
+			
+			layers.invalidate(tile);
+			redrawn.add(tile);
+		}
+		
+		return redrawn;
+	}
+	
+	/**
+	 * Indicates whether a stroke that copies or moves pixels reaches tiles of a layer.
+	 * 
+	 * @param tiles a set of tiles, the tile in column tileX and row tileY being tileY * tilesAcross + tileX
+	 * @param layer the index of the layer
+	 * @return true only if a stroke on the layer that copies or moves pixels and has not been removed may read
+	 * 		   or write a pixel of one of the tiles
+	 */
+	private boolean reachesBlit(final TreeSet<Integer> tiles, final int layer) {
+		TiledRaster pixels = layers.getLayer(layer);
+		
+		for (int key : tiles) {
+			Region tile = pixels.getTileRegion(key % pixels.getTilesAcross(), key / pixels.getTilesAcross());
+			int count = strokeIndex.query(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), queryResults);
+			if (count > queryResults.length) {
+				queryResults = new int[Integer.highestOneBit(count) * 2];
+				strokeIndex.query(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), queryResults);
+			}
+			
+			for (int i = 0; i < count; i++) {
+				if (strokes.isBlit(queryResults[i]) && strokes.getLayer(queryResults[i]) == layer) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Redraws a whole layer of this whiteboard from its strokes.
+	 * 
+	 * @param tiles a set of tiles, the tile in column tileX and row tileY being tileY * tilesAcross + tileX
+	 * @param layer the index of the layer
+	 * @return the regions covered by the tiles in tiles and by every tile of the layer that was drawn on before
+	 * 		   or after this call, in row-major order
+	 * @modifies empties the layer and then draws every stroke of the layer that has not been removed, in order
+	 */
+	private ArrayList<Region> redrawLayer(final TreeSet<Integer> tiles, final int layer) {
+		TiledRaster pixels = layers.getLayer(layer);
+		TreeSet<Integer> redrawnTiles = new TreeSet<Integer>(tiles);
+		addStoredTiles(redrawnTiles, pixels);
+		
+		pixels.clear();
+		Region bounds = new Region(0, 0, width, height);
+		for (int i = 0; i < strokes.getStrokeCount(); i++) {
+			if (!strokes.isRemoved(i) && strokes.getLayer(i) == layer) {
+				rasterizeStroke(i, bounds);
+			}
+		}
+		addStoredTiles(redrawnTiles, pixels);
+		
+		ArrayList<Region> redrawn = new ArrayList<Region>();
+		for (int key : redrawnTiles) {
+			Region tile = pixels.getTileRegion(key % pixels.getTilesAcross(), key / pixels.getTilesAcross());
+			layers.invalidate(tile);
+			redrawn.add(tile);
+		}
+		return redrawn;
+	}
+	
+	/**
+	 * Adds the tiles of a raster that have been drawn on to a set of tiles.
+	 * 
+	 * @param tiles a set of tiles, the tile in column tileX and row tileY being tileY * tilesAcross + tileX
+	 * @param pixels a raster with the dimensions of this whiteboard
+	 * @modifies adds every tile of pixels that has been drawn on since it was last cleared to tiles
+	 */
+	private static void addStoredTiles(final TreeSet<Integer> tiles, final TiledRaster pixels) {
+		for (int tileY = 0; tileY < pixels.getTilesDown(); tileY++) {
+			if (!pixels.hasTileRow(tileY)) {
+				continue;
+			}
+			for (int tileX = 0; tileX < pixels.getTilesAcross(); tileX++) {
+				if (pixels.hasTile(tileX, tileY)) {
+					tiles.add(tileY * pixels.getTilesAcross() + tileX);
+				}
 			}
 		}
 	}
@@ -392,21 +1699,132 @@ public class Whiteboard {
 	 * Returns the string representation of this Whiteboard
 	 * 
 	 * @return the String representation of this Whiteboard which consists the string representations
-	 * 		   of all of the pixels in this Whiteboard that are not white, each one of which separated by a space.
+	 * 		   of all of the pixels in this Whiteboard that are not white, with every layer painted over the ones
+	 * 		   under it, each one of which separated by a space.  Only the tiles that have been drawn on are 
+	 * 		   visited, so the cost of this method grows with the area that has been drawn on rather than with 
+	 * 		   the size of the whiteboard.
 	 */
 	@Override
 	public synchronized String toString() {
-		String representation = "";
+		StringBuilder representation = new StringBuilder();
+		layers.getComposite().appendNonWhitePixels(representation);
+		return representation.toString();
+	}
+	
+	/**
+	 * Returns the string representation of a region of this Whiteboard
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return the String representation of the region of this Whiteboard which consists the string representations
+	 * 		   of all of the pixels in region that are not white, with every layer painted over the ones under it, 
+	 * 		   each one of which separated by a space.
+	 */
+	public synchronized String toString(final Region region) {
+		StringBuilder representation = new StringBuilder();
+		layers.getComposite().appendNonWhitePixels(representation, region);
+		return representation.toString();
+	}
+	
+	/**
+	 * Returns the string representation of a region of each layer of this Whiteboard.  Clients keep the layers
+	 * apart and paint them over each other themselves, so that they can hide a layer without asking for the 
+	 * pixels under it again.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @return an array whose ith entry is the String representation of the pixels in region of the ith layer 
+	 * 		   from the bottom that have been drawn on, as for toString(region), or null for a layer other than 
+	 * 		   the base layer that has no tile in region that has been drawn on since this whiteboard was last 
+	 * 		   cleared.  The pixels of the base layer that are white, and of every other layer that are 
+	 * 		   TRANSPARENT, are left out.
+	 */
+	public synchronized String[] toLayerStrings(final Region region) {
+		String[] representations = new String[layers.getLayerCount()];
+		int tileSize = TiledRaster.TILE_SIZE;
+		int xMin = Math.max(0, region.getX()), yMin = Math.max(0, region.getY());
+		int xMax = Math.min(width, region.getX() + region.getWidth()) - 1;
+		int yMax = Math.min(height, region.getY() + region.getHeight()) - 1;
 		
-		for(int y = 0; y < height; y++) {
-			for(int x = 0; x < width; x++) {
-				Point currentPoint = pixels[y][x];
-				if (!Color.WHITE.equals(currentPoint.getColor())) {
-					representation += currentPoint.toString() + " ";
+		for (int layer = 0; layer < representations.length; layer++) {
+			TiledRaster pixels = layers.getLayer(layer);
+			boolean hasTile = (layer == 0);
+			for (int tileY = yMin / tileSize; tileY <= yMax / tileSize && xMin <= xMax && yMin <= yMax && !hasTile; tileY++) {
+				for (int tileX = xMin / tileSize; tileX <= xMax / tileSize && !hasTile; tileX++) {
+					hasTile = pixels.hasTile(tileX, tileY);
 				}
 			}
+			
+			if (hasTile) {
+				StringBuilder representation = new StringBuilder();
+				pixels.appendNonWhitePixels(representation, region);
+				representations[layer] = representation.toString();
+			}
 		}
 		
-		return representation;
+		return representations;
+	}
+	
+	/**
+	 * Chooses the layer that a user draws on, creating it on top of every other layer if this whiteboard 
+	 * does not have a layer with that name yet.
+	 * 
+	 * @param username the username of the user, cannot contain any spaces
+	 * @param layerName the name of the layer, cannot contain any spaces
+	 * @return true if the layer was created
+	 * @modifies makes the layer whose name is layerName the one that the lines, fills and shapes of the user
+	 * 			 are drawn on and that the eraser of the user erases from
+	 */
+	public synchronized boolean selectLayer(final String username, final String layerName) {
+		int layer = layers.indexOf(layerName);
+		boolean isNew = (layer == -1);
+		if (isNew) {
+			layer = layers.addLayer(layerName);
+		}
+		
+		activeLayers.put(username, layer);
+		return isNew;
+	}
+	
+	/**
+	 * Returns the layer that a user draws on.
+	 * 
+	 * @param username the username of the user
+	 * @return the index from the bottom of the layer that the user last chose with selectLayer(), or 0 for the 
+	 * 		   base layer if the user has not chosen one since they last closed this whiteboard
+	 */
+	public synchronized int getLayer(final String username) {
+		Integer layer = activeLayers.get(username);
+		return (layer == null) ? 0 : layer;
+	}
+	
+	/**
+	 * Returns the names of the layers of this Whiteboard.
+	 * 
+	 * @return a string containing the names of the layers of this whiteboard from the bottom up, the first 
+	 * 		   being LayerStack.BASE_LAYER, each one followed by a space
+	 */
+	public synchronized String getLayerNames() {
+		return layers.toString();
+	}
+	
+	/**
+	 * Returns the string representation of a low resolution preview of a region of this Whiteboard.  The
+	 * length of the preview is bounded by maxPixels no matter how much has been drawn in the region.
+	 * 
+	 * @param region a region of this whiteboard
+	 * @param maxPixels the most pixels that the preview should contain, must be positive
+	 * @return a String of the form "[scale] [pixels]" where each pixel of the preview covers a [scale] x [scale]
+	 * 		   square of this whiteboard and [pixels] consists of the string representations of the pixels of
+	 * 		   the preview that cover part of region and are not white, each one of which separated by a space.
+	 * 		   The pixel of the preview at (x, y) covers the square whose top left hand corner is 
+	 * 		   ([scale] * x, [scale] * y).
+	 */
+	public synchronized String toPreviewString(final Region region, final int maxPixels) {
+		MipmapPyramid pyramid = layers.getPyramid();
+		int level = pyramid.chooseLevel(region, maxPixels);
+		
+		StringBuilder representation = new StringBuilder();
+		representation.append(1 << level).append(' ');
+		pyramid.appendNonWhitePixels(representation, level, region);
+		return representation.toString();
 	}
 }
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -214,7 +215,9 @@ public class WhiteboardTest {
 	 * The testing strategy for the addLine method:
 	 * 		A thickness of 1
 	 * 		A thickness of 3
+	 * 		A thickness of 7, whose brush is round
 	 * 		A diagonal line whose thickness comes into contact with the boundary
+	 * 		A line that overlaps pixels that already have the color of the line
 	 * 
 	 */
 	
@@ -270,6 +273,27 @@ public class WhiteboardTest {
 		confirmColors(whiteboard, colors);
 	}
 	
+	// Add a single point with a thickness of seven, which is a disk rather than a square
+	@Test
+	public void addLineThicknessOfSeven() {
+		int width = 7, height = 7;
+		Color newColor = Color.BLUE;
+		
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", width, height);
+		whiteboard.addLine(newColor, 3, 3, 3, 3, 7);
+		
+		// Row by row, the disk of radius 3.5 around the center.
+		int[] halfSpans = {1, 2, 3, 3, 3, 2, 1};
+		Color[][] colors = createColorArray(width, height, originalColor);
+		for (int y = 0; y < height; y++) {
+			for (int x = 3 - halfSpans[y]; x <= 3 + halfSpans[y]; x++) {
+				colors[y][x] = newColor;
+			}
+		}
+		
+		confirmColors(whiteboard, colors);
+	}
+	
 	// Add a line that is moving to the left horizontally
 	// This is a regression test
 	@Test
@@ -330,6 +354,31 @@ public class WhiteboardTest {
 		confirmColors(whiteboard, colors);
 	}
 	
+	// Add the same line twice; the second line does not change any pixels.
+	@Test
+	public void addSameLineTwice() {
+		int width = 6, height = 6;
+		Color newColor = Color.BLUE;
+		
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", width, height);
+		assertEquals("0 3 0 0 255 1 3 0 0 255 ", whiteboard.addLine(newColor, 0, 3, 1, 3, 1));
+		assertEquals("", whiteboard.addLine(newColor, 0, 3, 1, 3, 1));
+	}
+	
+	// Add a line that partially overlaps a line of the same color.
+	@Test
+	public void addOverlappingLine() {
+		int width = 6, height = 6;
+		Color newColor = Color.BLUE;
+		
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", width, height);
+		whiteboard.addLine(newColor, 0, 3, 2, 3, 1);
+		assertEquals("3 3 0 0 255 ", whiteboard.addLine(newColor, 1, 3, 3, 3, 1));
+		
+		// Drawing over the same pixels with a different color changes all of them.
+		assertEquals("1 3 255 0 0 2 3 255 0 0 ", whiteboard.addLine(Color.RED, 1, 3, 2, 3, 1));
+	}
+	
 	/**
 	 * The following test methods test the toString method in the Whiteboard class
 	 * 
@@ -358,7 +407,8 @@ public class WhiteboardTest {
 	 * 
 	 * The testing strategy for the addUsername, removeUsername, containsUsername and getUsername methods:
 	 * 		add a few usernames
-	 * 		remove a few usernames
+	 * 		add a username that is already on the whiteboard
+	 * 		remove a few usernames, and one that is not on the whiteboard
 	 * 
 	 */
 	
@@ -380,6 +430,504 @@ public class WhiteboardTest {
 		
 		whiteboard.removeUsername("Mary");
 		assertEquals("Barry Hello", whiteboard.getUsernames());
+		
+		whiteboard.addUsername("Barry");
+		assertEquals("Barry Hello", whiteboard.getUsernames());
+		whiteboard.removeUsername("Barry");
+		whiteboard.addUsername("Barry");
+		assertEquals("Hello Barry", whiteboard.getUsernames());
+		assertEquals(Arrays.asList("Hello", "Barry"), whiteboard.getUsernameList());
+		
+		assertEquals("Hello Barry", whiteboard.removeUsername("Mary"));
+		assertFalse(whiteboard.hasUsername("Mary"));
+	}
+	
+	/**
+	 * The following test methods test the setViewport, getUsernamesViewing and toString(region)
+	 * methods in the Whiteboard class.
+	 * 
+	 * The testing strategy for the setViewport, getUsernamesViewing and toString(region) methods:
+	 * 		A client declares its first viewport
+	 * 		A client moves its viewport onto tiles that have and have not been drawn on
+	 * 		Clients with and without viewports
+	 * 		A client that does not have the whiteboard open declares a viewport
+	 * 
+	 */
+	
+	@Test
+	public void viewportTest() {
+		int tileSize = TiledRaster.TILE_SIZE;
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 4 * tileSize, 4 * tileSize);
+		whiteboard.addUsername("Barry");
+		whiteboard.addUsername("Mary");
+		
+		// Draw on the top left tile and on the tile to its right.
+		whiteboard.setColor(1, 1, Color.BLUE);
+		whiteboard.setColor(tileSize + 2, 3, Color.RED);
+		
+		// The first viewport is grown to whole tiles; nothing is newly visible.
+		assertTrue(whiteboard.setViewport("Barry", new Region(5, 5, 10, 10)).isEmpty());
+		
+		Region left = new Region(0, 0, 1, 1), right = new Region(tileSize + 1, 0, 1, 1);
+		assertEquals(2, whiteboard.getUsernamesViewing(left).size());
+		assertEquals(1, whiteboard.getUsernamesViewing(right).size());
+		assertEquals("Mary", whiteboard.getUsernamesViewing(right).get(0));
+		
+		// Move the viewport onto the tile to the right and the empty tile below it.
+		ArrayList<Region> newlyVisible = whiteboard.setViewport("Barry", new Region(tileSize, 0, tileSize, 2 * tileSize));
+		assertEquals(1, newlyVisible.size());
+		assertEquals(new Region(tileSize, 0, tileSize, tileSize), newlyVisible.get(0));
+		assertEquals((tileSize + 2) + " 3 255 0 0 ", whiteboard.toString(newlyVisible.get(0)));
+		assertEquals(2, whiteboard.getUsernamesViewing(right).size());
+		
+		// A client that does not have the whiteboard open cannot declare a viewport.
+		assertTrue(whiteboard.setViewport("Harry", new Region(0, 0, 1, 1)).isEmpty());
+		assertFalse(whiteboard.getUsernamesViewing(left).contains("Harry"));
+	}
+	
+	/**
+	 * The following test methods test the strokes of the Whiteboard class: the addLine method with an
+	 * author and the toStrokeString, addStrokes and rebuildPixels methods.
+	 * 
+	 * The testing strategy for the strokes:
+	 * 		Segments that continue the last stroke and segments that do not, because they are drawn
+	 * 		by another user, in another color or do not start where the last stroke ends
+	 * 		Rebuild the pixels of a whiteboard from its strokes
+	 * 		Copy a whiteboard by its strokes
+	 * 		Clear a whiteboard that has strokes
+	 * 
+	 */
+	@Test
+	public void strokesTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 100, 100);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 20, 10, 3);
+		whiteboard.addLine("Barry", Color.BLUE, 20, 10, 20, 30, 3);
+		whiteboard.addLine("Mary", Color.BLUE, 20, 30, 40, 30, 3);
+		whiteboard.addLine("Mary", Color.RED, 40, 30, 40, 50, 1);
+		whiteboard.addLine("Mary", Color.RED, 0, 0, 5, 5, 1);
+		
+		assertEquals(4, whiteboard.getStrokeCount());
+		assertEquals("0 Barry 0 0 255 255 3 3 10 10 20 10 20 30 1 Mary 0 0 255 255 3 2 20 30 40 30 "
+					 + "2 Mary 255 0 0 255 1 2 40 30 40 50 3 Mary 255 0 0 255 1 2 0 0 5 5 ", whiteboard.toStrokeString());
+		
+		// The pixels are a cache of the strokes.
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		
+		// A whiteboard copied by its strokes has the same pixels.
+		Whiteboard copy = new Whiteboard("second whiteboard", 100, 100);
+		copy.addStrokes(whiteboard.toStrokeString());
+		assertEquals(pixels, copy.toString());
+		assertEquals(4, copy.getStrokeCount());
+		
+		// Clearing a whiteboard removes its strokes but does not reuse their ids.
+		whiteboard.clearWhiteboard();
+		assertEquals("", whiteboard.toStrokeString());
+		whiteboard.addLine("Barry", Color.BLUE, 1, 1, 1, 1, 1);
+		assertEquals("4 Barry 0 0 255 255 1 2 1 1 1 1 ", whiteboard.toStrokeString());
+		whiteboard.rebuildPixels();
+		assertEquals("1 1 0 0 255 ", whiteboard.toString());
+	}
+	
+	/**
+	 * The following test methods test translucent strokes.
+	 * 
+	 * The testing strategy for translucent strokes:
+	 * 		A translucent stroke over white and over an opaque stroke
+	 * 		The segments of a stroke overlap where they join, and the joint is blended only once
+	 * 		A second translucent stroke is blended over the first one
+	 * 		Rebuild the pixels and copy the whiteboard by its strokes
+	 * 
+	 */
+	@Test
+	public void translucentStrokesTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 100, 100);
+		Color highlighter = new Color(255, 0, 0, 128);
+		whiteboard.addLine("Barry", Color.BLACK, 10, 20, 10, 20, 1);
+		
+		assertEquals("10 10 255 126 126 11 10 255 126 126 ", whiteboard.addLine("Mary", highlighter, 10, 10, 11, 10, 1));
+		assertEquals("12 10 255 126 126 ", whiteboard.addLine("Mary", highlighter, 11, 10, 12, 10, 1));
+		assertEquals(new Color(255, 126, 126), whiteboard.getColor(11, 10));
+		assertEquals(2, whiteboard.getStrokeCount());
+		
+		whiteboard.addLine("Mary", highlighter, 10, 20, 11, 20, 1);
+		assertEquals(new Color(128, 0, 0), whiteboard.getColor(10, 20));
+		
+		// Another stroke blends over the first one.
+		whiteboard.addLine("Barry", highlighter, 12, 10, 12, 10, 1);
+		assertEquals(new Color(255, 62, 62), whiteboard.getColor(12, 10));
+		assertTrue(whiteboard.toStrokeString().startsWith("0 Barry 0 0 0 255 1 2 10 20 10 20 1 Mary 255 0 0 128 1 3 "));
+		
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		
+		Whiteboard copy = new Whiteboard("second whiteboard", 100, 100);
+		copy.addStrokes(whiteboard.toStrokeString());
+		assertEquals(pixels, copy.toString());
+	}
+	
+	/**
+	 * The following test methods test the getStrokeIds method in the Whiteboard class.
+	 * 
+	 * The testing strategy for the getStrokeIds method:
+	 * 		A region touched by no stroke, one stroke and several strokes
+	 * 		A stroke that grows as it is continued
+	 * 		A thick stroke near the edge of the whiteboard
+	 * 		A whiteboard that has been cleared
+	 * 
+	 */
+	@Test
+	public void getStrokeIdsTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 800, 600);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 20, 10, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 20, 10, 20, 300, 1);
+		whiteboard.addLine("Mary", Color.RED, 700, 500, 790, 590, 21);
+		
+		assertEquals(0, whiteboard.getStrokeIds(new Region(400, 100, 50, 50)).length);
+		assertArrayEquals(new int[] {0}, whiteboard.getStrokeIds(new Region(15, 250, 10, 10)));
+		assertArrayEquals(new int[] {1}, whiteboard.getStrokeIds(new Region(799, 599, 1, 1)));
+		assertArrayEquals(new int[] {0, 1}, whiteboard.getStrokeIds(new Region(0, 0, 800, 600)));
+		
+		whiteboard.clearWhiteboard();
+		assertEquals(0, whiteboard.getStrokeIds(new Region(0, 0, 800, 600)).length);
+	}
+	
+	/**
+	 * The following test methods test the undo and redo methods in the Whiteboard class.
+	 * 
+	 * The testing strategy for the undo and redo methods:
+	 * 		Undo a stroke that is partly covered by a later stroke of another user
+	 * 		Undo and redo in a different order for two users
+	 * 		Undo and redo when there is nothing to undo or redo
+	 * 		Draw a new stroke after undoing, which forgets what can be redone
+	 * 		Only the tiles covered by the stroke are redrawn
+	 * 		Undo a stroke whose segments were drawn between the segments of another user's stroke
+	 * 
+	 */
+	@Test
+	public void undoRedoTest() {
+		int tileSize = TiledRaster.TILE_SIZE;
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 4 * tileSize, 4 * tileSize);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 10, 20, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 20, 30, 20, 1);
+		String blueOnly = whiteboard.toString();
+		whiteboard.addLine("Mary", Color.RED, 20, 10, 20, 30, 1);
+		whiteboard.addLine("Mary", Color.RED, 3 * tileSize, 3 * tileSize, 3 * tileSize + 1, 3 * tileSize, 1);
+		String everything = whiteboard.toString();
+		
+		// Barry's stroke is drawn under Mary's, so the red crossing survives the undo.
+		ArrayList<Region> redrawn = whiteboard.undo("Barry");
+		assertEquals(1, redrawn.size());
+		assertEquals(new Region(0, 0, tileSize, tileSize), redrawn.get(0));
+		assertEquals(Color.WHITE, whiteboard.getColor(10, 15));
+		assertEquals(Color.RED, whiteboard.getColor(20, 20));
+		assertEquals(2, whiteboard.getStrokeCount());
+		assertTrue(whiteboard.undo("Barry").isEmpty());
+		
+		// Mary undoes her last stroke, then Barry redoes his: the crossing is drawn in the original order.
+		whiteboard.undo("Mary");
+		whiteboard.redo("Barry");
+		assertEquals(Color.RED, whiteboard.getColor(20, 20));
+		assertEquals(Color.BLUE, whiteboard.getColor(10, 15));
+		assertEquals(Color.WHITE, whiteboard.getColor(3 * tileSize, 3 * tileSize));
+		
+		whiteboard.redo("Mary");
+		assertEquals(everything, whiteboard.toString());
+		assertTrue(whiteboard.redo("Mary").isEmpty());
+		
+		// Drawing after undoing forgets what could be redone.
+		whiteboard.undo("Mary");
+		whiteboard.undo("Mary");
+		assertEquals(blueOnly, whiteboard.toString());
+		whiteboard.addLine("Mary", Color.GREEN, 100, 100, 100, 100, 1);
+		assertTrue(whiteboard.redo("Mary").isEmpty());
+		
+		// The pixels are still a cache of the strokes that have not been undone.
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+	}
+	
+	@Test
+	public void interleavedUndoTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 200, 200);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 10, 20, 1);
+		whiteboard.addLine("Mary", Color.RED, 50, 10, 50, 20, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 20, 10, 30, 1);
+		whiteboard.addLine("Mary", Color.RED, 50, 20, 50, 30, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 30, 10, 40, 1);
+		
+		// Each user continued their own stroke although the other drew in between.
+		assertEquals(2, whiteboard.getStrokeCount());
+		
+		// So one undo removes the whole of Barry's stroke and none of Mary's.
+		whiteboard.undo("Barry");
+		assertEquals(1, whiteboard.getStrokeCount());
+		assertEquals(Color.WHITE, whiteboard.getColor(10, 15));
+		assertEquals(Color.WHITE, whiteboard.getColor(10, 35));
+		assertEquals(Color.RED, whiteboard.getColor(50, 15));
+		assertEquals(Color.RED, whiteboard.getColor(50, 25));
+		assertTrue(whiteboard.undo("Barry").isEmpty());
+	}
+
+	/**
+	 * The following test methods test the erase method in the Whiteboard class.
+	 *
+	 * The testing strategy for the erase method:
+	 * 		An eraser that touches no stroke, including one that only crosses the bounding box of a stroke
+	 * 		An eraser that crosses a stroke without sharing any point with it
+	 * 		An eraser that only comes within the thickness of a stroke
+	 * 		An eraser that touches several strokes of different users at once
+	 * 		Undo and redo an erasure
+	 *
+	 */
+	@Test
+	public void eraseTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 200, 200);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 100, 10, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 100, 10, 100, 100, 1);
+		whiteboard.addLine("Mary", Color.RED, 150, 150, 160, 160, 9);
+		String everything = whiteboard.toString();
+
+		// Inside the bounding box of Barry's stroke, but away from its line segments.
+		assertTrue(whiteboard.erase("Jerry", 50, 50, 60, 60, 3).isEmpty());
+		assertEquals(2, whiteboard.getStrokeCount());
+
+		// A diagonal crossing the horizontal line segment without sharing a pixel with it.
+		assertFalse(whiteboard.erase("Jerry", 50, 9, 51, 11, 1).isEmpty());
+		assertEquals(1, whiteboard.getStrokeCount());
+		assertEquals(Color.WHITE, whiteboard.getColor(100, 50));
+		assertEquals(Color.RED, whiteboard.getColor(155, 155));
+
+		// Within the thickness of Mary's stroke, but not on its line segment.
+		whiteboard.erase("Jerry", 165, 160, 170, 160, 3);
+		assertEquals(0, whiteboard.getStrokeCount());
+		assertEquals(new Whiteboard("second whiteboard", 200, 200).toString(), whiteboard.toString());
+
+		// Undoing restores the strokes, one erasure at a time.
+		whiteboard.undo("Jerry");
+		assertEquals(Color.RED, whiteboard.getColor(155, 155));
+		assertEquals(Color.WHITE, whiteboard.getColor(100, 50));
+		whiteboard.undo("Jerry");
+		assertEquals(everything, whiteboard.toString());
+		assertTrue(whiteboard.undo("Jerry").isEmpty());
+
+		whiteboard.redo("Jerry");
+		assertEquals(1, whiteboard.getStrokeCount());
+		whiteboard.redo("Jerry");
+
+		// One erasure removes every stroke that it touches.
+		whiteboard.undo("Jerry");
+		whiteboard.undo("Jerry");
+		whiteboard.erase("Jerry", 10, 10, 160, 160, 1);
+		assertEquals(0, whiteboard.getStrokeCount());
+		whiteboard.undo("Jerry");
+		assertEquals(everything, whiteboard.toString());
+	}
+
+	/**
+	 * The following test methods test the fill method in the Whiteboard class.
+	 *
+	 * The testing strategy for the fill method:
+	 * 		Fill a pixel that already has the color of the fill
+	 * 		Fill the inside of a closed stroke, and the outside of it
+	 * 		Undo and erase a fill
+	 * 		Copy a whiteboard with a fill through its strokes
+	 *
+	 */
+	@Test
+	public void fillTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 100, 100);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 30, 10, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 30, 10, 30, 30, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 30, 30, 10, 30, 1);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 30, 10, 10, 1);
+		String outline = whiteboard.toString();
+		
+		assertEquals("", whiteboard.fill("Mary", Color.BLUE, 10, 10));
+		
+		String filled = whiteboard.fill("Mary", Color.RED, 20, 20);
+		assertTrue(filled.startsWith("11 11 19 19 20 11 29 "));
+		assertEquals(Color.RED, whiteboard.getColor(29, 29));
+		assertEquals(Color.BLUE, whiteboard.getColor(30, 30));
+		assertEquals(Color.WHITE, whiteboard.getColor(31, 20));
+		assertEquals(2, whiteboard.getStrokeCount());
+		
+		whiteboard.fill("Mary", Color.GREEN, 0, 0);
+		assertEquals(Color.GREEN, whiteboard.getColor(99, 99));
+		assertEquals(Color.RED, whiteboard.getColor(20, 20));
+		
+		// The fills are strokes, so the pixels can be rebuilt and copied from them.
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		Whiteboard copy = new Whiteboard("second whiteboard", 100, 100);
+		copy.addStrokes(whiteboard.toStrokeString());
+		assertEquals(pixels, copy.toString());
+		
+		whiteboard.undo("Mary");
+		assertEquals(Color.WHITE, whiteboard.getColor(99, 99));
+		
+		// Erasing inside the inner fill removes it, but not the outline around it.
+		whiteboard.erase("Jerry", 20, 20, 21, 21, 1);
+		assertEquals(outline, whiteboard.toString());
+	}
+	
+	// Draws each kind of shape, then undoes one, erases one and rebuilds the pixels from the strokes.
+	@Test
+	public void shapesTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 100, 100);
+		
+		assertEquals("", whiteboard.addRectangle("Mary", Color.RED, 120, 120, 150, 150, 1, true));
+		assertEquals(0, whiteboard.getStrokeCount());
+		
+		assertTrue(whiteboard.addRectangle("Mary", Color.RED, 10, 10, 20, 15, 1, true).startsWith("10 10 11 6 10 10 20 "));
+		assertEquals(Color.RED, whiteboard.getColor(15, 12));
+		
+		assertTrue(whiteboard.addRectangle("Mary", Color.BLUE, 40, 40, 60, 60, 3, false).startsWith("39 39 23 23 39 39 61 "));
+		assertEquals(Color.BLUE, whiteboard.getColor(41, 50));
+		assertEquals(Color.WHITE, whiteboard.getColor(42, 50));
+		
+		whiteboard.addEllipse("Barry", Color.GREEN, 70, 70, 90, 80, 1, false);
+		assertEquals(Color.GREEN, whiteboard.getColor(80, 70));
+		assertEquals(Color.WHITE, whiteboard.getColor(80, 75));
+		
+		assertFalse(whiteboard.addStraightLine("Barry", Color.BLACK, 0, 99, 99, 99, 1).isEmpty());
+		assertEquals(Color.BLACK, whiteboard.getColor(50, 99));
+		assertEquals(4, whiteboard.getStrokeCount());
+		
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		
+		whiteboard.undo("Barry");
+		assertEquals(Color.WHITE, whiteboard.getColor(50, 99));
+		assertEquals(Color.GREEN, whiteboard.getColor(80, 70));
+		
+		// Erasing the middle of the outline misses it; erasing its edge removes all of it.
+		whiteboard.erase("Jerry", 50, 50, 51, 51, 1);
+		assertEquals(Color.BLUE, whiteboard.getColor(41, 50));
+		whiteboard.erase("Jerry", 40, 50, 40, 51, 1);
+		assertEquals(Color.WHITE, whiteboard.getColor(61, 61));
+		assertEquals(Color.RED, whiteboard.getColor(15, 12));
+	}
+	
+	/**
+	 * The following test methods test the blit method in the Whiteboard class.
+	 *
+	 * The testing strategy for the blit method:
+	 * 		Copy a rectangle, and move one
+	 * 		A copy that lands where the rectangle already is, and one that lands off the whiteboard
+	 * 		Undo a copy, and undo a stroke that was copied
+	 * 		Rebuild the pixels and copy the whiteboard through its strokes
+	 * 		Erase over a copy
+	 *
+	 */
+	@Test
+	public void blitTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 200, 200);
+		whiteboard.addLine("Barry", Color.BLUE, 10, 10, 20, 10, 1);
+		whiteboard.addLine("Mary", Color.RED, 10, 12, 20, 12, 1);
+		
+		assertNull(whiteboard.blit("Mary", 10, 10, 11, 3, 10, 10, false));
+		assertNull(whiteboard.blit("Mary", 10, 10, 11, 3, 200, 10, false));
+		
+		assertEquals(new Region(100, 100, 11, 3), whiteboard.blit("Mary", 10, 10, 11, 3, 100, 100, false));
+		assertEquals(Color.BLUE, whiteboard.getColor(100, 100));
+		assertEquals(Color.RED, whiteboard.getColor(110, 102));
+		assertEquals(Color.BLUE, whiteboard.getColor(20, 10));
+		
+		// The move empties the rectangle, except where the rectangle lands on itself.
+		assertEquals(new Region(100, 100, 16, 3), whiteboard.blit("Mary", 100, 100, 11, 3, 105, 100, true));
+		assertEquals(Color.WHITE, whiteboard.getColor(100, 100));
+		assertEquals(Color.BLUE, whiteboard.getColor(105, 100));
+		assertEquals(Color.RED, whiteboard.getColor(115, 102));
+		
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		Whiteboard copy = new Whiteboard("second whiteboard", 200, 200);
+		copy.addStrokes(whiteboard.toStrokeString());
+		assertEquals(pixels, copy.toString());
+		
+		// The eraser does not reach the copy, only the strokes that it was copied from.
+		whiteboard.erase("Jerry", 100, 100, 120, 102, 5);
+		assertEquals(pixels, whiteboard.toString());
+		
+		whiteboard.undo("Mary");
+		assertEquals(Color.BLUE, whiteboard.getColor(100, 100));
+		assertEquals(Color.WHITE, whiteboard.getColor(115, 102));
+		
+		// Taking a stroke out of the rectangle takes it out of the copy too.
+		whiteboard.undo("Barry");
+		assertEquals(Color.WHITE, whiteboard.getColor(100, 100));
+		assertEquals(Color.RED, whiteboard.getColor(100, 102));
+		
+		whiteboard.undo("Mary");
+		whiteboard.redo("Mary");
+		assertEquals(Color.RED, whiteboard.getColor(100, 102));
+	}
+	
+	/**
+	 * The following test methods test the selectLayer, getLayer, getLayerNames and toLayerStrings methods in 
+	 * the Whiteboard class.
+	 *
+	 * The testing strategy for layers:
+	 * 		Draw on a layer over a line on the base layer, and on the base layer under it
+	 * 		Select a layer that already exists
+	 * 		Fill and erase on a layer, which do not reach the other layers
+	 * 		Undo a stroke on a layer and rebuild the pixels of every layer
+	 * 		A user that closes the whiteboard goes back to the base layer
+	 *
+	 */
+	@Test
+	public void layersTest() {
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", 100, 100);
+		whiteboard.addUsername("Mary");
+		assertEquals(0, whiteboard.getLayer("Mary"));
+		assertEquals("base ", whiteboard.getLayerNames());
+		whiteboard.addLine("Barry", Color.BLUE, 0, 50, 99, 50, 1);
+		
+		assertTrue(whiteboard.selectLayer("Mary", "notes"));
+		assertFalse(whiteboard.selectLayer("Barry", "notes"));
+		assertEquals(1, whiteboard.getLayer("Mary"));
+		assertEquals("base notes ", whiteboard.getLayerNames());
+		
+		// The upper layer covers the base layer wherever it has been drawn on.
+		assertEquals("50 10 255 0 0 ", whiteboard.addLine("Mary", Color.RED, 50, 10, 50, 10, 1));
+		whiteboard.addLine("Mary", Color.RED, 10, 40, 10, 60, 1);
+		assertEquals(Color.RED, whiteboard.getColor(10, 50));
+		assertEquals(Color.BLUE, whiteboard.getColor(11, 50));
+		String[] layers = whiteboard.toLayerStrings(new Region(0, 0, 100, 100));
+		assertEquals(2, layers.length);
+		assertTrue(layers[0].contains("10 50 0 0 255 "));
+		assertTrue(layers[1].contains("10 50 255 0 0 "));
+		
+		// A region of the upper layer that has not been drawn on is left out.
+		assertNull(whiteboard.toLayerStrings(new Region(70, 70, 10, 10))[1]);
+		assertEquals("", whiteboard.toLayerStrings(new Region(70, 70, 10, 10))[0]);
+		
+		// Filling the upper layer only stops at the pixels drawn on it.
+		whiteboard.fill("Mary", Color.GREEN, 90, 90);
+		assertEquals(Color.GREEN, whiteboard.getColor(90, 10));
+		assertEquals(Color.RED, whiteboard.getColor(10, 50));
+		whiteboard.undo("Mary");
+		assertEquals(Color.BLUE, whiteboard.getColor(90, 50));
+		
+		// Barry erases from the upper layer, so the base line under it is left alone.
+		whiteboard.erase("Barry", 0, 50, 99, 50, 1);
+		assertEquals(Color.BLUE, whiteboard.getColor(10, 50));
+		assertEquals(Color.RED, whiteboard.getColor(50, 10));
+		assertEquals(2, whiteboard.getStrokeCount());
+		
+		String pixels = whiteboard.toString();
+		whiteboard.rebuildPixels();
+		assertEquals(pixels, whiteboard.toString());
+		
+		whiteboard.removeUsername("Mary");
+		assertEquals(0, whiteboard.getLayer("Mary"));
 	}
 	
 	/**
@@ -387,6 +935,9 @@ public class WhiteboardTest {
 	 * 
 	 * The test strategy for the clearWhiteboard method:
 	 * 		Change some colors in the whiteboard and then reset the whiteboard.
+	 * 		Draw on a whiteboard after it has been reset, in rows that were and were not
+	 * 		drawn on before the reset.
+	 * 		Reset a whiteboard more than once.
 	 * 
 	 */
 	@Test
@@ -402,6 +953,43 @@ public class WhiteboardTest {
 		confirmColors(whiteboard, expectedColors);
 	}
 	
+	// Draw on a whiteboard after it has been reset.
+	@Test
+	public void drawAfterClearWhiteboardTest() {
+		int width = 6, height = 7;
+		Color newColor = Color.BLUE;
+		
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", width, height);
+		whiteboard.addLine(Color.RED, 0, 0, 5, 0, 1);
+		whiteboard.addLine(Color.RED, 0, 2, 5, 2, 1);
+		whiteboard.clearWhiteboard();
+		
+		// Row 0 was drawn on before the reset, row 4 was not.
+		whiteboard.setColor(3, 0, newColor);
+		whiteboard.setColor(1, 4, newColor);
+		
+		Color[][] expectedColors = createColorArray(width, height, Color.WHITE);
+		expectedColors[0][3] = newColor;
+		expectedColors[4][1] = newColor;
+		confirmColors(whiteboard, expectedColors);
+		assertEquals("3 0 0 0 255 1 4 0 0 255 ", whiteboard.toString());
+	}
+	
+	// Reset a whiteboard more than once.
+	@Test
+	public void clearWhiteboardTwiceTest() {
+		int width = 4, height = 4;
+		
+		Whiteboard whiteboard = new Whiteboard("first whiteboard", width, height);
+		whiteboard.addLine(Color.RED, 0, 0, 3, 3, 1);
+		whiteboard.clearWhiteboard();
+		whiteboard.addLine(Color.GREEN, 0, 1, 3, 1, 1);
+		whiteboard.clearWhiteboard();
+		
+		confirmColors(whiteboard, createColorArray(width, height, Color.WHITE));
+		assertEquals("", whiteboard.toString());
+	}
+	
 	/**
 	 * Asserts that two Array Lists of Point objects are equal.
 	 * 
@@ -0,0 +1,155 @@
+package server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayDeque;
+
+/**
+ * ConnectionWriter is a mutable datatype that sends lines to the client of one connection on a thread of its own.
+ * Queuing a line never waits for the client, so a thread that holds the lock of the server is never held up by a
+ * client that is slow to read.  The lines are written in the order that they were queued, and the writer is only
+ * flushed once every queued line has been written, so lines that are queued together are sent together.
+ *
+ * Abstraction Function:
+ * 		socket       : the socket of the connection
+ * 		out          : the writer of the output stream of socket
+ * 		queue        : the lines that have been queued but not yet written, oldest first
+ * 		isClosed     : true once no more lines may be queued, because the connection is ending or can no longer
+ * 					   be written to
+ * 		writingSince : the time in milliseconds at which the line being written started to be written, or -1 if
+ * 					   no line is being written
+ * 		thread       : the thread that writes the lines of queue to out
+ *
+ * Representation Invariant:
+ * 		queue is empty once out has failed to be written to.
+ *
+ * Thread safety Argument:
+ * 		queue and isClosed are guarded by the lock of this ConnectionWriter, which is never held while writing, so
+ * 		queuing a line never waits for the client.  out is confined to thread once it has started.  writingSince
+ * 		is volatile, so that another thread can tell whether a write has been blocked for too long.
+ *
+ */
+class ConnectionWriter {
+	private final Socket socket;
+	private final PrintWriter out;
+	private final ArrayDeque<String> queue;
+	private boolean isClosed;
+	private volatile long writingSince;
+	private final Thread thread;
+
+	/**
+	 * Creates a ConnectionWriter for a connection, which does not write anything until it is started.
+	 *
+	 * @param socket the socket of the connection
+	 * @throws IOException if the output stream of socket cannot be opened
+	 */
+	public ConnectionWriter(final Socket socket) throws IOException {
+		this.socket = socket;
+		this.out = new PrintWriter(socket.getOutputStream(), false);
+		this.queue = new ArrayDeque<String>();
+		this.isClosed = false;
+		this.writingSince = -1;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				writeLines();
+			}
+		}, "writer");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts writing the lines that are queued.
+	 */
+	public void start() {
+		thread.start();
+	}
+
+	/**
+	 * Queues a line to be sent to the client after every line that has been queued before it.  Never waits for
+	 * the client.
+	 *
+	 * @param line the line to send
+	 * @modifies adds line to the end of the queue, unless this writer has been closed, in which case line is dropped
+	 */
+	public synchronized void send(final String line) {
+		if (!isClosed) {
+			queue.addLast(line);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns how long the line being written has been waiting for the client to read it.
+	 *
+	 * @param now the time in milliseconds
+	 * @return the number of milliseconds since the line being written started to be written, or -1 if no line
+	 * 		   is being written
+	 */
+	public long getBlockedMillis(final long now) {
+		long since = writingSince;
+		return since == -1 ? -1 : now - since;
+	}
+
+	/**
+	 * Stops queuing lines and waits for the lines that have already been queued to be written.
+	 *
+	 * @param timeoutMillis how long to wait at most, in milliseconds
+	 * @throws InterruptedException if the calling thread is interrupted while it waits
+	 */
+	public void close(final long timeoutMillis) throws InterruptedException {
+		synchronized (this) {
+			isClosed = true;
+			notifyAll();
+		}
+		thread.join(timeoutMillis);
+	}
+
+	/**
+	 * Writes the queued lines to the client until this writer has been closed and every line has been written,
+	 * or the connection can no longer be written to, in which case its socket is closed.
+	 */
+	private void writeLines() {
+		while (true) {
+			String line;
+			boolean isLast;
+			synchronized (this) {
+				while (queue.isEmpty() && !isClosed) {
+					try {
+						wait();
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (queue.isEmpty()) {
+					return;
+				}
+				line = queue.removeFirst();
+				isLast = queue.isEmpty();
+			}
+
+			writingSince = System.currentTimeMillis();
+			out.println(line);
+			if (isLast) {
+				out.flush();
+			}
+			writingSince = -1;
+
+			// A client that can no longer be written to is gone, so there is no point waiting for it to time out.
+			if (out.checkError()) {
+				synchronized (this) {
+					isClosed = true;
+					queue.clear();
+				}
+				try {
+					socket.close();
+				}
+				catch (IOException e) {
+					// The socket is being given up on anyway.
+				}
+				return;
+			}
+		}
+	}
+}
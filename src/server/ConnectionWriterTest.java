@@ -0,0 +1,66 @@
+package server;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ConnectionWriterTest {
+
+	/**
+	 * The testing strategy for the ConnectionWriter class:
+	 * 		Lines queued from several calls arrive in the order that they were queued
+	 * 		Closing a writer sends the lines that are still queued and drops the ones queued afterwards
+	 * 		A client that stops reading blocks the writer, which is told by getBlockedMillis(), without blocking send()
+	 *
+	 */
+	@Test
+	public void orderTest() throws IOException, InterruptedException {
+		try (ServerSocket server = new ServerSocket(0); Socket client = new Socket("localhost", server.getLocalPort());
+			 Socket socket = server.accept()) {
+			ConnectionWriter writer = new ConnectionWriter(socket);
+			writer.send("first");
+			writer.start();
+			writer.send("second");
+			writer.send("third");
+			writer.close(5000);
+			writer.send("dropped");
+
+			BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+			assertEquals(Arrays.asList("first", "second", "third"), Arrays.asList(in.readLine(), in.readLine(), in.readLine()));
+			assertEquals(-1, writer.getBlockedMillis(System.currentTimeMillis()));
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void blockedTest() throws IOException, InterruptedException {
+		try (ServerSocket server = new ServerSocket(0); Socket client = new Socket("localhost", server.getLocalPort())) {
+			Socket socket = server.accept();
+			ConnectionWriter writer = new ConnectionWriter(socket);
+			writer.start();
+
+			// The client never reads, so the socket's buffers fill up and the writer's thread waits.
+			char[] chars = new char[1 << 20];
+			Arrays.fill(chars, 'x');
+			String line = new String(chars);
+			for (int i = 0; i < 64; i++) {
+				writer.send(line);
+			}
+			while (writer.getBlockedMillis(System.currentTimeMillis()) < 200) {
+				Thread.sleep(50);
+			}
+			assertTrue(client.getInputStream().available() > 0);
+
+			// Closing the socket gives the writer up, as the reaper does.
+			socket.close();
+			writer.close(5000);
+			assertEquals(-1, writer.getBlockedMillis(System.currentTimeMillis()));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Session is a mutable datatype that represents the session of a client that can resume it over a new connection
+ * after its connection has been lost.  Every message that the server sends the client other than a reply is given
+ * the next sequence number of the session.  The messages sent while the session has no connection are kept, up to
+ * a number of characters, so that the ones that the client missed while it was reconnecting can be sent again; 
+ * nothing is kept while the session has a connection.
+ *
+ * Abstraction Function:
+ * 		token        : the secret by which the client names the session when it resumes it
+ * 		username     : the username of the client
+ * 		lastSequence : the sequence number of the last message sent in the session, or 0 if there has been none
+ * 		replay       : the last messages sent since the session last lost its connection, each with its sequence
+ * 					   number, oldest first
+ * 		replayLength : the total number of characters of the messages of replay
+ * 		capacity     : the number of characters that the messages of replay have at most
+ * 		detachedAt   : the time in milliseconds at which the connection of the session was lost, or -1 if the
+ * 					   session has a connection
+ *
+ * Representation Invariant:
+ * 		replayLength <= capacity and replay.size() <= lastSequence
+ * 		The messages of replay are numbered lastSequence - replay.size() + 1 to lastSequence, in order.
+ * 		replay is empty while detachedAt == -1.
+ *
+ * Thread safety Argument:
+ * 		Session is not threadsafe.  A WhiteboardServer only uses its sessions while holding its own lock.
+ *
+ */
+class Session {
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private final String token;
+	private final String username;
+	private long lastSequence;
+	private final ArrayDeque<String> replay;
+	private long replayLength;
+	private final long capacity;
+	private long detachedAt;
+
+	/**
+	 * Creates a Session with a new random token, which has a connection and in which no messages have been sent.
+	 *
+	 * @param username the username of the client
+	 * @param capacity the number of characters of the messages that can be sent again at most, capacity > 0
+	 */
+	public Session(final String username, final long capacity) {
+		byte[] bytes = new byte[16];
+		RANDOM.nextBytes(bytes);
+		StringBuilder token = new StringBuilder();
+		for (byte b : bytes) {
+			token.append(String.format("%02x", b & 0xFF));
+		}
+
+		this.token = token.toString();
+		this.username = username;
+		this.lastSequence = 0;
+		this.replay = new ArrayDeque<String>();
+		this.replayLength = 0;
+		this.capacity = capacity;
+		this.detachedAt = -1;
+	}
+
+	/**
+	 * Returns the token of this session.
+	 *
+	 * @return the secret by which the client names this session, which contains no spaces
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Returns the username of the client of this session.
+	 *
+	 * @return the username of the client
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the sequence number of the last message sent in this session.
+	 *
+	 * @return the sequence number of the last message sent, or 0 if there has been none
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * Gives a message the next sequence number of this session.  If this session has no connection, the message
+	 * is kept so that it can be sent again, forgetting the oldest messages kept so that they have at most
+	 * capacity characters in all.
+	 *
+	 * @param message a message to the client, on one line
+	 * @return "@[sequence] [message]", where [sequence] is the sequence number of message, which is what is sent
+	 */
+	public String sequence(final String message) {
+		lastSequence++;
+		String sequenced = "@" + lastSequence + " " + message;
+		if (detachedAt != -1) {
+			replay.addLast(sequenced);
+			replayLength += sequenced.length();
+			while (replayLength > capacity) {
+				replayLength -= replay.removeFirst().length();
+			}
+		}
+		return sequenced;
+	}
+
+	/**
+	 * Returns the messages that were sent after a message that the client received.
+	 *
+	 * @param sequence the sequence number of the last message that the client received, or 0 if it received none
+	 * @return the messages with sequence numbers greater than sequence, as returned by sequence() and oldest
+	 * 		   first, or null if some of them are not kept, because they were sent while this session had a 
+	 * 		   connection or have been forgotten, or sequence is greater than getLastSequence()
+	 */
+	public ArrayList<String> getMessagesAfter(final long sequence) {
+		if (sequence < lastSequence - replay.size() || sequence > lastSequence) {
+			return null;
+		}
+
+		ArrayList<String> missed = new ArrayList<String>(replay);
+		return new ArrayList<String>(missed.subList(missed.size() - (int) (lastSequence - sequence), missed.size()));
+	}
+
+	/**
+	 * Records that the connection of this session has been lost, after which the messages sent are kept.
+	 *
+	 * @param now the time in milliseconds
+	 */
+	public void detach(final long now) {
+		detachedAt = now;
+	}
+
+	/**
+	 * Records that this session has been resumed over a new connection, forgetting the messages that were kept.
+	 */
+	public void attach() {
+		detachedAt = -1;
+		replay.clear();
+		replayLength = 0;
+	}
+
+	/**
+	 * Returns how long this session has been without a connection.
+	 *
+	 * @param now the time in milliseconds
+	 * @return the number of milliseconds since the connection of this session was lost, or -1 if it has one
+	 */
+	public long getDetachedMillis(final long now) {
+		return detachedAt == -1 ? -1 : now - detachedAt;
+	}
+}
@@ -0,0 +1,79 @@
+package server;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SessionTest {
+
+	/**
+	 * The testing strategy for the Session class:
+	 * 		Tokens of different sessions, which must differ and contain no spaces
+	 * 		getMessagesAfter() with no messages sent, with messages sent while the session had a connection, 
+	 * 		with every message sent while it had none still kept, after the oldest messages have been forgotten 
+	 * 		for being too long in all, and with a sequence number that is too old or too new
+	 * 		A session that is detached and then attached again, which forgets the messages kept
+	 *
+	 */
+	@Test
+	public void tokenTest() {
+		Session first = new Session("ann", 100);
+		Session second = new Session("ann", 100);
+
+		assertFalse(first.getToken().equals(second.getToken()));
+		assertFalse(first.getToken().contains(" "));
+		assertEquals("ann", first.getUsername());
+	}
+
+	@Test
+	public void replayTest() {
+		Session session = new Session("ann", 50);
+		assertEquals(0, session.getLastSequence());
+		assertEquals(Arrays.asList(), session.getMessagesAfter(0));
+
+		// Nothing is kept while the session has a connection.
+		assertEquals("@1 userJoined bob", session.sequence("userJoined bob"));
+		assertNull(session.getMessagesAfter(0));
+		assertEquals(Arrays.asList(), session.getMessagesAfter(1));
+
+		session.detach(1000);
+		assertEquals("@2 board a reset", session.sequence("board a reset"));
+		assertEquals("@3 userLeft bob", session.sequence("userLeft bob"));
+		assertEquals(Arrays.asList("@3 userLeft bob"), session.getMessagesAfter(2));
+		assertEquals(Arrays.asList("@2 board a reset", "@3 userLeft bob"), session.getMessagesAfter(1));
+		assertNull(session.getMessagesAfter(0));
+
+		// Only the last messages whose lengths add up to at most 50 characters are kept.
+		session.sequence("boardCreated b");
+		session.sequence("boardCreated c");
+		assertEquals(5, session.getLastSequence());
+		assertNull(session.getMessagesAfter(1));
+		assertEquals(Arrays.asList("@3 userLeft bob", "@4 boardCreated b", "@5 boardCreated c"), session.getMessagesAfter(2));
+		assertEquals(Arrays.asList(), session.getMessagesAfter(5));
+		assertNull(session.getMessagesAfter(6));
+
+		// A message longer than all of that cannot be kept at all.
+		session.sequence("redraw 0 0 64 64 " + "0 0 255 255 255 ".repeat(4));
+		assertNull(session.getMessagesAfter(5));
+		assertEquals(Arrays.asList(), session.getMessagesAfter(6));
+
+		session.attach();
+		session.sequence("userLeft bob");
+		assertNull(session.getMessagesAfter(6));
+		assertEquals(Arrays.asList(), session.getMessagesAfter(7));
+	}
+
+	@Test
+	public void detachTest() {
+		Session session = new Session("ann", 100);
+		assertEquals(-1, session.getDetachedMillis(1000));
+
+		session.detach(1000);
+		assertEquals(500, session.getDetachedMillis(1500));
+
+		session.attach();
+		assertEquals(-1, session.getDetachedMillis(2000));
+	}
+}
@@ -1,16 +1,22 @@
 package server;
 
-import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 
+import model.AlphaBlend;
+import model.Region;
 import model.Whiteboard;
 
 
@@ -24,36 +30,96 @@ import model.Whiteboard;
  * 					  session
  * 		names       : the names of the whiteboards that have been created
  * 					  during a server session
+ * 		sortedNames : the names of the whiteboards that have been created during a server session, in 
+ * 					  lexicographic order, so that they can be listed a page at a time and by prefix
+ * 		whiteboardsByName : maps the name of each whiteboard that has been created during a server session onto
+ * 					  the whiteboard, so that a whiteboard can be found without going through names
+ * 		openWhiteboards : maps the username of each client that has whiteboards open onto the names of those
+ * 					  whiteboards, so that a client can be removed from them without going through every whiteboard
  * 		clients     : the keys are the usernames of the clients that are connected to this 
  * 					  WhiteboardServer and the values are the sockets via which each client is 
  * 					  connected to the server
+ * 		writers     : the keys are the sockets of the connections that are being handled and the values are
+ * 					  the writers by which every message to each of them is sent, replies and other messages alike,
+ * 					  each on a thread of its own
+ * 		presence    : the keys are the usernames of the clients that have connected to or disconnected from the
+ * 					  server since the clients were last told, in the order that they last did, and each value is
+ * 					  true if the client last connected and false if it last disconnected
+ * 		presenceTimer : the timer that tells the clients of the changes in presence a while after the first of
+ * 					  them, or null until the first change
+ * 		lastHeard   : the keys are the sockets of the connections that are being handled and the values are the
+ * 					  times, in milliseconds, at which a line was last read from each of them
+ * 		reaper      : the timer that pings the connections that have been silent for heartbeatMillis and closes
+ * 					  the ones that have been silent, or have not read a line written to them, for 
+ * 					  idleTimeoutMillis, or null until the server serves
+ * 		sessions    : the keys are the tokens of the sessions of the clients that can resume them and the values
+ * 					  are the sessions
+ * 		sessionsByUsername : the keys are the usernames of the clients that have sessions and the values are
+ * 					  their sessions
+ * 		heartbeatMillis : how long a connection may be silent before it is sent "ping"
+ * 		idleTimeoutMillis : how long a connection may be silent before it is taken to be dead and closed
  * 
  * Representation Invariant:
- * 		The name of the ith Whiteboard in whiteboards is the ith entry in name.
+ * 		The name of the ith Whiteboard in whiteboards is the ith entry in names.
  * 		Every Whiteboard that has been created while the server is running is 
  * 		in whiteboards.
  * 		The ith Whiteboard in whiteboards is the ith Whiteboard object created.
  * 		The names of whiteboards cannot contain spaces.
+ * 		sortedNames contains exactly the names in names, sorted.
+ * 		whiteboardsByName has exactly the names in names as its keys and maps each of them onto the Whiteboard 
+ * 		of the same index in whiteboards.  whiteboards and names only keep the order in which the whiteboards 
+ * 		were created, for listing them; every whiteboard that a request names is looked up in whiteboardsByName,
+ * 		and a name that is not one of its keys is answered with NOT_CREATED_ERROR.
+ * 		A username is on a whiteboard only if openWhiteboards maps it onto a set containing the name of the
+ * 		whiteboard, and no set of openWhiteboards is empty.
  * 		Each client must have a different username and usernames cannot contain spaces.
  * 		The first set of messages from the client to the server must be requests for a username.
  * 		The client must keep on requesting a username until the username that the client requests is
  * 		accepted by the server (i.e. is unique and doesn't contain any spaces).
  * 		Each client of the server must be represented in clients.
+ * 		A username is in presence with the value true only if it is in clients, and with the value false only if
+ * 		it is not.
+ * 		If presence is not empty, presenceTimer has a task scheduled that empties it.
+ * 		lastHeard and writers have the same keys.
+ * 		sessions and sessionsByUsername hold the same sessions, each under its token and its username, and the
+ * 		username of every session is in clients.  A username is mapped onto null by clients only if its session
+ * 		has no connection.
+ * 		0 < heartbeatMillis < idleTimeoutMillis.
  * 
  * Threadsafety argument:
  * The threads in the system are:
  * 		- main thread accepting new connections
  * 		- one thread per connected client, handling just that client
+ * 		- one thread per connected client, writing the lines queued for just that client
  * 
  * The serverSocket object is confined to the main thread.
  * 
  * The Socket object for a client is confined to that client's thread;
  * the main thread loses its reference to the object right after starting the client thread.
  * 
- * All read and writes to the mutable representation of the WhiteboardServer (whiteboard, names, and clients)
+ * All read and writes to the mutable representation of the WhiteboardServer (whiteboard, names, sortedNames, 
+ * whiteboardsByName, openWhiteboards, clients, writers, lastHeard, sessions and sessionsByUsername)
  * are synchronized on this WhiteboardServer so that only one thread can change or read these objects at any given
  * time.
  * 
+ * Every message to a connection goes through its one ConnectionWriter, which queues it without waiting for the
+ * client and writes it on its own thread, so lines from different threads are never mixed up, the replies and 
+ * other messages of a connection are sent in the order that they were queued, and no thread ever waits for a 
+ * client to read while holding the lock on this WhiteboardServer.
+ * 
+ * The changes in presence are told to the clients on the thread of presenceTimer, which takes them out of 
+ * presence while holding the lock on this WhiteboardServer, like every other thread that reads or changes it.
+ * 
+ * Every snapshot of a whiteboard that is sent to a client, i.e. the reply to an open request and every "redraw"
+ * message, is taken and written while holding the lock on this WhiteboardServer, like every broadcast, so a
+ * message about a change to the whiteboard is never written to a connection ahead of an older snapshot that it
+ * would be painted over by.
+ * 
+ * The reaper's thread decides which connections to ping and which to close while holding the same lock, and then
+ * pings and closes them after releasing it.  Closing the socket of a dead connection makes the blocked read of 
+ * the connection's own thread, and any blocked write of its writer, fail, and that thread then releases 
+ * everything that the connection held, just as if the client had closed it.
+ * 
  * The WhiteboardServer does not share any memory with its clients.
  *
  */
@@ -61,7 +127,19 @@ public class WhiteboardServer {
     private final ServerSocket serverSocket;
     private final ArrayList<Whiteboard> whiteboards;
     private final ArrayList<String> names;
+    private final ArrayList<String> sortedNames;
+    private final HashMap<String, Whiteboard> whiteboardsByName;
+    private final HashMap<String, HashSet<String>> openWhiteboards;
     private final HashMap<String, Socket> clients;
+    private final HashMap<Socket, ConnectionWriter> writers;
+    private final LinkedHashMap<String, Boolean> presence;
+    private Timer presenceTimer;
+    private final HashMap<Socket, Long> lastHeard;
+    private Timer reaper;
+    private final HashMap<String, Session> sessions;
+    private final HashMap<String, Session> sessionsByUsername;
+    private final long heartbeatMillis;
+    private final long idleTimeoutMillis;
     
     public static final int port = 4444;
     
@@ -73,20 +151,61 @@ public class WhiteboardServer {
     protected static final String NOT_CREATED_ERROR = "whiteboardopenerror A whiteboard with that name has not been created.";
     protected static final String USERNAME_ALREADY_CREATED = "usernameerror That username is already being used.";
     protected static final String USERNAME_CONTAINS_SPACE = "usernameerror There should be no spaces in the username.";
+    protected static final String INVALID_DIMENSIONS = "whiteboardnameerror The width and height of a whiteboard must be between 1 and " 
+    											   + WhiteboardServer.MAX_DIMENSION_OF_WHITEBOARDS + " pixels.";
     
     protected static final int WIDTH_OF_WHITEBOARDS = 800;
     protected static final int HEIGHT_OF_WHITEBOARDS = 600;
+    protected static final int MAX_DIMENSION_OF_WHITEBOARDS = 100000;
+    protected static final int MAX_PIXELS_IN_PREVIEW = 10000;
+    protected static final long PRESENCE_DELAY_MILLIS = 100;
+    protected static final int MAX_WHITEBOARDS_PER_PAGE = 1000;
+    protected static final long HEARTBEAT_MILLIS = 15000;
+    protected static final long IDLE_TIMEOUT_MILLIS = 45000;
+    protected static final String NO_REPLY = "noreply";
+    protected static final long MAX_REPLAY_CHARACTERS = 4L * 1024 * 1024;
+    protected static final String RESUME_ERROR = "resumeerror That session can no longer be resumed.";
+    protected static final String NOT_YOUR_USERNAME = "usernameerror You do not have that username.";
 	
     /**
-     * Make a WhiteboardServer that listens for connections on port.
+     * Make a WhiteboardServer that listens for connections on port, pinging connections that have been silent
+     * for HEARTBEAT_MILLIS and closing the ones that have been silent for IDLE_TIMEOUT_MILLIS.
      * 
      * @param port port number, requires 0 <= port <= 65535
      */
     public WhiteboardServer(final int port) throws IOException {
+    	this(port, HEARTBEAT_MILLIS, IDLE_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Make a WhiteboardServer that listens for connections on port.
+     * 
+     * @param port port number, requires 0 <= port <= 65535
+     * @param heartbeatMillis how long a connection may be silent before the server sends it "ping", requires
+     * 		  heartbeatMillis > 0
+     * @param idleTimeoutMillis how long a connection may be silent before the server takes the client to be gone
+     * 		  and closes it, requires idleTimeoutMillis > heartbeatMillis so that a live client has time to answer
+     */
+    public WhiteboardServer(final int port, final long heartbeatMillis, final long idleTimeoutMillis) throws IOException {
+    	if (heartbeatMillis <= 0 || idleTimeoutMillis <= heartbeatMillis) {
+    		throw new IllegalArgumentException("The idle timeout must be longer than the heartbeat interval.");
+    	}
         serverSocket = new ServerSocket(port);
         whiteboards = new ArrayList<Whiteboard>();
         names = new ArrayList<String>();
+        sortedNames = new ArrayList<String>();
+        whiteboardsByName = new HashMap<String, Whiteboard>();
+        openWhiteboards = new HashMap<String, HashSet<String>>();
         clients = new HashMap<String, Socket>();
+        writers = new HashMap<Socket, ConnectionWriter>();
+        presence = new LinkedHashMap<String, Boolean>();
+        presenceTimer = null;
+        lastHeard = new HashMap<Socket, Long>();
+        reaper = null;
+        sessions = new HashMap<String, Session>();
+        sessionsByUsername = new HashMap<String, Session>();
+        this.heartbeatMillis = heartbeatMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
     }
     
     /**
@@ -97,6 +216,17 @@ public class WhiteboardServer {
      *                     (IOExceptions from individual clients do *not* terminate serve())
      */
     public void serve() throws IOException {
+    	synchronized (this) {
+    		if (reaper == null) {
+    			reaper = new Timer("reaper", true);
+    			reaper.schedule(new TimerTask() {
+    				public void run() {
+    					reap();
+    				}
+    			}, heartbeatMillis / 2, heartbeatMillis / 2);
+    		}
+    	}
+    	
         while (true) {
             // block until a client connects
             final Socket socket = serverSocket.accept();
@@ -123,49 +253,180 @@ public class WhiteboardServer {
     /**
      * Handle a single client connection. Returns when client disconnects.
      * 
+     * A client may send requests without waiting for the replies to the ones before.  They are handled in the
+     * order that they were sent, and the replies are queued on the writer of the connection, which sends the 
+     * lines that are queued together in one go.
+     * 
      * @param socket socket where the client is connected
      * @throws IOException if connection has an error or terminates unexpectedly
      */
     private void handleConnection(Socket socket) throws IOException {
-    	PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+    	ConnectionWriter out = new ConnectionWriter(socket);
         BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        synchronized (this) {
+        	writers.put(socket, out);
+        	lastHeard.put(socket, System.currentTimeMillis());
+        }
+        out.start();
 
         try {
             for (String line = in.readLine(); line != null; line = in.readLine()) {
+            	synchronized (this) {
+            		lastHeard.put(socket, System.currentTimeMillis());
+            	}
+            	
             	// An empty string indicates to that the client has done something in response to 
             	// the server's message but the server does not have to do anything in response.
             	if (line != "") {
-            		String reply = handleRequest(line, socket);
+            		String reply;
+            		
+            		// The reply to an open request carries a snapshot of the whiteboard, so it is queued while 
+            		// holding the lock on this server, ahead of any message about a later change to the whiteboard.
+            		if (line.matches("(#\\d{1,18} )?open .*")) {
+            			synchronized (this) {
+            				reply = handleRequest(line, socket);
+            				writeReply(out, reply);
+            			}
+            		}
+            		else {
+            			reply = handleRequest(line, socket);
+            			writeReply(out, reply);
+            		}
                 	
                 	if(reply == LOGOUT_REQUEST) {
                 		break;
                 	}
-                	else {
-                		out.println(reply);
-                	}
             	}
             }
         }
         catch (IOException e) {
-        	e.printStackTrace();
+        	// A connection that was closed because its client had gone is not an error.
+        	if (!socket.isClosed()) {
+        		e.printStackTrace();
+        	}
         }
         finally {
-            out.close();
+        	synchronized (this) {
+        		writers.remove(socket);
+        		lastHeard.remove(socket);
+        		
+        		// A client that disconnected without logging out is logged out now, unless it can resume its 
+        		// session, which then waits for it until the idle timeout has passed.
+        		for (String username = getUsername(socket); username != Whiteboard.NO_AUTHOR; username = getUsername(socket)) {
+        			Session session = sessionsByUsername.get(username);
+        			if (session != null) {
+        				clients.put(username, null);
+        				session.detach(System.currentTimeMillis());
+        			}
+        			else {
+        				logout(new String[] {"logout", username}, true);
+        			}
+        		}
+        	}
+            // Whatever was queued for the client before it went is still sent, if it is still reading.
+            try {
+            	out.close(idleTimeoutMillis);
+            }
+            catch (InterruptedException e) {
+            	Thread.currentThread().interrupt();
+            }
             in.close();
+            socket.close();
         }
     }
     
+    /**
+     * Writes the reply to a request to the connection that made it, unless the request gets no reply.
+     * 
+     * @param out the writer of the connection
+     * @param reply what handleRequest() returned for the request
+     */
+    private static void writeReply(final ConnectionWriter out, final String reply) {
+    	if (reply != LOGOUT_REQUEST && reply != NO_REPLY) {
+    		out.send(reply);
+    	}
+    }
+    
+    /**
+     * Pings every connection that has been silent for heartbeatMillis and closes every connection that has been
+     * silent for idleTimeoutMillis, or that has not read a line written to it for idleTimeoutMillis, whose client
+     * is taken to have gone without logging out.  The clients of the sessions that have been without a connection
+     * for idleTimeoutMillis are logged out.  The connections are only chosen while holding the lock on this 
+     * server; they are pinged and closed after releasing it.
+     * 
+     * @modifies sends "ping" to the connections that have been silent for heartbeatMillis but less than 
+     * 			 idleTimeoutMillis, and closes the sockets of the dead ones, so that their threads log their 
+     * 			 clients out and return, and logs out the clients of the sessions that have been without a 
+     * 			 connection for idleTimeoutMillis
+     */
+    private void reap() {
+    	ArrayList<Socket> dead = new ArrayList<Socket>();
+    	ArrayList<ConnectionWriter> silent = new ArrayList<ConnectionWriter>();
+    	
+    	synchronized (this) {
+    		long now = System.currentTimeMillis();
+    		for (Session session : new ArrayList<Session>(sessions.values())) {
+    			if (session.getDetachedMillis(now) >= idleTimeoutMillis) {
+    				logout(new String[] {"logout", session.getUsername()}, true);
+    			}
+    		}
+    		
+    		for (Map.Entry<Socket, Long> heard : lastHeard.entrySet()) {
+    			long silence = now - heard.getValue();
+    			ConnectionWriter writer = writers.get(heard.getKey());
+    			if (silence >= idleTimeoutMillis || writer.getBlockedMillis(now) >= idleTimeoutMillis) {
+    				dead.add(heard.getKey());
+    			}
+    			else if (silence >= heartbeatMillis) {
+    				silent.add(writer);
+    			}
+    		}
+    	}
+    	
+    	for (Socket socket : dead) {
+    		closeQuietly(socket);
+    	}
+    	for (ConnectionWriter writer : silent) {
+    		writer.send("ping");
+    	}
+    }
+    
+    /**
+     * Closes the socket of a connection, so that its thread stops reading from it.
+     * 
+     * @param socket the socket of a connection
+     */
+    private static void closeQuietly(final Socket socket) {
+    	try {
+    		socket.close();
+    	}
+    	catch (IOException e) {
+    		// The socket is being given up on anyway.
+    	}
+    }
+    
+    /**
+     * Returns the number of connections that are being handled.
+     * 
+     * @return the number of connections whose threads have not yet returned from handleConnection()
+     */
+    protected synchronized int getConnectionCount() {
+    	return writers.size();
+    }
+    
     /**
      * Checks the representation invariant of the WhiteboardServer.
      * 
      * @return true only if for every integer i in the range [0, whiteboards.size())
-     * 		   the name of Whiteboard object stored at whiteboards[i] is names[i]
+     * 		   the name of Whiteboard object stored at whiteboards[i] is names[i] and whiteboardsByName maps
+     * 		   names[i], and nothing else, onto whiteboards[i]
      */
     public synchronized boolean checkRep() {
-    	boolean flag = true;
+    	boolean flag = whiteboardsByName.size() == whiteboards.size();
     	
     	for (int i = 0; i < whiteboards.size(); i++) {
     		flag = flag && names.get(i).equals(whiteboards.get(i).getName());
+    		flag = flag && whiteboardsByName.get(names.get(i)) == whiteboards.get(i);
     	}
     	
     	return flag;
@@ -189,8 +450,12 @@ public class WhiteboardServer {
      * Handler for client input, performing requested operations and returning an output message.
      * 
      * Valid client input is of the following form.
-     * 		(1) create [name] - 
+     * 		(1) create [name] or create [name] [width] [height] - 
      * 				[name] cannot be an empty string
+     * 				[width] and [height] are the optional dimensions of the whiteboard in pixels; if they are
+     * 				not given the whiteboard is 800 x 600 pixels.  If they are not both between 1 and 100000,
+     * 					this method returns an output message of the form "whiteboardnameerror The width and height 
+     * 					of a whiteboard must be between 1 and 100000 pixels."
      * 				If [name] contains any spaces,
      * 					this method returns an output message of the form "whiteboardnameerror Whiteboard names cannot 
      * 					contain any spaces."
@@ -201,13 +466,21 @@ public class WhiteboardServer {
      * 				Otherwise, if a whiteboard whose name is [name] is not saved on the server (i.e. has never been created) 
      * 				and [name] does not contain any spaces, 
      * 					this method creates a whiteboard whose name is [name] and returns a message of the form "whiteboardcreated [name]"
-     * 					this method also notifies all other clients of this change with a message of the form 
-     * 					"allwhiteboards [whiteboards]" where [whiteboards] is a String containing the names of all the whiteboards currently saved
-     * 					on the server, in the order that they were created, each separated by a space
-     * 		(2) open [username] [name] - 
+     * 					this method also notifies all clients of this change with a message of the form 
+     * 					"boardCreated [name]"
+     * 		(2) open [username] [name] or open [username] [name] [x] [y] [width] [height] - 
      * 				[username] must represent the client that is connecting through the currently handled port
+     * 				If [x] [y] [width] [height] are given, the whiteboard is opened progressively:
+     * 					this method returns "openpreview [name] [width] [height] [scale] [preview]" instead of the message
+     * 					below, where [preview] is the string representation of a low resolution preview of the tiles that
+     * 					intersect the [width] x [height] rectangle whose top left hand corner is ([x], [y]) and each pixel
+     * 					of the preview covers a [scale] x [scale] square of the whiteboard.  [preview] contains at most
+     * 					about 10000 pixels no matter what has been drawn on the whiteboard.
+     * 					The client is treated as if it could not see any part of the whiteboard yet, so the full resolution
+     * 					tiles are streamed to it by its next viewport command.
      * 				If a whiteboard whose name is [name] is saved on the server,
-     * 					this method returns "[name] [whiteboard]" where [whiteboard] is a string representation of 
+     * 					this method returns "open [name] [width] [height] [whiteboard]" where [width] and [height] are the
+     * 					dimensions of the whiteboard in pixels and [whiteboard] is a string representation of 
      * 					the whiteboard to the client.  
      * 					this method also adds the client to the specified whiteboard and notifies all clients currently connected 
      * 					to the specified whiteboard of the new client with a message of the form "alsoediting [usernames]" where 
@@ -218,9 +491,8 @@ public class WhiteboardServer {
      * 				[username] must represent the client that is connecting through the currently handled port.
      * 				This method returns a message of the form "logout" and removes the client from all whiteboards
      * 				that it is connected to and notifies all other clients both of the fact that they have 
-     * 				disconnected from the whole server (with a message of the form "allUsersOnline [usernames] where [usernames] is 
-     * 				a String containing the usernames of all of the client currently connected to the server")
-     * 				and that they have disconnected from all of the whiteboards (with a message of the form "alsoediting [usernames]"
+     * 				disconnected from the whole server (with a message of the form "userLeft [usernames]", as described
+     * 				below) and that they have disconnected from all of the whiteboards (with a message of the form "alsoediting [usernames]"
      * 				where [usernames] is a string containing the usernames of all of the client connected to the whiteboard that the client
      * 				whose username was [username] was connected to.
      * 		(4) username [username] - 
@@ -231,38 +503,213 @@ public class WhiteboardServer {
      * 					this method returns "usernnameerror There should be no spaces in the username."
      * 				Otherwise,
      * 					this method creates an entry in the HashMap corresponding to this username and client and 
-     * 					returns "usernameCreated username" and sends a message to all of the clients of the form 
+     * 					returns "usernameCreated username".  Before the reply, it sends the client a message of the form
      * 					"allUsersOnline [usernames]" where [usernames] is a string containing the usernames of all of 
-     * 					clients connected to the server in the order that they were assigned usernames, each separated by
-     * 					a space
+     * 					clients connected to the server, each followed by a space.
+     * 					Every other client is only told of the change, with a message of the form 
+     * 					"userJoined [usernames]".  The changes are not told at once but 100 milliseconds after the first
+     * 					of them, so a burst of them is told in one "userJoined [usernames]" and one 
+     * 					"userLeft [usernames]" message, each listing the usernames of the clients that last
+     * 					connected or last disconnected during the burst, each separated by a space.  Either message is
+     * 					left out if it would list nobody.  A client may be told that a client it has never heard of 
+     * 					has disconnected, or that one it already knows of has connected.
      * 		(5) close [username] [name] -
      * 				[username] must a client on the server that is connected to the whiteboard whose name is [name]
-     * 				This method returns an empty string.
+     * 				This method returns an empty string, or "whiteboardopenerror A whiteboard with that name has not been created."
+     * 					if no whiteboard is named [name].
      * 				This method removes the client whose username is [username] from whiteboard whose name is [name] and 
      * 					notifies all clients currently connected to the specified whiteboard of this disconnection 
      * 					with a message of the form "alsoediting [usernames]" where [usernames] is a string containing 
      * 					the usernames of all of the clients connected to the whiteboard named [name]
-     * 		(6) draw [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] -
+     * 		(6) draw [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] or
+     * 		    draw [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [alpha] -
      * 				[name] must be a whiteboard on the server
      * 				This method requests a line to be draw on the whiteboard named [name] from ([x1], [y1]) to 
      * 				([x2], [y2]) with color [red] [green] [blue] and thickness [thickness]
+     * 				If [alpha] is given, it must be between 1 and 255 and the line is translucent: its color is
+     * 				blended over the pixels under it with the opacity [alpha] / 255, each pixel once per stroke.
+     * 				The pixels sent to the clients are the blended colors, so they are opaque as always.
      * 				Note that ([x1], [y1]) and ([x2], [y2]) must be points on the whiteboard named [name]
+     * 				and [thickness] must be no larger than its width or its height, whichever is larger; otherwise
+     * 				this method returns "Invalid input."
      * 				This method returns an empty string.
      * 				This method also sends out a message to all of the clients connected to the whiteboard [name]
      * 				that a line has been added to the whiteboard via a message of the form "drawLine [line]" where [line]
-     * 				is the string representation of the line that has been added to the whiteboard whose name is [name].
+     * 				is the string representation of the pixels whose color was changed by the line that has been added
+     * 				to the whiteboard whose name is [name].  If the line did not change any pixels, no message is sent.
+     * 				Clients that have declared a viewport that the line does not intersect are not sent the message.
+     * 				The line is recorded as part of a stroke drawn by the client that is connecting through the currently
+     * 				handled port.
      * 		(7) list - 
      *				This method returns "allwhiteboards [whiteboards]" where [whiteboards] is a String containing 
      *				the names of all the whiteboards currently saved on the server, in the order that they 
      *				were created, each separated by a space
+     *			list [offset] [limit] or list [offset] [limit] [prefix] -
+     *				This method returns one page of the names of the whiteboards saved on the server whose names start
+     *				with [prefix], or of every whiteboard if [prefix] is not given, in lexicographic order.  The reply
+     *				is of the form "whiteboards [total] [offset] [whiteboards]", where [total] is the number of 
+     *				whiteboards whose names start with [prefix] and [whiteboards] contains the names of the 
+     *				[offset]th to the ([offset] + [limit] - 1)th of them, counting from 0, each followed by a space.
+     *				[limit] can be no more than 1000.
      *		(8) getUsersOnWhiteboard [whiteboard] -
-     *				This method returns "alsoediting [usernames]" where [usernames] is a String containing the usernames
+     *				This method returns "board [whiteboard] alsoediting [usernames]" where [usernames] is a String containing the usernames
      *				of all clients currently editing the whiteboard whose name is [whiteboard].
      *				[whiteboard] must be the name of a whiteboard that is saved on the server
      *		(9) reset [whiteboard] -
      *				[whiteboard] must be the name of a whiteboard that is saved on the server and sends
      *				a message of the form "reset" to all of the clients connected to the whiteboard [whiteboard]
      *				This method clears the whiteboard whose name is [whiteboard].
+     *		(10) viewport [username] [whiteboard] [x] [y] [width] [height] -
+     *				[username] must represent the client that is connecting through the currently handled port, 
+     *				otherwise "usernameerror You do not have that username." is returned, and the client must have 
+     *				the whiteboard whose name is [whiteboard] open.
+     *				This method declares that the client can only see the [width] x [height] rectangle of the whiteboard
+     *				whose top left hand corner is ([x], [y]), grown to whole tiles of the whiteboard.  From then on, the 
+     *				client is only sent the "drawLine" messages of lines that intersect that rectangle.
+     *				This method returns an empty string and sends the client one message of the form
+     *				"redraw [x] [y] [width] [height] [pixels]" for every tile that the client could not see before but
+     *				can see now and that has been drawn on, where [pixels] is the string representation of the pixels
+     *				of that tile that are not white.
+     *				A client that has never declared a viewport can see the whole whiteboard.
+     *		(11) undo [username] [whiteboard] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server and [username] must be
+     *				a username of the client, otherwise "usernameerror You do not have that username." is returned.
+     *				This method removes the last stroke drawn on the whiteboard whose name is [whiteboard] by the client 
+     *				whose username is [username] that has not been undone, and returns an empty string.  A stroke is a 
+     *				series of lines drawn by one client one after another, each starting where the last one ended, in 
+     *				the same color and thickness.
+     *				Only the tiles of the whiteboard that the stroke covered are redrawn.  For each of them, every client 
+     *				connected to the whiteboard that can see the tile is sent a message of the form 
+     *				"redraw [x] [y] [width] [height] [pixels]", where [pixels] is the string representation of the 
+     *				pixels of the tile that are not white.
+     *				If the client has no stroke left to undo, nothing happens.
+     *		(12) redo [username] [whiteboard] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server and [username] must be
+     *				a username of the client, as for the undo command.
+     *				This method restores the last stroke undone by the client whose username is [username] on the
+     *				whiteboard whose name is [whiteboard] and returns an empty string.  The tiles that the stroke covers
+     *				are sent to clients as for the undo command.  Drawing a new stroke forgets the strokes that the
+     *				client could redo.  An erasure is undone and redone in the same way, restoring and then removing
+     *				again every stroke that it erased.
+     *		(13) erase [username] [whiteboard] [x1] [y1] [x2] [y2] [thickness] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server, [username] must be
+     *				a username of the client, as for the undo command, and [thickness] must be no greater than the
+     *				width and the height of the whiteboard.
+     *				This method removes every stroke on the whiteboard whose name is [whiteboard] that comes within
+     *				[thickness] / 2 pixels of the line from ([x1], [y1]) to ([x2], [y2]), no matter who drew it, and
+     *				returns an empty string.  The strokes are removed, not painted over in white, so whatever they
+     *				covered shows through again.  The tiles that the strokes covered are sent to clients as for the
+     *				undo command.  The client whose username is [username] can undo the erasure.
+     *		(14) fill [whiteboard] [x] [y] [red] [green] [blue] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server and ([x], [y]) must be
+     *				a pixel of it.
+     *				This method colors every pixel of the whiteboard whose name is [whiteboard] that is connected to
+     *				([x], [y]), i.e. that can be reached from ([x], [y]) by moving up, down, left or right through 
+     *				pixels of the color of ([x], [y]), with new Color([red], [green], [blue]), and returns an empty 
+     *				string.  If any pixel changed color, every client connected to the whiteboard that can see part of
+     *				the filled area is sent a message of the form 
+     *				"fillSpans [red] [green] [blue] [x] [y] [width] [height] [runs]", where the filled area lies in the
+     *				[width] x [height] rectangle whose top left hand corner is ([x], [y]) and [runs] consists of triples
+     *				[y] [xStart] [xEnd], each meaning that the pixels from ([xStart], [y]) to ([xEnd], [y]) were filled.
+     *				The fill is recorded as a stroke of the client, so it can be undone and erased.
+     *		(15) line [whiteboard] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server and ([x1], [y1]) and 
+     *				([x2], [y2]) must be pixels of it, and [thickness] no larger than its width or its height.
+     *				This method draws a straight line as the draw command does, except that the line is always a
+     *				stroke of its own, and returns an empty string.
+     *		(16) rect [whiteboard] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [outline|filled] -
+     *		     ellipse [whiteboard] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [outline|filled] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server, the corners may be off
+     *				the whiteboard by no more than its width and height, and [thickness] can be no more than them.
+     *				This method draws the rectangle whose opposite corners are ([x1], [y1]) and ([x2], [y2]), or the
+     *				ellipse inscribed in it, in new Color([red], [green], [blue]) and returns an empty string.  An 
+     *				outline is [thickness] pixels thick and centered on the edge of the shape; a filled shape covers
+     *				every pixel inside the edge.  The pixels that the shape covers are sent to the clients that can 
+     *				see them as a "fillSpans" message, as for the fill command, and the shape is recorded as a stroke
+     *				of the client, so it can be undone and erased.
+     *		(17) layers [username] [whiteboard] -
+     *				[username] must be a username of the client, as for the undo command, and the client must have 
+     *				the whiteboard whose name is [whiteboard] open.
+     *				Every whiteboard has a layer named "base", and may have more layers stacked on top of it.  The
+     *				"open" message, and the first "redraw" message of each tile sent by the viewport command, only 
+     *				carry the base layer; the preview of the "openpreview" message shows every layer painted over the
+     *				ones under it.  This method sends the client one message of the form 
+     *				"layer [k] redraw [x] [y] [width] [height] [pixels]" for every tile that the client can see and 
+     *				that has been drawn on in the kth layer from the bottom, k > 0, where [pixels] is the string 
+     *				representation of the pixels of that layer of the tile that have been drawn on.  It then returns
+     *				"layers [whiteboard] [names]", where [names] is the names of the layers from the bottom up, each 
+     *				separated by a space.
+     *				Once a whiteboard has more than one layer, every message about its pixels that is sent to clients 
+     *				is about one layer.  A message about the kth layer, k > 0, is prefixed with "layer [k] "; the
+     *				"redraw" messages of the viewport, undo, redo and erase commands are followed by one such 
+     *				"redraw" message for each layer other than the base layer that has been drawn on in the tile.
+     *		(18) layer [username] [whiteboard] [name] -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server, [username] must be a
+     *				username of the client, as for the undo command, and [name] cannot contain any spaces.
+     *				This method makes the layer whose name is [name] the one that the draw, line, rect, ellipse and 
+     *				fill commands of the client whose username is [username] draw on and that its erase command erases
+     *				from, and returns an empty string.  If the whiteboard has no layer named [name], it is added on 
+     *				top of every other layer and every client connected to the whiteboard is sent 
+     *				"layers [whiteboard] [names]" as for the layers command.  A client draws on the base layer until
+     *				it chooses another one.
+     *		(19) blit [whiteboard] [sx] [sy] [width] [height] [dx] [dy] or 
+     *		     blit [whiteboard] [sx] [sy] [width] [height] [dx] [dy] move -
+     *				[whiteboard] must be the name of a whiteboard that is saved on the server, the [width] x [height]
+     *				rectangle whose top left hand corner is ([sx], [sy]) must lie inside it, and ([dx], [dy]) may be 
+     *				off the whiteboard by no more than its width and height.
+     *				This method copies the pixels of the rectangle on the layer that the client draws on so that its 
+     *				top left hand corner is at ([dx], [dy]), and returns an empty string.  With "move", the pixels of
+     *				the rectangle that the copy does not cover are emptied.  Every client connected to the whiteboard 
+     *				that can see the whole rectangle is sent the request itself without the whiteboard name, i.e.
+     *				"blit [sx] [sy] [width] [height] [dx] [dy]" or "blit [sx] [sy] [width] [height] [dx] [dy] move",
+     *				and copies the pixels itself.  Every other client that can see part of what changed is sent the
+     *				"redraw" messages of the tiles that changed, as for the undo command.  The copy is recorded as a
+     *				stroke of the client, so it can be undone.
+     *		(20) ping -
+     *				This method returns "pong".  A client may send it to learn whether the server is still there.
+     *		(21) pong -
+     *				The client's answer to a "ping" that the server sent it.  This method returns nothing at all, 
+     *				not even an empty line.
+     *		(22) session [username] -
+     *				[username] must represent the client that is connecting through the currently handled port.
+     *				This method returns "session [token] [sequence]", where [token] is a secret by which the client
+     *				can resume its session and [sequence] is the sequence number of the last message of the session
+     *				so far, which is 0 unless the client had asked for a session before, in which case [token] is 
+     *				the same as before.  From then on, every message that is sent to the client other than a reply 
+     *				is sent as "@[sequence] [message]", where [sequence] is one more than that of the message before.
+     *				If its connection is lost, the client stays logged in with its whiteboards open until the idle 
+     *				timeout has passed, and the messages of its session that are sent in the meantime are kept for
+     *				it, the last 4 MB of them at most.
+     *				Otherwise, this method returns "usernameerror You do not have that username."
+     *		(23) resume [token] [sequence] -
+     *				[token] must be the token of a session and [sequence] the sequence number of the last message of
+     *				the session that the client received.  This method makes the currently handled connection that of
+     *				the session, closing the one that it had if the server had not noticed that it was lost yet,
+     *				sends the client every message of the session after [sequence] again, in order, and then returns
+     *				"resumed [username] [sequence]", where [username] is the username of the session and 
+     *				[sequence] the sequence number of its last message.
+     *				If there is no session whose token is [token], or some of the messages after [sequence] are no 
+     *				longer kept, this method returns "resumeerror That session can no longer be resumed." and the
+     *				client of the session, if there is one, is logged out, so that it can choose its username again.
+     * 
+     * Every line that a client sends, of any of the forms above, shows that it is still there.  The server sends
+     * "ping" to a connection that has been silent for a while (15 seconds unless the server was made with another
+     * heartbeat interval), which the client must answer with "pong".  A connection that has been silent for longer
+     * than the idle timeout (45 seconds unless the server was made with another), that has not read a line sent to
+     * it for as long, or that can no longer be written to, is closed, and its client is logged out as if it had sent "logout [username]" for every username it has.
+     * 
+     * A client may have any number of whiteboards open at once over its one connection.  Every message about a 
+     * whiteboard that is sent to clients other than as a reply, i.e. the "alsoediting", "drawLine", "redraw", 
+     * "fillSpans", "blit", "reset" and "layers" messages and the messages prefixed with "layer [k] ", is prefixed
+     * with "board [name] ", where [name] is the name of the whiteboard, as in "board [name] layer [k] drawLine [line]".
+     * So is the reply to the getUsersOnWhiteboard command; the other replies that are about a whiteboard already
+     * name it.
+     * 
+     * Any of the requests above may be prefixed with a request ID, as in "#[id] [request]", where [id] is a string of
+     * at most 18 digits chosen by the client.  The reply is then "#[id] [reply]", where [reply] is what this method
+     * would have returned for [request] on its own and may be empty; a logout request still gets no reply.  Messages
+     * that are sent to clients other than as replies never start with "#", so a client can have many requests in 
+     * flight and tell which reply belongs to which of them.
      * 
      * If the client input is not valid, then this method returns an output message of the form "Invalid input."
      * 
@@ -271,8 +718,20 @@ public class WhiteboardServer {
      * @return message to client
      */
     protected String handleRequest(final String input, final Socket socket) {
-        String regex = "(create -?.+)|(open -?.+ -?.+)|(draw -?.+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+)|"
-                + "(username -?.+)|(logout -?.+)|(close -?.+ -?.+)|(list)|(getUsersOnWhiteboard -?.+)|(reset -?.+)";
+    	if (input.matches("#\\d{1,18} .+")) {
+    		int space = input.indexOf(' ');
+    		String reply = handleRequest(input.substring(space + 1), socket);
+    		return (reply == LOGOUT_REQUEST || reply == NO_REPLY) ? reply : input.substring(0, space) + " " + reply;
+    	}
+    	
+        String regex = "(create -?.+)|(open -?.+ -?.+)|(draw -?.+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+( \\d+)?)|"
+                + "(username -?.+)|(logout -?.+)|(close -?.+ -?.+)|(list)|(list \\d{1,9} \\d{1,9}( [^ ]+)?)|(getUsersOnWhiteboard -?.+)|(reset -?.+)|"
+                + "(viewport -?.+ -?.+ -?\\d+ -?\\d+ \\d+ \\d+)|(undo -?.+ -?.+)|(redo -?.+ -?.+)|"
+                + "(erase -?.+ -?.+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ -?\\d+)|(fill -?.+ -?\\d+ -?\\d+ \\d+ \\d+ \\d+)|"
+                + "(line -?.+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ \\d+ \\d+ \\d+ \\d+)|"
+                + "((rect|ellipse) -?.+ -?\\d+ -?\\d+ -?\\d+ -?\\d+ \\d+ \\d+ \\d+ \\d+ (outline|filled))|"
+                + "(layers -?.+ -?.+)|(layer -?.+ -?.+ -?.+)|(blit -?.+ \\d+ \\d+ \\d+ \\d+ -?\\d+ -?\\d+( move)?)|(ping)|(pong)|"
+                + "(session -?.+)|(resume [^ ]+ \\d{1,18})";
         
         if ( ! input.matches(regex)) {
             return INVALID_INPUT_ERROR;
@@ -294,17 +753,56 @@ public class WhiteboardServer {
         	return closeWhiteboard(tokens);
         }
         else if (tokens[0].equals("draw")) {
-        	return drawWhiteboard(tokens);
+        	return drawWhiteboard(tokens, socket);
         }
-        else if(tokens[0].equals("list")) {
+        else if(tokens[0].equals("list") && tokens.length == 1) {
         	return "allwhiteboards " + getAllWhiteboards();
         }
+        else if(tokens[0].equals("list")) {
+        	return listWhiteboards(tokens);
+        }
         else if(tokens[0].equals("getUsersOnWhiteboard")) {
         	return getUsernamesOnWhiteboard(tokens);
         }
         else if(tokens[0].equals("reset")) {
         	return resetWhiteboard(tokens);
         }
+        else if(tokens[0].equals("viewport")) {
+        	return setViewport(tokens, socket);
+        }
+        else if(tokens[0].equals("undo") || tokens[0].equals("redo")) {
+        	return undoOrRedo(tokens, socket);
+        }
+        else if(tokens[0].equals("erase")) {
+        	return eraseWhiteboard(tokens, socket);
+        }
+        else if(tokens[0].equals("fill")) {
+        	return fillWhiteboard(tokens, socket);
+        }
+        else if(tokens[0].equals("line") || tokens[0].equals("rect") || tokens[0].equals("ellipse")) {
+        	return drawShape(tokens, socket);
+        }
+        else if(tokens[0].equals("layers")) {
+        	return getLayers(tokens, socket);
+        }
+        else if(tokens[0].equals("layer")) {
+        	return selectLayer(tokens, socket);
+        }
+        else if(tokens[0].equals("blit")) {
+        	return blitWhiteboard(tokens, socket);
+        }
+        else if(tokens[0].equals("ping")) {
+        	return "pong";
+        }
+        else if(tokens[0].equals("pong")) {
+        	return NO_REPLY;
+        }
+        else if(tokens[0].equals("session")) {
+        	return startSession(tokens, socket);
+        }
+        else if(tokens[0].equals("resume")) {
+        	return resumeSession(tokens, socket);
+        }
         // Should never get here--make sure to return in each of the valid cases above.
         throw new UnsupportedOperationException();
     }
@@ -317,35 +815,107 @@ public class WhiteboardServer {
      * 		       server
      * @param message the message to be sent to all of the clients of this WhiteboardServer that have the whiteboard named
      * 				  [name] open
-     * @modifies sends the message to all of the clients of this WhiteboardServer that have the whiteboard named
-     * 			 [name] open
+     * @modifies sends the message, prefixed with "board [name] ", to all of the clients of this WhiteboardServer 
+     * 			 that have the whiteboard named [name] open
      */
     public synchronized void sendMessageToSomeClients (final String name, final String message) {
-    	// Get the usernames of all of the clients with that whiteboard open
-    	int index = names.indexOf(name);
+    	Whiteboard whiteboard = whiteboardsByName.get(name);
     	
     	// If some clients have the specified board open,...
-    	if(index != -1) {
-    		Whiteboard whiteboard = whiteboards.get(index);
-        	String[] usernames = whiteboard.getUsernames().split(" ");
-        	
-        	// Send the message to each client in usernames
-        	for (int i = 0; i < usernames.length; i++) {
-        		Socket socket = clients.get(usernames[i]);
-        		if (socket != null) {
-        			try {
-        				PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-        				out.println(message);
-        			} 
-                	catch (IOException e) {
-        				e.printStackTrace();
-        			}
-        		}
+    	if(whiteboard != null) {
+        	// Send the message to each client with that whiteboard open
+        	for (String username : whiteboard.getUsernameList()) {
+        		sendMessageToClient(username, onWhiteboard(name, message));
         	}
     	}
     	
     }
     
+    /**
+     * Sends out a message to all of the clients of this WhiteboardServer that have the whiteboard named [name]
+     * open and can see a specified region of it.
+     * 
+     * @param name the name of the whiteboard.  There must be a whiteboard named [name] saved on the 
+     * 		       server
+     * @param message the message to be sent to the clients
+     * @param region the region of the whiteboard that the message is about
+     * @modifies sends the message, prefixed with "board [name] ", to all of the clients of this WhiteboardServer 
+     * 			 that have the whiteboard named [name] open and either have not declared a viewport or whose viewport
+     * 			 intersects region
+     */
+    public synchronized void sendMessageToSomeClients (final String name, final String message, final Region region) {
+    	Whiteboard whiteboard = whiteboardsByName.get(name);
+    	
+    	if(whiteboard != null) {
+    		for (String username : whiteboard.getUsernamesViewing(region)) {
+    			sendMessageToClient(username, onWhiteboard(name, message));
+    		}
+    	}
+    }
+    
+    /**
+     * Sends out a message to one client of this WhiteboardServer.
+     * 
+     * @param username the username of the client
+     * @param message the message to be sent to the client
+     * @modifies sends the message to the client whose username is username, if it is connected to
+     * 			 this WhiteboardServer
+     */
+    private synchronized void sendMessageToClient (final String username, final String message) {
+    	Socket socket = clients.get(username);
+    	Session session = sessionsByUsername.get(username);
+    	String line = (session == null) ? message : session.sequence(message);
+    	if (socket != null) {
+    		writeLine(socket, line);
+    	}
+    }
+    
+    /**
+     * Sends a line to the client connected through a socket, after every line that has been queued for it so far.
+     * Never waits for the client.
+     * 
+     * @param socket a socket via which a client is connected to the server
+     * @param message the line to send
+     * @modifies queues message on the writer of socket, unless the connection of socket is no longer being handled
+     */
+    private synchronized void writeLine (final Socket socket, final String message) {
+    	ConnectionWriter out = writers.get(socket);
+    	if (out != null) {
+    		out.send(message);
+    	}
+    }
+    
+    /**
+     * Returns the username of the client that is connected through a socket.
+     * 
+     * @param socket a socket via which a client may be connected to the server
+     * @return the username of the client that is connected through socket, or Whiteboard.NO_AUTHOR if 
+     * 		   no client with a username is connected through it
+     */
+    private synchronized String getUsername (final Socket socket) {
+    	if (socket != null) {
+    		for (Map.Entry<String, Socket> client : clients.entrySet()) {
+    			if (client.getValue() == socket) {
+    				return client.getKey();
+    			}
+    		}
+    	}
+    	
+    	return Whiteboard.NO_AUTHOR;
+    }
+    
+    /**
+     * Indicates whether a username that a request names belongs to the client that made the request, so that
+     * no client can act in the name of another.
+     * 
+     * @param username the username that the request names
+     * @param socket the socket via which the client that made the request is connected to the server
+     * @return true if username is one of the usernames of the client connected through socket
+     */
+    private synchronized boolean isRequester (final String username, final Socket socket) {
+    	return clients.get(username) == socket;
+    }
+    
     /**
      * Sends out a message to all of the clients of this WhiteboardServer.
      * 
@@ -356,14 +926,7 @@ public class WhiteboardServer {
     	Set<String> usernames = clients.keySet();
     	
     	for (String username: usernames) {
-    		Socket socket = clients.get(username);
-        	try {
-				PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-				out.println(message);
-			} 
-        	catch (IOException e) {
-				e.printStackTrace();
-			}
+    		sendMessageToClient(username, message);
     	}
     }
     
@@ -374,33 +937,69 @@ public class WhiteboardServer {
      * @param tokens cannot contain any empty strings, must be of length 2 or more and must have
      * 				 the following form:
      * 					create [name 1] [name 2] [name 3] .... [name n]
-     * 				 where [name 1] [name 2] [name 2] [name 3] .... [name n] is the requested whiteboard name
+     * 				 where [name 1] [name 2] [name 2] [name 3] .... [name n] is the requested whiteboard name,
+     * 				 or the following form:
+     * 					create [name] [width] [height]
+     * 				 where [width] and [height] are strings of digits
      * @return message to client
      */
     private synchronized String createWhiteboard(final String [] tokens) {
-		// If a whiteboard with the specified name has already been added.
-		if (tokens.length != 2) {
+		int width = WIDTH_OF_WHITEBOARDS, height = HEIGHT_OF_WHITEBOARDS;
+		
+		// The requested dimensions of the whiteboard follow its name.
+		if (tokens.length == 4 && tokens[2].matches("\\d+") && tokens[3].matches("\\d+")) {
+			width = parseDimension(tokens[2]);
+			height = parseDimension(tokens[3]);
+		
+			if (width == -1 || height == -1) {
+				return INVALID_DIMENSIONS;
+			}
+		}
+		
+		// Otherwise, the name of the whiteboard cannot contain any spaces.
+		else if (tokens.length != 2) {
 			return NO_SPACES_IN_WHITEBOARD;
 		}
 		
+		String name = tokens[1];
+		
+		if (whiteboardsByName.containsKey(name)) {
+			return WHITEBOARD_ALREADY_CREATED;
+		}
 		else {
-			String name = tokens[1];
-			
-			if (names.indexOf(name) != -1) {
-				return WHITEBOARD_ALREADY_CREATED;
-			}
-			else {
-				Whiteboard whiteboard = new Whiteboard(name, WIDTH_OF_WHITEBOARDS, HEIGHT_OF_WHITEBOARDS);
-				whiteboards.add(whiteboard);
-	    		names.add(whiteboard.getName());
-	    		
-	    		// Notify all clients of this new whiteboard.
-	    		sendMessageToAllClients("allwhiteboards " + getAllWhiteboards());
-	    		
-	    		return "whiteboardcreated " + name;
-	    	}
+			Whiteboard whiteboard = new Whiteboard(name, width, height);
+			whiteboards.add(whiteboard);
+			names.add(whiteboard.getName());
+			whiteboardsByName.put(name, whiteboard);
+			sortedNames.add(-Collections.binarySearch(sortedNames, name) - 1, name);
+		
+			// Notify all clients of this new whiteboard, without sending them the names that they already have.
+			sendMessageToAllClients("boardCreated " + name);
+		
+			return "whiteboardcreated " + name;
 		}
     }
+		
+    /**
+     * Parses a requested width or height of a whiteboard.
+     * 
+     * @param dimension a string of digits
+     * @return the dimension represented by dimension if it is between 1 and MAX_DIMENSION_OF_WHITEBOARDS, 
+     * 		   -1 otherwise
+     */
+    private static int parseDimension(final String dimension) {
+    	// Anything longer than the maximum dimension is too large, and may not even fit in an int.
+    	if (dimension.length() > String.valueOf(MAX_DIMENSION_OF_WHITEBOARDS).length()) {
+    		return -1;
+    	}
+    	
+    	int value = Integer.parseInt(dimension);
+    	if (value < 1 || value > MAX_DIMENSION_OF_WHITEBOARDS) {
+    		return -1;
+    	}
+    	
+    	return value;
+    }
     
     /**
      * Returns a string containing the names of all of the whiteboards saved on the server, each one separated
@@ -425,6 +1024,48 @@ public class WhiteboardServer {
     	return allWhiteboards;
     }
     
+    /**
+     * Returns one page of the names of the whiteboards saved on the server that start with a prefix, according
+     * to the specification of the 'list [offset] [limit] [prefix]' command in the handleRequest method's 
+     * specifications.
+     * 
+     * @param tokens must have the form list [offset] [limit] or list [offset] [limit] [prefix], where [offset]
+     * 				 and [limit] are strings of at most 9 digits
+     * @return message to client
+     */
+    private synchronized String listWhiteboards(final String[] tokens) {
+    	int offset = Integer.parseInt(tokens[1]);
+    	int limit = Integer.parseInt(tokens[2]);
+    	if (limit > MAX_WHITEBOARDS_PER_PAGE) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	String prefix = (tokens.length == 4) ? tokens[3] : "";
+    	
+    	// The names that start with prefix are the ones from the first name that is not less than prefix 
+    	// up to the first name after it that does not start with prefix.
+    	int first = Collections.binarySearch(sortedNames, prefix);
+    	if (first < 0) {
+    		first = -first - 1;
+    	}
+    	int low = first, high = sortedNames.size();
+    	while (low < high) {
+    		int middle = (low + high) >>> 1;
+    		if (sortedNames.get(middle).startsWith(prefix)) {
+    			low = middle + 1;
+    		}
+    		else {
+    			high = middle;
+    		}
+    	}
+    	int total = low - first;
+    	
+    	StringBuilder message = new StringBuilder("whiteboards " + total + " " + offset + " ");
+    	for (int i = first + offset; i < first + Math.min(total, offset + limit); i++) {
+    		message.append(sortedNames.get(i)).append(' ');
+    	}
+    	return message.toString();
+    }
+    
     /**
      * Attempts to open a whiteboard with the specified name, according to the specification of the 
      * 'open [username] [name]' command in the handleRequest method's specifications.
@@ -439,8 +1080,15 @@ public class WhiteboardServer {
      * @return message to client
      */
     protected synchronized String openWhiteboard(final String[] tokens, final boolean notDebug) {
+    	Region viewport = null;
+    	
+    	// The viewport of the client follows the name of the whiteboard.
+    	if (tokens.length == 7) {
+    		viewport = parseRegion(tokens, 3);
+    	}
+    	
     	// The user has entered a whiteboard with a space, which isn't valid.
-    	if (tokens.length != 3) {
+    	if (tokens.length != 3 && viewport == null) {
     		return NOT_CREATED_ERROR;
     	}
     	
@@ -448,22 +1096,544 @@ public class WhiteboardServer {
     		String username = tokens[1];
     		String whiteboardName = tokens[2];
     		
-    		int index = names.indexOf(whiteboardName);
+    		Whiteboard whiteboard = whiteboardsByName.get(whiteboardName);
     		
-    		if (index == -1) {
+    		if (whiteboard == null) {
     			return NOT_CREATED_ERROR;
     		}
     		else {
-    			Whiteboard whiteboard = whiteboards.get(index);
-    			
     			if (notDebug) {
     				String alsoEditing = whiteboard.addUsername(username);
+    				if (!openWhiteboards.containsKey(username)) {
+    					openWhiteboards.put(username, new HashSet<String>());
+    				}
+    				openWhiteboards.get(username).add(whiteboardName);
+    				
+    				// The client has only seen the preview, so every tile it can see is streamed to it
+    				// once it declares its viewport.
+    				if (viewport != null) {
+    					whiteboard.setViewport(username, new Region(0, 0, 0, 0));
+    				}
     				sendMessageToSomeClients(whiteboard.getName(), "alsoediting " + alsoEditing);
     			}
     			
-    			return "open " + whiteboardName + " " + whiteboard.toString();
+    			if (viewport != null) {
+    				return "openpreview " + whiteboardName + " " + whiteboard.getWidth() + " " + whiteboard.getHeight() + " " 
+    					   + whiteboard.toPreviewString(whiteboard.alignToTiles(viewport), MAX_PIXELS_IN_PREVIEW);
+    			}
+    			
+    			// The other layers are sent when the client asks for them.
+    			return "open " + whiteboardName + " " + whiteboard.getWidth() + " " + whiteboard.getHeight() + " " 
+    				   + whiteboard.toLayerStrings(new Region(0, 0, whiteboard.getWidth(), whiteboard.getHeight()))[0];
+    		}
+    	}
+    }
+    
+    /**
+     * Parses a region of a whiteboard from a request.
+     * 
+     * @param tokens the tokens of the request
+     * @param start the index of the first of four consecutive tokens of the form [x] [y] [width] [height]
+     * @return the region whose top left hand corner is ([x], [y]) and whose size is [width] x [height] if
+     * 		   all four tokens are integers and [width] and [height] are nonnegative, null otherwise
+     */
+    private static Region parseRegion(final String[] tokens, final int start) {
+    	for (int i = start; i < start + 4; i++) {
+    		if (!tokens[i].matches("-?\\d{1,9}")) {
+    			return null;
+    		}
+    	}
+    	
+    	int x = Integer.parseInt(tokens[start]), y = Integer.parseInt(tokens[start + 1]);
+    	int width = Integer.parseInt(tokens[start + 2]), height = Integer.parseInt(tokens[start + 3]);
+    	if (width < 0 || height < 0) {
+    		return null;
+    	}
+    	
+    	return new Region(x, y, width, height);
+    }
+    
+    /**
+     * Changes the region of a whiteboard that a client can see, according to the specifications of
+     * the 'viewport' command in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 7 and must have
+     * 				 the following form:
+     * 				 viewport [username] [name] [x] [y] [width] [height]
+     * 					where [username] is the username of the client that is making this request
+     * 					where [name] is the name of a whiteboard on the server that the client has open
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client, NOT_YOUR_USERNAME if [username] is not a username of that client
+     */
+    private String setViewport (final String[] tokens, final Socket socket) {
+    	String username = tokens[1];
+    	String whiteboardName = tokens[2];
+    	Region viewport = parseRegion(tokens, 3);
+    	Whiteboard whiteboard;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null || viewport == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    	}
+    	
+    	if (!isRequester(username, socket)) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	// Stream the tiles that have just come into view.  Each snapshot is sent before the lock is released, so
+    	// no message about a later change to the whiteboard can reach the client ahead of it.
+    	synchronized (this) {
+    		for (Region tile : whiteboard.setViewport(username, viewport)) {
+    			for (String message : redrawMessages(whiteboard, tile, 0)) {
+    				sendMessageToClient(username, onWhiteboard(whiteboardName, message));
+    			}
+    		}
+    	}
+    	
+    	return "";
+    }
+    
+    /**
+     * Undoes or redoes a stroke of a client, according to the specifications of the 'undo' and 'redo'
+     * commands in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 3 and must have
+     * 				 the following form:
+     * 				 undo [username] [name] or redo [username] [name]
+     * 					where [username] is the username of the client that is making this request
+     * 					where [name] is the name of a whiteboard on the server
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client, NOT_YOUR_USERNAME if [username] is not a username of that client
+     */
+    private String undoOrRedo (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 3) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String username = tokens[1];
+    	String whiteboardName = tokens[2];
+    	Whiteboard whiteboard;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
     		}
     	}
+    	
+    	if (!isRequester(username, socket)) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	ArrayList<Region> redrawn = tokens[0].equals("undo") ? whiteboard.undo(username) : whiteboard.redo(username);
+    	sendRedrawnTiles(whiteboardName, whiteboard, redrawn);
+    	return "";
+    }
+    
+    /**
+     * Erases the strokes of a whiteboard that a client's eraser touches, according to the specifications 
+     * of the 'erase' command in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 8 and must have
+     * 				 the following form:
+     * 				 erase [username] [name] [x1] [y1] [x2] [y2] [thickness]
+     * 					where [username] is the username of the client that is making this request
+     * 					where [name] is the name of a whiteboard on the server
+     * 					where ([x1], [y1]) and ([x2], [y2]) are the end points of the path of the eraser
+     * 					where [thickness] is the thickness of the eraser
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client, NOT_YOUR_USERNAME if [username] is not a username of that client
+     */
+    private String eraseWhiteboard (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 8) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String username = tokens[1];
+    	String whiteboardName = tokens[2];
+    	Whiteboard whiteboard;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    	}
+    	
+    	if (!isRequester(username, socket)) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	// An eraser wider than the whiteboard could only cost the server time and memory.
+    	int thickness = Integer.parseInt(tokens[7]);
+    	if (thickness > Math.max(whiteboard.getWidth(), whiteboard.getHeight())) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	ArrayList<Region> redrawn = whiteboard.erase(username, Integer.parseInt(tokens[3]), Integer.parseInt(tokens[4]), 
+    												 Integer.parseInt(tokens[5]), Integer.parseInt(tokens[6]), thickness);
+    	sendRedrawnTiles(whiteboardName, whiteboard, redrawn);
+    	return "";
+    }
+    
+    /**
+     * Fills an area of a whiteboard, according to the specifications of the 'fill' command in the 
+     * handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 7 and must have
+     * 				 the following form:
+     * 				 fill [name] [x] [y] [red] [green] [blue]
+     * 					where [name] is the name of a whiteboard on the server
+     * 					where ([x], [y]) is the pixel that was clicked
+     * 					where [red], [green] and [blue] are the components of the color of the fill
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client
+     */
+    private String fillWhiteboard (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 7) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String whiteboardName = tokens[1];
+    	Whiteboard whiteboard;
+    	String author;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    		author = getUsername(socket);
+    	}
+    	
+    	int x = Integer.parseInt(tokens[2]), y = Integer.parseInt(tokens[3]);
+    	int red = Integer.parseInt(tokens[4]), green = Integer.parseInt(tokens[5]), blue = Integer.parseInt(tokens[6]);
+    	if (x < 0 || x >= whiteboard.getWidth() || y < 0 || y >= whiteboard.getHeight() || red > 255 || green > 255 || blue > 255) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String filled = whiteboard.fill(author, (red << 16) | (green << 8) | blue, x, y);
+    	int layer = whiteboard.getLayer(author);
+    	
+    	// Only the clients that can see part of the filled area need to hear about it.
+    	if (!filled.isEmpty()) {
+    		String[] box = filled.split(" ", 5);
+    		Region region = new Region(Integer.parseInt(box[0]), Integer.parseInt(box[1]), 
+    								   Integer.parseInt(box[2]), Integer.parseInt(box[3]));
+    		sendMessageToSomeClients(whiteboardName, onLayer(layer, "fillSpans " + red + " " + green + " " + blue + " " + filled), 
+    								 region);
+    	}
+    	
+    	return "";
+    }
+    
+    /**
+     * Draws a shape on a whiteboard, according to the specifications of the 'line', 'rect' and 'ellipse' 
+     * commands in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings and must have one of the following forms:
+     * 				 line [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness]
+     * 				 rect [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [outline|filled]
+     * 				 ellipse [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [outline|filled]
+     * 					where [name] is the name of a whiteboard on the server
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client
+     */
+    private String drawShape (final String[] tokens, final Socket socket) {
+    	boolean isLine = tokens[0].equals("line");
+    	if (tokens.length != (isLine ? 10 : 11)) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String whiteboardName = tokens[1];
+    	Whiteboard whiteboard;
+    	String author;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    		author = getUsername(socket);
+    	}
+    	
+    	int x1 = Integer.parseInt(tokens[2]), y1 = Integer.parseInt(tokens[3]);
+    	int x2 = Integer.parseInt(tokens[4]), y2 = Integer.parseInt(tokens[5]);
+    	int red = Integer.parseInt(tokens[6]), green = Integer.parseInt(tokens[7]), blue = Integer.parseInt(tokens[8]);
+    	int thickness = Integer.parseInt(tokens[9]);
+    	if (red > 255 || green > 255 || blue > 255) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	int rgb = (red << 16) | (green << 8) | blue;
+    	int layer = whiteboard.getLayer(author);
+    	
+    	if (isLine) {
+    		if (Math.min(x1, x2) < 0 || Math.max(x1, x2) >= whiteboard.getWidth() 
+    				|| Math.min(y1, y2) < 0 || Math.max(y1, y2) >= whiteboard.getHeight()
+    				|| thickness > Math.max(whiteboard.getWidth(), whiteboard.getHeight())) {
+    			return INVALID_INPUT_ERROR;
+    		}
+    		
+    		String line = whiteboard.addStraightLine(author, rgb, AlphaBlend.OPAQUE, x1, y1, x2, y2, thickness);
+    		if (!line.isEmpty()) {
+    			sendMessageToSomeClients(whiteboardName, onLayer(layer, "drawLine " + line), 
+    									 Region.aroundLine(x1, y1, x2, y2, thickness));
+    		}
+    		return "";
+    	}
+    	
+    	// Shapes are clipped to the whiteboard, but their rows are found before they are clipped.
+    	int width = whiteboard.getWidth(), height = whiteboard.getHeight();
+    	if (Math.min(x1, x2) < -width || Math.max(x1, x2) >= 2 * width || Math.min(y1, y2) < -height 
+    			|| Math.max(y1, y2) >= 2 * height || thickness > Math.max(width, height)) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	boolean filled = tokens[10].equals("filled");
+    	String covered = tokens[0].equals("rect") ? whiteboard.addRectangle(author, rgb, x1, y1, x2, y2, thickness, filled)
+    											 : whiteboard.addEllipse(author, rgb, x1, y1, x2, y2, thickness, filled);
+    	
+    	// One message carries the whole shape, to the clients that can see part of it.
+    	if (!covered.isEmpty()) {
+    		String[] box = covered.split(" ", 5);
+    		Region region = new Region(Integer.parseInt(box[0]), Integer.parseInt(box[1]), 
+    								   Integer.parseInt(box[2]), Integer.parseInt(box[3]));
+    		sendMessageToSomeClients(whiteboardName, onLayer(layer, "fillSpans " + red + " " + green + " " + blue + " " + covered), 
+    								 region);
+    	}
+    	
+    	return "";
+    }
+    
+    /**
+     * Copies or moves a rectangle of pixels of a whiteboard, according to the specifications of the 'blit'
+     * command in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings and must have one of the following forms:
+     * 				 blit [name] [sx] [sy] [width] [height] [dx] [dy]
+     * 				 blit [name] [sx] [sy] [width] [height] [dx] [dy] move
+     * 					where [name] is the name of a whiteboard on the server
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client
+     */
+    private String blitWhiteboard (final String[] tokens, final Socket socket) {
+    	boolean move = tokens.length == 9;
+    	if (tokens.length != 8 && !move) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String whiteboardName = tokens[1];
+    	Whiteboard whiteboard;
+    	String author;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    		author = getUsername(socket);
+    	}
+    	
+    	for (int i = 2; i < 8; i++) {
+    		if (!tokens[i].matches("-?\\d{1,9}")) {
+    			return INVALID_INPUT_ERROR;
+    		}
+    	}
+    	int sx = Integer.parseInt(tokens[2]), sy = Integer.parseInt(tokens[3]);
+    	int w = Integer.parseInt(tokens[4]), h = Integer.parseInt(tokens[5]);
+    	int dx = Integer.parseInt(tokens[6]), dy = Integer.parseInt(tokens[7]);
+    	int width = whiteboard.getWidth(), height = whiteboard.getHeight();
+    	if (w == 0 || h == 0 || sx + w > width || sy + h > height || dx < -width || dx > width || dy < -height || dy > height) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	Region changed = whiteboard.blit(author, sx, sy, w, h, dx, dy, move);
+    	if (changed == null) {
+    		return "";
+    	}
+    	int layer = whiteboard.getLayer(author);
+    	
+    	// The clients that have every pixel of the rectangle copy it themselves, so the pixels are not sent.
+    	Region source = new Region(sx, sy, w, h);
+    	String message = onLayer(layer, "blit " + sx + " " + sy + " " + w + " " + h + " " + dx + " " + dy + (move ? " move" : ""));
+    	synchronized (this) {
+    		ArrayList<String> copying = whiteboard.getUsernamesViewingAll(source);
+    		for (String username : copying) {
+    			sendMessageToClient(username, onWhiteboard(whiteboardName, message));
+    		}
+    		
+    		// Every other client that can see part of the change is sent the tiles that changed, each snapshot
+    		// before the lock is released, as for the viewport command.
+    		for (Region tile : whiteboard.getTiles(changed)) {
+    			ArrayList<String> messages = null;
+    			for (String username : whiteboard.getUsernamesViewing(tile)) {
+    				if (copying.contains(username)) {
+    					continue;
+    				}
+    				if (messages == null) {
+    					messages = redrawMessages(whiteboard, tile, 0);
+    				}
+    				for (String redraw : messages) {
+    					sendMessageToClient(username, onWhiteboard(whiteboardName, redraw));
+    				}
+    			}
+    		}
+    	}
+    	
+    	return "";
+    }
+    
+    /**
+     * Sends the tiles of a whiteboard that have been redrawn to the clients that can see them.
+     * 
+     * @param name the name of the whiteboard
+     * @param whiteboard the whiteboard whose name is name
+     * @param redrawn the regions covered by the tiles of the whiteboard that were redrawn
+     * @modifies sends "redraw [x] [y] [width] [height] [pixels]" for each tile, followed by the "redraw" messages
+     * 			 of its other layers, to every client that has the whiteboard open and can see the tile.  Each
+     * 			 tile is read and sent while holding the lock on this server, so no message about a later change
+     * 			 to the whiteboard can reach a client ahead of it.
+     */
+    private synchronized void sendRedrawnTiles(final String name, final Whiteboard whiteboard, final ArrayList<Region> redrawn) {
+    	// Only the tiles that the strokes covered have changed.
+    	for (Region tile : redrawn) {
+    		for (String message : redrawMessages(whiteboard, tile, 0)) {
+    			sendMessageToSomeClients(name, message, tile);
+    		}
+    	}
+    }
+    
+    /**
+     * Returns the messages that redraw the layers of a tile of a whiteboard.
+     * 
+     * @param whiteboard a whiteboard
+     * @param tile the region covered by a tile of the whiteboard
+     * @param firstLayer the index of the lowest layer to redraw
+     * @return the message "redraw [x] [y] [width] [height] [pixels]" for each layer of the whiteboard from
+     * 		   firstLayer up that has been drawn on in the tile, prefixed as onLayer() prefixes it, where [pixels]
+     * 		   is the string representation of the pixels of that layer of the tile.  The base layer is always 
+     * 		   redrawn if firstLayer is 0.
+     */
+    private static ArrayList<String> redrawMessages(final Whiteboard whiteboard, final Region tile, final int firstLayer) {
+    	ArrayList<String> messages = new ArrayList<String>();
+    	String[] layers = whiteboard.toLayerStrings(tile);
+    	for (int layer = firstLayer; layer < layers.length; layer++) {
+    		if (layers[layer] != null) {
+    			messages.add(onLayer(layer, "redraw " + tile + " " + layers[layer]));
+    		}
+    	}
+    	return messages;
+    }
+    
+    /**
+     * Addresses a message about the pixels of a whiteboard to one of its layers.
+     * 
+     * @param layer the index of the layer from the bottom
+     * @param message a message about pixels of the layer
+     * @return message if layer is the base layer, and "layer [layer] [message]" otherwise
+     */
+    private static String onLayer(final int layer, final String message) {
+    	return (layer == 0) ? message : "layer " + layer + " " + message;
+    }
+    
+    /**
+     * Addresses a message to the clients that have a whiteboard open, so that a client with several whiteboards
+     * open can tell which of them it is about.
+     * 
+     * @param name the name of the whiteboard
+     * @param message a message about the whiteboard
+     * @return "board [name] [message]"
+     */
+    private static String onWhiteboard(final String name, final String message) {
+    	return "board " + name + " " + message;
+    }
+    
+    /**
+     * Sends a client the layers of a whiteboard above the base layer, according to the specifications of 
+     * the 'layers' command in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 3 and must have
+     * 				 the following form:
+     * 				 layers [username] [name]
+     * 					where [username] is the username of the client that is making this request
+     * 					where [name] is the name of a whiteboard on the server that the client has open
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client, NOT_YOUR_USERNAME if [username] is not a username of that client
+     */
+    private String getLayers (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 3) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String username = tokens[1];
+    	String whiteboardName = tokens[2];
+    	Whiteboard whiteboard;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    	}
+    	
+    	if (!isRequester(username, socket)) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	// The client already has the base layer of every tile it can see.  As for the viewport command, each 
+    	// snapshot is sent before the lock is released, so no later change can reach the client ahead of it.
+    	String layerNames;
+    	synchronized (this) {
+    		for (Region tile : whiteboard.getUpperLayerTiles(username)) {
+    			for (String message : redrawMessages(whiteboard, tile, 1)) {
+    				sendMessageToClient(username, onWhiteboard(whiteboardName, message));
+    			}
+    		}
+    		layerNames = whiteboard.getLayerNames().trim();
+    	}
+    	
+    	return "layers " + whiteboardName + " " + layerNames;
+    }
+    
+    /**
+     * Chooses the layer of a whiteboard that a client draws on, according to the specifications of the 
+     * 'layer' command in the handleRequest method's specification.
+     * 
+     * @param tokens cannot contain any empty strings, must be of length exactly 4 and must have
+     * 				 the following form:
+     * 				 layer [username] [name] [layer]
+     * 					where [username] is the username of the client that is making this request
+     * 					where [name] is the name of a whiteboard on the server
+     * 					where [layer] is the name of the layer
+     * @param socket the socket via which the client that made this request is connected to the server
+     * @return message back to the client, NOT_YOUR_USERNAME if [username] is not a username of that client
+     */
+    private String selectLayer (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 4) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String username = tokens[1];
+    	String whiteboardName = tokens[2];
+    	Whiteboard whiteboard;
+    	
+    	synchronized (this) {
+    		whiteboard = whiteboardsByName.get(whiteboardName);
+    		if (whiteboard == null) {
+    			return NOT_CREATED_ERROR;
+    		}
+    	}
+    	
+    	if (!isRequester(username, socket)) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	if (whiteboard.selectLayer(username, tokens[3])) {
+    		sendMessageToSomeClients(whiteboardName, "layers " + whiteboardName + " " + whiteboard.getLayerNames().trim());
+    	}
+    	return "";
     }
     
     /**
@@ -492,7 +1662,8 @@ public class WhiteboardServer {
     			
     			// If you are not just testing this method
     			if (notDebug) {
-    				sendMessageToAllClients("allUsersOnline " + getAllUsernames());
+    				sendMessageToClient(desiredUsername, "allUsersOnline " + getAllUsernames());
+    				changePresence(desiredUsername, true);
     			}
     			
     			return "usernameCreated " + desiredUsername;
@@ -522,17 +1693,22 @@ public class WhiteboardServer {
     	
     	String username = tokens[1];
     	
-    	// First removes the username from this server.
+    	// First removes the username and its session from this server.
     	clients.remove(username);
+    	Session session = sessionsByUsername.remove(username);
+    	if (session != null) {
+    		sessions.remove(session.getToken());
+    	}
     	
     	if (notDebug) {
-    		sendMessageToAllClients("allUsersOnline " + getAllUsernames());
+    		changePresence(username, false);
         	
-        	// Next removes the username from all of the whiteboards that it was connected to.
-        	for (Whiteboard whiteboard: whiteboards) {
-        		if(whiteboard.hasUsername(username)) {
-        			String usersOnWhiteboard = whiteboard.removeUsername(username);
-        			sendMessageToSomeClients(whiteboard.getName(), "usersOnWhiteboard " + usersOnWhiteboard);
+        	// Next removes the username from all of the whiteboards that it was connected to, and only those.
+        	HashSet<String> open = openWhiteboards.remove(username);
+        	if (open != null) {
+        		for (String whiteboardName : open) {
+        			String usersOnWhiteboard = whiteboardsByName.get(whiteboardName).removeUsername(username);
+        			sendMessageToSomeClients(whiteboardName, "alsoediting " + usersOnWhiteboard);
         		}
         	}
         	
@@ -541,6 +1717,72 @@ public class WhiteboardServer {
     	return LOGOUT_REQUEST;
     }
     
+    /**
+     * Gives a client a session that it can resume if its connection is lost, according to the specifications of
+     * the 'session [username]' command in the handleRequest method's specifications.
+     * 
+     * @param tokens cannot contain any empty strings and must have the following form:
+     * 					session [username]
+     * 				 where [username] is the username of the client
+     * @param socket the socket via which the client is connected to the server
+     * @return message back to the client
+     */
+    protected synchronized String startSession (final String[] tokens, final Socket socket) {
+    	if (tokens.length != 2) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	String username = tokens[1];
+    	if (socket == null || clients.get(username) != socket) {
+    		return NOT_YOUR_USERNAME;
+    	}
+    	
+    	Session session = sessionsByUsername.get(username);
+    	if (session == null) {
+    		session = new Session(username, MAX_REPLAY_CHARACTERS);
+    		sessions.put(session.getToken(), session);
+    		sessionsByUsername.put(username, session);
+    	}
+    	
+    	return "session " + session.getToken() + " " + session.getLastSequence();
+    }
+    
+    /**
+     * Resumes a session over the connection of a client, according to the specifications of the 
+     * 'resume [token] [sequence]' command in the handleRequest method's specifications.
+     * 
+     * @param tokens cannot contain any empty strings and must have the following form:
+     * 					resume [token] [sequence]
+     * 				 where [token] is the token of the session and [sequence] is the sequence number of the last
+     * 				 message of the session that the client received
+     * @param socket the socket via which the client is connected to the server
+     * @return message back to the client
+     */
+    protected synchronized String resumeSession (final String[] tokens, final Socket socket) {
+    	Session session = sessions.get(tokens[1]);
+    	ArrayList<String> missed = (session == null) ? null : session.getMessagesAfter(Long.parseLong(tokens[2]));
+    	
+    	if (missed == null) {
+    		// The client cannot catch up, so it is better off logging in again from scratch.
+    		if (session != null) {
+    			logout(new String[] {"logout", session.getUsername()}, true);
+    		}
+    		return RESUME_ERROR;
+    	}
+    	
+    	// The connection that the session had may still look alive to the server, but the client has given up on it.
+    	Socket previous = clients.put(session.getUsername(), socket);
+    	if (previous != null && previous != socket) {
+    		closeQuietly(previous);
+    	}
+    	session.attach();
+    	
+    	for (String message : missed) {
+    		writeLine(socket, message);
+    	}
+    	return "resumed " + session.getUsername() + " " + session.getLastSequence();
+    }
+    
     /**
      * Attempts to disconnect a client from a whiteboard, according to the specifications of the
      * 'close [username] [whiteboard]' command in the handleRequest method's specifications.
@@ -562,12 +1804,18 @@ public class WhiteboardServer {
 
     	// Find the whiteboard that the client is currently connected to.
     	String whiteboardName = tokens[2];
-    	int index = names.indexOf(whiteboardName);	
-    	Whiteboard whiteboard = whiteboards.get(index);
+    	Whiteboard whiteboard = whiteboardsByName.get(whiteboardName);
+    	if (whiteboard == null) {
+    		return NOT_CREATED_ERROR;
+    	}
 
     	// Remove the client from the whiteboard that it is currently connected to.
+    	HashSet<String> open = openWhiteboards.get(username);
+    	if (open != null && open.remove(whiteboardName) && open.isEmpty()) {
+    		openWhiteboards.remove(username);
+    	}
     	String usersOnWhiteboard = whiteboard.removeUsername(username);
-    	sendMessageToSomeClients(whiteboard.getName(), "alsoediting " + usersOnWhiteboard);
+    	sendMessageToSomeClients(whiteboardName, "alsoediting " + usersOnWhiteboard);
 
 
     	return "";
@@ -581,16 +1829,18 @@ public class WhiteboardServer {
      * @param tokens cannot contain any empty strings, must be of length exactly 3 and must have
      * 				 the following form:
      * 					allUsersOnWhiteboard [whiteboard]
-     * 				 where [whiteboard] is the name of a whiteboard on the server
-     * @return message back to the client
+     * 				 where [whiteboard] is the name of a whiteboard
+     * @return message back to the client, NOT_CREATED_ERROR if no whiteboard is named [whiteboard]
      */
     private synchronized String getUsernamesOnWhiteboard(final String[] tokens) {
     	// Find the whiteboard that the client is currently connected to.
     	String whiteboardName = tokens[1];
-    	int index = names.indexOf(whiteboardName);	
-    	Whiteboard whiteboard = whiteboards.get(index);
+    	Whiteboard whiteboard = whiteboardsByName.get(whiteboardName);
+    	if (whiteboard == null) {
+    		return NOT_CREATED_ERROR;
+    	}
 
-    	return "alsoediting " + whiteboard.getUsernames();
+    	return onWhiteboard(whiteboardName, "alsoediting " + whiteboard.getUsernames());
 
     }
     
@@ -598,24 +1848,30 @@ public class WhiteboardServer {
      * Attempts to draw a specified line segment on a specified whiteboard, according to the specifications of
      * the 'draw' command in the handleRequest method's specification.
      * 
-     * @param tokens cannot contain any empty strings, must be of length exactly 10 and must have
-     * 				 the following form:
+     * @param tokens cannot contain any empty strings, must be of length 10 or 11 and must have
+     * 				 one of the following forms:
      * 				 draw [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness]
-     * 					where [name] is the name of a whiteboard on the server
+     * 				 draw [name] [x1] [y1] [x2] [y2] [red] [green] [blue] [thickness] [alpha]
+     * 					where [name] is the name of a whiteboard
      * 					where ([x1], [y1]) and ([x2], [y2]) are points on the whiteboard named [name]
-     * 					where [x1], [y1], [x2], [y2], [red], [green], [blue] and [thickness] are the string 
+     * 					where [x1], [y1], [x2], [y2], [red], [green], [blue], [thickness] and [alpha] are the string 
      * 						  representations of nonnegative integers			  
-     * @return message back to the server
+     * @param socket the socket via which the client that drew the line segment is connected to the server
+     * @return message back to the server, NOT_CREATED_ERROR if no whiteboard is named [name]
      * 
      */
-    private String drawWhiteboard (final String[] tokens) {
+    private String drawWhiteboard (final String[] tokens, final Socket socket) {
     	Whiteboard whiteboard;
     	String whiteboardName = tokens[1];
+    	String author;
     	
     	synchronized (this) {
         	// First find the whiteboard.
-        	int index = names.indexOf(whiteboardName);
-        	whiteboard = whiteboards.get(index);
+        	whiteboard = whiteboardsByName.get(whiteboardName);
+        	if (whiteboard == null) {
+        		return NOT_CREATED_ERROR;
+        	}
+        	author = getUsername(socket);
     	}
 
     	int x1 = Integer.parseInt(tokens[2]), y1 = Integer.parseInt(tokens[3]);
@@ -623,9 +1879,30 @@ public class WhiteboardServer {
     	int red = Integer.parseInt(tokens[6]), green = Integer.parseInt(tokens[7]), blue = Integer.parseInt(tokens[8]);
     	int thickness = Integer.parseInt(tokens[9]);
     	
+    	// A brush wider than the whiteboard could only cost the server time and memory.
+    	if (red > 255 || green > 255 || blue > 255 || thickness > Math.max(whiteboard.getWidth(), whiteboard.getHeight())) {
+    		return INVALID_INPUT_ERROR;
+    	}
+    	
+    	// An opacity of 0 would draw nothing at all.
+    	int alpha = 255;
+    	if (tokens.length == 11) {
+    		if (!tokens[10].matches("\\d{1,3}") || Integer.parseInt(tokens[10]) == 0 || Integer.parseInt(tokens[10]) > 255) {
+    			return INVALID_INPUT_ERROR;
+    		}
+    		alpha = Integer.parseInt(tokens[10]);
+    	}
+    	
     	// Change the whiteboard and notifies relevant clients.
-    	String messageBack = whiteboard.addLine(new Color(red, green, blue), x1, y1, x2, y2, thickness);
-    	sendMessageToSomeClients(whiteboardName, "drawLine " + messageBack);
+    	String messageBack = whiteboard.addLine(author, (red << 16) | (green << 8) | blue, alpha, x1, y1, x2, y2, thickness);
+    	int layer = whiteboard.getLayer(author);
+    	
+    	// A line that did not change any pixels does not need to be sent to anyone, and a line
+    	// only needs to be sent to the clients that can see it.
+    	if (!messageBack.isEmpty()) {
+    		sendMessageToSomeClients(whiteboardName, onLayer(layer, "drawLine " + messageBack), 
+    								 Region.aroundLine(x1, y1, x2, y2, thickness));
+    	}
     	
     	return "";
     }
@@ -636,16 +1913,23 @@ public class WhiteboardServer {
      * 
      * @param tokens cannot contain any empty strings, must be of length exactly 10 and must have
      * 				 the following form:
-     * 				 reset [name] where [name] is the name of a whiteboard on the server	  
-     * @return message back to the server
+     * 				 reset [name] where [name] is the name of a whiteboard	  
+     * @return message back to the server, NOT_CREATED_ERROR if no whiteboard is named [name]
      * 
      */
-    private synchronized String resetWhiteboard (final String[] tokens) {
-    	// First find the whiteboard.
+    private String resetWhiteboard (final String[] tokens) {
+    	Whiteboard whiteboard;
     	String whiteboardName = tokens[1];
-    	int index = names.indexOf(whiteboardName);
-    	Whiteboard whiteboard = whiteboards.get(index);
     	
+    	synchronized (this) {
+        	// First find the whiteboard.
+        	whiteboard = whiteboardsByName.get(whiteboardName);
+        	if (whiteboard == null) {
+        		return NOT_CREATED_ERROR;
+        	}
+    	}
+    	
+    	// Clearing only locks the whiteboard itself, so other whiteboards are not held up.
     	whiteboard.clearWhiteboard();
     	
     	// Change the whiteboard and notifies relevant clients.
@@ -661,23 +1945,76 @@ public class WhiteboardServer {
      * @return a string containing the usernames of all the clients that are online, each separated by a space
      */
     private synchronized String getAllUsernames() {
-    	String allUsernames = "";
-    	Set<String> usernames = clients.keySet();
+    	StringBuilder allUsernames = new StringBuilder();
     	
-    	for (String username: usernames) {
-    		allUsernames += username + " ";
+    	for (String username: clients.keySet()) {
+    		allUsernames.append(username).append(' ');
+    	}
+    	
+    	return allUsernames.toString();
+    }
+    
+    /**
+     * Records that a client has connected to or disconnected from the server, so that the clients are told 
+     * together with every other change in the PRESENCE_DELAY_MILLIS milliseconds after the first one.
+     * 
+     * @param username the username of the client
+     * @param joined true if the client has connected, false if it has disconnected
+     * @modifies presence, and schedules the changes in presence to be told if none were waiting to be
+     */
+    private synchronized void changePresence(final String username, final boolean joined) {
+    	if (presence.isEmpty()) {
+    		if (presenceTimer == null) {
+    			presenceTimer = new Timer("presence", true);
+    		}
+    		presenceTimer.schedule(new TimerTask() {
+    			public void run() {
+    				sendPresence();
+    			}
+    		}, PRESENCE_DELAY_MILLIS);
     	}
     	
-    	return allUsernames;
+    	// The username moves to the end, so the usernames are listed in the order of their last change.
+    	presence.remove(username);
+    	presence.put(username, joined);
+    }
+    
+    /**
+     * Tells every client of the changes in presence that it has not been told of yet.
+     * 
+     * @modifies sends "userJoined [usernames]" and "userLeft [usernames]" to every client, leaving out the
+     * 			 messages that would list nobody, and empties presence
+     */
+    private synchronized void sendPresence() {
+    	StringBuilder joined = new StringBuilder("userJoined");
+    	StringBuilder left = new StringBuilder("userLeft");
+    	for (Map.Entry<String, Boolean> change : presence.entrySet()) {
+    		(change.getValue() ? joined : left).append(' ').append(change.getKey());
+    	}
+    	presence.clear();
+    	
+    	for (String username : clients.keySet()) {
+    		if (joined.length() > "userJoined".length()) {
+    			sendMessageToClient(username, joined.toString());
+    		}
+    		if (left.length() > "userLeft".length()) {
+    			sendMessageToClient(username, left.toString());
+    		}
+    	}
     }
     
     /**
      * Starts up the WhiteboardServer.
      * 
+     * Run it with:
+     * 		java server.WhiteboardServer [heartbeat seconds] [idle timeout seconds]
+     * where both are optional and default to 15 and 45.
      */
 	public static void main(final String[] args) {
 		try {
-			WhiteboardServer server = new WhiteboardServer(WhiteboardServer.port);
+			long heartbeatMillis = args.length > 0 ? Long.parseLong(args[0]) * 1000 : HEARTBEAT_MILLIS;
+			long idleTimeoutMillis = args.length > 1 ? Long.parseLong(args[1]) * 1000 : IDLE_TIMEOUT_MILLIS;
+			WhiteboardServer server = new WhiteboardServer(WhiteboardServer.port, heartbeatMillis, idleTimeoutMillis);
 			server.serve();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -2,7 +2,14 @@ package server;
 
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import model.Whiteboard;
 import org.junit.Test;
@@ -23,6 +30,11 @@ public class WhiteboardServerTest {
 	 * 			include a space (should return an error)
 	 * 			include a digit
 	 * 			include another non-letter character (such as !)
+	 * 		Enter the following command:
+	 * 			create [name] [width] [height]
+	 * 		For the above command, test dimensions that
+	 * 			are very large
+	 * 			are zero or too large (should return an error)
 	 * 
 	 * In addition, one must manually test the create command via telnet.  Notice that
 	 * this follows the same testing strategy as outlined above.
@@ -132,6 +144,753 @@ public class WhiteboardServerTest {
 		}
 	}
 	
+	// Creates a very large whiteboard and opens it.
+	@Test
+	public void createLargeWhiteboardTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			
+			String name = "huge";
+			assertEquals("whiteboardcreated " + name, server.handleRequest("create " + name + " 10000 20000", null));
+			assertArrayEquals(new String[] {name}, server.getNames());
+			assertTrue(server.checkRep());
+			
+			String[] openRequest = {"open", "username", name};
+			assertEquals("open " + name + " 10000 20000 ", server.openWhiteboard(openRequest, false));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Attempts to create whiteboards whose dimensions are zero or too large.
+	@Test
+	public void createWhiteboardInvalidDimensionsTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			
+			assertEquals(WhiteboardServer.INVALID_DIMENSIONS, server.handleRequest("create board 0 600", null));
+			assertEquals(WhiteboardServer.INVALID_DIMENSIONS, server.handleRequest("create board 800 100001", null));
+			assertEquals(WhiteboardServer.INVALID_DIMENSIONS, server.handleRequest("create board 99999999999 600", null));
+			assertArrayEquals(new String[] {}, server.getNames());
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Opens a whiteboard with a viewport; a low resolution preview of the tiles in the viewport is sent.
+	@Test
+	public void openWhiteboardWithViewportTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			
+			String name = "big";
+			server.handleRequest("create " + name + " 2000 2000", null);
+			server.handleRequest("draw " + name + " 16 16 16 16 0 0 255 1", null);
+			server.handleRequest("draw " + name + " 1500 1500 1500 1500 255 0 0 1", null);
+			
+			// A small viewport (192 x 192 in whole tiles) is sent at half of its resolution, where the red pixel
+			// covers one quarter of the preview pixel at (750, 750).
+			String[] smallOpenRequest = {"open", "username", name, "1400", "1400", "100", "100"};
+			assertEquals("openpreview " + name + " 2000 2000 2 750 750 255 191 191 ", server.openWhiteboard(smallOpenRequest, false));
+			
+			// An 800 x 600 viewport (832 x 640 in whole tiles) is sent at one eighth of its resolution, 
+			// where the blue pixel is averaged into the preview pixel at (2, 2) one level at a time.
+			String[] openRequest = {"open", "username", name, "0", "0", "800", "600"};
+			assertEquals("openpreview " + name + " 2000 2000 8 2 2 251 251 255 ", server.openWhiteboard(openRequest, false));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Declares a viewport on a whiteboard that does and does not exist.
+	@Test
+	public void viewportTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			
+			assertEquals("", server.handleRequest("viewport username board 0 0 800 600", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("viewport username nothing 0 0 800 600", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("viewport username board 0 0 -1 600", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Requests that name a whiteboard that has not been created are answered with an error.
+	@Test
+	public void unknownWhiteboardTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("draw nothing 1 1 5 1 0 0 255 1", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("reset nothing", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("getUsersOnWhiteboard nothing", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("erase username nothing 1 1 5 1 1", null));
+			assertEquals("", server.handleRequest("draw board 1 1 5 1 0 0 255 1", null));
+			assertTrue(server.checkRep());
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Undoes and redoes a stroke drawn through a connection without a username.
+	@Test
+	public void undoRedoTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			server.handleRequest("draw board 1 1 5 1 0 0 255 1", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("", server.handleRequest("undo " + Whiteboard.NO_AUTHOR + " board", null));
+			assertEquals("open board 800 600 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals("", server.handleRequest("redo " + Whiteboard.NO_AUTHOR + " board", null));
+			assertEquals("open board 800 600 1 1 0 0 255 2 1 0 0 255 3 1 0 0 255 4 1 0 0 255 5 1 0 0 255 ", 
+						 server.openWhiteboard(openRequest, false));
+			
+			// Nothing is left to redo, and other clients have nothing to undo.
+			assertEquals("", server.handleRequest("redo " + Whiteboard.NO_AUTHOR + " board", null));
+			assertEquals("", server.handleRequest("undo username board", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("undo username nothing", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// One client cannot undo the strokes of another, or act in its name in any other way, by naming it.
+	@Test
+	public void otherUsernameTest() throws IOException {
+		int serverPort = startServer();
+		
+		try (Socket first = new Socket("localhost", serverPort); Socket second = new Socket("localhost", serverPort)) {
+			PrintWriter out = new PrintWriter(first.getOutputStream(), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream()));
+			out.println("#1 username ann");
+			assertEquals("#1 usernameCreated ann", nextReply(in));
+			out.println("#2 create board 10 10");
+			assertEquals("#2 whiteboardcreated board", nextReply(in));
+			out.println("#3 open ann board");
+			assertTrue(nextReply(in).startsWith("#3 open board "));
+			out.println("#4 draw board 1 1 1 1 0 0 255 1");
+			assertEquals("#4 ", nextReply(in));
+			
+			PrintWriter secondOut = new PrintWriter(second.getOutputStream(), true);
+			BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()));
+			secondOut.println("#1 username bob");
+			assertEquals("#1 usernameCreated bob", nextReply(secondIn));
+			secondOut.println("#2 undo ann board");
+			assertEquals("#2 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#3 redo ann board");
+			assertEquals("#3 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#4 erase ann board 0 0 9 9 9");
+			assertEquals("#4 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#5 layer ann board notes");
+			assertEquals("#5 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#6 layers ann board");
+			assertEquals("#6 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#7 viewport ann board 0 0 1 1");
+			assertEquals("#7 " + WhiteboardServer.NOT_YOUR_USERNAME, nextReply(secondIn));
+			secondOut.println("#8 open bob board");
+			assertEquals("#8 open board 10 10 1 1 0 0 255 ", nextReply(secondIn));
+		}
+	}
+
+	// Fills an empty whiteboard and then undoes the fill.
+	@Test
+	public void fillTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("", server.handleRequest("fill board 5 5 0 0 255", null));
+			assertEquals(800 * 600, server.openWhiteboard(openRequest, false).split(" ").length / 5);
+			
+			assertEquals("", server.handleRequest("undo " + Whiteboard.NO_AUTHOR + " board", null));
+			assertEquals("open board 800 600 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("fill nothing 5 5 0 0 255", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("fill board 800 5 0 0 255", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("fill board 5 5 0 0 256", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Draws a line, a rectangle and an ellipse, and sends malformed shape commands.
+	@Test
+	public void shapesTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("", server.handleRequest("line board 1 1 5 1 0 0 255 1", null));
+			assertEquals("open board 800 600 1 1 0 0 255 2 1 0 0 255 3 1 0 0 255 4 1 0 0 255 5 1 0 0 255 ", 
+						 server.openWhiteboard(openRequest, false));
+			server.handleRequest("undo " + Whiteboard.NO_AUTHOR + " board", null);
+			
+			assertEquals("", server.handleRequest("rect board 10 10 11 11 255 0 0 1 filled", null));
+			assertEquals("open board 800 600 10 10 255 0 0 11 10 255 0 0 10 11 255 0 0 11 11 255 0 0 ", 
+						 server.openWhiteboard(openRequest, false));
+			server.handleRequest("undo " + Whiteboard.NO_AUTHOR + " board", null);
+			
+			assertEquals("", server.handleRequest("ellipse board 20 20 20 20 0 255 0 1 outline", null));
+			assertEquals("open board 800 600 20 20 0 255 0 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("rect nothing 1 1 5 5 0 0 255 1 filled", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("ellipse board 1 1 5 5 0 0 256 1 filled", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("line board 1 1 800 1 0 0 255 1", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("rect board 1 1 5 5 0 0 255 1 hollow", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("ellipse board -900 1 5 5 0 0 255 1 filled", null));
+			assertEquals("", server.handleRequest("ellipse board -700 1 5 5 0 0 255 1 filled", null));
+			
+			// A brush wider than the whiteboard is refused before anything is drawn.
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("line board 1 1 5 1 0 0 255 92682", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("draw board 1 1 5 1 0 0 255 801", null));
+			assertEquals("", server.handleRequest("draw board 1 1 5 1 0 0 255 800", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Draws on a layer above the base layer, which the open message leaves out.
+	@Test
+	public void layersTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("layers board base", server.handleRequest("layers username board", null));
+			assertEquals("", server.handleRequest("layer " + Whiteboard.NO_AUTHOR + " board notes", null));
+			assertEquals("", server.handleRequest("layer username board notes", null));
+			assertEquals("layers board base notes", server.handleRequest("layers username board", null));
+			
+			// The line is on the notes layer, so the base layer is still empty.
+			assertEquals("", server.handleRequest("draw board 1 1 5 1 0 0 255 1", null));
+			assertEquals("open board 800 600 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals("", server.handleRequest("layer " + Whiteboard.NO_AUTHOR + " board base", null));
+			assertEquals("", server.handleRequest("fill board 5 5 255 0 0", null));
+			assertTrue(server.openWhiteboard(openRequest, false).startsWith("open board 800 600 0 0 255 0 0 "));
+			
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("layers username nothing", null));
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("layer username nothing notes", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("layer username board two words", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Draws a translucent dot over a white pixel and rejects opacities out of range.
+	@Test
+	public void translucentDrawTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("", server.handleRequest("draw board 1 1 1 1 255 0 0 1 128", null));
+			assertEquals("open board 800 600 1 1 255 126 126 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("draw board 1 1 1 1 255 0 0 1 0", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("draw board 1 1 1 1 255 0 0 1 256", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Moves a dot, copies it and undoes the copy.
+	@Test
+	public void blitTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			server.handleRequest("draw board 1 1 1 1 0 0 255 1", null);
+			String[] openRequest = {"open", "username", "board"};
+			
+			assertEquals("", server.handleRequest("blit board 0 0 3 3 10 0 move", null));
+			assertEquals("open board 800 600 11 1 0 0 255 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals("", server.handleRequest("blit board 10 0 3 3 0 10", null));
+			assertEquals("open board 800 600 11 1 0 0 255 1 11 0 0 255 ", server.openWhiteboard(openRequest, false));
+			
+			assertEquals("", server.handleRequest("undo " + Whiteboard.NO_AUTHOR + " board", null));
+			assertEquals("open board 800 600 11 1 0 0 255 ", server.openWhiteboard(openRequest, false));
+			
+			// Copying a region onto itself changes nothing.
+			assertEquals("", server.handleRequest("blit board 10 0 3 3 10 0", null));
+			
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("blit nothing 0 0 3 3 10 0", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("blit board 0 0 0 3 10 0", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("blit board 799 0 3 3 10 0", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("blit board 0 0 3 3 2000 0", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Lists the whiteboards a page at a time, in lexicographic order, with and without a prefix.
+	@Test
+	public void listPageTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			assertEquals("whiteboards 0 0 ", server.handleRequest("list 0 10", null));
+			for (String name : new String[] {"cherry", "apricot", "banana", "apple", "ap"}) {
+				server.handleRequest("create " + name, null);
+			}
+			
+			assertEquals("whiteboards 5 0 ap apple ", server.handleRequest("list 0 2", null));
+			assertEquals("whiteboards 5 2 apricot banana cherry ", server.handleRequest("list 2 10", null));
+			assertEquals("whiteboards 5 5 ", server.handleRequest("list 5 10", null));
+			assertEquals("whiteboards 5 0 ", server.handleRequest("list 0 0", null));
+			assertEquals("whiteboards 3 0 ap apple apricot ", server.handleRequest("list 0 10 ap", null));
+			assertEquals("whiteboards 3 1 apple apricot ", server.handleRequest("list 1 10 ap", null));
+			assertEquals("whiteboards 1 0 apple ", server.handleRequest("list 0 10 app", null));
+			assertEquals("whiteboards 1 0 cherry ", server.handleRequest("list 0 10 c", null));
+			assertEquals("whiteboards 0 0 ", server.handleRequest("list 0 10 d", null));
+			assertEquals("whiteboards 0 0 ", server.handleRequest("list 0 10 aa", null));
+			
+			// The list command without a page still lists every whiteboard in the order that they were created.
+			assertEquals("allwhiteboards cherry apricot banana apple ap", server.handleRequest("list", null));
+			
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("list 0 1001", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("list 0", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("list -1 10", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Echoes request IDs at the start of replies, including empty replies and errors.
+	@Test
+	public void requestIdTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			
+			assertEquals("#7 whiteboardcreated board", server.handleRequest("#7 create board", null));
+			assertEquals("#8 allwhiteboards board", server.handleRequest("#8 list", null));
+			assertEquals("#9 ", server.handleRequest("#9 draw board 1 1 5 1 0 0 255 1", null));
+			assertEquals("#10 " + WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("#10 draw board", null));
+			assertEquals("#11 " + WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("#11 layers username nothing", null));
+			
+			// Only a string of digits is a request ID.
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("#x list", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("#12", null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// Sends many requests over a real connection without waiting for any reply, and gets the replies in order.
+	@Test
+	public void pipelinedRequestsTest() throws IOException {
+		int serverPort = startServer();
+		
+		int requests = 50;
+		try (Socket socket = new Socket("localhost", serverPort)) {
+			StringBuilder pipelined = new StringBuilder("#0 username tester\n");
+			for (int i = 1; i <= requests; i++) {
+				pipelined.append("#" + i + " create board" + i + "\n");
+			}
+			PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+			out.print(pipelined);
+			out.flush();
+			
+			// The "allUsersOnline" and "boardCreated" messages sent to the client come in between the replies.
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			ArrayList<String> replies = new ArrayList<String>();
+			while (replies.size() <= requests) {
+				String line = in.readLine();
+				assertNotNull(line);
+				if (line.startsWith("#")) {
+					replies.add(line);
+				}
+			}
+			
+			assertEquals("#0 usernameCreated tester", replies.get(0));
+			for (int i = 1; i <= requests; i++) {
+				assertEquals("#" + i + " whiteboardcreated board" + i, replies.get(i));
+			}
+		}
+	}
+	
+	// Opens two whiteboards over one connection and gets the messages about each of them tagged with its name.
+	@Test
+	public void severalWhiteboardsTest() throws IOException {
+		int serverPort = startServer();
+		
+		try (Socket socket = new Socket("localhost", serverPort)) {
+			PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			out.println("#1 username tester");
+			assertEquals("#1 usernameCreated tester", nextReply(in));
+			assertEquals("userJoined tester", in.readLine());
+			for (String name : new String[] {"left", "right"}) {
+				out.println("#2 create " + name + " 10 10");
+				assertEquals("#2 whiteboardcreated " + name, nextReply(in));
+				out.println("#3 open tester " + name);
+				assertEquals("board " + name + " alsoediting tester", in.readLine());
+				assertEquals("#3 open " + name + " 10 10 ", in.readLine());
+			}
+			
+			out.println("#4 getUsersOnWhiteboard right");
+			assertEquals("#4 board right alsoediting tester", in.readLine());
+			out.println("#5 draw right 1 1 1 1 0 0 255 1");
+			assertEquals("board right drawLine 1 1 0 0 255 ", in.readLine());
+			assertEquals("#5 ", in.readLine());
+			out.println("#6 layer tester left notes");
+			assertEquals("board left layers left base notes", in.readLine());
+			assertEquals("#6 ", in.readLine());
+			out.println("#7 fill left 0 0 255 0 0");
+			assertTrue(in.readLine().startsWith("board left layer 1 fillSpans 255 0 0 "));
+			assertEquals("#7 ", in.readLine());
+			out.println("#8 reset left");
+			assertEquals("board left reset", in.readLine());
+			assertEquals("#8 ", in.readLine());
+			
+			// Once the client has closed a whiteboard, it is only sent the messages about the other one.
+			out.println("#9 close tester left");
+			assertEquals("#9 ", in.readLine());
+			out.println("#10 draw left 1 1 1 1 0 0 255 1");
+			assertEquals("#10 ", in.readLine());
+			out.println("#11 reset right");
+			assertEquals("board right reset", in.readLine());
+			assertEquals("#11 ", in.readLine());
+		}
+	}
+	
+	// Tells a client who is online once, and then only of the clients that connect or disconnect, a burst at a time.
+	@Test
+	public void presenceTest() throws IOException {
+		int serverPort = startServer();
+		
+		try (Socket first = new Socket("localhost", serverPort); Socket second = new Socket("localhost", serverPort)) {
+			PrintWriter out = new PrintWriter(first.getOutputStream(), true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream()));
+			out.println("username ann");
+			assertEquals("allUsersOnline ann ", in.readLine());
+			assertEquals("usernameCreated ann", in.readLine());
+			assertEquals("userJoined ann", in.readLine());
+			
+			// Both usernames are requested at once, so they are told together.
+			PrintWriter secondOut = new PrintWriter(second.getOutputStream(), false);
+			BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()));
+			secondOut.print("username bob\nusername cat\n");
+			secondOut.flush();
+			assertTrue(secondIn.readLine().startsWith("allUsersOnline "));
+			assertEquals("usernameCreated bob", secondIn.readLine());
+			String allUsersOnline = secondIn.readLine();
+			assertTrue(allUsersOnline.contains("ann") && allUsersOnline.contains("bob") && allUsersOnline.contains("cat"));
+			assertEquals("usernameCreated cat", secondIn.readLine());
+			assertEquals("userJoined bob cat", in.readLine());
+			
+			// Logging out closes the connection, which logs out the other username on it as well.
+			secondOut.println("logout bob");
+			secondOut.flush();
+			assertEquals("userLeft bob cat", in.readLine());
+			assertEquals("userJoined bob cat", secondIn.readLine());
+		}
+	}
+	
+	// A client that disconnects without logging out is removed from the whiteboards that it had open, and only those.
+	@Test
+	public void disconnectTest() throws IOException {
+		int serverPort = startServer();
+		
+		try (Socket second = new Socket("localhost", serverPort)) {
+			PrintWriter secondOut = new PrintWriter(second.getOutputStream(), true);
+			BufferedReader secondIn = new BufferedReader(new InputStreamReader(second.getInputStream()));
+			
+			try (Socket first = new Socket("localhost", serverPort)) {
+				PrintWriter out = new PrintWriter(first.getOutputStream(), true);
+				BufferedReader in = new BufferedReader(new InputStreamReader(first.getInputStream()));
+				out.println("#1 username ann");
+				assertEquals("#1 usernameCreated ann", nextReply(in));
+				for (String name : new String[] {"a", "b", "c"}) {
+					out.println("#2 create " + name + " 10 10");
+					assertEquals("#2 whiteboardcreated " + name, nextReply(in));
+				}
+				out.println("#3 open ann a");
+				assertTrue(nextReply(in).startsWith("#3 open a "));
+				out.println("#4 open ann b");
+				assertTrue(nextReply(in).startsWith("#4 open b "));
+				out.println("#5 close ann c");
+				assertEquals("#5 ", nextReply(in));
+				out.println("#6 close ann d");
+				assertEquals("#6 " + WhiteboardServer.NOT_CREATED_ERROR, nextReply(in));
+				
+				secondOut.println("#1 username bob");
+				assertEquals("#1 usernameCreated bob", nextReply(secondIn));
+				secondOut.println("#2 open bob a");
+				assertTrue(nextReply(secondIn).startsWith("#2 open a "));
+				secondOut.println("#3 open bob c");
+				assertTrue(nextReply(secondIn).startsWith("#3 open c "));
+			}
+			
+			String line = secondIn.readLine();
+			while (!line.startsWith("board ")) {
+				line = secondIn.readLine();
+			}
+			assertEquals("board a alsoediting bob", line);
+			secondOut.println("#4 getUsersOnWhiteboard c");
+			assertEquals("#4 board c alsoediting bob", nextReply(secondIn));
+		}
+	}
+	
+	// A client that stops answering is pinged and then reaped, while one that answers the pings is kept.
+	@Test
+	public void idleTimeoutTest() throws IOException, InterruptedException {
+		int serverPort = port + portIncrementer.getAndIncrement();
+		final WhiteboardServer server = new WhiteboardServer(serverPort, 100, 400);
+		startServer(server);
+		
+		try (Socket live = new Socket("localhost", serverPort); Socket silent = new Socket("localhost", serverPort)) {
+			PrintWriter liveOut = new PrintWriter(live.getOutputStream(), true);
+			BufferedReader liveIn = new BufferedReader(new InputStreamReader(live.getInputStream()));
+			liveOut.println("#1 username ann");
+			assertEquals("#1 usernameCreated ann", nextReply(liveIn));
+			liveOut.println("#2 create board 10 10");
+			assertEquals("#2 whiteboardcreated board", nextReply(liveIn));
+			liveOut.println("#3 open ann board");
+			assertTrue(nextReply(liveIn).startsWith("#3 open board "));
+			
+			PrintWriter silentOut = new PrintWriter(silent.getOutputStream(), true);
+			BufferedReader silentIn = new BufferedReader(new InputStreamReader(silent.getInputStream()));
+			silentOut.println("#1 username bob");
+			assertEquals("#1 usernameCreated bob", nextReply(silentIn));
+			silentOut.println("#2 open bob board");
+			assertTrue(nextReply(silentIn).startsWith("#2 open board "));
+			assertEquals(2, server.getConnectionCount());
+			
+			// ann answers every ping while bob is pinged, stays silent for the idle timeout and is reaped.
+			final LinkedBlockingQueue<String> liveLines = new LinkedBlockingQueue<String>();
+			final PrintWriter answering = liveOut;
+			final BufferedReader reading = liveIn;
+			Thread answerer = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (String line = reading.readLine(); line != null; line = reading.readLine()) {
+							if (line.equals("ping")) {
+								answering.println("pong");
+							}
+							else {
+								liveLines.add(line);
+							}
+						}
+					}
+					catch (IOException e) {
+						// The test is over.
+					}
+				}
+			});
+			answerer.setDaemon(true);
+			answerer.start();
+			
+			boolean pinged = false;
+			for (String line = silentIn.readLine(); line != null; line = silentIn.readLine()) {
+				pinged = pinged || line.equals("ping");
+			}
+			assertTrue(pinged);
+			
+			String line = liveLines.poll(5, TimeUnit.SECONDS);
+			while (!"board board alsoediting ann".equals(line)) {
+				assertNotNull(line);
+				line = liveLines.poll(5, TimeUnit.SECONDS);
+			}
+			
+			liveOut.println("#4 ping");
+			line = liveLines.poll(5, TimeUnit.SECONDS);
+			while (line != null && !line.startsWith("#")) {
+				line = liveLines.poll(5, TimeUnit.SECONDS);
+			}
+			assertEquals("#4 pong", line);
+			assertEquals(1, server.getConnectionCount());
+		}
+	}
+	
+	// A client whose connection is lost resumes its session over a new one and is only sent what it missed.
+	@Test
+	public void resumeTest() throws IOException, InterruptedException {
+		int serverPort = port + portIncrementer.getAndIncrement();
+		WhiteboardServer server = new WhiteboardServer(serverPort);
+		startServer(server);
+		
+		try (Socket other = new Socket("localhost", serverPort)) {
+			PrintWriter otherOut = new PrintWriter(other.getOutputStream(), true);
+			BufferedReader otherIn = new BufferedReader(new InputStreamReader(other.getInputStream()));
+			otherOut.println("#1 username bob");
+			assertEquals("#1 usernameCreated bob", nextReply(otherIn));
+			otherOut.println("#2 create board 10 10");
+			assertEquals("#2 whiteboardcreated board", nextReply(otherIn));
+			otherOut.println("#3 open bob board");
+			assertTrue(nextReply(otherIn).startsWith("#3 open board "));
+			
+			String token;
+			long lastSequence;
+			try (Socket lost = new Socket("localhost", serverPort)) {
+				PrintWriter out = new PrintWriter(lost.getOutputStream(), true);
+				BufferedReader in = new BufferedReader(new InputStreamReader(lost.getInputStream()));
+				out.println("#1 username ann");
+				assertEquals("#1 usernameCreated ann", nextReply(in));
+				out.println("#2 session ann");
+				String[] session = nextReply(in).split(" ");
+				assertEquals("session", session[1]);
+				assertEquals("0", session[3]);
+				token = session[2];
+				out.println("#3 open ann board");
+				
+				// The whiteboard tells ann who else has it open before the reply.
+				String line = in.readLine();
+				while (!line.matches("@\\d+ board board alsoediting bob ann")) {
+					line = in.readLine();
+				}
+				lastSequence = Long.parseLong(line.substring(1, line.indexOf(' ')));
+				assertTrue(nextReply(in).startsWith("#3 open board "));
+			}
+			
+			// Only what is sent once the server has noticed that the connection is gone is kept for ann.
+			while (server.getConnectionCount() > 1) {
+				Thread.sleep(10);
+			}
+			
+			// ann is still logged in with the whiteboard open while its connection is gone.
+			otherOut.println("#4 draw board 1 1 1 1 0 0 255 1");
+			assertEquals("#4 ", nextReply(otherIn));
+			otherOut.println("#5 username ann");
+			assertEquals("#5 " + WhiteboardServer.USERNAME_ALREADY_CREATED, nextReply(otherIn));
+			
+			try (Socket resumed = new Socket("localhost", serverPort)) {
+				PrintWriter out = new PrintWriter(resumed.getOutputStream(), true);
+				BufferedReader in = new BufferedReader(new InputStreamReader(resumed.getInputStream()));
+				out.println("#1 resume " + token + " " + lastSequence);
+				
+				ArrayList<String> missed = new ArrayList<String>();
+				String line = in.readLine();
+				for (long sequence = lastSequence + 1; !line.startsWith("#"); sequence++) {
+					assertTrue(line.startsWith("@" + sequence + " "));
+					missed.add(line.substring(line.indexOf(' ') + 1));
+					line = in.readLine();
+				}
+				assertTrue(missed.contains("board board drawLine 1 1 0 0 255 "));
+				assertEquals("#1 resumed ann " + (lastSequence + missed.size()), line);
+				
+				otherOut.println("#6 reset board");
+				assertEquals("#6 ", nextReply(otherIn));
+				assertEquals("@" + (lastSequence + missed.size() + 1) + " board board reset", in.readLine());
+				
+				out.println("#2 resume 0123abcd 0");
+				assertEquals("#2 " + WhiteboardServer.RESUME_ERROR, nextReply(in));
+			}
+		}
+	}
+	
+	/**
+	 * Starts a WhiteboardServer that serves on a daemon thread, so that clients can connect to it over sockets.
+	 * 
+	 * @return the port on which the server is listening
+	 */
+	private static int startServer() throws IOException {
+		int serverPort = port + portIncrementer.getAndIncrement();
+		startServer(new WhiteboardServer(serverPort));
+		return serverPort;
+	}
+	
+	/**
+	 * Serves a WhiteboardServer on a daemon thread, so that clients can connect to it over sockets.
+	 * 
+	 * @param server the server to serve
+	 */
+	private static void startServer(final WhiteboardServer server) {
+		Thread serving = new Thread(new Runnable() {
+			public void run() {
+				try {
+					server.serve();
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		serving.setDaemon(true);
+		serving.start();
+	}
+	
+	/**
+	 * Reads lines from a connection to a server until one is a reply to a request with an ID.
+	 * 
+	 * @return the first line read that starts with "#"
+	 */
+	private static String nextReply(final BufferedReader in) throws IOException {
+		for (String line = in.readLine(); line != null; line = in.readLine()) {
+			if (line.startsWith("#")) {
+				return line;
+			}
+		}
+		return null;
+	}
+	
+	// Erases a stroke and then undoes the erasure.
+	@Test
+	public void eraseTest() {
+		try {
+			WhiteboardServer server = new WhiteboardServer(port + portIncrementer.getAndIncrement());
+			server.handleRequest("create board", null);
+			server.handleRequest("draw board 1 1 5 1 0 0 255 1", null);
+			String[] openRequest = {"open", "username", "board"};
+			String drawn = server.openWhiteboard(openRequest, false);
+
+			// An eraser that misses the stroke leaves it alone.
+			assertEquals("", server.handleRequest("erase username board 1 10 5 10 3", null));
+			assertEquals(drawn, server.openWhiteboard(openRequest, false));
+
+			assertEquals("", server.handleRequest("erase username board 3 0 3 5 1", null));
+			assertEquals("open board 800 600 ", server.openWhiteboard(openRequest, false));
+
+			assertEquals("", server.handleRequest("undo username board", null));
+			assertEquals(drawn, server.openWhiteboard(openRequest, false));
+
+			assertEquals(WhiteboardServer.NOT_CREATED_ERROR, server.handleRequest("erase username nothing 3 0 3 5 1", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, server.handleRequest("erase username board 3 0 3 5", null));
+			assertEquals(WhiteboardServer.INVALID_INPUT_ERROR, 
+						 server.handleRequest("erase username board 3 0 3 5 " + Integer.MAX_VALUE, null));
+		}
+		catch (IOException e) {
+			assertTrue(false);
+			e.printStackTrace();
+		}
+	}
+	
 	/**
 	 * The following test methods test the getAllWhiteboards method in the WhiteboardServer class.
 	 * 
@@ -262,7 +1021,8 @@ public class WhiteboardServerTest {
 			// Opens the whiteboard with same name.
 			String messageBack = server.openWhiteboard(openRequest, false);
 			assertTrue(server.checkRep());
-			assertEquals(messageBack, "open " + name + " " + new Whiteboard(name, WhiteboardServer.WIDTH_OF_WHITEBOARDS, WhiteboardServer.HEIGHT_OF_WHITEBOARDS).toString());
+			assertEquals(messageBack, "open " + name + " " + WhiteboardServer.WIDTH_OF_WHITEBOARDS + " " + WhiteboardServer.HEIGHT_OF_WHITEBOARDS 
+					+ " " + new Whiteboard(name, WhiteboardServer.WIDTH_OF_WHITEBOARDS, WhiteboardServer.HEIGHT_OF_WHITEBOARDS).toString());
 		}
 		catch (IOException e) {
 			e.printStackTrace();
@@ -3,6 +3,7 @@ package whiteboardGUI;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 
 
 import java.util.ArrayList;
@@ -16,11 +17,17 @@ import java.awt.event.WindowListener;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JToolBar;
+import javax.swing.JViewport;
+import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -36,6 +43,8 @@ import canvas.Canvas;
  * 
  * 			whiteboardName - the name of the whiteboard.
  * 
+ * 			activeLayer - the name of the layer that this client draws on.
+ * 
  * Representation Invariant
  * 			This window can change the type of writing, the color of writing and the size of writing.
  * 
@@ -53,17 +62,39 @@ import canvas.Canvas;
 
 public class WhiteBoardGUI extends JFrame {
 	private static final long serialVersionUID = -5393918641159899887L;
+	public static final int DEFAULT_WIDTH = 800;
+	public static final int DEFAULT_HEIGHT = 600;
+	private static final int VIEWPORT_DELAY = 100;
 	private final int STK_MIN = 1;
 	private final int STK_MAX = 30;
 	private final int STK_INIT = 1;
+	private final int OPACITY_MIN = 32;
+	private final int OPACITY_MAX = 255;
 	
 	private final JPanel contentPane;
 	private final JToolBar toolBar;
 	private final JSlider strokeWidth = new JSlider (JSlider.HORIZONTAL, STK_MIN, STK_MAX, STK_INIT);;
+	private final JSlider opacity = new JSlider (JSlider.HORIZONTAL, OPACITY_MIN, OPACITY_MAX, OPACITY_MAX);
 	private final Canvas canvas;
+	private final JScrollPane scrollPane;
+	private final Timer viewportTimer;
+	private Rectangle lastViewport;
 	private final JButton drawButton = new JButton("Draw"); 
 	private final JButton eraserButton = new JButton("Erase");
+	private final JButton bucketButton = new JButton("Fill");
+	private final JButton lineButton = new JButton("Line");
+	private final JButton rectangleButton = new JButton("Rect");
+	private final JButton ellipseButton = new JButton("Ellipse");
+	private final JCheckBox filledBox = new JCheckBox("Filled");
+	private final JButton selectButton = new JButton("Select");
 	private final JButton clearBoardButton = new JButton("Erase All");
+	private final JButton undoButton = new JButton("Undo");
+	private final JButton redoButton = new JButton("Redo");
+	private final JComboBox<String> layerBox = new JComboBox<String>(new String[] {"base"});
+	private final JButton newLayerButton = new JButton("New Layer");
+	private final JCheckBox visibleBox = new JCheckBox("Visible", true);
+	private String activeLayer = "base";
+	private boolean isUpdatingLayers = false;
 	private JButton baColor = new JButton("    ");
 	private JButton rColor = new JButton("    ");
 	private JButton oColor = new JButton("    ");
@@ -74,8 +105,8 @@ public class WhiteBoardGUI extends JFrame {
 	private final JLabel usersOnline;
 	private final WhiteboardClient client;
 	private final String whiteboardName;
-	private final ArrayList<JButton> barButtons = new ArrayList<JButton>(Arrays.asList(drawButton, eraserButton, clearBoardButton, baColor, rColor, oColor, yColor, gColor, blColor, pColor));
-	private final ArrayList<Color> buttonColors = new ArrayList<Color>(Arrays.asList(Color.BLACK, Color.WHITE, Color.WHITE, Color.BLACK, Color.RED, Color.orange, 
+	private final ArrayList<JButton> barButtons = new ArrayList<JButton>(Arrays.asList(drawButton, eraserButton, bucketButton, lineButton, rectangleButton, ellipseButton, selectButton, clearBoardButton, baColor, rColor, oColor, yColor, gColor, blColor, pColor));
+	private final ArrayList<Color> buttonColors = new ArrayList<Color>(Arrays.asList(Color.BLACK, Color.WHITE, Color.BLACK, Color.BLACK, Color.BLACK, Color.BLACK, Color.BLACK, Color.WHITE, Color.BLACK, Color.RED, Color.orange, 
 			Color.YELLOW, Color.GREEN, Color.BLUE, Color.PINK));
 
 
@@ -84,42 +115,48 @@ public class WhiteBoardGUI extends JFrame {
 	 * 
 	 * @param client the client that this WhiteBoardGUI object serves.
 	 * @param whiteboardName the name of the whiteboard that this GUI displays
+	 * @param width the width of the whiteboard in pixels
+	 * @param height the height of the whiteboard in pixels
 	 * @param initialWhiteboard the String representation of the initial whiteboard
 	 */
-	public WhiteBoardGUI (WhiteboardClient client, String whiteboardName, String initialWhiteboard) {
+	public WhiteBoardGUI (WhiteboardClient client, String whiteboardName, int width, int height, String initialWhiteboard) {
 		this.client = client;
 		this.whiteboardName = whiteboardName;
 		
-		this.setTitle("Whiteboard " + client.getWhiteboardName());
-		this.setResizable(false);
+		this.setTitle("Whiteboard " + whiteboardName);
+		this.setResizable(true);
 		contentPane = new JPanel(new BorderLayout());
 		
 		toolBar = new JToolBar("Colors");
 		
-		canvas = new Canvas(800, 600, client, initialWhiteboard, whiteboardName);
+		canvas = new Canvas(width, height, client, initialWhiteboard, whiteboardName);
 		
 		toolBar.setPreferredSize(new Dimension(600, 50));
 		usersOnline = new JLabel();
 		
 		contentPane.setBorder(BorderFactory.createLineBorder(Color.black));
 		contentPane.add(toolBar, BorderLayout.NORTH);
-		contentPane.add(canvas, BorderLayout.CENTER);
+		// Whiteboards can be much larger than the window, so the canvas scrolls.
+		scrollPane = new JScrollPane(canvas);
+		viewportTimer = new Timer(VIEWPORT_DELAY, null);
+		contentPane.add(scrollPane, BorderLayout.CENTER);
 		contentPane.add(usersOnline, BorderLayout.SOUTH);
 		
 		addToolBarButtons();
 		addActionListenerOperationOnClose();
 		addActionListeners();
+		addViewportListener();
 		
-		this.setPreferredSize(new Dimension(800, 600));
+		this.setPreferredSize(new Dimension(DEFAULT_WIDTH, DEFAULT_HEIGHT));
 		this.getContentPane().add(contentPane);
 		this.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 		this.pack();
 	}
 	
 	/**
-	 * Adds buttons to a tool bar for changing between an eraser and a writing utensil, 
-	 * a slider for the thickness of the lines drawn to the canvas and a series of buttons for
-	 * changing the color of the lines drawn to the canvas. 
+	 * Adds buttons to a tool bar for changing between an eraser, a paint bucket, a writing utensil and 
+	 * the line, rectangle and ellipse shapes, a check box for filling shapes, for undoing and redoing strokes, for choosing, adding and hiding layers, a slider for the thickness of the lines drawn to the canvas 
+	 * and a series of buttons for changing the color of the lines drawn to the canvas. 
 	 * 
 	 */
 	public void addToolBarButtons(){
@@ -129,7 +166,7 @@ public class WhiteBoardGUI extends JFrame {
 	        JButton color = barButtons.get(i);
 	       
 	        //adds color to the swatches on the toolbar
-	        if (i>2){
+	        if (i>7){
 	        	Color pallet = buttonColors.get(i);
 	        	color.setSize(new Dimension(10, 10));
 	        	color.setBackground(pallet);
@@ -138,6 +175,21 @@ public class WhiteBoardGUI extends JFrame {
 	        }
 			toolBar.add(color);
 	        toolBar.addSeparator(new Dimension(10,5));
+	        
+	        if (color.equals(ellipseButton)) {
+	        	toolBar.add(filledBox);
+	        	toolBar.addSeparator(new Dimension(10,5));
+	        }
+	        if (color.equals(clearBoardButton)) {
+	        	toolBar.add(undoButton);
+	        	toolBar.addSeparator(new Dimension(10,5));
+	        	toolBar.add(redoButton);
+	        	toolBar.addSeparator(new Dimension(10,5));
+	        	toolBar.add(layerBox);
+	        	toolBar.add(newLayerButton);
+	        	toolBar.add(visibleBox);
+	        	toolBar.addSeparator(new Dimension(10,5));
+	        }
 		}
 		strokeWidth.setMajorTickSpacing(15);
 		strokeWidth.setPaintTicks(true);
@@ -151,6 +203,14 @@ public class WhiteBoardGUI extends JFrame {
 
 		strokeWidth.setPaintLabels(true);
 		toolBar.add(strokeWidth);
+		
+		// Lines drawn below full opacity are blended over what is under them, like a highlighter.
+		Hashtable<Integer, JLabel> opacityLabels = new Hashtable<Integer, JLabel>();
+		opacityLabels.put( OPACITY_MIN, new JLabel("Highlight") );
+		opacityLabels.put( OPACITY_MAX, new JLabel("Opaque") );
+		opacity.setLabelTable( opacityLabels );
+		opacity.setPaintLabels(true);
+		toolBar.add(opacity);
 	}
 	
 	/**
@@ -175,18 +235,109 @@ public class WhiteBoardGUI extends JFrame {
 					}
 				});
 			}
-			//add action to the buttons and swatches
+			//the eraser, the bucket, the shapes and the selection change the tool, every other button and swatch changes the color
+			final JButton button = color;
 			color.addActionListener(new ActionListener() {
 				
 				@Override
 				public void actionPerformed(ActionEvent e)
 				{	
-					Canvas.setColor(buttonColor);
+					if (button.equals(eraserButton)) {
+						Canvas.setTool(Canvas.Tool.ERASER);
+					}
+					else if (button.equals(bucketButton)) {
+						Canvas.setTool(Canvas.Tool.BUCKET);
+					}
+					else if (button.equals(lineButton)) {
+						Canvas.setTool(Canvas.Tool.LINE);
+					}
+					else if (button.equals(rectangleButton)) {
+						Canvas.setTool(Canvas.Tool.RECTANGLE);
+					}
+					else if (button.equals(ellipseButton)) {
+						Canvas.setTool(Canvas.Tool.ELLIPSE);
+					}
+					else if (button.equals(selectButton)) {
+						Canvas.setTool(Canvas.Tool.SELECT);
+					}
+					else {
+						//picking a swatch keeps the bucket or the shape in hand but puts the eraser down
+						if (button.equals(drawButton) || button.equals(clearBoardButton) 
+								|| Canvas.currentTool == Canvas.Tool.ERASER) {
+							Canvas.setTool(Canvas.Tool.PEN);
+						}
+						Canvas.setColor(buttonColor);
+					}
 
 				}
 			});
 		}
 		
+			filledBox.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					Canvas.setFilledShapes(filledBox.isSelected());
+				}
+			});
+			
+			//undo and redo only affect this client's own strokes
+			undoButton.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					client.sendMessage("undo " + client.getUsername() + " " + whiteboardName);
+				}
+			});
+			redoButton.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					client.sendMessage("redo " + client.getUsername() + " " + whiteboardName);
+				}
+			});
+			
+			//the layer in the box is the one that is drawn on, and the one that the check box shows or hides
+			layerBox.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					if (isUpdatingLayers || layerBox.getSelectedIndex() == -1) {
+						return;
+					}
+					activeLayer = (String) layerBox.getSelectedItem();
+					canvas.clearSelection();
+					visibleBox.setSelected(canvas.isLayerVisible(layerBox.getSelectedIndex()));
+					client.sendMessage("layer " + client.getUsername() + " " + whiteboardName + " " + activeLayer);
+				}
+			});
+			newLayerButton.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					String name = JOptionPane.showInputDialog(WhiteBoardGUI.this, "Name of the new layer:");
+					if (name == null || name.trim().isEmpty() || name.trim().contains(" ")) {
+						return;
+					}
+					activeLayer = name.trim();
+					client.sendMessage("layer " + client.getUsername() + " " + whiteboardName + " " + activeLayer);
+				}
+			});
+			//hiding a layer only changes what this client shows, so nothing is sent to the server
+			visibleBox.addActionListener(new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent e)
+				{	
+					canvas.setLayerVisible(layerBox.getSelectedIndex(), visibleBox.isSelected());
+				}
+			});
+		
 			//adds action to the width slider
 			strokeWidth.addChangeListener(new ChangeListener() {
 			    
@@ -198,10 +349,52 @@ public class WhiteBoardGUI extends JFrame {
 			        	canvas.sWidth = sWidth;
 				}
 			});
+			
+			//adds action to the opacity slider
+			opacity.addChangeListener(new ChangeListener() {
+			    
+				@Override
+				public void stateChanged(ChangeEvent e) {
+					Canvas.setOpacity(opacity.getValue());
+				}
+			});
 		}
 	
 		
 	
+    /**
+     * Tells the server which part of the whiteboard is visible whenever the window is scrolled or
+     * resized, so that the server only sends updates to the visible part of the whiteboard.  The
+     * viewport is only sent once scrolling has paused for VIEWPORT_DELAY milliseconds.
+     * 
+     */
+    public void addViewportListener() {
+    	viewportTimer.setRepeats(false);
+    	viewportTimer.addActionListener(new ActionListener() {
+    		
+    		@Override
+    		public void actionPerformed(ActionEvent e) {
+    			Rectangle viewport = scrollPane.getViewport().getViewRect();
+    			if (!viewport.equals(lastViewport)) {
+    				lastViewport = viewport;
+    				client.sendMessage("viewport " + client.getUsername() + " " + whiteboardName + " " + viewport.x + " " 
+    								   + viewport.y + " " + viewport.width + " " + viewport.height);
+    			}
+    		}
+    	});
+    	
+    	scrollPane.getViewport().addChangeListener(new ChangeListener() {
+    		
+    		@Override
+    		public void stateChanged(ChangeEvent e) {
+    			JViewport viewport = (JViewport) e.getSource();
+    			if (viewport.getExtentSize().width > 0) {
+    				viewportTimer.restart();
+    			}
+    		}
+    	});
+    }
+	
     /**
      * Adds an ActionListener to the closing of the WhiteBoardGUI window so that the client
      * is disconnected from this whiteboard.
@@ -212,7 +405,8 @@ public class WhiteBoardGUI extends JFrame {
 
             @Override
             public void windowClosing(WindowEvent e) {
-            	client.closeWhiteboardGUI();
+            	viewportTimer.stop();
+            	client.closeWhiteboardGUI(whiteboardName);
                 client.sendMessage("close " + client.getUsername() + " " + whiteboardName);
                 dispose();
             }
@@ -221,13 +415,71 @@ public class WhiteBoardGUI extends JFrame {
     }
 	
 	/**
-	 * Adds a series of points to the canvas.
+	 * Adds a series of points to a layer of the canvas.
 	 * 
+	 * @param layer the index of the layer from the bottom
 	 * @param line the String representation of the series of points to be added to the canvas.
 	 * 
 	 */
-	public void drawLine(final String line) {
-		canvas.addPoints(line);
+	public void drawLine(final int layer, final String line) {
+		canvas.addPoints(layer, line);
+	}
+	
+	/**
+	 * Draws a low resolution preview of the whiteboard onto the canvas.
+	 * 
+	 * @param scale the width and height in pixels of the square of the canvas covered by each pixel of the preview
+	 * @param line the String representation of the pixels of the preview that are not white
+	 * 
+	 */
+	public void drawPreview(final int scale, final String line) {
+		canvas.addPreview(scale, line);
+	}
+	
+	/**
+	 * Draws the runs of pixels colored by a fill onto a layer of the canvas.
+	 * 
+	 * @param layer the index of the layer from the bottom
+	 * @param color the color of the fill
+	 * @param line the String representation of the runs, as consecutive triples [y] [xStart] [xEnd]
+	 * 
+	 */
+	public void drawSpans(final int layer, final Color color, final String line) {
+		canvas.addSpans(layer, color, line);
+	}
+	
+	/**
+	 * Copies a rectangle of a layer of the canvas to another place on the same layer.
+	 * 
+	 * @param layer the index of the layer from the bottom
+	 * @param sx the x-coordinate of the top left hand corner of the rectangle
+	 * @param sy the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle in pixels
+	 * @param height the height of the rectangle in pixels
+	 * @param dx the x-coordinate of the top left hand corner of the copy
+	 * @param dy the y-coordinate of the top left hand corner of the copy
+	 * @param move true if the pixels of the rectangle that the copy does not cover are emptied
+	 * 
+	 */
+	public void blit(final int layer, final int sx, final int sy, final int width, final int height, 
+					 final int dx, final int dy, final boolean move) {
+		canvas.copyRegion(layer, sx, sy, width, height, dx, dy, move);
+	}
+	
+	/**
+	 * Update GUI to show the layers of the whiteboard.  The layer that this client draws on stays selected.
+	 * 
+	 * @param layerNames the names of the layers of the whiteboard from the bottom up, the first being the base layer
+	 */
+	public void setLayers(final String[] layerNames) {
+		isUpdatingLayers = true;
+		layerBox.removeAllItems();
+		for (String name : layerNames) {
+			layerBox.addItem(name);
+		}
+		layerBox.setSelectedItem(Arrays.asList(layerNames).contains(activeLayer) ? activeLayer : layerNames[0]);
+		visibleBox.setSelected(canvas.isLayerVisible(layerBox.getSelectedIndex()));
+		isUpdatingLayers = false;
 	}
 	
 	/**
@@ -240,6 +492,21 @@ public class WhiteBoardGUI extends JFrame {
 		usersOnline.setText("Users editing this whiteboard now: " + usersConnectedToWhiteboard);
 	}
 	
+	/**
+	 * Replaces a rectangle of a layer of the canvas.
+	 * 
+	 * @param layer the index of the layer from the bottom
+	 * @param x the x-coordinate of the top left hand corner of the rectangle
+	 * @param y the y-coordinate of the top left hand corner of the rectangle
+	 * @param width the width of the rectangle in pixels
+	 * @param height the height of the rectangle in pixels
+	 * @param line the String representation of the pixels of the layer in the rectangle that have been drawn on
+	 */
+	public void redrawRegion(final int layer, final int x, final int y, final int width, final int height, final String line) {
+		canvas.clearRegion(layer, x, y, width, height);
+		canvas.addPoints(layer, line);
+	}
+	
 	/**
 	 * Clears the canvas.
 	 */